@@ -27,6 +27,7 @@ public enum Action {
     MULTI_SELL,
     CANCEL_ORDER,
     CANCEL_ORDERS,
+    CANCEL_ALL,
 
     // 订单接口
     ORDERS,
@@ -11,7 +11,11 @@ public enum ExchangeError {
     // 币对不支持
     SYMBOL(1002),
     // K线周期不支持
-    PERIOD(1003);
+    PERIOD(1003),
+    // 本地限流，请求未发出
+    RATE_LIMIT(1004),
+    // 超过调用设置的超时时间
+    TIMEOUT(1005);
 //    public static final Integer ERROR_TOKEN = 1001;     // 授权错误
 
     private int code;
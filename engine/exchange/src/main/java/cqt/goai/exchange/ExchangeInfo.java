@@ -85,6 +85,19 @@ public class ExchangeInfo implements Cloneable {
      */
     private String extra;
 
+    /**
+     * 超时时间，毫秒，0表示不限制
+     * 只对查询类接口有效，超时后不再等待，抛出 ExchangeError.TIMEOUT
+     * 下单、撤单超时后无法确认是否成功，不使用
+     */
+    private long timeout;
+
+    /**
+     * 是否对冲请求，只对公开行情接口有效
+     * 第一个请求超过该接口近期耗时的分位数(goai.hedge.percentile)仍未返回时，再发出一个相同请求，使用先返回的结果
+     */
+    private boolean hedge;
+
     private ExchangeInfo(Action action, String symbol, String access, String secret) {
         this.action = action;
         this.symbol = symbol;
@@ -188,6 +201,10 @@ public class ExchangeInfo implements Cloneable {
         return info;
     }
 
+    public static ExchangeInfo cancelAll(String symbol, String access, String secret) {
+        return new ExchangeInfo(Action.CANCEL_ALL, symbol, access, secret);
+    }
+
     // 订单接口
 
     public static ExchangeInfo orders(String symbol, String access, String secret) {
@@ -267,6 +284,7 @@ public class ExchangeInfo implements Cloneable {
             case MULTI_SELL     : return action + " " + symbol + " " + Seal.seal(access) + " " + rows;
             case CANCEL_ORDER   : return action + " " + symbol + " " + Seal.seal(access) + " " + cancelId;
             case CANCEL_ORDERS  : return action + " " + symbol + " " + Seal.seal(access) + " " + cancelIds;
+            case CANCEL_ALL     : return action + " " + symbol + " " + Seal.seal(access);
 
             case ORDERS         : return action + " " + symbol + " " + Seal.seal(access);
             case HISTORY_ORDERS : return action + " " + symbol + " " + Seal.seal(access);
@@ -300,6 +318,16 @@ public class ExchangeInfo implements Cloneable {
         return this;
     }
 
+    public ExchangeInfo setTimeout(long timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    public ExchangeInfo setHedge(boolean hedge) {
+        this.hedge = hedge;
+        return this;
+    }
+
     @Override
     public final ExchangeInfo clone() {
         try {
@@ -6,6 +6,9 @@ import cqt.goai.exchange.http.bitfinex.BitfinexExchange;
 import cqt.goai.exchange.http.huobi.pro.HuobiProExchange;
 import cqt.goai.exchange.http.okexv3.Okexv3Exchange;
 import cqt.goai.exchange.web.socket.WebSocketExchange;
+import cqt.goai.exchange.web.socket.binance.BinanceWebSocketExchange;
+import cqt.goai.exchange.web.socket.bitfinex.BitfinexWebSocketExchange;
+import cqt.goai.exchange.web.socket.huobi.pro.HuobiProWebSocketExchange;
 import cqt.goai.exchange.web.socket.okexv3.Okexv3WebSocketExchange;
 import org.slf4j.Logger;
 
@@ -45,6 +48,9 @@ public class ExchangeManager {
         if (null != name) {
             switch (name) {
                 case OKEXV3: return new Okexv3WebSocketExchange(log);
+                case BITFINEX: return new BitfinexWebSocketExchange(log);
+                case HUOBIPRO: return new HuobiProWebSocketExchange(log);
+                case BINANCE: return new BinanceWebSocketExchange(log);
                 default:
             }
         }
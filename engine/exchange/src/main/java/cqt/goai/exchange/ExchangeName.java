@@ -32,23 +32,26 @@ public enum ExchangeName {
      * CompleteList.ACCOUNT
      * CompleteList.TRADE
      * CompleteList.ORDER
+     * 推送只有公共行情
      */
-    BITFINEX("bitfinex", CompleteList.exclude(PUSH)),
+    BITFINEX("bitfinex", CompleteList.exclude(ON_ACCOUNT, ON_ORDERS)),
 
 
     /**
      * huobipro
      * https://github.com/huobiapi/API_Docs
+     * 推送只有公共行情
      */
-    HUOBIPRO("huobipro", CompleteList.exclude(PUSH)),
+    HUOBIPRO("huobipro", CompleteList.exclude(ON_ACCOUNT, ON_ORDERS)),
 
 
 
     /**
      * binance
      * https://github.com/binance-exchange/binance-official-api-docs/blob/master/rest-api.md
+     * 推送只有公共行情
      */
-    BINANCE("binance", CompleteList.exclude(PUSH));
+    BINANCE("binance", CompleteList.exclude(ON_ACCOUNT, ON_ORDERS));
 
 
     /**
@@ -0,0 +1,166 @@
+package cqt.goai.exchange.http;
+
+import cqt.goai.exchange.ExchangeException;
+import org.slf4j.Logger;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * 一批请求的结果，顺序与请求顺序一致
+ *
+ * 单个请求失败不影响其他请求，失败的请求单独标记，对应位置的结果为null，
+ * 解析时用 isFailed 区分请求失败和交易所返回的内容，跳过失败的请求，已经成功的下单、撤单结果不会丢失
+ *
+ * @author GOAi
+ */
+public final class BatchResults extends AbstractList<String> implements RandomAccess {
+
+    private final String[] results;
+
+    private final Exception[] exceptions;
+
+    private final BitSet failed;
+
+    private BatchResults(int size) {
+        this.results = new String[size];
+        this.exceptions = new Exception[size];
+        this.failed = new BitSet(size);
+    }
+
+    /**
+     * 执行一批请求，最多concurrency个同时执行
+     *
+     * 调用线程自己也执行请求，线程池繁忙时退化为依次执行，不会互相等待
+     * 单个请求失败记录在结果中，不影响其他请求；全部失败时抛出第一个请求的异常
+     *
+     * @param size        请求个数
+     * @param concurrency 最大并发数，1表示在调用线程依次执行
+     * @param executor    执行请求的线程池
+     * @param request     执行第i个请求
+     * @param log         日志
+     * @return 执行结果
+     */
+    public static BatchResults execute(int size, int concurrency, ExecutorService executor,
+                                       IntFunction<String> request, Logger log) {
+        BatchResults results = new BatchResults(size);
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker = () -> {
+            for (int i = next.getAndIncrement(); i < size; i = next.getAndIncrement()) {
+                try {
+                    results.results[i] = request.apply(i);
+                } catch (Exception e) {
+                    results.fail(i, e);
+                    log.error("request {} of {} failed", i, size, e);
+                }
+            }
+        };
+        int workers = Math.min(size, concurrency) - 1;
+        List<Future<?>> futures = new ArrayList<>(Math.max(workers, 0));
+        for (int i = 0; i < workers; i++) {
+            try {
+                futures.add(executor.submit(worker));
+            } catch (RejectedExecutionException e) {
+                break;
+            }
+        }
+        worker.run();
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ExchangeException("interrupted while waiting for requests", e);
+            } catch (ExecutionException e) {
+                // worker 已经捕获了每个请求的异常
+                log.error("request worker failed", e.getCause());
+            }
+        }
+        List<Integer> failures = results.getFailed();
+        if (0 < size && failures.size() == size) {
+            Exception e = results.exceptions[0];
+            throw e instanceof RuntimeException ? (RuntimeException) e
+                    : new ExchangeException("all " + size + " requests failed", e);
+        }
+        if (!failures.isEmpty()) {
+            log.error("requests {} of {} failed", failures, size);
+        }
+        return results;
+    }
+
+    private void fail(int index, Exception exception) {
+        this.exceptions[index] = exception;
+        synchronized (this.failed) {
+            this.failed.set(index);
+        }
+    }
+
+    /**
+     * 第index个请求是否失败
+     */
+    public boolean isFailed(int index) {
+        synchronized (this.failed) {
+            return this.failed.get(index);
+        }
+    }
+
+    /**
+     * 失败请求的下标，由小到大
+     */
+    public List<Integer> getFailed() {
+        List<Integer> indices = new ArrayList<>();
+        synchronized (this.failed) {
+            for (int i = this.failed.nextSetBit(0); 0 <= i; i = this.failed.nextSetBit(i + 1)) {
+                indices.add(i);
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * 第index个请求的异常，没有失败时为null
+     */
+    public Exception getException(int index) {
+        return this.exceptions[index];
+    }
+
+    /**
+     * 结果中第index个请求是否失败，普通的结果列表视为全部成功
+     * @param results 请求结果
+     * @param index 下标
+     * @return 是否失败
+     */
+    public static boolean failed(List<String> results, int index) {
+        return results instanceof BatchResults && ((BatchResults) results).isFailed(index);
+    }
+
+    /**
+     * 结果中失败请求的下标，普通的结果列表为空
+     * @param results 请求结果
+     * @return 失败请求的下标
+     */
+    public static List<Integer> failed(List<String> results) {
+        return results instanceof BatchResults
+                ? ((BatchResults) results).getFailed() : new ArrayList<>(0);
+    }
+
+    @Override
+    public String get(int index) {
+        return this.results[index];
+    }
+
+    @Override
+    public int size() {
+        return this.results.length;
+    }
+
+}
@@ -2,6 +2,9 @@ package cqt.goai.exchange.http;
 
 import cqt.goai.exchange.*;
 import cqt.goai.exchange.util.CommonUtil;
+import cqt.goai.exchange.util.HedgedCall;
+import cqt.goai.exchange.util.MetadataCache;
+import cqt.goai.exchange.util.Signer;
 import cqt.goai.model.enums.Period;
 import cqt.goai.model.market.Klines;
 import cqt.goai.model.market.Depth;
@@ -11,13 +14,23 @@ import cqt.goai.model.trade.*;
 import dive.http.common.MimeHttp;
 import dive.http.common.MimeRequest;
 import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 import java.math.BigDecimal;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -30,10 +43,137 @@ import static dive.common.util.Util.exist;
  * Abstract Factory Pattern 抽象工厂模式
  * 任何一个交易所必须有这些接口，实现这些功能，提供这些Model，每个交易所实现方式不一样
  *
+ * 每个接口都有对应的xxxAsync异步版本，返回CompletableFuture，
+ * 例如同时请求ticker、depth、account、orders，耗时取决于最慢的一个而不是四个之和
+ * 异步只是把阻塞的请求交给线程池执行，不是非阻塞IO，每个进行中的请求占用一个线程，
+ * 同时进行的异步请求数不超过线程数，线程数通过 goai.http.threads 或 setAsyncThreads 设置
+ *
+ * 每个接口的耗时分位数、响应大小、状态码统计见 RequestMetrics.snapshot()
+ *
  * @author GOAi
  */
 public class HttpExchange extends BaseExchange {
 
+    /**
+     * 异步请求默认线程数
+     */
+    private static final int ASYNC_THREADS = Integer.getInteger("goai.http.threads", 32);
+
+    /**
+     * 异步请求线程池，所有交易所共用，空闲线程自动回收
+     */
+    private static final ThreadPoolExecutor ASYNC;
+
+    static {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(ASYNC_THREADS, ASYNC_THREADS,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "goai-http-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        ASYNC = executor;
+    }
+
+    /**
+     * 设置异步请求线程数，即同时进行的异步请求上限，超出的请求排队等待
+     * 线程只在有请求时创建，空闲60秒后回收
+     * @param threads 线程数
+     */
+    public static void setAsyncThreads(int threads) {
+        if (threads < 1) {
+            throw new ExchangeException("http threads must be positive: " + threads);
+        }
+        // 先调整较大的一边，保证 core <= max
+        if (ASYNC.getMaximumPoolSize() < threads) {
+            ASYNC.setMaximumPoolSize(threads);
+            ASYNC.setCorePoolSize(threads);
+        } else {
+            ASYNC.setCorePoolSize(threads);
+            ASYNC.setMaximumPoolSize(threads);
+        }
+    }
+
+    /**
+     * 异步请求线程数
+     */
+    public static int getAsyncThreads() {
+        return ASYNC.getMaximumPoolSize();
+    }
+
+    /**
+     * 批量请求默认并发数
+     */
+    private static final int BATCH_CONCURRENCY = Integer.getInteger("goai.http.concurrency", 20);
+
+    /**
+     * 批量请求线程池，队列满时由调用线程自己执行
+     */
+    private static final ExecutorService BATCH = new ThreadPoolExecutor(0,
+            Integer.getInteger("goai.http.batch.threads", 64), 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+            new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "goai-http-batch-" + this.count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    /**
+     * 设置了超时或对冲的请求在该线程池执行，调用线程只负责等待
+     * 不使用ASYNC，避免异步调用的线程都在等待排队中的请求
+     */
+    private static final ExecutorService BOUNDED = new ThreadPoolExecutor(0,
+            Integer.getInteger("goai.http.bounded.threads", 64), 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+            new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "goai-http-bounded-" + this.count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    /**
+     * 对冲请求延时，取该接口近期耗时的分位数
+     */
+    private static final double HEDGE_PERCENTILE = Double.parseDouble(
+            System.getProperty("goai.hedge.percentile", "0.95"));
+
+    /**
+     * 近期记录不足 HEDGE_SAMPLES 次时使用的对冲延时，毫秒
+     */
+    private static final long HEDGE_DELAY = Long.getLong("goai.hedge.delay", 200);
+
+    private static final long HEDGE_SAMPLES = 100;
+
+    /**
+     * 各交易所实现类是否有按币对取消全部的接口
+     */
+    private static final Map<Class<?>, Boolean> CANCEL_ALL = new ConcurrentHashMap<>();
+
+    /**
+     * 对冲延时的缓存时间，毫秒，期间不重新计算分位数
+     */
+    private static final long HEDGE_REFRESH = TimeUnit.MILLISECONDS.toNanos(
+            Long.getLong("goai.hedge.refresh", 1000));
+
+    /**
+     * 全部币对精度缓存，key为交易所名称
+     */
+    private static final MetadataCache<Precisions> PRECISIONS = new MetadataCache<>("precisions",
+            Precisions::to, data -> Precisions.of(data, LoggerFactory.getLogger(HttpExchange.class)));
+
+    /**
+     * 单个币对精度缓存，key为 交易所_币对
+     */
+    private static final MetadataCache<Precision> PRECISION = new MetadataCache<>("precision",
+            Precision::to, data -> Precision.of(data, LoggerFactory.getLogger(HttpExchange.class)));
+
     /**
      * http请求工具
      */
@@ -77,6 +217,16 @@ public class HttpExchange extends BaseExchange {
         return this.get(info, this::tickerRequests, this::parseTicker);
     }
 
+    /**
+     * 异步获取Ticker，不阻塞调用线程，多个接口可以同时请求
+     *
+     * @param info 请求信息
+     * @return Ticker
+     */
+    public final CompletableFuture<Ticker> getTickerAsync(ExchangeInfo info) {
+        return this.async(info, this::tickerRequests, this::parseTicker);
+    }
+
     /**
      * 获取Ticker的Http请求信息，每个交易所不一样
      *
@@ -116,6 +266,10 @@ public class HttpExchange extends BaseExchange {
         return this.get(info, this::klinesRequests, this::parseKlines);
     }
 
+    public final CompletableFuture<Klines> getKlinesAsync(ExchangeInfo info) {
+        return this.async(info, this::klinesRequests, this::parseKlines);
+    }
+
     public List<MimeRequest> klinesRequests(ExchangeInfo info, long delay) {
         return Collections.emptyList();
     }
@@ -135,6 +289,10 @@ public class HttpExchange extends BaseExchange {
         return this.get(info, this::depthRequests, this::parseDepth);
     }
 
+    public final CompletableFuture<Depth> getDepthAsync(ExchangeInfo info) {
+        return this.async(info, this::depthRequests, this::parseDepth);
+    }
+
     public List<MimeRequest> depthRequests(ExchangeInfo info, long delay) {
         return Collections.emptyList();
     }
@@ -154,6 +312,10 @@ public class HttpExchange extends BaseExchange {
         return this.get(info, this::tradesRequests, this::parseTrades);
     }
 
+    public final CompletableFuture<Trades> getTradesAsync(ExchangeInfo info) {
+        return this.async(info, this::tradesRequests, this::parseTrades);
+    }
+
     public List<MimeRequest> tradesRequests(ExchangeInfo info, long delay) {
         return Collections.emptyList();
     }
@@ -173,6 +335,10 @@ public class HttpExchange extends BaseExchange {
         return this.get(info, this::balancesRequests, this::parseBalances);
     }
 
+    public final CompletableFuture<Balances> getBalancesAsync(ExchangeInfo info) {
+        return this.async(info, this::balancesRequests, this::parseBalances);
+    }
+
     public List<MimeRequest> balancesRequests(ExchangeInfo info, long delay) {
         return Collections.emptyList();
     }
@@ -191,6 +357,10 @@ public class HttpExchange extends BaseExchange {
         return this.get(info, this::accountRequests, this::parseAccount);
     }
 
+    public final CompletableFuture<Account> getAccountAsync(ExchangeInfo info) {
+        return this.async(info, this::accountRequests, this::parseAccount);
+    }
+
     public List<MimeRequest> accountRequests(ExchangeInfo info, long delay) {
         return this.balancesRequests(info, delay);
     }
@@ -216,8 +386,31 @@ public class HttpExchange extends BaseExchange {
 
     // =============== precisions ===============
 
+    /**
+     * 获取全部币对精度，进程内按交易所缓存，过期前后台刷新，见 MetadataCache
+     *
+     * @param info 请求信息
+     * @return Precisions
+     */
     public final Precisions getPrecisions(ExchangeInfo info) {
-        return this.get(info, this::precisionsRequests, this::parsePrecisions);
+        return PRECISIONS.get(this.name.getName(), this.metadataTtl(),
+                () -> this.get(info, this::precisionsRequests, this::parsePrecisions), this.log);
+    }
+
+    public final CompletableFuture<Precisions> getPrecisionsAsync(ExchangeInfo info) {
+        return CompletableFuture.supplyAsync(() -> this.getPrecisions(info), ASYNC);
+    }
+
+    /**
+     * 交易所全部币对
+     *
+     * @param info 请求信息
+     * @return 币对列表 如 BTC_USDT
+     */
+    public final List<String> getSymbols(ExchangeInfo info) {
+        return this.getPrecisions(info).stream()
+                .map(Precision::getSymbol)
+                .collect(Collectors.toList());
     }
 
     public List<MimeRequest> precisionsRequests(ExchangeInfo info, long delay) {
@@ -234,8 +427,51 @@ public class HttpExchange extends BaseExchange {
 
     // =============== precision ===============
 
+    /**
+     * 获取币对精度
+     * 有全部币对精度接口的，从缓存的Precisions中查找；
+     * 找不到(如新上线的币对)或者需要其他信息的，单独请求并按币对缓存
+     *
+     * @param info 请求信息
+     * @return Precision
+     */
     public final Precision getPrecision(ExchangeInfo info) {
-        return this.get(info, this::precisionRequests, this::parsePrecision);
+        if (this.precisionFromList(info)) {
+            Precision precision = this.getPrecisions(info).stream()
+                    .filter(p -> info.getSymbol().equals(p.getSymbol()))
+                    .findAny()
+                    .orElse(null);
+            if (null != precision) {
+                return precision;
+            }
+        }
+        return PRECISION.get(this.name.getName() + "_" + info.getSymbol(), this.metadataTtl(),
+                () -> this.get(info, this::precisionRequests, this::parsePrecision), this.log);
+    }
+
+    public final CompletableFuture<Precision> getPrecisionAsync(ExchangeInfo info) {
+        return CompletableFuture.supplyAsync(() -> this.getPrecision(info), ASYNC);
+    }
+
+    /**
+     * 单个币对精度是否可以直接从全部币对精度中获取
+     *
+     * @param info 请求信息
+     * @return 默认有全部币对精度接口即可
+     */
+    protected boolean precisionFromList(ExchangeInfo info) {
+        return !this.precisionsRequests(info, 0).isEmpty();
+    }
+
+    /**
+     * 精度等元数据缓存时间，毫秒
+     * 默认10分钟，可以通过 goai.metadata.ttl 或 goai.metadata.ttl.交易所 修改
+     *
+     * @return 缓存时间
+     */
+    protected long metadataTtl() {
+        return Long.getLong("goai.metadata.ttl." + this.name.getName(),
+                Long.getLong("goai.metadata.ttl", 10 * 60 * 1000L));
     }
 
     public List<MimeRequest> precisionRequests(ExchangeInfo info, long delay) {
@@ -270,6 +506,10 @@ public class HttpExchange extends BaseExchange {
         return this.get(info, this::buyLimitRequests, this::parseBuyLimit);
     }
 
+    public final CompletableFuture<String> buyLimitAsync(ExchangeInfo info) {
+        return this.async(info, this::buyLimitRequests, this::parseBuyLimit);
+    }
+
     public List<MimeRequest> buyLimitRequests(ExchangeInfo info, long delay) {
         return Collections.emptyList();
     }
@@ -289,6 +529,10 @@ public class HttpExchange extends BaseExchange {
         return this.get(info, this::sellLimitRequests, this::parseSellLimit);
     }
 
+    public final CompletableFuture<String> sellLimitAsync(ExchangeInfo info) {
+        return this.async(info, this::sellLimitRequests, this::parseSellLimit);
+    }
+
     public List<MimeRequest> sellLimitRequests(ExchangeInfo info, long delay) {
         return Collections.emptyList();
     }
@@ -308,6 +552,10 @@ public class HttpExchange extends BaseExchange {
         return this.get(info, this::buyMarketRequests, this::parseBuyMarket);
     }
 
+    public final CompletableFuture<String> buyMarketAsync(ExchangeInfo info) {
+        return this.async(info, this::buyMarketRequests, this::parseBuyMarket);
+    }
+
     public List<MimeRequest> buyMarketRequests(ExchangeInfo info, long delay) {
         return Collections.emptyList();
     }
@@ -326,6 +574,10 @@ public class HttpExchange extends BaseExchange {
         return this.get(info, this::sellMarketRequests, this::parseSellMarket);
     }
 
+    public final CompletableFuture<String> sellMarketAsync(ExchangeInfo info) {
+        return this.async(info, this::sellMarketRequests, this::parseSellMarket);
+    }
+
     public List<MimeRequest> sellMarketRequests(ExchangeInfo info, long delay) {
         return Collections.emptyList();
     }
@@ -344,6 +596,10 @@ public class HttpExchange extends BaseExchange {
         return this.get(info, this::multiBuyRequests, this::parseMultiBuy);
     }
 
+    public final CompletableFuture<List<String>> multiBuyAsync(ExchangeInfo info) {
+        return this.async(info, this::multiBuyRequests, this::parseMultiBuy);
+    }
+
     public List<MimeRequest> multiBuyRequests(ExchangeInfo info, long delay) {
         return Stream.iterate(0, i -> i + 1)
                 .limit(info.getRows().size())
@@ -361,6 +617,7 @@ public class HttpExchange extends BaseExchange {
     public List<String> transformMultiBuy(List<String> results, ExchangeInfo info) {
         return Stream.iterate(0, i -> i + 1)
                 .limit(results.size())
+                .filter(i -> !BatchResults.failed(results, i))
                 .map(i -> this.transformBuyLimit(results.subList(i, i + 1),
                         info.clone().setPrice(info.getRows().get(i).getPrice().toPlainString())
                         .setAmount(info.getRows().get(i).getAmount().toPlainString())))
@@ -373,6 +630,10 @@ public class HttpExchange extends BaseExchange {
         return this.get(info, this::multiSellRequests, this::parseMultiSell);
     }
 
+    public final CompletableFuture<List<String>> multiSellAsync(ExchangeInfo info) {
+        return this.async(info, this::multiSellRequests, this::parseMultiSell);
+    }
+
     public List<MimeRequest> multiSellRequests(ExchangeInfo info, long delay) {
         return Stream.iterate(0, i -> i + 1)
                 .limit(info.getRows().size())
@@ -390,6 +651,7 @@ public class HttpExchange extends BaseExchange {
     public List<String> transformMultiSell(List<String> results, ExchangeInfo info) {
         return Stream.iterate(0, i -> i + 1)
                 .limit(results.size())
+                .filter(i -> !BatchResults.failed(results, i))
                 .map(i -> this.transformSellLimit(results.subList(i, i + 1), info.clone()
                         .setPrice(info.getRows().get(i).getPrice().toPlainString())
                         .setAmount(info.getRows().get(i).getAmount().toPlainString())))
@@ -402,6 +664,10 @@ public class HttpExchange extends BaseExchange {
         return this.get(info, this::cancelOrderRequests, this::parseCancelOrder);
     }
 
+    public final CompletableFuture<Boolean> cancelOrderAsync(ExchangeInfo info) {
+        return this.async(info, this::cancelOrderRequests, this::parseCancelOrder);
+    }
+
     public List<MimeRequest> cancelOrderRequests(ExchangeInfo info, long delay) {
         return Collections.emptyList();
     }
@@ -420,6 +686,10 @@ public class HttpExchange extends BaseExchange {
         return this.get(info, this::cancelOrdersRequests, this::parseCancelOrders);
     }
 
+    public final CompletableFuture<List<String>> cancelOrdersAsync(ExchangeInfo info) {
+        return this.async(info, this::cancelOrdersRequests, this::parseCancelOrders);
+    }
+
     public List<MimeRequest> cancelOrdersRequests(ExchangeInfo info, long delay) {
         return Stream.iterate(0, i -> i + 1)
                 .limit(info.getCancelIds().size())
@@ -436,6 +706,7 @@ public class HttpExchange extends BaseExchange {
     public List<String> transformCancelOrders(List<String> results, ExchangeInfo info) {
         return Stream.iterate(0, i -> i + 1)
                 .limit(results.size())
+                .filter(i -> !BatchResults.failed(results, i))
                 .filter(i -> {
                     Boolean result = this.transformCancelOrder(results.subList(i, i + 1), info.clone()
                             .setCancelId(info.getCancelIds().get(i)));
@@ -445,6 +716,80 @@ public class HttpExchange extends BaseExchange {
                 .collect(Collectors.toList());
     }
 
+    // =============== cancel all ===============
+
+    /**
+     * 取消币对所有活跃订单
+     *
+     * 交易所有按币对取消全部的接口时使用该接口，
+     * 否则先查询活跃订单，再用cancelOrders批量取消，两次请求依次进行
+     *
+     * @param info 请求信息
+     * @return 成功取消的订单id
+     */
+    public final List<String> cancelAll(ExchangeInfo info) {
+        if (this.cancelAllSupported()) {
+            return this.get(info, this::cancelAllRequests, this::parseCancelAll);
+        }
+        Orders orders = this.getOrders(ExchangeInfo.orders(info.getSymbol(), info.getAccess(), info.getSecret()));
+        List<String> ids = HttpExchange.ids(orders);
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return this.cancelOrders(ExchangeInfo.cancelOrders(info.getSymbol(), info.getAccess(), info.getSecret(), ids));
+    }
+
+    public final CompletableFuture<List<String>> cancelAllAsync(ExchangeInfo info) {
+        if (this.cancelAllSupported()) {
+            return this.async(info, this::cancelAllRequests, this::parseCancelAll);
+        }
+        return this.getOrdersAsync(ExchangeInfo.orders(info.getSymbol(), info.getAccess(), info.getSecret()))
+                .thenCompose(orders -> {
+                    List<String> ids = HttpExchange.ids(orders);
+                    if (ids.isEmpty()) {
+                        return CompletableFuture.completedFuture(Collections.emptyList());
+                    }
+                    return this.cancelOrdersAsync(
+                            ExchangeInfo.cancelOrders(info.getSymbol(), info.getAccess(), info.getSecret(), ids));
+                });
+    }
+
+    private static List<String> ids(Orders orders) {
+        return orders.stream().map(Order::getId).collect(Collectors.toList());
+    }
+
+    /**
+     * 是否有按币对取消全部的接口，即子类是否重写了cancelAllRequests
+     */
+    private boolean cancelAllSupported() {
+        return CANCEL_ALL.computeIfAbsent(this.getClass(), type -> {
+            try {
+                return HttpExchange.class != type.getMethod("cancelAllRequests", ExchangeInfo.class, long.class)
+                        .getDeclaringClass();
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        });
+    }
+
+    /**
+     * 取消所有订单的Http请求信息，交易所有按币对取消全部的接口时重写该方法和transformCancelAll
+     *
+     * @param info  请求信息
+     * @param delay 延迟
+     * @return Http请求信息
+     */
+    public List<MimeRequest> cancelAllRequests(ExchangeInfo info, long delay) {
+        return Collections.emptyList();
+    }
+
+    public final List<String> parseCancelAll(List<String> results, ExchangeInfo info) {
+        return HttpExchange.analyze(results, info, this::transformCancelAll, this.name, this.log);
+    }
+
+    public List<String> transformCancelAll(List<String> results, ExchangeInfo info) {
+        throw new ExchangeException("transformCancelAll is not supported");
+    }
 
     // =============== orders ===============
 
@@ -452,6 +797,10 @@ public class HttpExchange extends BaseExchange {
         return this.get(info, this::ordersRequests, this::parseOrders);
     }
 
+    public final CompletableFuture<Orders> getOrdersAsync(ExchangeInfo info) {
+        return this.async(info, this::ordersRequests, this::parseOrders);
+    }
+
     public List<MimeRequest> ordersRequests(ExchangeInfo info, long delay) {
         return Collections.emptyList();
     }
@@ -471,6 +820,10 @@ public class HttpExchange extends BaseExchange {
         return this.get(info, this::historyOrdersRequests, this::parseHistoryOrders);
     }
 
+    public final CompletableFuture<Orders> getHistoryOrdersAsync(ExchangeInfo info) {
+        return this.async(info, this::historyOrdersRequests, this::parseHistoryOrders);
+    }
+
     public List<MimeRequest> historyOrdersRequests(ExchangeInfo info, long delay) {
         return Collections.emptyList();
     }
@@ -489,6 +842,10 @@ public class HttpExchange extends BaseExchange {
         return this.get(info, this::orderRequests, this::parseOrder);
     }
 
+    public final CompletableFuture<Order> getOrderAsync(ExchangeInfo info) {
+        return this.async(info, this::orderRequests, this::parseOrder);
+    }
+
     public List<MimeRequest> orderRequests(ExchangeInfo info, long delay) {
         return Collections.emptyList();
     }
@@ -507,6 +864,10 @@ public class HttpExchange extends BaseExchange {
         return this.get(info, this::orderDetailsRequests, this::parseOrderDetails);
     }
 
+    public final CompletableFuture<OrderDetails> getOrderDetailsAsync(ExchangeInfo info) {
+        return this.async(info, this::orderDetailsRequests, this::parseOrderDetails);
+    }
+
     public List<MimeRequest> orderDetailsRequests(ExchangeInfo info, long delay) {
         return Collections.emptyList();
     }
@@ -523,6 +884,10 @@ public class HttpExchange extends BaseExchange {
         return this.get(info, this::orderDetailAllRequests, this::parseOrderDetailAll);
     }
 
+    public final CompletableFuture<OrderDetails> getOrderDetailAllAsync(ExchangeInfo info) {
+        return this.async(info, this::orderDetailAllRequests, this::parseOrderDetailAll);
+    }
+
     public List<MimeRequest> orderDetailAllRequests(ExchangeInfo info, long delay) {
         return Collections.emptyList();
     }
@@ -562,6 +927,27 @@ public class HttpExchange extends BaseExchange {
         throw new ExchangeException(ExchangeError.SYMBOL, message);
     }
 
+    /**
+     * 同一批请求的并发数，子类按交易所限制调整
+     * 没有批量接口的交易所，批量下单、撤单会拆成多个请求，并发发出只需一个往返时间
+     * 可以通过 goai.http.concurrency.交易所 修改，未设置时使用子类的默认值
+     *
+     * @return 并发数，1表示依次执行
+     */
+    protected int concurrency() {
+        return this.concurrency(BATCH_CONCURRENCY);
+    }
+
+    /**
+     * 同一批请求的并发数，优先使用 goai.http.concurrency.交易所
+     *
+     * @param concurrency 该交易所的默认并发数
+     * @return 并发数
+     */
+    protected final int concurrency(int concurrency) {
+        return Integer.getInteger("goai.http.concurrency." + this.name.getName(), concurrency);
+    }
+
     /**
      * 执行Http请求信息
      *
@@ -569,29 +955,91 @@ public class HttpExchange extends BaseExchange {
      * @return 执行结果
      */
     protected static List<String> results(List<MimeRequest> requests, MimeHttp http, Logger log) {
+        return HttpExchange.results(requests, http, log, 1);
+    }
+
+    /**
+     * 执行Http请求信息，多个请求时最多concurrency个同时执行
+     *
+     * 结果顺序与请求顺序一致
+     * 只有一个请求时异常照常抛出；多个请求时单个请求失败不影响其他请求，
+     * 返回 BatchResults，失败的请求由 BatchResults.failed 标记，解析方法跳过，全部失败时抛出第一个异常
+     * 调用线程自己也执行请求，线程池繁忙时退化为依次执行，不会互相等待
+     *
+     * @param requests    Http请求信息
+     * @param concurrency 最大并发数
+     * @return 执行结果
+     */
+    protected static List<String> results(List<MimeRequest> requests, MimeHttp http, Logger log, int concurrency) {
+        return HttpExchange.results(requests, http, log, concurrency, null, null);
+    }
+
+    /**
+     * 执行Http请求信息，并记录每个请求的耗时、状态码、响应大小
+     *
+     * @param recorder 统计，null则不记录
+     * @param failed   有请求失败，全部结束后执行一次，null则忽略
+     */
+    private static List<String> results(List<MimeRequest> requests, MimeHttp http, Logger log, int concurrency,
+                                        RequestMetrics.Recorder recorder, Runnable failed) {
         if (null == requests) {
             return null;
         }
-        return requests.stream()
-//                .map(r -> r.execute(http))
-                .map(r -> r.execute(http, (url, method, request, body, code, response, result) -> {
-                    if (null != result) {
-                        return;
-                    }
-                    log.info("url: " + url);
-                    log.info("method: " + method);
-                    log.info("requestHeader: " + request);
-                    log.info("body: " + body);
-                    log.info("code: " + code);
-                    log.info("responseHeader: " + response);
-                    //noinspection ConstantConditions
-                    log.info("result: " + result);
-                }))
-                .collect(Collectors.toList());
+        int size = requests.size();
+        if (size <= 1) {
+            return requests.stream()
+                    .map(r -> HttpExchange.execute(r, http, log, recorder))
+                    .collect(Collectors.toList());
+        }
+        BatchResults results;
+        try {
+            results = BatchResults.execute(size, concurrency, BATCH,
+                    i -> HttpExchange.execute(requests.get(i), http, log, recorder), log);
+        } catch (RuntimeException e) {
+            if (null != failed) {
+                failed.run();
+            }
+            throw e;
+        }
+        if (null != failed && !results.getFailed().isEmpty()) {
+            failed.run();
+        }
+        return results;
     }
 
     /**
-     * 统一请求
+     * 执行单个请求，失败时输出请求详情
+     */
+    private static String execute(MimeRequest request, MimeHttp http, Logger log, RequestMetrics.Recorder recorder) {
+        long start = System.nanoTime();
+        String text = null;
+        try {
+            text = request.execute(http, (url, method, requestHeader, body, code, response, result) -> {
+                if (null != recorder) {
+                    recorder.code(code);
+                }
+                if (null != result) {
+                    return;
+                }
+                log.info("url: " + url);
+                log.info("method: " + method);
+                log.info("requestHeader: " + requestHeader);
+                log.info("body: " + body);
+                log.info("code: " + code);
+                log.info("responseHeader: " + response);
+                //noinspection ConstantConditions
+                log.info("result: " + result);
+            });
+            return text;
+        } finally {
+            if (null != recorder) {
+                recorder.http(System.nanoTime() - start, text);
+            }
+        }
+    }
+
+    /**
+     * 统一请求，耗时等统计记录到RequestMetrics
      *
      * @param info     请求信息
      * @param requests 生成Http请求信息
@@ -602,15 +1050,142 @@ public class HttpExchange extends BaseExchange {
     private <R> R get(ExchangeInfo info,
                       BiFunction<ExchangeInfo, Long, List<MimeRequest>> requests,
                       BiFunction<List<String>, ExchangeInfo, R> analyze) {
-        List<MimeRequest> mimeRequests = requests.apply(info, 0L);
-        List<String> results;
+        RequestMetrics.Recorder recorder = RequestMetrics.recorder(this.name, info.getAction());
+        boolean bounded = 0 < info.getTimeout() && HttpExchange.idempotent(info.getAction());
+        boolean hedge = info.isHedge() && HttpExchange.hedgeable(info.getAction());
+        if (bounded || hedge) {
+            return this.bounded(info, requests, analyze, recorder, bounded, hedge);
+        }
+        return this.call(info, requests, analyze, recorder);
+    }
+
+    /**
+     * 执行一次 生成请求-执行-解析
+     */
+    private <R> R call(ExchangeInfo info,
+                       BiFunction<ExchangeInfo, Long, List<MimeRequest>> requests,
+                       BiFunction<List<String>, ExchangeInfo, R> analyze,
+                       RequestMetrics.Recorder recorder) {
+        long start = System.nanoTime();
         try {
-            results = HttpExchange.results(mimeRequests, this.http, this.log);
-        } catch (Exception e){
-            this.postRequest(info);
+            List<MimeRequest> mimeRequests = requests.apply(info, 0L);
+            List<String> results;
+            try {
+                if (null != mimeRequests) {
+                    RequestLimiter.acquire(this.name, info, this.getClass(), mimeRequests.size());
+                }
+                results = HttpExchange.results(mimeRequests, this.http, this.log, this.concurrency(), recorder,
+                        () -> this.postRequest(info));
+            } catch (Exception e){
+                this.postRequest(info);
+                throw e;
+            }
+            long parse = System.nanoTime();
+            R r = analyze.apply(results, info);
+            recorder.done(start, parse, System.nanoTime());
+            return r;
+        } catch (RuntimeException e) {
+            recorder.failed(start, System.nanoTime());
             throw e;
         }
-        return analyze.apply(results, info);
+    }
+
+    /**
+     * 有超时或对冲的请求
+     *
+     * 请求在BOUNDED线程池执行，调用线程最多等待到超时，超时后中断请求并抛出 ExchangeError.TIMEOUT
+     * 对冲时，第一个请求超过该接口近期耗时的分位数(每 goai.hedge.refresh 毫秒更新)仍未返回，再发出一个相同请求，使用先成功的结果，
+     * 对冲请求同样经过限流，较慢的请求不中断，继续完成并计入耗时统计
+     * 线程池已满时退化为在调用线程直接执行
+     *
+     * @param bounded 是否限制时间
+     * @param hedge   是否对冲
+     */
+    private <R> R bounded(ExchangeInfo info,
+                          BiFunction<ExchangeInfo, Long, List<MimeRequest>> requests,
+                          BiFunction<List<String>, ExchangeInfo, R> analyze,
+                          RequestMetrics.Recorder recorder, boolean bounded, boolean hedge) {
+        long timeout = bounded ? TimeUnit.MILLISECONDS.toNanos(info.getTimeout()) : 0;
+        long delay = -1;
+        if (hedge) {
+            delay = recorder.hedgeDelay(HEDGE_PERCENTILE, HEDGE_SAMPLES, HEDGE_REFRESH);
+            if (delay < 0) {
+                delay = TimeUnit.MILLISECONDS.toNanos(HEDGE_DELAY);
+            }
+        }
+        try {
+            return HedgedCall.call(BOUNDED, () -> this.call(info, requests, analyze, recorder),
+                    timeout, delay, recorder::hedged, recorder::hedgeWon);
+        } catch (TimeoutException e) {
+            recorder.timeout();
+            String message = String.format("%s %s timeout after %d ms",
+                    super.name.getName(), info.tip(), info.getTimeout());
+            this.log.error(message);
+            throw new ExchangeException(ExchangeError.TIMEOUT, message);
+        }
+    }
+
+    /**
+     * 可以设置超时的查询接口，超时后放弃结果不影响账户
+     */
+    private static boolean idempotent(Action action) {
+        if (null == action) {
+            return false;
+        }
+        switch (action) {
+            case TICKER:
+            case KLINES:
+            case DEPTH:
+            case TRADES:
+            case BALANCES:
+            case ACCOUNT:
+            case PRECISIONS:
+            case PRECISION:
+            case ORDERS:
+            case HISTORY_ORDERS:
+            case ORDER:
+            case ORDER_DETAILS:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 可以对冲的公开行情接口，不需要签名，重复请求没有nonce问题
+     */
+    private static boolean hedgeable(Action action) {
+        if (null == action) {
+            return false;
+        }
+        switch (action) {
+            case TICKER:
+            case KLINES:
+            case DEPTH:
+            case TRADES:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 异步统一请求
+     *
+     * MimeRequest只提供阻塞执行，也不暴露请求的url和header，无法交给okhttp的enqueue，
+     * 这里把整个 生成请求-执行-解析 过程放到ASYNC线程池中，请求期间占用一个线程，
+     * 同一次调用始终在同一个线程完成，生成请求和解析结果之间依赖线程状态的交易所不受影响
+     *
+     * @param info     请求信息
+     * @param requests 生成Http请求信息
+     * @param analyze  解析请求结果
+     * @param <R>      请求类型
+     * @return 请求结果，失败时以ExchangeException结束
+     */
+    private <R> CompletableFuture<R> async(ExchangeInfo info,
+                                           BiFunction<ExchangeInfo, Long, List<MimeRequest>> requests,
+                                           BiFunction<List<String>, ExchangeInfo, R> analyze) {
+        return CompletableFuture.supplyAsync(() -> this.get(info, requests, analyze), ASYNC);
     }
 
     /**
@@ -663,32 +1238,7 @@ public class HttpExchange extends BaseExchange {
     }
 
     protected static String hmacSha256(String message, String secret) {
-        try {
-            final String hmacSHA256 = "HmacSHA256";
-            Mac sha256hMac = Mac.getInstance(hmacSHA256);
-            SecretKeySpec secretKeySpec = new SecretKeySpec(secret.getBytes(), hmacSHA256);
-            sha256hMac.init(secretKeySpec);
-            return new String(encodeHex(sha256hMac.doFinal(message.getBytes())));
-        } catch (Exception e) {
-            throw new RuntimeException("Unable to sign message.", e);
-        }
+        return Signer.hmacHex(Signer.HMAC_SHA256, secret, message);
     }
 
-    private static char[] encodeHex(byte[] data) {
-        int l = data.length;
-        char[] out = new char[l << 1];
-        int i = 0;
-
-        for (int var5 = 0; i < l; ++i) {
-            out[var5++] = DIGITS_LOWER[(240 & data[i]) >>> 4];
-            out[var5++] = DIGITS_LOWER[15 & data[i]];
-        }
-
-        return out;
-    }
-
-    private static final char[] DIGITS_LOWER =
-            new char[]{'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
-
-
 }
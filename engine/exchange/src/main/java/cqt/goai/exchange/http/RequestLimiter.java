@@ -0,0 +1,213 @@
+package cqt.goai.exchange.http;
+
+import cqt.goai.exchange.Action;
+import cqt.goai.exchange.ExchangeError;
+import cqt.goai.exchange.ExchangeException;
+import cqt.goai.exchange.ExchangeInfo;
+import cqt.goai.exchange.ExchangeName;
+import cqt.goai.exchange.util.TokenBucket;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地请求限流，按 交易所 + 接口类别 各一个令牌桶，同一进程内所有实例共用
+ * 令牌不够时排队等待，等待超过 goai.limit.wait 毫秒(默认3000)直接拒绝，不发出请求
+ *
+ * 默认限制参考各交易所文档，可以通过系统属性修改，格式为 次数/毫秒，none表示不限制
+ * goai.limit.binance.weight=1200/60000    Binance 行情和账户共用权重
+ * goai.limit.binance.trade=10/1000
+ * goai.limit.huobipro.market=1000/10000
+ * goai.limit.okexv3.trade=100/2000
+ * ...
+ *
+ * @author GOAi
+ */
+public final class RequestLimiter {
+
+    /**
+     * 接口类别
+     */
+    public enum Endpoint {
+        /**
+         * 行情，精度
+         */
+        MARKET,
+        /**
+         * 账户，订单查询
+         */
+        ACCOUNT,
+        /**
+         * 下单，撤单
+         */
+        TRADE,
+    }
+
+    private static final String NONE = "none";
+
+    /**
+     * 最多排队等待时间
+     */
+    private static final long WAIT = Long.getLong("goai.limit.wait", 3000);
+
+    /**
+     * 令牌桶，key 为 交易所.类别
+     */
+    private static final Map<String, TokenBucket> BUCKETS = new ConcurrentHashMap<>();
+
+    /**
+     * 不限制的类别，避免每次都查询配置
+     */
+    private static final TokenBucket UNLIMITED = new TokenBucket(Long.MAX_VALUE, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+    /**
+     * 各交易所实现类的请求权重
+     */
+    private static final Map<Class<?>, Map<Action, Integer>> WEIGHTS = new ConcurrentHashMap<>();
+
+    private RequestLimiter() {}
+
+    /**
+     * 获取令牌，不够时等待，超时抛出异常
+     * @param name 交易所
+     * @param info 请求信息
+     * @param type 交易所实现类，用于读取RequestWeight
+     * @param count 请求个数
+     */
+    static void acquire(ExchangeName name, ExchangeInfo info, Class<?> type, int count) {
+        Action action = info.getAction();
+        if (null == action || count <= 0) {
+            return;
+        }
+        Endpoint endpoint = RequestLimiter.endpoint(action);
+        if (null == endpoint) {
+            return;
+        }
+        TokenBucket bucket = RequestLimiter.bucket(name, endpoint);
+        if (UNLIMITED == bucket) {
+            return;
+        }
+        long weight = (long) RequestLimiter.weight(type, action) * count;
+        if (!bucket.acquire(weight, WAIT, TimeUnit.MILLISECONDS)) {
+            throw new ExchangeException(ExchangeError.RATE_LIMIT,
+                    String.format("%s %s rate limited locally, weight: %d bucket: %s",
+                            name.getName(), info.tip(), weight, bucket));
+        }
+    }
+
+    /**
+     * 手动设置限制，如不同账户等级的限制不同
+     * @param name 交易所
+     * @param endpoint 类别
+     * @param bucket 令牌桶，null表示不限制
+     */
+    public static void limit(ExchangeName name, Endpoint endpoint, TokenBucket bucket) {
+        BUCKETS.put(RequestLimiter.key(name, endpoint), null == bucket ? UNLIMITED : bucket);
+    }
+
+    /**
+     * 获取令牌桶
+     */
+    public static TokenBucket bucket(ExchangeName name, Endpoint endpoint) {
+        return BUCKETS.computeIfAbsent(RequestLimiter.key(name, endpoint), RequestLimiter::create);
+    }
+
+    /**
+     * 接口类别
+     */
+    static Endpoint endpoint(Action action) {
+        switch (action) {
+            case TICKER:
+            case KLINES:
+            case DEPTH:
+            case TRADES:
+            case PRECISIONS:
+            case PRECISION:
+                return Endpoint.MARKET;
+            case BALANCES:
+            case ACCOUNT:
+            case ORDERS:
+            case HISTORY_ORDERS:
+            case ORDER:
+            case ORDER_DETAILS:
+                return Endpoint.ACCOUNT;
+            case BUY_LIMIT:
+            case SELL_LIMIT:
+            case BUY_MARKET:
+            case SELL_MARKET:
+            case MULTI_BUY:
+            case MULTI_SELL:
+            case CANCEL_ORDER:
+            case CANCEL_ORDERS:
+            case CANCEL_ALL:
+                return Endpoint.TRADE;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 共用同一个令牌桶的类别使用相同的key
+     */
+    private static String key(ExchangeName name, Endpoint endpoint) {
+        if (ExchangeName.BINANCE == name && Endpoint.TRADE != endpoint) {
+            return name.getName() + ".weight";
+        }
+        return name.getName() + "." + endpoint.name().toLowerCase();
+    }
+
+    private static TokenBucket create(String key) {
+        String config = System.getProperty("goai.limit." + key, RequestLimiter.defaults(key));
+        if (null == config || NONE.equals(config)) {
+            return UNLIMITED;
+        }
+        String[] split = config.split("/");
+        return new TokenBucket(Long.parseLong(split[0].trim()), Long.parseLong(split[1].trim()),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 默认限制
+     */
+    private static String defaults(String key) {
+        switch (key) {
+            case "binance.weight": return "1200/60000";
+            case "binance.trade": return "10/1000";
+            case "huobipro.market": return "1000/10000";
+            case "huobipro.account": return "100/10000";
+            case "huobipro.trade": return "100/10000";
+            case "okexv3.market": return "20/2000";
+            case "okexv3.account": return "20/2000";
+            case "okexv3.trade": return "100/2000";
+            case "bitfinex.market": return "60/60000";
+            case "bitfinex.account": return "90/60000";
+            case "bitfinex.trade": return "90/60000";
+            default: return null;
+        }
+    }
+
+    /**
+     * 读取 xxxRequests 方法上的权重
+     */
+    private static int weight(Class<?> type, Action action) {
+        return WEIGHTS.computeIfAbsent(type, t -> new ConcurrentHashMap<>())
+                .computeIfAbsent(action, a -> {
+                    StringBuilder name = new StringBuilder();
+                    for (String word : a.name().toLowerCase().split("_")) {
+                        name.append(0 == name.length() ? word
+                                : Character.toUpperCase(word.charAt(0)) + word.substring(1));
+                    }
+                    try {
+                        Method method = type.getMethod(name.append("Requests").toString(),
+                                ExchangeInfo.class, long.class);
+                        RequestWeight weight = method.getAnnotation(RequestWeight.class);
+                        return null == weight ? 1 : weight.value();
+                    } catch (NoSuchMethodException e) {
+                        return 1;
+                    }
+                });
+    }
+
+}
@@ -0,0 +1,377 @@
+package cqt.goai.exchange.http;
+
+import cqt.goai.exchange.Action;
+import cqt.goai.exchange.ExchangeName;
+import cqt.goai.exchange.util.Histogram;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Http请求统计，按 交易所 + 接口 分别记录，同一进程内所有实例共用
+ *
+ * 1. 整体耗时: 生成请求、限流等待、执行、解析的总时间
+ * 2. 单个Http请求耗时，批量请求每个请求分别记录
+ * 3. 解析耗时
+ * 4. 响应字节数、状态码次数、失败次数
+ * 5. 超时次数，对冲请求次数及对冲请求先返回的次数
+ *
+ * 记录时按枚举序号直接定位，不分配对象；snapshot() 获取当前统计
+ *
+ * @author GOAi
+ */
+public final class RequestMetrics {
+
+    private static final ExchangeName[] NAMES = ExchangeName.values();
+    private static final Action[] ACTIONS = Action.values();
+
+    /**
+     * 状态码范围，超出的记为0
+     */
+    private static final int CODES = 600;
+
+    /**
+     * 最后一列为没有Action的请求
+     */
+    private static final AtomicReferenceArray<Recorder> RECORDERS =
+            new AtomicReferenceArray<>(NAMES.length * (ACTIONS.length + 1));
+
+    private RequestMetrics() {}
+
+    /**
+     * 一个 交易所 + 接口 的统计
+     */
+    static final class Recorder {
+        private final ExchangeName name;
+        private final Action action;
+        private final Histogram latency = new Histogram();
+        private final Histogram http = new Histogram();
+        private final Histogram parse = new Histogram();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLongArray codes = new AtomicLongArray(CODES);
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong hedges = new AtomicLong();
+        private final AtomicLong hedgeWins = new AtomicLong();
+
+        /**
+         * 缓存的对冲延时，纳秒，-1表示记录次数不足
+         */
+        private volatile long hedgeDelay = -1;
+
+        /**
+         * 上次计算对冲延时的时间
+         */
+        private volatile long hedgeRefreshed;
+
+        private Recorder(ExchangeName name, Action action) {
+            this.name = name;
+            this.action = action;
+        }
+
+        /**
+         * 单个Http请求完成
+         * @param nanos 耗时
+         * @param result 响应内容，失败为null
+         */
+        void http(long nanos, String result) {
+            this.http.record(nanos);
+            if (null != result) {
+                this.bytes.addAndGet(RequestMetrics.utf8Length(result));
+            }
+        }
+
+        void code(int code) {
+            this.codes.incrementAndGet(0 < code && code < CODES ? code : 0);
+        }
+
+        /**
+         * 一次调用完成
+         * @param start 开始时间
+         * @param parse 开始解析时间
+         * @param end 结束时间
+         */
+        void done(long start, long parse, long end) {
+            this.parse.record(end - parse);
+            this.latency.record(end - start);
+        }
+
+        /**
+         * 一次调用失败
+         */
+        void failed(long start, long end) {
+            this.errors.incrementAndGet();
+            this.latency.record(end - start);
+        }
+
+        void timeout() {
+            this.timeouts.incrementAndGet();
+        }
+
+        void hedged() {
+            this.hedges.incrementAndGet();
+        }
+
+        void hedgeWon() {
+            this.hedgeWins.incrementAndGet();
+        }
+
+        /**
+         * 近期单次调用耗时的分位数
+         * @param quantile 分位
+         * @param samples 最少记录次数，不足时返回-1
+         * @return 纳秒
+         */
+        long latency(double quantile, long samples) {
+            return this.latency.count() < samples ? -1 : this.latency.percentile(quantile);
+        }
+
+        /**
+         * 对冲延时，即近期耗时的分位数，每 refresh 纳秒最多计算一次，其余时间使用缓存的值
+         * 并发时可能有多个线程同时计算，结果相同，不加锁
+         * @param quantile 分位
+         * @param samples 最少记录次数，不足时返回-1
+         * @param refresh 缓存时间，纳秒
+         * @return 纳秒
+         */
+        long hedgeDelay(double quantile, long samples, long refresh) {
+            long now = System.nanoTime();
+            long delay = this.hedgeDelay;
+            if (delay < 0 || refresh <= now - this.hedgeRefreshed) {
+                delay = this.latency(quantile, samples);
+                this.hedgeRefreshed = now;
+                this.hedgeDelay = delay;
+            }
+            return delay;
+        }
+
+        private void reset() {
+            this.latency.reset();
+            this.http.reset();
+            this.parse.reset();
+            this.errors.set(0);
+            this.bytes.set(0);
+            this.timeouts.set(0);
+            this.hedges.set(0);
+            this.hedgeWins.set(0);
+            this.hedgeDelay = -1;
+            for (int i = 0; i < CODES; i++) {
+                this.codes.set(i, 0);
+            }
+        }
+
+        private Snapshot snapshot() {
+            Map<Integer, Long> codes = new LinkedHashMap<>();
+            for (int i = 0; i < CODES; i++) {
+                long count = this.codes.get(i);
+                if (0 < count) {
+                    codes.put(i, count);
+                }
+            }
+            return new Snapshot(this.name, this.action, this.latency.snapshot(), this.http.snapshot(),
+                    this.parse.snapshot(), this.errors.get(), this.bytes.get(), Collections.unmodifiableMap(codes),
+                    this.timeouts.get(), this.hedges.get(), this.hedgeWins.get());
+        }
+    }
+
+    /**
+     * 获取统计对象，不存在则创建
+     */
+    static Recorder recorder(ExchangeName name, Action action) {
+        int index = name.ordinal() * (ACTIONS.length + 1) + (null == action ? ACTIONS.length : action.ordinal());
+        Recorder recorder = RECORDERS.get(index);
+        if (null == recorder) {
+            RECORDERS.compareAndSet(index, null, new Recorder(name, action));
+            recorder = RECORDERS.get(index);
+        }
+        return recorder;
+    }
+
+    /**
+     * 所有有记录的统计
+     * @return 快照，按交易所、接口顺序
+     */
+    public static List<Snapshot> snapshot() {
+        List<Snapshot> snapshots = new ArrayList<>();
+        for (int i = 0; i < RECORDERS.length(); i++) {
+            Recorder recorder = RECORDERS.get(i);
+            if (null != recorder && 0 < recorder.latency.count()) {
+                snapshots.add(recorder.snapshot());
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * 单个统计
+     * @param name 交易所
+     * @param action 接口
+     * @return 快照
+     */
+    public static Snapshot snapshot(ExchangeName name, Action action) {
+        return RequestMetrics.recorder(name, action).snapshot();
+    }
+
+    /**
+     * 清空所有统计，如按周期输出时每次输出后清空
+     */
+    public static void reset() {
+        for (int i = 0; i < RECORDERS.length(); i++) {
+            Recorder recorder = RECORDERS.get(i);
+            if (null != recorder) {
+                recorder.reset();
+            }
+        }
+    }
+
+    /**
+     * 不创建byte[]计算UTF-8长度
+     */
+    private static long utf8Length(String s) {
+        long length = s.length();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                length += 1;
+            } else if (Character.isHighSurrogate(c)) {
+                // 4字节，两个char
+                length += 1;
+                i++;
+            } else {
+                length += 2;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * 统计快照，耗时单位为纳秒
+     */
+    public static final class Snapshot {
+        private final ExchangeName name;
+        private final Action action;
+        private final Histogram.Snapshot latency;
+        private final Histogram.Snapshot http;
+        private final Histogram.Snapshot parse;
+        private final long errors;
+        private final long bytes;
+        private final Map<Integer, Long> codes;
+        private final long timeouts;
+        private final long hedges;
+        private final long hedgeWins;
+
+        private Snapshot(ExchangeName name, Action action, Histogram.Snapshot latency, Histogram.Snapshot http,
+                         Histogram.Snapshot parse, long errors, long bytes, Map<Integer, Long> codes,
+                         long timeouts, long hedges, long hedgeWins) {
+            this.name = name;
+            this.action = action;
+            this.latency = latency;
+            this.http = http;
+            this.parse = parse;
+            this.errors = errors;
+            this.bytes = bytes;
+            this.codes = codes;
+            this.timeouts = timeouts;
+            this.hedges = hedges;
+            this.hedgeWins = hedgeWins;
+        }
+
+        public ExchangeName getName() {
+            return this.name;
+        }
+
+        public Action getAction() {
+            return this.action;
+        }
+
+        /**
+         * 整体耗时
+         */
+        public Histogram.Snapshot getLatency() {
+            return this.latency;
+        }
+
+        /**
+         * 单个Http请求耗时
+         */
+        public Histogram.Snapshot getHttp() {
+            return this.http;
+        }
+
+        /**
+         * 解析耗时
+         */
+        public Histogram.Snapshot getParse() {
+            return this.parse;
+        }
+
+        /**
+         * 失败次数，包括请求异常和解析失败
+         */
+        public long getErrors() {
+            return this.errors;
+        }
+
+        /**
+         * 响应字节数
+         */
+        public long getBytes() {
+            return this.bytes;
+        }
+
+        /**
+         * 状态码 -> 次数，0为无法识别的状态码
+         */
+        public Map<Integer, Long> getCodes() {
+            return this.codes;
+        }
+
+        /**
+         * 超过调用设置的超时时间次数
+         */
+        public long getTimeouts() {
+            return this.timeouts;
+        }
+
+        /**
+         * 发出对冲请求次数
+         */
+        public long getHedges() {
+            return this.hedges;
+        }
+
+        /**
+         * 对冲请求先返回的次数
+         */
+        public long getHedgeWins() {
+            return this.hedgeWins;
+        }
+
+        /**
+         * 整体耗时总和，用于比较哪个接口占用时间最多
+         */
+        public long getTotal() {
+            return this.latency.getSum();
+        }
+
+        @Override
+        public String toString() {
+            return this.name.getName() + " " + this.action
+                    + " latency[" + this.latency.toMillis() + "]"
+                    + " http[" + this.http.toMillis() + "]"
+                    + " parse[" + this.parse.toMillis() + "]"
+                    + " errors=" + this.errors + " bytes=" + this.bytes + " codes=" + this.codes
+                    + " timeouts=" + this.timeouts + " hedges=" + this.hedges + " hedgeWins=" + this.hedgeWins;
+        }
+    }
+
+}
@@ -0,0 +1,32 @@
+package cqt.goai.exchange.http;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 请求权重，标注在交易所的xxxRequests方法上
+ * 每个生成的请求消耗value个令牌，未标注时为1
+ *
+ * 例如 Binance /api/v3/account 权重为5
+ * <pre>
+ * &#64;RequestWeight(5)
+ * &#64;Override
+ * public List&lt;MimeRequest&gt; balancesRequests(ExchangeInfo info, long delay)
+ * </pre>
+ *
+ * @author GOAi
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface RequestWeight {
+
+    /**
+     * 每个请求的权重
+     */
+    int value() default 1;
+
+}
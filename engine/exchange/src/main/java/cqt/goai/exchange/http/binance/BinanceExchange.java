@@ -6,13 +6,15 @@ import com.alibaba.fastjson.JSONObject;
 import cqt.goai.exchange.ExchangeInfo;
 import cqt.goai.exchange.ExchangeName;
 import cqt.goai.exchange.http.HttpExchange;
+import cqt.goai.exchange.http.RequestWeight;
 import cqt.goai.exchange.util.CommonUtil;
+import cqt.goai.exchange.util.JsonReader;
+import cqt.goai.exchange.util.Signer;
 import cqt.goai.model.enums.Side;
 import cqt.goai.model.enums.State;
 import cqt.goai.model.enums.Type;
 import cqt.goai.model.market.*;
 import cqt.goai.model.trade.*;
-import dive.common.crypto.HmacUtil;
 import dive.http.common.MimeRequest;
 import dive.http.common.model.Method;
 import dive.http.common.model.Parameter;
@@ -55,11 +57,20 @@ public class BinanceExchange extends HttpExchange {
         super(ExchangeName.BINANCE, log);
     }
 
+    /**
+     * 批量下单、撤单拆成单个请求，下单限制 10次/秒，同时最多5个请求，留一半给其他调用
+     */
+    @Override
+    protected int concurrency() {
+        return super.concurrency(5);
+    }
+
     @Override
     public String symbol(ExchangeInfo info) {
         return symbol(info, s -> s.replace("_", ""));
     }
 
+    @RequestWeight(1)
     @Override
     public List<MimeRequest> tickerRequests(ExchangeInfo info, long delay) {
         MimeRequest request = new MimeRequest.Builder()
@@ -86,6 +97,7 @@ public class BinanceExchange extends HttpExchange {
         return null;
     }
 
+    @RequestWeight(1)
     @Override
     public List<MimeRequest> klinesRequests(ExchangeInfo info, long delay) {
         Integer size = 400;
@@ -151,6 +163,7 @@ public class BinanceExchange extends HttpExchange {
         return null;
     }
 
+    @RequestWeight(1)
     @Override
     public List<MimeRequest> depthRequests(ExchangeInfo info, long delay) {
         MimeRequest request = new MimeRequest.Builder()
@@ -163,15 +176,13 @@ public class BinanceExchange extends HttpExchange {
     protected Depth transformDepth(List<String> results, ExchangeInfo info) {
         String result = results.get(0);
         if (useful(result)) {
-            JSONObject r = JSONObject.parseObject(result);
-            JSONArray asks = r.getJSONArray("asks");
-            JSONArray bids = r.getJSONArray("bids");
             Long time = System.currentTimeMillis();
-            return CommonUtil.parseDepthByIndex(time, asks, bids);
+            return CommonUtil.parseDepthByIndex(time, result);
         }
         return null;
     }
 
+    @RequestWeight(1)
     @Override
     public List<MimeRequest> tradesRequests(ExchangeInfo info, long delay) {
         MimeRequest request = new MimeRequest.Builder()
@@ -185,10 +196,10 @@ public class BinanceExchange extends HttpExchange {
         String result = results.get(0);
         if (useful(result)) {
             try {
-                JSONArray r = JSON.parseArray(result);
-                List<Trade> trades = new ArrayList<>(r.size());
-                for (int i = r.size() - 1; 0 <= i; i--) {
-                    JSONObject t = r.getJSONObject(i);
+                JsonReader reader = new JsonReader(result);
+                List<Trade> trades = new ArrayList<>(100);
+                reader.beginArray();
+                while (reader.hasNext()) {
                     /*
                      * "a": 26129,         // Aggregate tradeId
                      * "p": "0.01633102",  // Price
@@ -199,15 +210,31 @@ public class BinanceExchange extends HttpExchange {
                      * "m": true,          // Was the buyer the maker?
                      * "M": true           // Was the trade the best price match?
                      */
-                    Long time = t.getLong("T");
-                    String id = t.getString("f") + "_" + t.getString("l");
-                    Side side = t.getBoolean("m") ? Side.SELL : Side.BUY;
-                    BigDecimal price = t.getBigDecimal("p");
-                    BigDecimal amount = t.getBigDecimal("q");
-                    Trade trade = new Trade(r.getString(i), time, id, side, price, amount);
-                    trades.add(trade);
+                    int start = reader.mark();
+                    Long time = null;
+                    String first = null;
+                    String last = null;
+                    Side side = null;
+                    BigDecimal price = null;
+                    BigDecimal amount = null;
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case "T": time = reader.nextLong(); break;
+                            case "f": first = reader.nextString(); break;
+                            case "l": last = reader.nextString(); break;
+                            case "m": side = reader.nextBoolean() ? Side.SELL : Side.BUY; break;
+                            case "p": price = reader.nextDecimal(); break;
+                            case "q": amount = reader.nextDecimal(); break;
+                            default: reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    trades.add(new Trade(reader.raw(start), time, first + "_" + last, side, price, amount));
                 }
-
+                reader.endArray();
+                // 返回的是由远到近
+                Collections.reverse(trades);
                 return new Trades(trades);
             } catch (Exception e) {
                 e.printStackTrace();
@@ -216,11 +243,18 @@ public class BinanceExchange extends HttpExchange {
         return null;
     }
 
+    @RequestWeight(5)
     @Override
     public List<MimeRequest> balancesRequests(ExchangeInfo info, long delay) {
         return this.get(info, delay, BALANCES);
     }
 
+    @RequestWeight(5)
+    @Override
+    public List<MimeRequest> accountRequests(ExchangeInfo info, long delay) {
+        return this.balancesRequests(info, delay);
+    }
+
     @Override
     protected Balances transformBalances(List<String> results, ExchangeInfo info) {
         String result = results.get(0);
@@ -240,6 +274,7 @@ public class BinanceExchange extends HttpExchange {
     }
 
 
+    @RequestWeight(1)
     @Override
     public List<MimeRequest> precisionsRequests(ExchangeInfo info, long delay) {
         MimeRequest request = new MimeRequest.Builder()
@@ -342,6 +377,7 @@ public class BinanceExchange extends HttpExchange {
     }
 
 
+    @RequestWeight(1)
     @Override
     public List<MimeRequest> buyLimitRequests(ExchangeInfo info, long delay) {
         return this.postOrder(info, delay,
@@ -358,6 +394,7 @@ public class BinanceExchange extends HttpExchange {
         return this.getId(results);
     }
 
+    @RequestWeight(1)
     @Override
     public List<MimeRequest> sellLimitRequests(ExchangeInfo info, long delay) {
         return this.postOrder(info, delay,
@@ -374,6 +411,7 @@ public class BinanceExchange extends HttpExchange {
         return this.getId(results);
     }
 
+    @RequestWeight(1)
     @Override
     public List<MimeRequest> buyMarketRequests(ExchangeInfo info, long delay) {
         return this.postOrder(info, delay,
@@ -389,6 +427,7 @@ public class BinanceExchange extends HttpExchange {
         return this.getId(results);
     }
 
+    @RequestWeight(1)
     @Override
     public List<MimeRequest> sellMarketRequests(ExchangeInfo info, long delay) {
         return this.postOrder(info, delay,
@@ -404,6 +443,7 @@ public class BinanceExchange extends HttpExchange {
         return this.getId(results);
     }
 
+    @RequestWeight(1)
     @Override
     public List<MimeRequest> cancelOrderRequests(ExchangeInfo info, long delay) {
         return this.request(info, delay, ORDER, Method.DELETE,
@@ -421,7 +461,43 @@ public class BinanceExchange extends HttpExchange {
         return null;
     }
 
+    /**
+     * 没有按id批量撤单的接口，cancelOrders仍为每个id一个请求，同时发出
+     * 撤销币对所有订单只需一个请求
+     */
+    @RequestWeight(1)
+    @Override
+    public List<MimeRequest> cancelAllRequests(ExchangeInfo info, long delay) {
+        return this.request(info, delay, ORDERS, Method.DELETE,
+                "symbol", this.symbol(info));
+    }
+
+    /**
+     * [{"symbol":"BTCUSDT","orderId":11,"status":"CANCELED",...}]
+     * 没有活跃订单时返回 {"code":-2011,"msg":"Unknown order sent."}
+     */
+    @Override
+    public List<String> transformCancelAll(List<String> results, ExchangeInfo info) {
+        String result = results.get(0);
+        if (!useful(result)) {
+            return null;
+        }
+        if (!result.startsWith(LEFT_SQUARE_BRACKETS)) {
+            JSONObject r = JSON.parseObject(result);
+            return UNKNOWN_ORDER == r.getIntValue("code") ? Collections.emptyList() : null;
+        }
+        JSONArray r = JSON.parseArray(result);
+        List<String> ids = new ArrayList<>(r.size());
+        for (int i = 0; i < r.size(); i++) {
+            String id = r.getJSONObject(i).getString("orderId");
+            if (null != id) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
 
+    @RequestWeight(1)
     @Override
     public List<MimeRequest> ordersRequests(ExchangeInfo info, long delay) {
         return this.get(info, delay, ORDERS,
@@ -443,6 +519,7 @@ public class BinanceExchange extends HttpExchange {
         return null;
     }
 
+    @RequestWeight(5)
     @Override
     public List<MimeRequest> historyOrdersRequests(ExchangeInfo info, long delay) {
         return this.get(info, delay, ORDERS_HISTORY,
@@ -454,6 +531,7 @@ public class BinanceExchange extends HttpExchange {
         return this.transformOrders(results, info);
     }
 
+    @RequestWeight(1)
     @Override
     public List<MimeRequest> orderRequests(ExchangeInfo info, long delay) {
         return this.get(info, delay, ORDER,
@@ -470,6 +548,7 @@ public class BinanceExchange extends HttpExchange {
         return null;
     }
 
+    @RequestWeight(1)
     @Override
     public List<MimeRequest> orderDetailsRequests(ExchangeInfo info, long delay) {
         return this.get(info, delay, ORDER,
@@ -489,6 +568,7 @@ public class BinanceExchange extends HttpExchange {
     // ====================== tools ============================
 
     private static final String LEFT_SQUARE_BRACKETS = "[";
+    private static final int UNKNOWN_ORDER = -2011;
     private static final String FILLS = "fills";
 
     private List<MimeRequest> request(ExchangeInfo info, long delay, String api, Method method, Object... others) {
@@ -499,7 +579,7 @@ public class BinanceExchange extends HttpExchange {
         CommonUtil.addOtherParameter(parameter, others);
 
         String para = parameter.concat();
-        String sign = HmacUtil.HmacSHA256(para, secret);
+        String sign = Signer.hmacHex(Signer.HMAC_SHA256, secret, para);
 
         MimeRequest request = new MimeRequest.Builder()
                 .url(ADDRESS + api + "?" + para + "&signature=" + sign)
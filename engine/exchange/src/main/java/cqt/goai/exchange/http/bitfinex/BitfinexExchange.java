@@ -3,7 +3,6 @@ package cqt.goai.exchange.http.bitfinex;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
-import cqt.goai.exchange.ExchangeException;
 import cqt.goai.exchange.ExchangeInfo;
 import cqt.goai.exchange.ExchangeName;
 import cqt.goai.exchange.http.HistoryOrdersByTimestamp;
@@ -11,6 +10,8 @@ import cqt.goai.exchange.http.HistoryOrdersDetailsByTimestamp;
 import cqt.goai.exchange.http.HttpExchange;
 import cqt.goai.exchange.http.TradeByFillOrKill;
 import cqt.goai.exchange.util.CommonUtil;
+import cqt.goai.exchange.util.NonceGenerator;
+import cqt.goai.exchange.util.Signer;
 import cqt.goai.exchange.util.bitfinex.BitfinexUtil;
 import cqt.goai.model.enums.State;
 import cqt.goai.model.market.*;
@@ -22,10 +23,6 @@ import org.slf4j.Logger;
 
 import java.math.BigDecimal;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 import static dive.common.util.Util.useful;
@@ -65,18 +62,12 @@ public class BitfinexExchange extends HttpExchange
         super(ExchangeName.BITFINEX, log);
     }
 
+    /**
+     * 同一次调用拆分的多个请求nonce连续，同时发出时到达顺序不确定，依次执行
+     */
     @Override
-    protected void postRequest(ExchangeInfo info) {
-        switch (info.getAction()) {
-            case TICKER:
-            case KLINES:
-            case DEPTH:
-            case TRADES:
-            case PRECISION:
-            case PRECISIONS:
-                return;
-            default: this.unlock(info);
-        }
+    protected int concurrency() {
+        return 1;
     }
 
     @Override
@@ -221,7 +212,7 @@ public class BitfinexExchange extends HttpExchange
 
     @Override
     public List<MimeRequest> balancesRequests(ExchangeInfo info, long delay) {
-        String nonce = this.lock(info);
+        String nonce = this.nonce(info);
 
         return this.post(info, ACCOUNT, "request", ACCOUNT,
                 "nonce", nonce);
@@ -229,8 +220,6 @@ public class BitfinexExchange extends HttpExchange
 
     @Override
     protected Balances transformBalances(List<String> results, ExchangeInfo info) {
-        this.unlock(info);
-
         String result = results.get(0);
         if (useful(result)) {
             JSONArray r = JSON.parseArray(result);
@@ -247,8 +236,6 @@ public class BitfinexExchange extends HttpExchange
 
     @Override
     protected Account transformAccount(List<String> results, ExchangeInfo info) {
-        this.unlock(info);
-
         Account account = super.transformAccount(results, info);
         Balance base = account.getBase();
         Balance count = account.getQuote();
@@ -274,9 +261,6 @@ public class BitfinexExchange extends HttpExchange
 
     @Override
     public List<MimeRequest> precisionsRequests(ExchangeInfo info, long delay) {
-        if (System.currentTimeMillis() < lastRequest + MIN_GAP) {
-            return Collections.emptyList();
-        }
         MimeRequest request = new MimeRequest.Builder()
                 .url(ADDRESS + PRECISIONS)
                 .build();
@@ -285,33 +269,30 @@ public class BitfinexExchange extends HttpExchange
 
     @Override
     protected Precisions transformPrecisions(List<String> results, ExchangeInfo info) {
-        String result;
-        if (System.currentTimeMillis() < lastRequest + MIN_GAP) {
-            result = precisionsResult;
-        } else {
-            result = results.get(0);
-            precisionsResult = result;
-            lastRequest = System.currentTimeMillis();
+        String result = results.get(0);
+        if (useful(result)) {
+            return new Precisions(BitfinexUtil.parsePrecisions(result));
         }
-        return new Precisions(BitfinexUtil.parsePrecisions(result));
+        return null;
+    }
+
+    /**
+     * 币对列表中没有价格和数量的小数位数，需要再由深度推算
+     */
+    @Override
+    protected boolean precisionFromList(ExchangeInfo info) {
+        return false;
     }
 
     @Override
     public List<MimeRequest> precisionRequests(ExchangeInfo info, long delay) {
-        List<MimeRequest> requests = new LinkedList<>(this.depthRequests(info, delay));
-        requests.addAll(this.precisionsRequests(info, delay));
-        return requests;
+        return this.depthRequests(info, delay);
     }
 
     @Override
     protected Precision transformPrecision(List<String> results, ExchangeInfo info) {
-        Precisions precisions;
-        if (1 < results.size()) {
-            // 有请求币对信息
-            precisions = this.transformPrecisions(results.subList(1, 2), info);
-        } else {
-            precisions = new Precisions(BitfinexUtil.parsePrecisions(precisionsResult));
-        }
+        // 币对列表使用缓存
+        Precisions precisions = this.getPrecisions(info);
         Precision precision = null;
         for (Precision p : precisions) {
             if (info.getSymbol().equals(p.getSymbol())) {
@@ -334,7 +315,7 @@ public class BitfinexExchange extends HttpExchange
 
     @Override
     public List<MimeRequest> buyLimitRequests(ExchangeInfo info, long delay) {
-        String nonce = this.lock(info);
+        String nonce = this.nonce(info);
 
         return this.post(info, ORDER_NEW, "request", ORDER_NEW,
                 "nonce", nonce,
@@ -348,14 +329,12 @@ public class BitfinexExchange extends HttpExchange
 
     @Override
     public String transformBuyLimit(List<String> results, ExchangeInfo info) {
-        this.unlock(info);
-
         return this.parseId(results.get(0));
     }
 
     @Override
     public List<MimeRequest> sellLimitRequests(ExchangeInfo info, long delay) {
-        String nonce = this.lock(info);
+        String nonce = this.nonce(info);
 
         return this.post(info, ORDER_NEW, "request", ORDER_NEW,
                 "nonce", nonce,
@@ -369,14 +348,12 @@ public class BitfinexExchange extends HttpExchange
 
     @Override
     public String transformSellLimit(List<String> results, ExchangeInfo info) {
-        this.unlock(info);
-
         return this.parseId(results.get(0));
     }
 
     @Override
     public List<MimeRequest> buyMarketRequests(ExchangeInfo info, long delay) {
-        String nonce = this.lock(info);
+        String nonce = this.nonce(info);
 
         return this.post(info, ORDER_NEW, "request", ORDER_NEW,
                 "nonce", nonce,
@@ -390,14 +367,12 @@ public class BitfinexExchange extends HttpExchange
 
     @Override
     public String transformBuyMarket(List<String> results, ExchangeInfo info) {
-        this.unlock(info);
-
         return this.parseId(results.get(0));
     }
 
     @Override
     public List<MimeRequest> sellMarketRequests(ExchangeInfo info, long delay) {
-        String nonce = this.lock(info);
+        String nonce = this.nonce(info);
 
         return this.post(info, ORDER_NEW, "request", ORDER_NEW,
                 "nonce", nonce,
@@ -411,14 +386,12 @@ public class BitfinexExchange extends HttpExchange
 
     @Override
     public String transformSellMarket(List<String> results, ExchangeInfo info) {
-        this.unlock(info);
-
         return this.parseId(results.get(0));
     }
 
     @Override
     public List<MimeRequest> multiBuyRequests(ExchangeInfo info, long delay) {
-        String nonce = this.lock(info);
+        String nonce = this.nonce(info);
 
         List<Map<String, Object>> orders = this.getMultiOrders(info, "buy");
 
@@ -429,14 +402,12 @@ public class BitfinexExchange extends HttpExchange
 
     @Override
     public List<String> transformMultiBuy(List<String> results, ExchangeInfo info) {
-        this.unlock(info);
-
         return this.parseOrderIds(results.get(0));
     }
 
     @Override
     public List<MimeRequest> multiSellRequests(ExchangeInfo info, long delay) {
-        String nonce = this.lock(info);
+        String nonce = this.nonce(info);
 
         List<Map<String, Object>> orders = this.getMultiOrders(info, "sell");
 
@@ -447,14 +418,12 @@ public class BitfinexExchange extends HttpExchange
 
     @Override
     public List<String> transformMultiSell(List<String> results, ExchangeInfo info) {
-        this.unlock(info);
-
         return this.parseOrderIds(results.get(0));
     }
 
     @Override
     public List<MimeRequest> cancelOrderRequests(ExchangeInfo info, long delay) {
-        String nonce = this.lock(info);
+        String nonce = this.nonce(info);
 
         return this.post(info, ORDER_CANCEL, "request", ORDER_CANCEL,
                 "nonce", nonce,
@@ -464,8 +433,6 @@ public class BitfinexExchange extends HttpExchange
 
     @Override
     protected Boolean transformCancelOrder(List<String> results, ExchangeInfo info) {
-        this.unlock(info);
-
         String result = results.get(0);
         if (useful(result)) {
             BitfinexUtil.parseOrder(result, JSON.parseObject(result));
@@ -476,7 +443,7 @@ public class BitfinexExchange extends HttpExchange
 
     @Override
     public List<MimeRequest> cancelOrdersRequests(ExchangeInfo info, long delay) {
-        String nonce = this.lock(info);
+        String nonce = this.nonce(info);
 
         return this.post(info, CANCEL_MULTI_ORDERS, "request", CANCEL_MULTI_ORDERS,
                 "nonce", nonce,
@@ -492,8 +459,6 @@ public class BitfinexExchange extends HttpExchange
     private static final String NONE = "None to cancel";
     @Override
     public List<String> transformCancelOrders(List<String> results, ExchangeInfo info) {
-        this.unlock(info);
-
         log.info("results -> {}", results);
 
         String result = results.get(0);
@@ -515,7 +480,7 @@ public class BitfinexExchange extends HttpExchange
 
     @Override
     public List<MimeRequest> ordersRequests(ExchangeInfo info, long delay) {
-        String nonce = this.lock(info);
+        String nonce = this.nonce(info);
 
         return this.post(info, ORDERS, "request", ORDERS,
                 "nonce", nonce);
@@ -523,8 +488,6 @@ public class BitfinexExchange extends HttpExchange
 
     @Override
     protected Orders transformOrders(List<String> results, ExchangeInfo info) {
-        this.unlock(info);
-
         String result = results.get(0);
         if (useful(result)) {
             List<Order> orders = this.parseOrders(result, this.symbol(info).toLowerCase());
@@ -545,8 +508,6 @@ public class BitfinexExchange extends HttpExchange
 
     @Override
     public Orders transformHistoryOrders(List<String> results, ExchangeInfo info) {
-        this.unlock(info);
-
         String result = results.get(0);
         if (useful(result)) {
             List<Order> orders = BitfinexUtil.parseOrders(result);
@@ -560,7 +521,7 @@ public class BitfinexExchange extends HttpExchange
 
     @Override
     public List<MimeRequest> orderRequests(ExchangeInfo info, long delay) {
-        String nonce = this.lock(info);
+        String nonce = this.nonce(info);
 
         return this.post(info, ORDER, "request", ORDER,
                 "nonce", nonce,
@@ -570,8 +531,6 @@ public class BitfinexExchange extends HttpExchange
 
     @Override
     protected Order transformOrder(List<String> results, ExchangeInfo info) {
-        this.unlock(info);
-
         String result = results.get(0);
         if (useful(result)) {
             return BitfinexUtil.parseOrder(result, JSON.parseObject(result));
@@ -581,7 +540,7 @@ public class BitfinexExchange extends HttpExchange
 
     @Override
     public List<MimeRequest> orderDetailsRequests(ExchangeInfo info, long delay) {
-        String nonce = this.lock(info);
+        String nonce = this.nonce(info);
 
         String symbol = this.symbol(info);
 
@@ -605,8 +564,6 @@ public class BitfinexExchange extends HttpExchange
 
     @Override
     public OrderDetails transformOrderDetails(List<String> results, ExchangeInfo info) {
-        this.unlock(info);
-
         String result = results.get(0);
         if (useful(result)) {
             List<OrderDetail> details = BitfinexUtil.parseOrderDetails(result);
@@ -622,103 +579,12 @@ public class BitfinexExchange extends HttpExchange
     // ======================== tools =====================
 
     /**
-     * 上次币对请求结果
-     */
-    private static String precisionsResult;
-
-    /**
-     * 上次币对请求时间
-     */
-    private static long lastRequest;
-
-    /**
-     * 最小间隔12s
-     */
-    private static final long MIN_GAP = 1000 * 12;
-
-    /**
-     * 签名算法需要用nonce，必须要求递增，所以在高并发下，不能能够使用当前时间戳
-     * 用map存储每次使用过的nonce
-     * key --> symbol:access
-     */
-    private static final ConcurrentHashMap<String, Long> NONCE = new ConcurrentHashMap<>();
-
-    /**
-     * 高并发下，两次请求无法确定请求的先后，只好对所有的要求签名方法进行加锁，等一个请求结果回来了，再请求下一个
-     * key --> symbol:access
-     */
-    private static final ConcurrentHashMap<String, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
-
-    /**
-     * 尝试等待获取锁的时间，毫秒
-     */
-    private static final int WAIT = 3000;
-
-    /**
-     * 最大锁时间，超过该时间，强制解锁
-     */
-    private static final int MAX_LOCK_TIME = 1000 * 20;
-
-    private String getKey(ExchangeInfo info) {
-        // 不清楚用什么做key合适，symbol:access 还是会报nonce异常，搞不好是根据ip来的，那就连map也不用了
-        return info.getSymbol() + ":" + info.getAccess();
-    }
-
-    /**
-     * 获取nonce
+     * 签名算法需要用nonce，必须递增，按api key生成，多个线程同时请求也不会重复
      * @param info 请求信息
      * @return nonce
      */
-    private String getNonce(ExchangeInfo info) {
-        String key = this.getKey(info);
-
-        Long nonce = NONCE.get(key);
-        long now = System.currentTimeMillis();
-        if (null == nonce) {
-            nonce = now;
-        } else if (nonce == now) {
-            nonce++;
-        } else if (nonce < now) {
-            nonce = now;
-        }
-        NONCE.put(key, nonce);
-
-        return String.valueOf(nonce);
-    }
-
-    /**
-     * 进行加锁
-     * @param info 请求信息
-     */
-    private String lock(ExchangeInfo info) {
-        String key = this.getKey(info);
-
-        Lock lock = LOCKS.computeIfAbsent(key, k -> new ReentrantLock());
-        try {
-            if (lock.tryLock(WAIT, TimeUnit.MILLISECONDS)) {
-                return this.getNonce(info);
-            } else {
-                Long nonce = NONCE.get(key);
-                if (nonce + MAX_LOCK_TIME < System.currentTimeMillis()) {
-                    this.unlock(info);
-                }
-                throw new ExchangeException("there are too many request. locks already!!");
-            }
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
-    }
-
-    /**
-     * 解锁
-     * @param info 请求信息
-     */
-    private void unlock(ExchangeInfo info) {
-        String key = this.getKey(info);
-        ReentrantLock lock = LOCKS.get(key);
-        if (null != lock && lock.isLocked()) {
-            lock.unlock();
-        }
+    private String nonce(ExchangeInfo info) {
+        return String.valueOf(NonceGenerator.of(info.getAccess()).next());
     }
 
     /**
@@ -734,7 +600,7 @@ public class BitfinexExchange extends HttpExchange
 
         String parameter = CommonUtil.addOtherParameterToJson(Parameter.build(), others);
 
-        String payload = Base64.getEncoder().encodeToString(parameter.getBytes());
+        String payload = Signer.base64(parameter);
 
         String signature = CommonUtil.hmacSha384(payload, secret);
         return Collections.singletonList(new MimeRequest.Builder()
@@ -897,7 +763,7 @@ public class BitfinexExchange extends HttpExchange
                                                    Long start, Long end, long delay) {
         ExchangeInfo info = ExchangeInfo.historyOrders(symbol, access, secret);
 
-        String nonce = this.lock(info);
+        String nonce = this.nonce(info);
 
         symbol = this.symbol(info);
 
@@ -915,7 +781,7 @@ public class BitfinexExchange extends HttpExchange
                                                    Long start, Long end, long delay) {
         ExchangeInfo info = ExchangeInfo.historyOrders(symbol, access, secret);
 
-        String nonce = this.lock(info);
+        String nonce = this.nonce(info);
 
         symbol = this.symbol(info);
 
@@ -955,7 +821,7 @@ public class BitfinexExchange extends HttpExchange
     public List<MimeRequest> buyFillOrKillRequests(String symbol, String access, String secret, String price, String amount, long delay) {
         ExchangeInfo info = ExchangeInfo.buyLimit(symbol, access, secret, price, amount);
 
-        String nonce = this.lock(info);
+        String nonce = this.nonce(info);
 
         return this.post(info, ORDER_NEW, "request", ORDER_NEW,
                 "nonce", nonce,
@@ -969,8 +835,6 @@ public class BitfinexExchange extends HttpExchange
 
     @Override
     public String transformBuyFillOrKill(List<String> results, ExchangeInfo info) {
-        this.unlock(info);
-
         return this.parseId(results.get(0));
     }
 
@@ -978,7 +842,7 @@ public class BitfinexExchange extends HttpExchange
     public List<MimeRequest> sellFillOrKillRequests(String symbol, String access, String secret, String price, String amount, long delay) {
         ExchangeInfo info = ExchangeInfo.sellLimit(symbol, access, secret, price, amount);
 
-        String nonce = this.lock(info);
+        String nonce = this.nonce(info);
 
         return this.post(info, ORDER_NEW, "request", ORDER_NEW,
                 "nonce", nonce,
@@ -992,8 +856,6 @@ public class BitfinexExchange extends HttpExchange
 
     @Override
     public String transformSellFillOrKill(List<String> results, ExchangeInfo info) {
-        this.unlock(info);
-
         return this.parseId(results.get(0));
     }
 
@@ -6,8 +6,11 @@ import com.alibaba.fastjson.JSONObject;
 import cqt.goai.exchange.ExchangeException;
 import cqt.goai.exchange.ExchangeInfo;
 import cqt.goai.exchange.ExchangeName;
+import cqt.goai.exchange.http.BatchResults;
 import cqt.goai.exchange.http.HttpExchange;
+import cqt.goai.exchange.util.CommonUtil;
 import cqt.goai.exchange.util.Seal;
+import cqt.goai.exchange.util.Signer;
 import cqt.goai.exchange.util.huobi.pro.HoubiProUtil;
 import cqt.goai.model.enums.Side;
 import cqt.goai.model.enums.State;
@@ -17,8 +20,6 @@ import cqt.goai.model.market.Depth;
 import cqt.goai.model.market.Ticker;
 import cqt.goai.model.market.Trades;
 import cqt.goai.model.trade.*;
-import dive.common.crypto.Base64Util;
-import dive.common.crypto.HmacUtil;
 import dive.common.util.DateUtil;
 import dive.http.common.MimeRequest;
 import dive.http.common.model.Parameter;
@@ -26,10 +27,9 @@ import dive.cache.mime.PersistCache;
 import org.slf4j.Logger;
 
 import java.math.BigDecimal;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.stream.Collectors;
 
 import static dive.common.math.BigDecimalUtil.div;
 import static dive.common.math.BigDecimalUtil.greater;
@@ -53,6 +53,11 @@ public class HuobiProExchange extends HttpExchange {
     private static final String STATUS = "status";
     private static final String DATA = "data";
 
+    /**
+     * 批量撤单每次最多数量
+     */
+    private static final int MAX_CANCEL = 50;
+
     protected String site = "api.huobi.pro";
     protected String address = "https://" + site;
 
@@ -68,7 +73,7 @@ public class HuobiProExchange extends HttpExchange {
     protected String apiPrecisions = "/v1/common/symbols";
     protected String apiPlace = "/v1/order/orders/place";
     protected String apiCancel = "/v1/order/orders/{order-id}/submitcancel";
-//    private static final String CANCEL_ALL = "/v1/order/orders/batchcancel";
+    protected String apiCancels = "/v1/order/orders/batchcancel";
 
     protected String apiOrders = "/v1/order/openOrders";
     protected String apiHistoryOrders = "/v1/order/orders";
@@ -83,6 +88,14 @@ public class HuobiProExchange extends HttpExchange {
         super(name, log);
     }
 
+    /**
+     * 批量下单拆成单个请求，交易接口限制 100次/10秒，同时最多10个请求
+     */
+    @Override
+    protected int concurrency() {
+        return super.concurrency(10);
+    }
+
     @Override
     public String symbol(ExchangeInfo info) {
         return symbol(info, s -> s.replace("_", "").toLowerCase());
@@ -314,48 +327,60 @@ public class HuobiProExchange extends HttpExchange {
         return null;
     }
 
-    /*@Override
+    /**
+     * 批量撤单，每次最多50个
+     */
+    @Override
     public List<MimeRequest> cancelOrdersRequests(ExchangeInfo info, long delay) {
         String access = info.getAccess();
         String secret = info.getSecret();
         List<String> ids = info.getCancelIds();
 
-        List<MimeRequest> list = new ArrayList<>();
-        if (!exist(ids) || 0 == ids.size()) {
-            return list;
+        if (!exist(ids) || ids.isEmpty()) {
+            return Collections.emptyList();
         }
-        List<List<String>> split = CommonUtil.split(ids, 50);
-        return split.stream().map(group -> {
-            Parameter parameter = this.addParam(access, delay, "order-ids", group);
-            parameter.add("Signature", encode(this.sign(secret, "POST", site, CANCEL_ALL, parameter)));
-            parameter.put("Timestamp", parameter.get("Timestamp").toString().replace("%3A", ":"));
-            parameter.put("Signature", parameter.get("Signature").toString().replace("%2B", "+").replace("%3D", "="));
+        return CommonUtil.split(ids, MAX_CANCEL).stream().map(group -> {
+            Parameter parameter = this.addParam(access, delay);
+            parameter.add("Signature", encode(this.sign(secret, "POST", site, apiCancels, parameter)));
             return new MimeRequest.Builder()
-                    .url(address + CANCEL_ALL)
+                    .url(address + apiCancels + "?" + parameter.concat())
                     .post()
                     .header("Accept-Language", "zh-CN")
-                    .body(parameter.json(JSON::toJSONString))
+                    .body(Parameter.build("order-ids", group).json(JSON::toJSONString))
                     .build();
         }).collect(Collectors.toList());
     }
 
+    /**
+     * {"status":"ok","data":{"success":["5983466"],"failed":[{"err-msg":"...","order-id":"5983467","err-code":"..."}]}}
+     * 某一批请求失败(包括请求本身失败)时该批视为都没有取消，全部失败返回null
+     */
     @Override
     public List<String> transformCancelOrders(List<String> results, ExchangeInfo info) {
         List<String> ids = new LinkedList<>();
+        boolean ok = results.isEmpty();
+        List<Integer> failed = BatchResults.failed(results);
+        if (!failed.isEmpty()) {
+            this.log.error("{} {} batch cancel requests {} of {} failed", super.name, info.tip(), failed, results.size());
+        }
         for (int i = 0; i < results.size(); i++) {
             String result = results.get(i);
+            if (BatchResults.failed(results, i) || !useful(result)) {
+                continue;
+            }
             JSONObject r = JSON.parseObject(result);
-            if (OK.equals(r.getString(STATUS))) {
-                JSONArray temp = r.getJSONObject("data").getJSONArray("success");
-                for (int j = 0; j < temp.size(); i++) {
-                    ids.add(temp.getString(j));
-                }
-            } else {
-                return null;
+            if (!OK.equals(r.getString(STATUS))) {
+                this.log.error("{} {} batch cancel failed: {}", super.name, info.tip(), result);
+                continue;
+            }
+            ok = true;
+            JSONArray success = r.getJSONObject(DATA).getJSONArray("success");
+            for (int j = 0; null != success && j < success.size(); j++) {
+                ids.add(success.getString(j));
             }
         }
-        return ids;
-    }*/
+        return ok ? ids : null;
+    }
 
     @Override
     public List<MimeRequest> ordersRequests(ExchangeInfo info, long delay) {
@@ -534,13 +559,7 @@ public class HuobiProExchange extends HttpExchange {
             }
         }
         builder.append(sb.toString());
-        try {
-            byte[] sign = HmacUtil.hmac(builder.toString().getBytes(), secret, HmacUtil.HMAC_SHA256);
-            return Base64Util.base64EncodeToString(sign);
-        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
-            e.printStackTrace();
-        }
-        throw new ExchangeException(super.name.getName() + " sign error.");
+        return Signer.hmacBase64(Signer.HMAC_SHA256, secret, builder.toString());
     }
 
     /**
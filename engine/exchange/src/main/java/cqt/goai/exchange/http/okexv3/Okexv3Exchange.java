@@ -5,13 +5,13 @@ import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import cqt.goai.exchange.ExchangeInfo;
 import cqt.goai.exchange.ExchangeName;
+import cqt.goai.exchange.http.BatchResults;
 import cqt.goai.exchange.http.HttpExchange;
 import cqt.goai.exchange.util.CommonUtil;
+import cqt.goai.exchange.util.Signer;
 import cqt.goai.exchange.util.okexv3.Okexv3Util;
 import cqt.goai.model.market.*;
 import cqt.goai.model.trade.*;
-import dive.common.crypto.Base64Util;
-import dive.common.crypto.HmacUtil;
 import dive.common.math.RandomUtil;
 import dive.http.common.MimeRequest;
 import dive.http.common.model.Header;
@@ -19,10 +19,10 @@ import dive.http.common.model.Parameter;
 import org.slf4j.Logger;
 
 import java.math.BigDecimal;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static dive.common.util.DateUtil.SECOND;
 import static dive.common.util.DateUtil.formatISO8601;
@@ -63,6 +63,14 @@ public class Okexv3Exchange extends HttpExchange {
         super(ExchangeName.OKEXV3, log);
     }
 
+    /**
+     * 批量下单、撤单每个请求最多4个订单，下单撤单限制 100次/2秒，同时最多10个请求
+     */
+    @Override
+    protected int concurrency() {
+        return super.concurrency(10);
+    }
+
     @Override
     public String symbol(ExchangeInfo info) {
         return symbol(info, s -> s.replace("_", "-").toLowerCase());
@@ -139,8 +147,7 @@ public class Okexv3Exchange extends HttpExchange {
     protected Depth transformDepth(List<String> results, ExchangeInfo info) {
         String result = results.get(0);
         if (useful(result)) {
-            JSONObject r = JSONObject.parseObject(result) ;
-            return Okexv3Util.parseDepth(r);
+            return Okexv3Util.parseDepth(result);
         }
         return null;
     }
@@ -343,7 +350,7 @@ public class Okexv3Exchange extends HttpExchange {
 
     @Override
     public List<String> transformMultiBuy(List<String> results, ExchangeInfo info) {
-        List<String> rs = this.parseMultiOrderIds(results, info.getSymbol().toLowerCase());
+        List<String> rs = this.parseMultiOrderIds(results, info, info.getSymbol().toLowerCase());
         if (null != rs && !rs.isEmpty()) {
             return rs;
         }
@@ -416,10 +423,13 @@ public class Okexv3Exchange extends HttpExchange {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * 每批最多4个，失败的请求跳过，该批视为都没有取消
+     */
     @Override
     public List<String> transformCancelOrders(List<String> results, ExchangeInfo info) {
         String symbol = this.symbol(info);
-        return results.stream()
+        return this.succeeded(results, info)
                 .map(JSON::parseObject)
                 .filter(o -> o.containsKey(symbol))
                 .map(o -> o.getJSONObject(symbol))
@@ -526,11 +536,7 @@ public class Okexv3Exchange extends HttpExchange {
         String[] ss = CommonUtil.split(secret);
 
         String sign = epoch + method + action + (useful(body) ? body : "");
-        try {
-            sign = Base64Util.base64EncodeToString(HmacUtil.hmac(sign.getBytes(), ss[0], HmacUtil.HMAC_SHA256));
-        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
-            e.printStackTrace();
-        }
+        sign = Signer.hmacBase64(Signer.HMAC_SHA256, ss[0], sign);
 
         Header header = Header.build();
         header.add("OK-ACCESS-KEY", access);
@@ -751,8 +757,8 @@ public class Okexv3Exchange extends HttpExchange {
      * @param symbol  币对，转换好的
      * @return ids
      */
-    private List<String> parseMultiOrderIds(List<String> results, String symbol) {
-        return results.stream()
+    private List<String> parseMultiOrderIds(List<String> results, ExchangeInfo info, String symbol) {
+        return this.succeeded(results, info)
                 .map(JSON::parseObject)
                 .filter(r -> r.containsKey(symbol))
                 .map(r -> r.getJSONArray(symbol))
@@ -763,4 +769,17 @@ public class Okexv3Exchange extends HttpExchange {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * 成功的请求结果，失败的请求记录日志后跳过
+     */
+    private Stream<String> succeeded(List<String> results, ExchangeInfo info) {
+        List<Integer> failed = BatchResults.failed(results);
+        if (!failed.isEmpty()) {
+            this.log.error("{} {} requests {} of {} failed", super.name, info.tip(), failed, results.size());
+        }
+        return IntStream.range(0, results.size())
+                .filter(i -> !BatchResults.failed(results, i))
+                .mapToObj(results::get);
+    }
+
 }
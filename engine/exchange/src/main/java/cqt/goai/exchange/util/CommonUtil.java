@@ -11,14 +11,9 @@ import cqt.goai.model.market.*;
 import cqt.goai.model.trade.Order;
 import cqt.goai.model.trade.OrderDetail;
 import cqt.goai.model.trade.Precision;
-import dive.common.crypto.HexUtil;
 import dive.http.common.model.Parameter;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 import java.math.BigDecimal;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
@@ -117,6 +112,52 @@ public class CommonUtil {
         return rows;
     }
 
+    /**
+     * 流式解析rows，不构建JSONArray
+     * @param reader 位于数组开始
+     * @return rows
+     */
+    public static List<Row> parseRowsByIndex(JsonReader reader) {
+        List<Row> rows = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            int start = reader.mark();
+            reader.beginArray();
+            BigDecimal price = reader.nextDecimal();
+            reader.hasNext();
+            BigDecimal amount = reader.nextDecimal();
+            while (reader.hasNext()) {
+                reader.skipValue();
+            }
+            reader.endArray();
+            rows.add(new Row(reader.raw(start), price, amount));
+        }
+        reader.endArray();
+        return rows;
+    }
+
+    /**
+     * 流式解析Depth，只取asks和bids，其他字段跳过
+     * @param time 时间
+     * @param result 原始数据 {"asks":[[price,amount...]...],"bids":[...]...}
+     * @return Depth
+     */
+    public static Depth parseDepthByIndex(Long time, String result) {
+        JsonReader reader = new JsonReader(result);
+        List<Row> asks = null;
+        List<Row> bids = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "asks": asks = CommonUtil.parseRowsByIndex(reader); break;
+                case "bids": bids = CommonUtil.parseRowsByIndex(reader); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new Depth(time, new Rows(asks), new Rows(bids));
+    }
+
     /**
      * 统一解析Depth
      * @param time 时间
@@ -248,18 +289,7 @@ public class CommonUtil {
      * @return 加密结果
      */
     public static String hmacSha384(String message, String secret) {
-        Exception exception = null;
-        try {
-            Mac mac = Mac.getInstance("HmacSHA384");
-            SecretKeySpec secretKeySpec = new SecretKeySpec(secret.getBytes(), "HmacSHA384");
-            mac.init(secretKeySpec);
-            return HexUtil.hexEncode(mac.doFinal(message.getBytes()), false);
-        } catch (NoSuchAlgorithmException ignored) {
-        } catch (InvalidKeyException e) {
-            e.printStackTrace();
-            exception = e;
-        }
-        throw new ExchangeException("hmacSha384 error.", exception);
+        return Signer.hmacHex(Signer.HMAC_SHA384, secret, message);
     }
 
     /**
@@ -270,18 +300,7 @@ public class CommonUtil {
      * @return 加密结果
      */
     public static String hmacSha256(String message, String secret) {
-        Exception exception = null;
-        try {
-            Mac mac = Mac.getInstance("HmacSHA256");
-            SecretKeySpec secretKeySpec = new SecretKeySpec(secret.getBytes(), "HmacSHA256");
-            mac.init(secretKeySpec);
-            return HexUtil.hexEncode(mac.doFinal(message.getBytes()), false);
-        } catch (NoSuchAlgorithmException ignored) {
-        } catch (InvalidKeyException e) {
-            e.printStackTrace();
-            exception = e;
-        }
-        throw new ExchangeException("hmacSha256 error.", exception);
+        return Signer.hmacHex(Signer.HMAC_SHA256, secret, message);
     }
 
     /**
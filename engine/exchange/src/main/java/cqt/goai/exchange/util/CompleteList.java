@@ -24,7 +24,7 @@ public class CompleteList {
         MARKET = new Action[]{TICKER, KLINES, DEPTH, TRADES};
         ACCOUNT = new Action[]{BALANCES, Action.ACCOUNT};
         TRADE = new Action[]{PRECISIONS, PRECISION, BUY_LIMIT, SELL_LIMIT,
-                BUY_MARKET, SELL_MARKET, MULTI_BUY, MULTI_SELL, CANCEL_ORDER, CANCEL_ORDERS};
+                BUY_MARKET, SELL_MARKET, MULTI_BUY, MULTI_SELL, CANCEL_ORDER, CANCEL_ORDERS, CANCEL_ALL};
         ORDER = new Action[]{ORDERS, HISTORY_ORDERS, Action.ORDER, ORDER_DETAILS};
         PUSH = new Action[]{ON_TICKER, ON_KLINES, ON_DEPTH, ON_TRADES, ON_ACCOUNT, ON_ORDERS};
         Set<Action> list = new HashSet<>();
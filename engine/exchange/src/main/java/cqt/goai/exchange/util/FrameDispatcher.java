@@ -0,0 +1,253 @@
+package cqt.goai.exchange.util;
+
+import okio.ByteString;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 推送帧分发
+ *
+ * 连接的读线程只负责把原始帧放入有界队列，由独立线程依次解压、解析、回调，
+ * 策略回调再慢也不会阻塞连接的读取
+ *
+ * 队列只有一个生产者(读线程)和一个消费者(分发线程)，满了以后按溢出策略处理
+ * 默认阻塞读线程，不丢消息；丢帧策略只适合能重新拿全量的公共行情，需要显式开启，
+ * 账户、订单等私有推送丢了无法恢复，始终阻塞
+ *
+ * 默认值可以通过系统属性调整
+ * goai.websocket.queue 队列长度
+ * goai.websocket.market.overflow 公共行情连接的溢出策略 BLOCK DROP_OLDEST CONFLATE
+ *
+ * @author GOAi
+ */
+public class FrameDispatcher {
+
+    /**
+     * 默认队列长度
+     */
+    public static final int DEFAULT_CAPACITY = Integer.getInteger("goai.websocket.queue", 1024);
+
+    /**
+     * 默认溢出策略，不丢消息
+     */
+    public static final Overflow DEFAULT_OVERFLOW = Overflow.BLOCK;
+
+    /**
+     * 公共行情连接的溢出策略，默认同样不丢消息，丢帧后由连接重新订阅全量
+     */
+    public static final Overflow MARKET_OVERFLOW =
+            Overflow.valueOf(System.getProperty("goai.websocket.market.overflow", DEFAULT_OVERFLOW.name()));
+
+    /**
+     * 当前存活的分发器，便于统一查看队列情况
+     */
+    private static final Set<FrameDispatcher> DISPATCHERS = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 溢出策略
+     */
+    public enum Overflow {
+        /**
+         * 阻塞读线程，直到有空位，不丢消息
+         */
+        BLOCK,
+        /**
+         * 丢弃最早的一帧
+         */
+        DROP_OLDEST,
+        /**
+         * 丢弃队列中全部积压，只保留最新一帧
+         */
+        CONFLATE,
+    }
+
+    private final String name;
+
+    private final BlockingQueue<ByteString> queue;
+
+    private final Overflow overflow;
+
+    /**
+     * 处理每一帧
+     */
+    private final Consumer<ByteString> handler;
+
+    /**
+     * 发生丢帧后回调，增量推送需要重新订阅全量
+     */
+    private final Runnable onOverflow;
+
+    private final Logger log;
+
+    private final Thread thread;
+
+    /**
+     * 丢帧日志频率
+     */
+    private final RateLimit overflowLog = RateLimit.second10();
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile int maxDepth;
+
+    private volatile boolean running = true;
+
+    public FrameDispatcher(String name, int capacity, Overflow overflow, Consumer<ByteString> handler,
+                           Runnable onOverflow, Logger log) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.overflow = overflow;
+        this.handler = handler;
+        this.onOverflow = onOverflow;
+        this.log = log;
+        this.thread = new Thread(this::run, "dispatcher-" + name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+        DISPATCHERS.add(this);
+    }
+
+    /**
+     * 读线程放入一帧
+     * @param frame 原始帧
+     */
+    public void offer(ByteString frame) {
+        this.received.incrementAndGet();
+        if (!this.queue.offer(frame)) {
+            switch (this.overflow) {
+                case BLOCK:
+                    try {
+                        this.queue.put(frame);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    break;
+                case DROP_OLDEST:
+                    while (!this.queue.offer(frame)) {
+                        if (null != this.queue.poll()) {
+                            this.dropped(1);
+                        }
+                    }
+                    break;
+                case CONFLATE:
+                    int size = this.queue.size();
+                    this.queue.clear();
+                    this.dropped(size);
+                    this.queue.offer(frame);
+                    break;
+                default:
+            }
+        }
+        int depth = this.queue.size();
+        if (this.maxDepth < depth) {
+            this.maxDepth = depth;
+        }
+    }
+
+    private void dropped(int count) {
+        if (count <= 0) {
+            return;
+        }
+        this.dropped.addAndGet(count);
+        if (this.overflowLog.timeout(true)) {
+            this.log.warn("{} queue overflow, {}", this.name, this);
+        }
+        if (null != this.onOverflow) {
+            this.onOverflow.run();
+        }
+    }
+
+    private void run() {
+        while (this.running) {
+            ByteString frame;
+            try {
+                frame = this.queue.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            try {
+                this.handler.accept(frame);
+            } catch (Exception e) {
+                this.log.error("{} dispatch frame failed", this.name, e);
+            }
+            this.dispatched.incrementAndGet();
+        }
+    }
+
+    /**
+     * 停止分发，丢弃积压
+     */
+    public void stop() {
+        this.running = false;
+        this.thread.interrupt();
+        this.queue.clear();
+        DISPATCHERS.remove(this);
+    }
+
+    /**
+     * 当前积压帧数
+     */
+    public int getDepth() {
+        return this.queue.size();
+    }
+
+    /**
+     * 历史最大积压帧数
+     */
+    public int getMaxDepth() {
+        return this.maxDepth;
+    }
+
+    public int getCapacity() {
+        return this.queue.size() + this.queue.remainingCapacity();
+    }
+
+    public long getReceived() {
+        return this.received.get();
+    }
+
+    public long getDispatched() {
+        return this.dispatched.get();
+    }
+
+    public long getDropped() {
+        return this.dropped.get();
+    }
+
+    public Overflow getOverflow() {
+        return this.overflow;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * 当前存活的全部分发器
+     */
+    public static List<FrameDispatcher> dispatchers() {
+        return new ArrayList<>(DISPATCHERS);
+    }
+
+    @Override
+    public String toString() {
+        return "FrameDispatcher{" +
+                "name='" + this.name + '\'' +
+                ", overflow=" + this.overflow +
+                ", depth=" + this.getDepth() +
+                ", maxDepth=" + this.maxDepth +
+                ", capacity=" + this.getCapacity() +
+                ", received=" + this.received +
+                ", dispatched=" + this.dispatched +
+                ", dropped=" + this.dropped +
+                '}';
+    }
+}
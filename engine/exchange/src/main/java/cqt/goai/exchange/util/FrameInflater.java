@@ -0,0 +1,191 @@
+package cqt.goai.exchange.util;
+
+import okio.ByteString;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * 压缩推送帧解压
+ *
+ * 默认为raw deflate(OKEx)，gzip模式先跳过gzip头再按raw deflate解压(火币)
+ *
+ * 每个连接一个实例，复用同一个Inflater、输入输出缓冲和字符解码器，
+ * 缓冲只在遇到更大的帧时扩容，之后的帧不再分配
+ *
+ * 返回的ByteBuffer/CharSequence指向内部缓冲，只在下一次解压之前有效，
+ * 需要保留的内容由调用方自行复制
+ *
+ * 非线程安全，同一连接的消息由同一线程依次处理
+ *
+ * @author GOAi
+ */
+public class FrameInflater {
+
+    private static final int INITIAL = 4096;
+
+    /**
+     * gzip头标志位
+     */
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    /**
+     * raw deflate, 没有zlib头
+     */
+    private final Inflater inflater = new Inflater(true);
+
+    /**
+     * 帧是否带gzip头
+     */
+    private final boolean gzip;
+
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private byte[] input = new byte[INITIAL];
+
+    private byte[] output = new byte[INITIAL * 4];
+
+    private ByteBuffer bytes = ByteBuffer.wrap(this.output);
+
+    private CharBuffer chars = CharBuffer.allocate(INITIAL * 4);
+
+    public FrameInflater() {
+        this(false);
+    }
+
+    /**
+     * @param gzip 帧是否带gzip头
+     */
+    public FrameInflater(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    /**
+     * 解压成字节
+     * @param frame 压缩帧
+     * @return 解压后的字节，position为0，limit为长度
+     */
+    public ByteBuffer inflate(ByteString frame) {
+        int size = frame.size();
+        if (this.input.length < size) {
+            this.input = new byte[FrameInflater.grow(this.input.length, size)];
+        }
+        // asByteBuffer 不复制，只读视图直接拷进复用的输入缓冲
+        frame.asByteBuffer().get(this.input, 0, size);
+
+        int offset = this.gzip ? FrameInflater.header(this.input, size) : 0;
+        this.inflater.reset();
+        this.inflater.setInput(this.input, offset, size - offset);
+        int length = 0;
+        try {
+            while (!this.inflater.finished()) {
+                if (length == this.output.length) {
+                    byte[] bigger = new byte[this.output.length << 1];
+                    System.arraycopy(this.output, 0, bigger, 0, length);
+                    this.output = bigger;
+                    this.bytes = ByteBuffer.wrap(this.output);
+                }
+                int n = this.inflater.inflate(this.output, length, this.output.length - length);
+                if (0 == n && (this.inflater.needsInput() || this.inflater.needsDictionary())) {
+                    // 没有结束标记的帧，输入已经全部消费
+                    break;
+                }
+                length += n;
+            }
+        } catch (DataFormatException e) {
+            throw new RuntimeException(e);
+        }
+        this.bytes.clear();
+        this.bytes.limit(length);
+        return this.bytes;
+    }
+
+    /**
+     * 解压并解码成字符
+     * @param frame 压缩帧
+     * @return 复用的字符缓冲
+     */
+    public CharSequence decode(ByteString frame) {
+        return this.decode(this.inflate(frame));
+    }
+
+    /**
+     * 不压缩的帧直接解码，与解压共用字符缓冲
+     * @param frame 原始帧
+     * @return 复用的字符缓冲
+     */
+    public CharSequence text(ByteString frame) {
+        return this.decode(frame.asByteBuffer());
+    }
+
+    /**
+     * 解码字节
+     * @param bytes 字节
+     * @return 复用的字符缓冲
+     */
+    public CharSequence decode(ByteBuffer bytes) {
+        // UTF-8 字符数不会超过字节数
+        if (this.chars.capacity() < bytes.remaining()) {
+            this.chars = CharBuffer.allocate(FrameInflater.grow(this.chars.capacity(), bytes.remaining()));
+        }
+        this.chars.clear();
+        this.decoder.reset();
+        CoderResult result = this.decoder.decode(bytes, this.chars, true);
+        if (!result.isUnderflow()) {
+            throw new IllegalStateException("decode frame failed: " + result);
+        }
+        this.decoder.flush(this.chars);
+        this.chars.flip();
+        return this.chars;
+    }
+
+    /**
+     * 跳过gzip头，之后是raw deflate数据，结尾的crc和长度不需要读
+     * @param input 帧
+     * @param size 长度
+     * @return deflate数据开始位置
+     */
+    private static int header(byte[] input, int size) {
+        if (size < 10 || 0x1f != (input[0] & 0xff) || 0x8b != (input[1] & 0xff) || 8 != input[2]) {
+            throw new IllegalStateException("not a gzip frame, size: " + size);
+        }
+        int flags = input[3] & 0xff;
+        int offset = 10;
+        if (0 != (flags & FEXTRA)) {
+            offset += 2 + ((input[offset] & 0xff) | (input[offset + 1] & 0xff) << 8);
+        }
+        if (0 != (flags & FNAME)) {
+            while (offset < size && 0 != input[offset++]) {
+                // 以0结尾的文件名
+            }
+        }
+        if (0 != (flags & FCOMMENT)) {
+            while (offset < size && 0 != input[offset++]) {
+                // 以0结尾的注释
+            }
+        }
+        if (0 != (flags & FHCRC)) {
+            offset += 2;
+        }
+        return Math.min(offset, size);
+    }
+
+    private static int grow(int length, int need) {
+        while (length < need) {
+            length <<= 1;
+        }
+        return length;
+    }
+
+}
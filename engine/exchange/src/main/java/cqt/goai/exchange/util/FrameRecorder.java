@@ -0,0 +1,257 @@
+package cqt.goai.exchange.util;
+
+import okio.ByteString;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 原始推送帧记录
+ *
+ * 读线程收到的原始帧(压缩的不解压)按顺序追加到内存映射的文件，写满一段换下一段，
+ * 写入只是内存拷贝，换段只新建并映射文件，都不等待刷盘，由系统负责把页写回磁盘，
+ * 只有 close 时才主动刷盘
+ * 文件名 name-000000.frames name-000001.frames ...
+ *
+ * 每段开头:  magic(int) version(int) 毫秒时间(long) 同一时刻的纳秒时间(long)
+ * 之后每帧:  类型(byte) 接收的纳秒时间(long) 长度(int) 内容
+ * 映射文件没写到的部分为0，读到类型为0即为本段结束
+ *
+ * 由 WebSocketReplayer 回放
+ *
+ * @author GOAi
+ */
+public class FrameRecorder implements Closeable {
+
+    /**
+     * GOAF
+     */
+    public static final int MAGIC = 0x474F4146;
+
+    public static final int VERSION = 1;
+
+    /**
+     * 二进制帧
+     */
+    public static final byte BINARY = 1;
+
+    /**
+     * 文本帧，内容为UTF-8
+     */
+    public static final byte TEXT = 2;
+
+    /**
+     * 不是推送，是通过http获取的快照，内容为UTF-8，回放时代替http请求
+     */
+    public static final byte SNAPSHOT = 3;
+
+    public static final String SUFFIX = ".frames";
+
+    /**
+     * 默认每段大小
+     */
+    public static final int DEFAULT_SEGMENT = Integer.getInteger("goai.websocket.record.segment", 64 * 1024 * 1024);
+
+    /**
+     * 段头长度
+     */
+    private static final int HEADER = 4 + 4 + 8 + 8;
+
+    /**
+     * 帧头长度
+     */
+    private static final int FRAME = 1 + 8 + 4;
+
+    private final Path dir;
+
+    private final String name;
+
+    private final int segment;
+
+    private MappedByteBuffer buffer;
+
+    /**
+     * 当前段序号
+     */
+    private int index = -1;
+
+    private long frames = 0;
+
+    private long bytes = 0;
+
+    private boolean closed = false;
+
+    /**
+     * @param dir 目录
+     * @param name 文件名前缀
+     * @param segment 每段大小
+     */
+    public FrameRecorder(Path dir, String name, int segment) throws IOException {
+        this.dir = dir;
+        this.name = name;
+        this.segment = segment;
+        Files.createDirectories(dir);
+        this.roll(0);
+    }
+
+    /**
+     * 记录一帧
+     * @param type BINARY TEXT
+     * @param nanos 接收时的 System.nanoTime()
+     * @param frame 原始帧
+     */
+    public synchronized void record(byte type, long nanos, ByteString frame) throws IOException {
+        if (this.closed) {
+            return;
+        }
+        int size = frame.size();
+        if (this.buffer.remaining() < FRAME + size) {
+            this.roll(FRAME + size);
+        }
+        this.buffer.put(type);
+        this.buffer.putLong(nanos);
+        this.buffer.putInt(size);
+        this.buffer.put(frame.asByteBuffer());
+        this.frames++;
+        this.bytes += size;
+    }
+
+    /**
+     * 换下一段
+     * @param need 本帧需要的长度，超过每段大小的帧单独一段
+     */
+    private void roll(int need) throws IOException {
+        this.index++;
+        Path path = this.dir.resolve(String.format("%s-%06d%s", this.name, this.index, SUFFIX));
+        int size = Math.max(this.segment, HEADER + need);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // 关闭通道后映射仍然有效
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        this.buffer.putInt(MAGIC);
+        this.buffer.putInt(VERSION);
+        this.buffer.putLong(System.currentTimeMillis());
+        this.buffer.putLong(System.nanoTime());
+    }
+
+    /**
+     * 刷盘并停止记录
+     */
+    @Override
+    public synchronized void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.buffer.force();
+        this.buffer = null;
+    }
+
+    public long getFrames() {
+        return this.frames;
+    }
+
+    public long getBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * 当前段序号
+     */
+    public int getIndex() {
+        return this.index;
+    }
+
+    @Override
+    public String toString() {
+        return "FrameRecorder{" +
+                "dir=" + this.dir +
+                ", name='" + this.name + '\'' +
+                ", index=" + this.index +
+                ", frames=" + this.frames +
+                ", bytes=" + this.bytes +
+                '}';
+    }
+
+    // ===================== 读取 =====================
+
+    /**
+     * 读到的一帧
+     */
+    @FunctionalInterface
+    public interface Handler {
+        /**
+         * 处理一帧
+         * @param type BINARY TEXT
+         * @param nanos 接收时的纳秒时间
+         * @param frame 内容，只在本次调用内有效
+         */
+        void frame(byte type, long nanos, ByteBuffer frame);
+    }
+
+    /**
+     * 按顺序找出记录的全部段
+     * @param dir 目录
+     * @param name 文件名前缀
+     * @return 各段文件
+     */
+    public static List<Path> segments(Path dir, String name) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, name + "-[0-9][0-9][0-9][0-9][0-9][0-9]" + SUFFIX)) {
+            stream.forEach(segments::add);
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    /**
+     * 依次读取一段的全部帧
+     * @param segment 段文件
+     * @param handler 处理每一帧
+     * @return 帧数
+     */
+    public static long read(Path segment, Handler handler) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < HEADER || MAGIC != buffer.getInt()) {
+            throw new IOException("not a frame log: " + segment);
+        }
+        int version = buffer.getInt();
+        if (VERSION != version) {
+            throw new IOException("unsupported frame log version " + version + ": " + segment);
+        }
+        buffer.position(HEADER);
+        long count = 0;
+        while (FRAME <= buffer.remaining()) {
+            byte type = buffer.get();
+            if (0 == type) {
+                break;
+            }
+            long nanos = buffer.getLong();
+            int size = buffer.getInt();
+            if (buffer.remaining() < size) {
+                throw new IOException("truncated frame at " + buffer.position() + ": " + segment);
+            }
+            ByteBuffer frame = buffer.slice();
+            frame.limit(size);
+            handler.frame(type, nanos, frame);
+            buffer.position(buffer.position() + size);
+            count++;
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,177 @@
+package cqt.goai.exchange.util;
+
+import cqt.goai.exchange.ExchangeException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * 有超时或对冲的调用
+ *
+ * 调用在线程池执行，调用线程最多等待到超时，超时后中断调用并抛出 TimeoutException
+ * 对冲时，第一次调用超过对冲延时仍未返回，再发出一次相同调用，使用先成功的结果，
+ * 较慢的调用不中断，两次都失败时抛出后失败的异常
+ * 线程池已满时第一次调用退化为在调用线程直接执行，对冲调用不再发出
+ *
+ * @author GOAi
+ */
+public class HedgedCall<R> {
+
+    private final ExecutorService executor;
+
+    private final Supplier<R> call;
+
+    /**
+     * 结果
+     */
+    private final CompletableFuture<R> result = new CompletableFuture<>();
+
+    /**
+     * 尚未结束的调用数
+     */
+    private final AtomicInteger running = new AtomicInteger(1);
+
+    /**
+     * 最近一次失败
+     */
+    private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+    private final List<Future<?>> attempts = new ArrayList<>(2);
+
+    private HedgedCall(ExecutorService executor, Supplier<R> call) {
+        this.executor = executor;
+        this.call = call;
+    }
+
+    /**
+     * 调用
+     * @param executor 执行调用的线程池
+     * @param call 调用
+     * @param timeout 超时纳秒数，小于等于0不限制
+     * @param hedge 对冲延时纳秒数，小于0不对冲
+     * @param hedged 发出对冲调用时回调，可以为null
+     * @param won 对冲调用先成功时回调，可以为null
+     * @param <R> 结果类型
+     * @return 结果
+     * @throws TimeoutException 超时
+     */
+    public static <R> R call(ExecutorService executor, Supplier<R> call, long timeout, long hedge,
+                             Runnable hedged, Runnable won) throws TimeoutException {
+        long start = System.nanoTime();
+        long deadline = 0 < timeout ? start + timeout : Long.MAX_VALUE;
+        HedgedCall<R> race = new HedgedCall<>(executor, call);
+        Future<?> first = race.attempt(null);
+        if (null == first) {
+            return call.get();
+        }
+        race.attempts.add(first);
+        if (0 <= hedge && !race.await(Math.min(start + hedge, deadline))) {
+            // 先占位，第一次调用此时失败也不会在对冲发出前结束
+            race.running.incrementAndGet();
+            Future<?> second = null;
+            if (!race.result.isDone() && System.nanoTime() < deadline) {
+                second = race.attempt(won);
+            }
+            if (null == second) {
+                race.end(null);
+            } else {
+                if (null != hedged) {
+                    hedged.run();
+                }
+                race.attempts.add(second);
+            }
+        }
+        if (race.await(deadline)) {
+            return race.get();
+        }
+        for (Future<?> attempt : race.attempts) {
+            attempt.cancel(true);
+        }
+        throw new TimeoutException("timeout after " + TimeUnit.NANOSECONDS.toMillis(timeout) + " ms");
+    }
+
+    /**
+     * 在线程池发出一次调用
+     * @param won 对冲调用先成功时回调，第一次调用为null
+     * @return null 表示线程池已满
+     */
+    private Future<?> attempt(Runnable won) {
+        try {
+            return this.executor.submit(() -> {
+                try {
+                    R r = this.call.get();
+                    if (this.result.complete(r) && null != won) {
+                        won.run();
+                    }
+                } catch (Throwable e) {
+                    this.end(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 一次调用失败或未能发出
+     * @param e 异常，未能发出时为null
+     */
+    private void end(Throwable e) {
+        if (null != e) {
+            this.error.set(e);
+        }
+        if (0 == this.running.decrementAndGet()) {
+            this.result.completeExceptionally(this.error.get());
+        }
+    }
+
+    /**
+     * 等待结果直到deadline
+     * @return 是否已有结果
+     */
+    private boolean await(long deadline) {
+        try {
+            if (Long.MAX_VALUE == deadline) {
+                this.result.get();
+            } else {
+                this.result.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExchangeException("interrupted while waiting for request", e);
+        } catch (ExecutionException e) {
+            return true;
+        }
+    }
+
+    /**
+     * 取出结果，失败时抛出调用的异常
+     */
+    private R get() {
+        try {
+            return this.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExchangeException("interrupted while waiting for request", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new ExchangeException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+}
@@ -0,0 +1,218 @@
+package cqt.goai.exchange.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 对数-线性分桶的直方图，用于统计耗时分位数
+ *
+ * 每个2的幂区间再等分为 SUB 个桶，相对误差不超过 1/SUB (约3%)，
+ * 小于 SUB 的值每个值一个桶，没有误差
+ * 桶数量固定，记录时只做一次原子加，不分配对象，多线程可以同时记录
+ *
+ * @author GOAi
+ */
+public class Histogram {
+
+    /**
+     * 每个2的幂区间的桶数 2^BITS
+     */
+    private static final int BITS = 5;
+    private static final int SUB = 1 << BITS;
+
+    /**
+     * long最高到 2^62 区间
+     */
+    private static final int SIZE = (62 - BITS + 2) * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(SIZE);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * 记录一个值，负数按0记录
+     * @param value 值，耗时一般为纳秒
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        this.counts.incrementAndGet(Histogram.index(value));
+        this.count.incrementAndGet();
+        this.sum.addAndGet(value);
+        long max = this.max.get();
+        while (max < value && !this.max.compareAndSet(max, value)) {
+            max = this.max.get();
+        }
+    }
+
+    /**
+     * 当前统计，各桶分别读取，与正在进行的记录之间不保证完全一致
+     * @return 快照
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[SIZE];
+        long total = 0;
+        for (int i = 0; i < SIZE; i++) {
+            counts[i] = this.counts.get(i);
+            total += counts[i];
+        }
+        return new Snapshot(counts, total, this.sum.get(), this.max.get());
+    }
+
+    /**
+     * 直接读取当前分位数，不创建快照，适合频繁调用
+     * @param quantile 0 ~ 1
+     * @return 值，没有记录时为0
+     */
+    public long percentile(double quantile) {
+        long count = this.count.get();
+        if (0 == count) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < SIZE; i++) {
+            seen += this.counts.get(i);
+            if (rank <= seen) {
+                return Math.min(this.max.get(), Histogram.lower(i) + (Histogram.width(i) - 1) / 2);
+            }
+        }
+        return this.max.get();
+    }
+
+    /**
+     * 清空
+     */
+    public void reset() {
+        for (int i = 0; i < SIZE; i++) {
+            this.counts.set(i, 0);
+        }
+        this.count.set(0);
+        this.sum.set(0);
+        this.max.set(0);
+    }
+
+    /**
+     * 记录次数
+     */
+    public long count() {
+        return this.count.get();
+    }
+
+    static int index(long value) {
+        if (value < SUB) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - BITS;
+        return ((shift + 1) << BITS) + (int) ((value >>> shift) - SUB);
+    }
+
+    /**
+     * 桶的下界
+     */
+    static long lower(int index) {
+        if (index < SUB) {
+            return index;
+        }
+        int shift = (index >>> BITS) - 1;
+        return (long) (SUB + (index & (SUB - 1))) << shift;
+    }
+
+    /**
+     * 桶的宽度
+     */
+    static long width(int index) {
+        return index < SUB ? 1 : 1L << ((index >>> BITS) - 1);
+    }
+
+    /**
+     * 直方图快照
+     */
+    public static class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * 分位数，返回所在桶的中间值，不超过最大值
+         * @param quantile 0 ~ 1，如 0.99
+         * @return 值，没有记录时为0
+         */
+        public long percentile(double quantile) {
+            if (0 == this.count) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * this.count));
+            long seen = 0;
+            for (int i = 0; i < this.counts.length; i++) {
+                seen += this.counts[i];
+                if (rank <= seen) {
+                    long width = Histogram.width(i);
+                    return Math.min(this.max, Histogram.lower(i) + (width - 1) / 2);
+                }
+            }
+            return this.max;
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        public long getSum() {
+            return this.sum;
+        }
+
+        public long getMax() {
+            return this.max;
+        }
+
+        public double getMean() {
+            return 0 == this.count ? 0 : (double) this.sum / this.count;
+        }
+
+        public long getP50() {
+            return this.percentile(0.5);
+        }
+
+        public long getP99() {
+            return this.percentile(0.99);
+        }
+
+        public long getP999() {
+            return this.percentile(0.999);
+        }
+
+        /**
+         * 按纳秒记录的耗时输出为毫秒
+         */
+        public String toMillis() {
+            return String.format("count=%d mean=%.3fms p50=%.3fms p99=%.3fms p999=%.3fms max=%.3fms",
+                    this.count, Snapshot.millis(this.getMean()), Snapshot.millis(this.getP50()),
+                    Snapshot.millis(this.getP99()), Snapshot.millis(this.getP999()), Snapshot.millis(this.max));
+        }
+
+        private static double millis(double nanos) {
+            return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d mean=%.1f p50=%d p99=%d p999=%d max=%d",
+                    this.count, this.getMean(), this.getP50(), this.getP99(), this.getP999(), this.max);
+        }
+    }
+
+}
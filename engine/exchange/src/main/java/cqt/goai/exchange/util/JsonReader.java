@@ -0,0 +1,316 @@
+package cqt.goai.exchange.util;
+
+import java.math.BigDecimal;
+
+/**
+ * 流式JSON读取
+ *
+ * 按顺序逐个读取token，直接取出需要的字段，不需要的值整体跳过，
+ * 不构建JSONObject/JSONArray，数字直接从字符数组解析成BigDecimal，不产生中间字符串
+ *
+ * 只做读取，不做完整校验，交易所返回格式错误时抛出 IllegalStateException
+ *
+ * 用法
+ * reader.beginObject();
+ * while (reader.hasNext()) {
+ *     switch (reader.nextName()) {
+ *         case "price": price = reader.nextDecimal(); break;
+ *         default: reader.skipValue();
+ *     }
+ * }
+ * reader.endObject();
+ *
+ * @author GOAi
+ */
+public class JsonReader {
+
+    private final char[] chars;
+
+    private final int length;
+
+    private int pos;
+
+    public JsonReader(String json) {
+        this.chars = json.toCharArray();
+        this.length = this.chars.length;
+    }
+
+    /**
+     * 下一个有效字符，不移动位置，结束时返回0
+     */
+    public char peek() {
+        this.skipWhitespace();
+        return this.pos < this.length ? this.chars[this.pos] : 0;
+    }
+
+    public void beginArray() {
+        this.expect('[');
+    }
+
+    public void endArray() {
+        this.expect(']');
+    }
+
+    public void beginObject() {
+        this.expect('{');
+    }
+
+    public void endObject() {
+        this.expect('}');
+    }
+
+    /**
+     * 当前数组或对象是否还有元素，会跳过元素间的逗号
+     */
+    public boolean hasNext() {
+        char c = this.peek();
+        if (',' == c) {
+            this.pos++;
+            c = this.peek();
+        }
+        return ']' != c && '}' != c && 0 != c;
+    }
+
+    /**
+     * 对象的key
+     */
+    public String nextName() {
+        String name = this.nextString();
+        this.expect(':');
+        return name;
+    }
+
+    /**
+     * 当前值的开始位置，配合raw使用
+     */
+    public int mark() {
+        this.hasNext();
+        return this.pos;
+    }
+
+    /**
+     * 从mark到当前位置的原始内容
+     * @param start mark位置
+     */
+    public String raw(int start) {
+        return new String(this.chars, start, this.pos - start);
+    }
+
+    /**
+     * 字符串，数字和true/false也按原样返回，null返回null
+     */
+    public String nextString() {
+        char c = this.peek();
+        if ('"' != c) {
+            int start = this.pos;
+            this.skipLiteral();
+            int count = this.pos - start;
+            if (4 == count && 'n' == this.chars[start]) {
+                return null;
+            }
+            return new String(this.chars, start, count);
+        }
+        int start = ++this.pos;
+        while (this.pos < this.length) {
+            c = this.chars[this.pos];
+            if ('"' == c) {
+                return new String(this.chars, start, this.pos++ - start);
+            }
+            if ('\\' == c) {
+                return this.escaped(start);
+            }
+            this.pos++;
+        }
+        throw this.error("unterminated string");
+    }
+
+    /**
+     * 数字，可以带引号，null返回null
+     */
+    public BigDecimal nextDecimal() {
+        char c = this.peek();
+        if ('"' == c) {
+            int start = ++this.pos;
+            while (this.pos < this.length && '"' != this.chars[this.pos]) {
+                this.pos++;
+            }
+            if (this.length <= this.pos) {
+                throw this.error("unterminated string");
+            }
+            int count = this.pos++ - start;
+            return 0 == count ? null : new BigDecimal(this.chars, start, count);
+        }
+        int start = this.pos;
+        this.skipLiteral();
+        int count = this.pos - start;
+        if (4 == count && 'n' == this.chars[start]) {
+            return null;
+        }
+        return new BigDecimal(this.chars, start, count);
+    }
+
+    /**
+     * 整数，可以带引号，超出long范围时抛出异常
+     */
+    public long nextLong() {
+        char c = this.peek();
+        boolean quoted = '"' == c;
+        if (quoted) {
+            this.pos++;
+        }
+        boolean negative = false;
+        if (this.pos < this.length && '-' == this.chars[this.pos]) {
+            negative = true;
+            this.pos++;
+        }
+        // 按负数累加，可以表示 Long.MIN_VALUE
+        long value = 0;
+        int start = this.pos;
+        while (this.pos < this.length) {
+            c = this.chars[this.pos];
+            if (c < '0' || '9' < c) {
+                break;
+            }
+            if (value < Long.MIN_VALUE / 10 || value * 10 < Long.MIN_VALUE + (c - '0')) {
+                throw this.error("number overflow");
+            }
+            value = value * 10 - (c - '0');
+            this.pos++;
+        }
+        if (start == this.pos) {
+            throw this.error("expect number");
+        }
+        if (quoted) {
+            this.expect('"');
+        }
+        if (negative) {
+            return value;
+        }
+        if (Long.MIN_VALUE == value) {
+            throw this.error("number overflow");
+        }
+        return -value;
+    }
+
+    public boolean nextBoolean() {
+        char c = this.peek();
+        int start = this.pos;
+        this.skipLiteral();
+        if ('t' == c && 4 == this.pos - start) {
+            return true;
+        }
+        if ('f' == c && 5 == this.pos - start) {
+            return false;
+        }
+        throw this.error("expect boolean");
+    }
+
+    /**
+     * 跳过一个完整的值，包括嵌套的数组和对象
+     */
+    public void skipValue() {
+        char c = this.peek();
+        switch (c) {
+            case '"':
+                this.skipString();
+                return;
+            case '[':
+            case '{':
+                int depth = 0;
+                while (this.pos < this.length) {
+                    c = this.chars[this.pos];
+                    if ('"' == c) {
+                        this.skipString();
+                        continue;
+                    }
+                    this.pos++;
+                    if ('[' == c || '{' == c) {
+                        depth++;
+                    } else if (']' == c || '}' == c) {
+                        if (0 == --depth) {
+                            return;
+                        }
+                    }
+                }
+                throw this.error("unterminated value");
+            default:
+                this.skipLiteral();
+        }
+    }
+
+    private void skipString() {
+        this.pos++;
+        while (this.pos < this.length) {
+            char c = this.chars[this.pos++];
+            if ('\\' == c) {
+                this.pos++;
+            } else if ('"' == c) {
+                return;
+            }
+        }
+        throw this.error("unterminated string");
+    }
+
+    private void skipLiteral() {
+        while (this.pos < this.length) {
+            char c = this.chars[this.pos];
+            if (',' == c || ']' == c || '}' == c || ':' == c || c <= ' ') {
+                return;
+            }
+            this.pos++;
+        }
+    }
+
+    private String escaped(int start) {
+        StringBuilder sb = new StringBuilder(this.pos - start + 16);
+        sb.append(this.chars, start, this.pos - start);
+        while (this.pos < this.length) {
+            char c = this.chars[this.pos++];
+            if ('"' == c) {
+                return sb.toString();
+            }
+            if ('\\' != c) {
+                sb.append(c);
+                continue;
+            }
+            if (this.length <= this.pos) {
+                break;
+            }
+            c = this.chars[this.pos++];
+            switch (c) {
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    if (this.length < this.pos + 4) {
+                        throw this.error("illegal unicode escape");
+                    }
+                    sb.append((char) Integer.parseInt(new String(this.chars, this.pos, 4), 16));
+                    this.pos += 4;
+                    break;
+                default: sb.append(c);
+            }
+        }
+        throw this.error("unterminated string");
+    }
+
+    private void expect(char expect) {
+        if (expect != this.peek()) {
+            throw this.error("expect '" + expect + "'");
+        }
+        this.pos++;
+    }
+
+    private void skipWhitespace() {
+        while (this.pos < this.length && this.chars[this.pos] <= ' ') {
+            this.pos++;
+        }
+    }
+
+    private IllegalStateException error(String message) {
+        return new IllegalStateException(message + " at " + this.pos);
+    }
+
+}
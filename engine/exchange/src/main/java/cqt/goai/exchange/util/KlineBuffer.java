@@ -0,0 +1,223 @@
+package cqt.goai.exchange.util;
+
+import cqt.goai.model.market.Kline;
+import cqt.goai.model.market.Klines;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * 推送K线缓存，每个币对每个周期一个
+ *
+ * 已经结束的K线按时间顺序追加到数组，写过的位置不再修改，
+ * 最新一根(还在变化的)单独保存，同一时间的推送直接替换
+ *
+ * 每次推送发布一个不可变的视图 (数组, 起始位置, 结束位置, 最新一根, 序号)，不复制数据，
+ * 数组写满时把最近的K线复制到新数组，旧视图仍然指向旧数组，不受影响
+ *
+ * 历史K线可以在推送开始后再补上(backfill)，推送的K线优先，历史只补在推送的之前
+ *
+ * @author GOAi
+ */
+public class KlineBuffer {
+
+    /**
+     * 视图最多K线根数，包含最新一根
+     */
+    private final int max;
+
+    /**
+     * 已结束的K线，由远到近
+     */
+    private Kline[] bars;
+
+    /**
+     * 下一个写入位置
+     */
+    private int end;
+
+    /**
+     * 最新一根
+     */
+    private Kline head;
+
+    /**
+     * 发布序号
+     */
+    private long seq;
+
+    /**
+     * 是否已经有历史K线(reset 或 backfill 过)
+     */
+    private boolean filled;
+
+    public KlineBuffer(int max) {
+        if (max <= 0) {
+            throw new IllegalArgumentException("max klines must be positive: " + max);
+        }
+        this.max = max;
+        this.bars = new Kline[max << 1];
+    }
+
+    /**
+     * 是否还没有K线
+     */
+    public synchronized boolean isEmpty() {
+        return null == this.head;
+    }
+
+    /**
+     * 全量替换
+     * @param klines 由近到远，get(0)是最近的K线
+     * @return 视图
+     */
+    public synchronized Klines reset(List<Kline> klines) {
+        this.fill(klines);
+        return null == this.head ? null : this.publish();
+    }
+
+    /**
+     * 是否已经有历史K线
+     */
+    public synchronized boolean isFilled() {
+        return this.filled;
+    }
+
+    /**
+     * 补上历史K线，不发布视图，下一次推送发布的视图包含历史
+     * 已经推送的K线优先，历史中不早于最远一根推送的忽略
+     * @param history 由近到远
+     */
+    public synchronized void backfill(List<Kline> history) {
+        if (null == this.head) {
+            this.fill(history);
+            return;
+        }
+        List<Kline> merged = new ArrayList<>(this.max);
+        merged.add(this.head);
+        for (int i = this.end - 1; 0 <= i && merged.size() < this.max; i--) {
+            merged.add(this.bars[i]);
+        }
+        long oldest = merged.get(merged.size() - 1).getTime();
+        for (int i = 0; null != history && i < history.size() && merged.size() < this.max; i++) {
+            Kline kline = history.get(i);
+            if (kline.getTime() < oldest) {
+                merged.add(kline);
+            }
+        }
+        this.fill(merged);
+    }
+
+    /**
+     * 全量替换，不发布
+     */
+    private void fill(List<Kline> klines) {
+        this.filled = true;
+        this.bars = new Kline[this.max << 1];
+        this.end = 0;
+        this.head = null;
+        if (null == klines || klines.isEmpty()) {
+            return;
+        }
+        for (int i = Math.min(klines.size(), this.max) - 1; 0 < i; i--) {
+            this.bars[this.end++] = klines.get(i);
+        }
+        this.head = klines.get(0);
+    }
+
+    /**
+     * 推送一根K线
+     * @param kline 最新K线
+     * @return 视图，比当前最新还旧的K线忽略，返回null
+     */
+    public synchronized Klines update(Kline kline) {
+        if (null == this.head) {
+            this.head = kline;
+        } else if (this.head.getTime().equals(kline.getTime())) {
+            // 同一根，直接替换
+            this.head = kline;
+        } else if (this.head.getTime() < kline.getTime()) {
+            // 新的一根，上一根结束
+            this.append(this.head);
+            this.head = kline;
+        } else {
+            return null;
+        }
+        return this.publish();
+    }
+
+    private void append(Kline bar) {
+        if (this.end == this.bars.length) {
+            // 只保留视图需要的部分，放入新数组
+            int keep = this.max - 1;
+            Kline[] compacted = new Kline[this.bars.length];
+            System.arraycopy(this.bars, this.end - keep, compacted, 0, keep);
+            this.bars = compacted;
+            this.end = keep;
+        }
+        this.bars[this.end++] = bar;
+    }
+
+    private Klines publish() {
+        this.seq++;
+        int from = Math.max(0, this.end - (this.max - 1));
+        return new Klines(new View(this.bars, from, this.end, this.head, this.seq));
+    }
+
+    /**
+     * 不可变K线视图，get(0)是最新的K线
+     */
+    public static final class View extends AbstractList<Kline> implements RandomAccess, Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Kline[] bars;
+
+        private final int from;
+
+        private final int to;
+
+        private final Kline head;
+
+        private final long seq;
+
+        private View(Kline[] bars, int from, int to, Kline head, long seq) {
+            this.bars = bars;
+            this.from = from;
+            this.to = to;
+            this.head = head;
+            this.seq = seq;
+        }
+
+        @Override
+        public Kline get(int index) {
+            if (index < 0 || this.size() <= index) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size());
+            }
+            return 0 == index ? this.head : this.bars[this.to - index];
+        }
+
+        @Override
+        public int size() {
+            return this.to - this.from + 1;
+        }
+
+        /**
+         * 发布序号，越大越新
+         */
+        public long getSeq() {
+            return this.seq;
+        }
+
+        /**
+         * 最远一根在数组中的位置
+         */
+        public int getStart() {
+            return this.from;
+        }
+    }
+
+}
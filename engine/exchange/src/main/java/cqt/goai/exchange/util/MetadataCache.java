@@ -0,0 +1,197 @@
+package cqt.goai.exchange.util;
+
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 交易所元数据缓存，如币对精度、币对列表，很少变化但是数据量大
+ *
+ * 1. 只有第一次获取(且没有磁盘缓存)时阻塞请求
+ * 2. 超过 ttl 的 3/4 后返回缓存，同时在后台刷新，刷新失败继续使用旧数据
+ * 3. 设置了系统属性 goai.metadata.dir 时，每次刷新写入磁盘，启动时先读取磁盘，不必等待下载
+ *
+ * @author GOAi
+ */
+public class MetadataCache<V> {
+
+    /**
+     * 磁盘缓存目录，不设置则不使用磁盘
+     */
+    private static final String DIR = System.getProperty("goai.metadata.dir");
+
+    /**
+     * 后台刷新线程
+     */
+    private static final ExecutorService REFRESH;
+
+    static {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "goai-metadata-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        REFRESH = executor;
+    }
+
+    /**
+     * 缓存名称，用于磁盘文件名
+     */
+    private final String name;
+
+    /**
+     * 序列化，null则不写磁盘
+     */
+    private final Function<V, String> to;
+
+    /**
+     * 反序列化
+     */
+    private final Function<String, V> of;
+
+    private final ConcurrentHashMap<String, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    private static class Entry<V> {
+        private volatile V value;
+        private volatile long time;
+        private final AtomicBoolean refreshing = new AtomicBoolean(false);
+    }
+
+    public MetadataCache(String name, Function<V, String> to, Function<String, V> of) {
+        this.name = name;
+        this.to = to;
+        this.of = of;
+    }
+
+    /**
+     * 获取缓存
+     * @param key 如交易所名称
+     * @param ttl 有效时间，毫秒
+     * @param loader 请求交易所
+     * @param log 日志
+     * @return 数据
+     */
+    public V get(String key, long ttl, Supplier<V> loader, Logger log) {
+        Entry<V> entry = this.entries.computeIfAbsent(key, k -> new Entry<>());
+        V value = entry.value;
+        if (null == value) {
+            synchronized (entry) {
+                if (null == entry.value) {
+                    if (!this.read(key, entry, log)) {
+                        V loaded = loader.get();
+                        this.set(key, entry, loaded, log);
+                        return loaded;
+                    }
+                }
+            }
+            value = entry.value;
+        }
+        if (ttl * 3 / 4 < System.currentTimeMillis() - entry.time) {
+            this.refresh(key, entry, loader, log);
+        }
+        return value;
+    }
+
+    /**
+     * 丢弃缓存，下次获取重新请求
+     */
+    public void invalidate(String key) {
+        this.entries.remove(key);
+    }
+
+    private void refresh(String key, Entry<V> entry, Supplier<V> loader, Logger log) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            REFRESH.execute(() -> {
+                try {
+                    V loaded = loader.get();
+                    if (null != loaded) {
+                        this.set(key, entry, loaded, log);
+                    }
+                } catch (Exception e) {
+                    log.warn("refresh {} {} failed, keep the old one: {}", this.name, key, e.getMessage());
+                } finally {
+                    entry.refreshing.set(false);
+                }
+            });
+        } catch (Exception e) {
+            entry.refreshing.set(false);
+        }
+    }
+
+    private void set(String key, Entry<V> entry, V value, Logger log) {
+        if (null == value) {
+            return;
+        }
+        entry.value = value;
+        entry.time = System.currentTimeMillis();
+        this.write(key, value, log);
+    }
+
+    private Path path(String key) {
+        return new File(DIR, this.name + "-" + key + ".json").toPath();
+    }
+
+    /**
+     * 读取磁盘缓存，时间为文件修改时间，过期则后台刷新
+     */
+    private boolean read(String key, Entry<V> entry, Logger log) {
+        if (null == DIR || null == this.of) {
+            return false;
+        }
+        Path path = this.path(key);
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+        try {
+            V value = this.of.apply(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+            if (null == value) {
+                return false;
+            }
+            entry.value = value;
+            entry.time = Files.getLastModifiedTime(path).toMillis();
+            return true;
+        } catch (Exception e) {
+            log.warn("read {} failed: {}", path, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 先写临时文件再替换，避免读到一半的内容
+     */
+    private void write(String key, V value, Logger log) {
+        if (null == DIR || null == this.to) {
+            return;
+        }
+        Path path = this.path(key);
+        try {
+            Files.createDirectories(path.getParent());
+            Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+            Files.write(temp, this.to.apply(value).getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            log.warn("write {} failed: {}", path, e.getMessage());
+        }
+    }
+
+}
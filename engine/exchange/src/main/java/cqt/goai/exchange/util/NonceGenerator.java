@@ -0,0 +1,184 @@
+package cqt.goai.exchange.util;
+
+import cqt.goai.exchange.ExchangeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单调递增的nonce，每个api key一个，平时无锁
+ *
+ * 以当前毫秒数为基础，CAS保证 下一个 = max(上一个 + 1, 当前毫秒)，
+ * 多个线程同时签名也不会重复或变小，不必像原来一样加锁等上一个请求返回
+ *
+ * 设置了系统属性 goai.nonce.dir 时持久化高水位：
+ * 每次预留 RESERVE 个nonce并写入磁盘，重启后从预留的值之后开始，
+ * 即使之前请求太密集、nonce已经超过当前时间，也不会因为变小被交易所拒绝
+ * 只发放小于已落盘高水位的nonce，用完时取nonce的线程等待写入完成(约每分钟一次)，
+ * 写入失败时抛出 ExchangeException，本次请求失败，下次取nonce时重试
+ *
+ * @author GOAi
+ */
+public class NonceGenerator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NonceGenerator.class);
+
+    /**
+     * 持久化目录，不设置则不持久化
+     */
+    private static final String DIR = System.getProperty("goai.nonce.dir");
+
+    /**
+     * 每次预留数量，nonce超过预留值才写一次磁盘
+     */
+    private static final long RESERVE = 60 * 1000;
+
+    private static final ConcurrentHashMap<String, NonceGenerator> GENERATORS = new ConcurrentHashMap<>();
+
+    /**
+     * 上次使用的nonce
+     */
+    private final AtomicLong last;
+
+    /**
+     * 已持久化的高水位，只发放小于它的nonce
+     */
+    private final AtomicLong reserved;
+
+    /**
+     * 持久化文件，null则不持久化
+     */
+    private final Path path;
+
+    /**
+     * 新建生成器，同一个文件同时只能有一个生成器使用，一般用 of 获取
+     * @param path 持久化文件，null则不持久化
+     */
+    public NonceGenerator(Path path) {
+        this.path = path;
+        long mark = null == path ? 0 : NonceGenerator.read(path);
+        this.last = new AtomicLong(mark);
+        this.reserved = new AtomicLong(mark);
+    }
+
+    /**
+     * 获取key对应的生成器
+     * @param key 如 api key，只用于区分，文件名使用其摘要
+     * @return 生成器
+     */
+    public static NonceGenerator of(String key) {
+        return GENERATORS.computeIfAbsent(key, k -> new NonceGenerator(
+                null == DIR ? null : Paths.get(DIR, "nonce-" + NonceGenerator.digest(k))));
+    }
+
+    /**
+     * 下一个nonce
+     * @return nonce
+     */
+    public long next() {
+        while (true) {
+            long last = this.last.get();
+            long next = Math.max(last + 1, System.currentTimeMillis());
+            if (null != this.path && this.reserved.get() <= next) {
+                this.reserve(next);
+                continue;
+            }
+            if (this.last.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * 预留一段并写入磁盘，同一时间只有一个线程写，其他线程等待
+     * 写入成功后才提高高水位，失败时抛出异常
+     */
+    private void reserve(long next) {
+        synchronized (this) {
+            if (next < this.reserved.get()) {
+                return;
+            }
+            long mark = next + RESERVE;
+            try {
+                NonceGenerator.write(this.path, mark);
+            } catch (IOException e) {
+                LOG.error("can not persist nonce to {}", this.path, e);
+                throw new ExchangeException("can not persist nonce to " + this.path, e);
+            }
+            this.reserved.set(mark);
+        }
+    }
+
+    /**
+     * 已落盘的高水位，发放的nonce都小于它
+     */
+    public long getReserved() {
+        return this.reserved.get();
+    }
+
+    private static long read(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(new String(Files.readAllBytes(path), StandardCharsets.UTF_8).trim());
+        } catch (IOException | NumberFormatException e) {
+            // 无法确认上次用到哪里，宁可跳过一段
+            return System.currentTimeMillis() + RESERVE;
+        }
+    }
+
+    private static void write(Path path, long mark) throws IOException {
+        Files.createDirectories(path.getParent());
+        Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            // 先把内容刷到磁盘再改名，否则断电后可能得到一个空文件
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(String.valueOf(mark).getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        // 改名本身记录在目录中，目录也要刷盘，不支持打开目录的系统(Windows)忽略
+        try (FileChannel directory = FileChannel.open(path.getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException ignored) {
+            // 只能依赖文件系统自己刷盘
+        }
+    }
+
+    /**
+     * 文件名不直接使用api key
+     */
+    private static String digest(String key) {
+        try {
+            byte[] bytes = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                sb.append(String.format("%02x", bytes[i]));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -4,26 +4,72 @@ import okhttp3.*;
 import okio.ByteString;
 import org.slf4j.Logger;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
 /**
  * 推送回调
+ *
+ * 断开后不立即重连，按 ReconnectPolicy 指数退避后由定时器执行，同一时间只安排一次；
+ * 发起连接前先拿握手许可，所有连接同时握手的数量有上限，断线后不会一起涌向交易所
+ * 连接超过 IDLE 没有收到任何消息视为假死，主动断开后重连
+ *
+ * 每个连接记录连接时长、连接和重连次数、消息数和消息频率，
+ * 当前全部连接可以通过 connections() 查看
+ *
+ * 设置系统属性 goai.websocket.record 为目录时，每个连接收到的原始帧都由 FrameRecorder 记录下来，
+ * 文件名为 url-启动时间-序号，也可以通过 setRecorder 单独设置
+ *
  * @author GOAi
  */
 public class OkhttpWebSocket extends WebSocketListener {
 
     private static final OkHttpClient OKHTTP_CLIENT = new OkHttpClient();
 
+    /**
+     * 超过该时间没有收到消息则断开重连，各交易所的ping间隔都小于它
+     */
+    private static final long IDLE = Long.getLong("goai.websocket.idle", 1000 * 30);
+
+    /**
+     * 检查空闲和统计消息频率的间隔
+     */
+    private static final long CHECK = 1000 * 5;
+
+    /**
+     * 当前存活的连接，便于统一查看连接情况
+     */
+    private static final Set<OkhttpWebSocket> SOCKETS = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 记录原始帧的目录，null为不记录
+     */
+    private static final String RECORD = System.getProperty("goai.websocket.record");
+
+    /**
+     * 记录文件序号
+     */
+    private static final AtomicInteger RECORDS = new AtomicInteger();
+
+    private static final long START = System.currentTimeMillis();
+
     /**
      * 连接url
      */
     private final String url;
 
     /**
-     * 收到消息转码方式
+     * 收到消息转码方式，可以返回复用的缓冲，只在本次回调内有效
      */
-    private final Function<ByteString, String> decode;
+    private final Function<ByteString, ? extends CharSequence> decode;
 
     /**
      * 连接开始
@@ -33,7 +79,7 @@ public class OkhttpWebSocket extends WebSocketListener {
     /**
      * 接收消息，转码后，交给谁
      */
-    private final Consumer<String> receive;
+    private final Consumer<CharSequence> receive;
 
     /**
      * 断开后回调
@@ -46,40 +92,263 @@ public class OkhttpWebSocket extends WebSocketListener {
     private Logger log;
 
     /**
-     * 连接对象
+     * 重连策略
+     */
+    private final ReconnectPolicy policy = ReconnectPolicy.DEFAULT;
+
+    /**
+     * 连接对象，打开后才有
+     */
+    private volatile WebSocket webSocket;
+
+    /**
+     * 最近一次发起的连接，旧连接的回调直接忽略
+     */
+    private WebSocket current;
+
+    /**
+     * 当前连接是否占用握手许可
+     */
+    private boolean handshaking = false;
+
+    /**
+     * 已经主动关闭，之后的连接、重连都不再进行
+     */
+    private boolean shutdown = false;
+
+    /**
+     * 连续重连次数，连接稳定后清零
+     */
+    private int attempts = 0;
+
+    /**
+     * 最近收到消息的时间
+     */
+    private volatile long last = System.currentTimeMillis();
+
+    /**
+     * 检查空闲
+     */
+    private final WheelTimer.Timeout check;
+
+    /**
+     * 已经安排的重连
+     */
+    private WheelTimer.Timeout reconnect;
+
+    /**
+     * 分发线程，为null时在读线程直接处理
+     */
+    private final FrameDispatcher dispatcher;
+
+    /**
+     * 原始帧记录，null为不记录
+     */
+    private volatile FrameRecorder recorder;
+
+    /**
+     * 本次连接打开的时间，未连接为0
+     */
+    private volatile long opened = 0;
+
+    private volatile long connects = 0;
+    private volatile long reconnects = 0;
+    private final AtomicLong messages = new AtomicLong();
+
+    /**
+     * 最近一个检查周期的每秒消息数，只在定时线程更新
      */
-    private WebSocket webSocket;
+    private volatile double rate = 0;
+    private long counted = 0;
+    private long checked = System.currentTimeMillis();
 
-    public OkhttpWebSocket(String url, Function<ByteString, String> decode, Runnable open,
-                           Consumer<String> receive, Runnable closed, Logger log) {
+    public OkhttpWebSocket(String url, Function<ByteString, ? extends CharSequence> decode, Runnable open,
+                           Consumer<CharSequence> receive, Runnable closed, Logger log) {
         this.url = url;
         this.decode = decode;
         this.open = open;
         this.receive = receive;
         this.closed = closed;
         this.log = log;
+        this.dispatcher = null;
+        this.check = WheelTimer.DEFAULT.every(this::check, CHECK, CHECK);
+        this.recorder = this.recorder();
+        SOCKETS.add(this);
         this.connect();
     }
 
     /**
-     * 连接
+     * 分发模式，读线程只入队，解压解析和回调都在独立线程
+     * @param capacity 队列长度
+     * @param overflow 溢出策略
+     * @param onOverflow 丢帧后回调，可以为null
      */
-    public void connect() {
-        if (null != this.webSocket) {
-            this.webSocket.cancel();
-            this.webSocket = null;
+    public OkhttpWebSocket(String url, Function<ByteString, ? extends CharSequence> decode, Runnable open,
+                           Consumer<CharSequence> receive, Runnable closed, Logger log,
+                           int capacity, FrameDispatcher.Overflow overflow, Runnable onOverflow) {
+        this.url = url;
+        this.decode = decode;
+        this.open = open;
+        this.receive = receive;
+        this.closed = closed;
+        this.log = log;
+        this.dispatcher = null == receive ? null : new FrameDispatcher(url, capacity, overflow,
+                this::dispatch, onOverflow, log);
+        this.check = WheelTimer.DEFAULT.every(this::check, CHECK, CHECK);
+        this.recorder = this.recorder();
+        SOCKETS.add(this);
+        this.connect();
+    }
+
+    /**
+     * 按系统属性创建记录
+     */
+    private FrameRecorder recorder() {
+        if (null == RECORD) {
+            return null;
+        }
+        String name = this.url.replaceAll("[^A-Za-z0-9.]+", "_") + "-" + START + "-" + RECORDS.incrementAndGet();
+        try {
+            return new FrameRecorder(Paths.get(RECORD), name, FrameRecorder.DEFAULT_SEGMENT);
+        } catch (IOException e) {
+            this.log.error("websocket record failed: {} {}", this.url, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 记录原始帧，出错后停止记录，不影响推送
+     */
+    private void record(byte type, ByteString frame) {
+        FrameRecorder recorder = this.recorder;
+        if (null == recorder) {
+            return;
+        }
+        try {
+            recorder.record(type, System.nanoTime(), frame);
+        } catch (Exception e) {
+            this.log.error("websocket record failed, stop recording: {} {}", this.url, e.getMessage());
+            this.recorder = null;
+            recorder.close();
+        }
+    }
+
+    /**
+     * 记录通过http获取的快照，回放时按顺序取出代替http请求
+     * @param result http结果
+     */
+    public void recordSnapshot(String result) {
+        if (null != this.recorder) {
+            this.record(FrameRecorder.SNAPSHOT, ByteString.encodeUtf8(result));
+        }
+    }
+
+    /**
+     * 连接，取消旧连接和已经安排的重连
+     * 拿不到握手许可时稍后再试
+     */
+    public synchronized void connect() {
+        if (this.shutdown) {
+            return;
+        }
+        if (null != this.reconnect) {
+            this.reconnect.cancel();
+            this.reconnect = null;
+        }
+        this.webSocket = null;
+        this.opened = 0;
+        if (null != this.current) {
+            this.current.cancel();
+            this.current = null;
         }
-        OKHTTP_CLIENT.newWebSocket(new Request.Builder()
+        this.release();
+        if (!this.policy.acquire()) {
+            this.reconnect = WheelTimer.DEFAULT.schedule(this::connect, this.policy.busy());
+            return;
+        }
+        this.handshaking = true;
+        this.last = System.currentTimeMillis();
+        this.current = OKHTTP_CLIENT.newWebSocket(new Request.Builder()
                 .url(this.url)
                 .build(), this);
     }
 
+    /**
+     * 断开后重连，按退避时间延迟执行，已经安排的不重复安排
+     */
+    public synchronized void reconnect() {
+        if (this.shutdown || (null != this.reconnect && !this.reconnect.isDone())) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (0 < this.opened && this.opened + this.policy.getStable() < now) {
+            // 上次连接已经稳定，重新开始退避
+            this.attempts = 0;
+        }
+        long delay = this.policy.delay(this.attempts);
+        this.attempts++;
+        this.reconnects++;
+        this.webSocket = null;
+        this.opened = 0;
+        this.log.info("websocket reconnect in {} ms, attempt: {} url: {}", delay, this.attempts, this.url);
+        this.reconnect = WheelTimer.DEFAULT.schedule(this::connect, delay);
+    }
+
+    /**
+     * 是否是当前连接的回调，握手结束时归还许可
+     */
+    private synchronized boolean current(WebSocket webSocket) {
+        if (webSocket != this.current) {
+            return false;
+        }
+        this.release();
+        return true;
+    }
+
+    /**
+     * 归还握手许可
+     */
+    private synchronized void release() {
+        if (this.handshaking) {
+            this.handshaking = false;
+            this.policy.release();
+        }
+    }
+
+    /**
+     * 定时检查，统计消息频率，太久没有消息的连接断开，由断开回调重连
+     */
+    private void check() {
+        long now = System.currentTimeMillis();
+        long messages = this.messages.get();
+        if (this.checked < now) {
+            this.rate = (messages - this.counted) * 1000.0 / (now - this.checked);
+        }
+        this.counted = messages;
+        this.checked = now;
+
+        WebSocket webSocket = this.webSocket;
+        if (null != webSocket && this.last + IDLE < now) {
+            this.log.warn("websocket idle for {} ms, reconnect: {}", IDLE, this.url);
+            webSocket.cancel();
+        }
+    }
+
     /**
      * 打开连接回调
      */
     @Override
     public void onOpen(WebSocket webSocket, Response response) {
-        this.webSocket = webSocket;
+        synchronized (this) {
+            if (!this.current(webSocket) || this.shutdown) {
+                webSocket.cancel();
+                return;
+            }
+            this.webSocket = webSocket;
+            this.opened = System.currentTimeMillis();
+            this.connects++;
+        }
+        this.last = System.currentTimeMillis();
         if (null != this.open) {
             this.open.run();
         }
@@ -100,12 +369,46 @@ public class OkhttpWebSocket extends WebSocketListener {
      */
     @Override
     public void onMessage(WebSocket webSocket, ByteString bytes) {
-        if (null != this.receive) {
-            String message = this.decode.apply(bytes);
-            this.receive.accept(message);
+        this.last = System.currentTimeMillis();
+        this.messages.incrementAndGet();
+        this.record(FrameRecorder.BINARY, bytes);
+        if (null != this.dispatcher) {
+            this.dispatcher.offer(bytes);
+        } else if (null != this.receive) {
+            this.dispatch(bytes);
+        }
+    }
+
+    /**
+     * 收到文本消息，不压缩的交易所推送文本帧
+     * 分发模式下同样入队，保证与二进制帧的顺序一致
+     */
+    @Override
+    public void onMessage(WebSocket webSocket, String text) {
+        this.last = System.currentTimeMillis();
+        this.messages.incrementAndGet();
+        // 记录和分发共用同一份编码
+        ByteString bytes = null;
+        if (null != this.recorder) {
+            bytes = ByteString.encodeUtf8(text);
+            this.record(FrameRecorder.TEXT, bytes);
+        }
+        if (null != this.dispatcher) {
+            this.dispatcher.offer(null != bytes ? bytes : ByteString.encodeUtf8(text));
+        } else if (null != this.receive) {
+            this.receive.accept(text);
         }
     }
 
+    /**
+     * 解码并交给接收者
+     * @param bytes 原始帧
+     */
+    private void dispatch(ByteString bytes) {
+        CharSequence message = this.decode.apply(bytes);
+        this.receive.accept(message);
+    }
+
     /**
      * 连接正在关闭
      */
@@ -113,7 +416,7 @@ public class OkhttpWebSocket extends WebSocketListener {
     public void onClosing(WebSocket webSocket, int code, String reason) {
         super.onClosing(webSocket, code, reason);
         this.log.info("onClosing --> {} {} {}", webSocket, code, reason);
-        if (null != this.closed) {
+        if (this.current(webSocket) && null != this.closed) {
             this.closed.run();
         }
     }
@@ -125,7 +428,7 @@ public class OkhttpWebSocket extends WebSocketListener {
     public void onClosed(WebSocket webSocket, int code, String reason) {
         super.onClosed(webSocket, code, reason);
         this.log.info("onClosed --> {} {} {}", webSocket, code, reason);
-        if (null != this.closed) {
+        if (this.current(webSocket) && null != this.closed) {
             this.closed.run();
         }
     }
@@ -135,20 +438,131 @@ public class OkhttpWebSocket extends WebSocketListener {
         super.onFailure(webSocket, t, response);
         t.printStackTrace();
         this.log.info("onFailure --> {} {} {}", webSocket, t, response);
-        if (null != this.closed) {
+        if (this.current(webSocket) && null != this.closed) {
             this.closed.run();
         }
     }
 
     /**
-     * 主动断开
+     * 主动断开，之后 connect reconnect 不再生效
+     * 还在握手的连接直接取消，握手完成的回调也会忽略
      * @param code code
      * @param reason reason
      */
     public void close(int code, String reason) {
-        if (null != this.webSocket) {
-            this.webSocket.close(code, reason);
+        this.check.cancel();
+        SOCKETS.remove(this);
+        WebSocket webSocket;
+        synchronized (this) {
+            this.shutdown = true;
+            if (null != this.reconnect) {
+                this.reconnect.cancel();
+                this.reconnect = null;
+            }
+            this.release();
+            webSocket = this.webSocket;
+            if (null == webSocket && null != this.current) {
+                this.current.cancel();
+                this.current = null;
+            }
         }
+        if (null != webSocket) {
+            webSocket.close(code, reason);
+        }
+        if (null != this.dispatcher) {
+            this.dispatcher.stop();
+        }
+        FrameRecorder recorder = this.recorder;
+        if (null != recorder) {
+            this.recorder = null;
+            recorder.close();
+        }
+    }
+
+    /**
+     * 分发线程，未开启分发模式返回null
+     */
+    public FrameDispatcher getDispatcher() {
+        return this.dispatcher;
+    }
+
+    /**
+     * 设置原始帧记录，null为停止记录，旧的记录需要自行关闭
+     * @param recorder 记录
+     */
+    public void setRecorder(FrameRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    public FrameRecorder getRecorder() {
+        return this.recorder;
+    }
+
+    public String getUrl() {
+        return this.url;
+    }
+
+    /**
+     * 是否连接中
+     */
+    public boolean isOpen() {
+        return null != this.webSocket;
+    }
+
+    /**
+     * 本次连接时长，未连接为0
+     */
+    public long getUptime() {
+        long opened = this.opened;
+        return 0 == opened ? 0 : System.currentTimeMillis() - opened;
+    }
+
+    /**
+     * 连接成功次数
+     */
+    public long getConnects() {
+        return this.connects;
+    }
+
+    /**
+     * 断开后安排重连的次数
+     */
+    public long getReconnects() {
+        return this.reconnects;
+    }
+
+    /**
+     * 收到消息总数
+     */
+    public long getMessages() {
+        return this.messages.get();
+    }
+
+    /**
+     * 最近一个检查周期的每秒消息数
+     */
+    public double getRate() {
+        return this.rate;
+    }
+
+    /**
+     * 当前存活的全部连接
+     */
+    public static List<OkhttpWebSocket> connections() {
+        return new ArrayList<>(SOCKETS);
+    }
+
+    @Override
+    public String toString() {
+        return "OkhttpWebSocket{" +
+                "url='" + this.url + '\'' +
+                ", open=" + this.isOpen() +
+                ", uptime=" + this.getUptime() +
+                ", connects=" + this.connects +
+                ", reconnects=" + this.reconnects +
+                ", messages=" + this.messages +
+                ", rate=" + String.format("%.1f", this.rate) +
+                '}';
     }
 
 }
@@ -0,0 +1,225 @@
+package cqt.goai.exchange.util;
+
+import cqt.goai.model.market.Depth;
+import cqt.goai.model.market.Row;
+import cqt.goai.model.market.Rows;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * 本地维护的有序盘口
+ *
+ * 按价格索引并始终保持有序，增量更新每档 O(log n)，
+ * 发布Depth时只需按顺序取出前若干档，不需要每次全量排序
+ *
+ * 非线程安全，由推送连接在同一线程(或持锁)内维护
+ *
+ * @author GOAi
+ */
+public class OrderBook {
+
+    /**
+     * 卖盘，价格由低到高
+     */
+    private final TreeMap<BigDecimal, Level> asks = new TreeMap<>();
+
+    /**
+     * 买盘，价格由高到低
+     */
+    private final TreeMap<BigDecimal, Level> bids = new TreeMap<>(Collections.reverseOrder());
+
+    /**
+     * 每边最多保留档位数
+     */
+    private final int max;
+
+    public OrderBook(int max) {
+        if (max <= 0) {
+            throw new IllegalArgumentException("max depth must be positive: " + max);
+        }
+        this.max = max;
+    }
+
+    /**
+     * 全量更新
+     * @param asks 卖盘
+     * @param bids 买盘
+     */
+    public void partial(List<Row> asks, List<Row> bids) {
+        this.asks.clear();
+        this.bids.clear();
+        this.update(asks, bids);
+    }
+
+    /**
+     * 增量更新，数量为0的档位删除
+     * @param asks 卖盘变化
+     * @param bids 买盘变化
+     */
+    public void update(List<Row> asks, List<Row> bids) {
+        OrderBook.merge(this.asks, asks, this.max);
+        OrderBook.merge(this.bids, bids, this.max);
+    }
+
+    /**
+     * 合并一边的变化
+     * @param side 本地一边
+     * @param rows 变化
+     * @param max 最大档位
+     */
+    private static void merge(TreeMap<BigDecimal, Level> side, List<Row> rows, int max) {
+        if (null == rows) {
+            return;
+        }
+        for (int i = 0, l = rows.size(); i < l; i++) {
+            Row row = rows.get(i);
+            if (0 < row.getAmount().signum()) {
+                side.put(row.getPrice(), new Level(row));
+            } else {
+                side.remove(row.getPrice());
+            }
+        }
+        // 超出部分从最差价格一端裁掉
+        while (max < side.size()) {
+            side.pollLastEntry();
+        }
+    }
+
+    /**
+     * 清空盘口
+     */
+    public void clear() {
+        this.asks.clear();
+        this.bids.clear();
+    }
+
+    /**
+     * 卖盘前size档，由低到高
+     */
+    public List<Row> asks(int size) {
+        return OrderBook.top(this.asks, size);
+    }
+
+    /**
+     * 买盘前size档，由高到低
+     */
+    public List<Row> bids(int size) {
+        return OrderBook.top(this.bids, size);
+    }
+
+    private static List<Row> top(TreeMap<BigDecimal, Level> side, int size) {
+        int length = Math.min(size, side.size());
+        List<Row> rows = new ArrayList<>(length);
+        Iterator<Level> iterator = side.values().iterator();
+        while (rows.size() < length) {
+            rows.add(iterator.next().row);
+        }
+        return rows;
+    }
+
+    /**
+     * 发布当前盘口快照，已排好序，按顺序复制即可
+     * @param time 时间戳
+     * @return Depth
+     */
+    public Depth snapshot(Long time) {
+        return new Depth(time, new Rows(this.asks(this.max)), new Rows(this.bids(this.max)));
+    }
+
+    /**
+     * 卖一
+     */
+    public Row bestAsk() {
+        return this.asks.isEmpty() ? null : this.asks.firstEntry().getValue().row;
+    }
+
+    /**
+     * 买一
+     */
+    public Row bestBid() {
+        return this.bids.isEmpty() ? null : this.bids.firstEntry().getValue().row;
+    }
+
+    /**
+     * 卖盘档位，由低到高，便于逐档遍历而不复制
+     */
+    public Iterator<Level> askLevels() {
+        return this.asks.values().iterator();
+    }
+
+    /**
+     * 买盘档位，由高到低，便于逐档遍历而不复制
+     */
+    public Iterator<Level> bidLevels() {
+        return this.bids.values().iterator();
+    }
+
+    public int askSize() {
+        return this.asks.size();
+    }
+
+    public int bidSize() {
+        return this.bids.size();
+    }
+
+    public boolean isEmpty() {
+        return this.asks.isEmpty() && this.bids.isEmpty();
+    }
+
+    public int getMax() {
+        return this.max;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderBook{" +
+                "asks=" + this.asks.size() +
+                ", bids=" + this.bids.size() +
+                ", max=" + this.max +
+                '}';
+    }
+
+    /**
+     * 盘口中的一档，缓存校验用的规范字节形式
+     */
+    public static final class Level {
+
+        private final Row row;
+
+        /**
+         * price:amount 的字节形式，首次校验时生成，之后不再重复生成
+         */
+        private byte[] bytes;
+
+        private Level(Row row) {
+            this.row = row;
+        }
+
+        public Row getRow() {
+            return this.row;
+        }
+
+        /**
+         * 规范字节形式 price:amount，价格数量均为 toPlainString
+         * @return 字节数组，不可修改
+         */
+        public byte[] bytes() {
+            if (null == this.bytes) {
+                this.bytes = (this.row.getPrice().toPlainString() + ':'
+                        + this.row.getAmount().toPlainString()).getBytes(StandardCharsets.US_ASCII);
+            }
+            return this.bytes;
+        }
+
+        @Override
+        public String toString() {
+            return this.row.toString();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package cqt.goai.exchange.util;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 断线重连策略
+ *
+ * 1. 指数退避，第n次重连等待 base * 2^n，最多 max，取其中一半加随机抖动，
+ *    交易所故障时大量连接不会在同一时刻一起重连
+ * 2. 连接稳定超过 stable 后断开，重新从 base 开始
+ * 3. 同时握手的连接数有上限，拿不到许可的连接稍后再试，不计入退避次数
+ *
+ * 默认值可以通过系统属性调整
+ * goai.websocket.reconnect.base 第一次重连等待毫秒数
+ * goai.websocket.reconnect.max 最长等待毫秒数
+ * goai.websocket.handshakes 最多同时握手的连接数
+ *
+ * @author GOAi
+ */
+public class ReconnectPolicy {
+
+    /**
+     * 所有推送连接共用，握手许可在所有连接之间共享
+     */
+    public static final ReconnectPolicy DEFAULT = new ReconnectPolicy(
+            Long.getLong("goai.websocket.reconnect.base", 1000),
+            Long.getLong("goai.websocket.reconnect.max", 1000 * 60),
+            Integer.getInteger("goai.websocket.handshakes", 8));
+
+    /**
+     * 第一次重连等待
+     */
+    private final long base;
+
+    /**
+     * 最长等待
+     */
+    private final long max;
+
+    /**
+     * 连接保持超过该时间视为稳定，重连次数清零
+     */
+    private final long stable;
+
+    /**
+     * 最多同时握手数
+     */
+    private final int permits;
+
+    private final Semaphore handshakes;
+
+    /**
+     * @param base 第一次重连等待毫秒数
+     * @param max 最长等待毫秒数
+     * @param permits 最多同时握手的连接数
+     */
+    public ReconnectPolicy(long base, long max, int permits) {
+        this.base = Math.max(1, base);
+        this.max = Math.max(this.base, max);
+        this.stable = this.max;
+        this.permits = Math.max(1, permits);
+        this.handshakes = new Semaphore(this.permits);
+    }
+
+    /**
+     * 重连等待时间
+     * @param attempt 连续第几次重连，从0开始
+     * @return 毫秒，在 [上限/2, 上限] 之间
+     */
+    public long delay(int attempt) {
+        long ceiling = this.max;
+        if (attempt < Long.numberOfLeadingZeros(this.base) - 1) {
+            ceiling = Math.min(this.max, this.base << attempt);
+        }
+        long half = ceiling / 2;
+        return half + ThreadLocalRandom.current().nextLong(ceiling - half + 1);
+    }
+
+    /**
+     * 握手许可已满时，多久后再试
+     * @return 毫秒
+     */
+    public long busy() {
+        return this.base / 4 + ThreadLocalRandom.current().nextLong(this.base / 2 + 1);
+    }
+
+    /**
+     * 尝试获取握手许可，不阻塞
+     * @return 是否获取
+     */
+    public boolean acquire() {
+        return this.handshakes.tryAcquire();
+    }
+
+    /**
+     * 握手结束，成功或失败都要归还
+     */
+    public void release() {
+        this.handshakes.release();
+    }
+
+    /**
+     * 当前正在握手的连接数
+     */
+    public int getHandshakes() {
+        return this.permits - this.handshakes.availablePermits();
+    }
+
+    public long getStable() {
+        return this.stable;
+    }
+
+    @Override
+    public String toString() {
+        return "ReconnectPolicy{" +
+                "base=" + this.base +
+                ", max=" + this.max +
+                ", permits=" + this.permits +
+                ", handshakes=" + this.getHandshakes() +
+                '}';
+    }
+}
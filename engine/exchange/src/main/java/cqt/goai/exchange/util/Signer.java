@@ -0,0 +1,194 @@
+package cqt.goai.exchange.util;
+
+import cqt.goai.exchange.ExchangeException;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 请求签名
+ *
+ * Mac.getInstance 需要查找Provider，init 需要计算密钥，每次签名都重新创建会明显增加下单延时
+ * 这里每个线程按 算法+秘钥 缓存已经init的Mac，Mac不是线程安全的，只在本线程使用
+ *
+ * 消息编码、摘要结果、hex/base64编码都使用线程内复用的缓冲区，只有最后的String需要分配
+ *
+ * @author GOAi
+ */
+public final class Signer {
+
+    public static final String HMAC_SHA256 = "HmacSHA256";
+    public static final String HMAC_SHA384 = "HmacSHA384";
+    public static final String HMAC_SHA512 = "HmacSHA512";
+
+    /**
+     * 每个线程最多缓存的秘钥数
+     */
+    private static final int MAX_KEYS = 64;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final char[] BASE64 =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    private static final ThreadLocal<Local> LOCAL = ThreadLocal.withInitial(Local::new);
+
+    private Signer() {}
+
+    /**
+     * 线程内缓存
+     */
+    private static class Local {
+        /**
+         * 按访问顺序淘汰
+         */
+        private final Map<String, Mac> macs = new LinkedHashMap<String, Mac>(16, 0.75f, true) {
+            private static final long serialVersionUID = -2397263512395618403L;
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Mac> eldest) {
+                return MAX_KEYS < this.size();
+            }
+        };
+        private byte[] bytes = new byte[1024];
+        private final byte[] digest = new byte[64];
+        private char[] chars = new char[256];
+
+        private Mac mac(String algorithm, String secret) throws GeneralSecurityException {
+            String key = algorithm + '\n' + secret;
+            Mac mac = this.macs.get(key);
+            if (null == mac) {
+                mac = Mac.getInstance(algorithm);
+                mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), algorithm));
+                this.macs.put(key, mac);
+            }
+            return mac;
+        }
+
+        /**
+         * 消息编码到复用的byte[]，非ASCII时按UTF-8重新编码
+         * @return 长度
+         */
+        private int encode(String message) {
+            int length = message.length();
+            if (this.bytes.length < length) {
+                this.bytes = new byte[Math.max(length, this.bytes.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                char c = message.charAt(i);
+                if (0x80 <= c) {
+                    byte[] utf8 = message.getBytes(StandardCharsets.UTF_8);
+                    if (this.bytes.length < utf8.length) {
+                        this.bytes = new byte[utf8.length];
+                    }
+                    System.arraycopy(utf8, 0, this.bytes, 0, utf8.length);
+                    return utf8.length;
+                }
+                this.bytes[i] = (byte) c;
+            }
+            return length;
+        }
+
+        private char[] chars(int length) {
+            if (this.chars.length < length) {
+                this.chars = new char[Math.max(length, this.chars.length * 2)];
+            }
+            return this.chars;
+        }
+
+        /**
+         * 计算摘要，结果在digest中
+         * @return 摘要长度
+         */
+        private int hmac(String algorithm, String secret, String message) {
+            try {
+                Mac mac = this.mac(algorithm, secret);
+                // encode可能扩容，先编码再取bytes
+                int count = this.encode(message);
+                mac.update(this.bytes, 0, count);
+                int length = mac.getMacLength();
+                mac.doFinal(this.digest, 0);
+                return length;
+            } catch (ShortBufferException e) {
+                this.macs.remove(algorithm + '\n' + secret);
+                throw new ExchangeException(algorithm + " digest is too long.", e);
+            } catch (GeneralSecurityException | IllegalArgumentException e) {
+                this.macs.remove(algorithm + '\n' + secret);
+                throw new ExchangeException(algorithm + " sign error.", e);
+            }
+        }
+    }
+
+    /**
+     * hmac结果，小写hex
+     * @param algorithm 算法 如 HmacSHA256
+     * @param secret 秘钥
+     * @param message 信息
+     * @return 签名
+     */
+    public static String hmacHex(String algorithm, String secret, String message) {
+        Local local = LOCAL.get();
+        int length = local.hmac(algorithm, secret, message);
+        return Signer.hex(local, local.digest, length);
+    }
+
+    /**
+     * hmac结果，base64
+     * @param algorithm 算法 如 HmacSHA256
+     * @param secret 秘钥
+     * @param message 信息
+     * @return 签名
+     */
+    public static String hmacBase64(String algorithm, String secret, String message) {
+        Local local = LOCAL.get();
+        int length = local.hmac(algorithm, secret, message);
+        return Signer.base64(local, local.digest, length);
+    }
+
+    /**
+     * 字符串UTF-8编码后的base64
+     * @param message 信息
+     * @return base64
+     */
+    public static String base64(String message) {
+        Local local = LOCAL.get();
+        int count = local.encode(message);
+        return Signer.base64(local, local.bytes, count);
+    }
+
+    private static String hex(Local local, byte[] data, int length) {
+        char[] out = local.chars(length << 1);
+        for (int i = 0, j = 0; i < length; i++) {
+            out[j++] = HEX[(0xF0 & data[i]) >>> 4];
+            out[j++] = HEX[0x0F & data[i]];
+        }
+        return new String(out, 0, length << 1);
+    }
+
+    private static String base64(Local local, byte[] data, int length) {
+        char[] out = local.chars((length + 2) / 3 * 4);
+        int j = 0;
+        int i = 0;
+        for (int end = length - length % 3; i < end; i += 3) {
+            int bits = (data[i] & 0xFF) << 16 | (data[i + 1] & 0xFF) << 8 | (data[i + 2] & 0xFF);
+            out[j++] = BASE64[bits >>> 18 & 0x3F];
+            out[j++] = BASE64[bits >>> 12 & 0x3F];
+            out[j++] = BASE64[bits >>> 6 & 0x3F];
+            out[j++] = BASE64[bits & 0x3F];
+        }
+        int rest = length - i;
+        if (0 < rest) {
+            int bits = (data[i] & 0xFF) << 16 | (2 == rest ? (data[i + 1] & 0xFF) << 8 : 0);
+            out[j++] = BASE64[bits >>> 18 & 0x3F];
+            out[j++] = BASE64[bits >>> 12 & 0x3F];
+            out[j++] = 2 == rest ? BASE64[bits >>> 6 & 0x3F] : '=';
+            out[j++] = '=';
+        }
+        return new String(out, 0, j);
+    }
+
+}
@@ -0,0 +1,145 @@
+package cqt.goai.exchange.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 令牌桶限流，线程安全，无锁
+ *
+ * 与RateLimit不同，RateLimit只记录上次时间，用于推送和缓存，不要求精确；
+ * 这里用于发往交易所的请求，多个线程同时请求也不能超出交易所限制
+ *
+ * 实现为GCRA(通用信元速率算法)，只保存一个理论到达时间(tat)，
+ * 每次请求用CAS把tat往后推 weight * interval，tat超出当前时间太多说明令牌不够，需要等待
+ *
+ * 例如 capacity=1200 period=1分钟，则稳定速率为每50毫秒一个令牌，最多允许一次性消耗1200个
+ *
+ * @author GOAi
+ */
+public class TokenBucket {
+
+    /**
+     * 每个令牌的间隔，纳秒
+     */
+    private final long interval;
+
+    /**
+     * 桶的容量对应的时间，纳秒
+     */
+    private final long tolerance;
+
+    /**
+     * 容量
+     */
+    private final long capacity;
+
+    /**
+     * 理论到达时间，纳秒
+     */
+    private final AtomicLong tat;
+
+    /**
+     * 构造
+     * @param capacity 周期内最多令牌数
+     * @param period 周期
+     * @param unit 周期单位
+     */
+    public TokenBucket(long capacity, long period, TimeUnit unit) {
+        if (capacity <= 0 || period <= 0) {
+            throw new IllegalArgumentException("capacity and period must be positive");
+        }
+        this.capacity = capacity;
+        this.interval = Math.max(1, unit.toNanos(period) / capacity);
+        this.tolerance = this.interval * capacity;
+        this.tat = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * 预定令牌
+     * @param weight 令牌数，超过容量按容量计算
+     * @param maxWait 最多等待纳秒数
+     * @return 需要等待的纳秒数，0表示立即可用，-1表示等待时间超出maxWait，未消耗令牌
+     */
+    public long reserve(long weight, long maxWait) {
+        long increment = this.increment(weight);
+        while (true) {
+            long now = System.nanoTime();
+            long old = this.tat.get();
+            long next = Math.max(old, now) + increment;
+            long wait = next - this.tolerance - now;
+            if (maxWait < wait) {
+                return -1;
+            }
+            if (this.tat.compareAndSet(old, next)) {
+                return Math.max(0, wait);
+            }
+        }
+    }
+
+    /**
+     * 归还预定但没有使用的令牌
+     * @param weight 令牌数，与预定时一致
+     */
+    public void cancel(long weight) {
+        this.tat.addAndGet(-this.increment(weight));
+    }
+
+    private long increment(long weight) {
+        return Math.min(Math.max(weight, 0), this.capacity) * this.interval;
+    }
+
+    /**
+     * 尝试获取，不等待
+     * @param weight 令牌数
+     * @return 是否获取成功
+     */
+    public boolean tryAcquire(long weight) {
+        return 0 <= this.reserve(weight, 0);
+    }
+
+    /**
+     * 获取令牌，令牌不够时排队等待
+     * @param weight 令牌数
+     * @param timeout 最多等待时间
+     * @param unit 时间单位
+     * @return 是否获取成功，等待时间超出timeout或被中断返回false，返回false时不消耗令牌
+     */
+    public boolean acquire(long weight, long timeout, TimeUnit unit) {
+        long wait = this.reserve(weight, unit.toNanos(timeout));
+        if (wait < 0) {
+            return false;
+        }
+        long deadline = System.nanoTime() + wait;
+        while (0 < wait) {
+            LockSupport.parkNanos(this, wait);
+            if (Thread.currentThread().isInterrupted()) {
+                this.cancel(weight);
+                return false;
+            }
+            wait = deadline - System.nanoTime();
+        }
+        return true;
+    }
+
+    /**
+     * 当前可以立即使用的令牌数
+     */
+    public long available() {
+        long used = Math.max(0, this.tat.get() - System.nanoTime());
+        return Math.max(0, (this.tolerance - used) / this.interval);
+    }
+
+    public long getCapacity() {
+        return this.capacity;
+    }
+
+    @Override
+    public String toString() {
+        return "TokenBucket{" +
+                "capacity=" + capacity +
+                ", interval=" + interval +
+                ", available=" + this.available() +
+                '}';
+    }
+}
@@ -0,0 +1,328 @@
+package cqt.goai.exchange.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * 时间轮定时器
+ *
+ * 一个线程按 tick 转动，时间轮每格是一个链表，加入和取消都是 O(1)，
+ * 到期的任务在定时线程执行，只适合 ping、检查空闲、安排重连这类很快的任务，不能阻塞
+ *
+ * 新任务先放入无锁队列，下一格时由定时线程挂到对应的格子上，超过一圈的记录剩余圈数
+ * 取消只做标记，转到该格时摘除
+ *
+ * 所有连接共用 DEFAULT，数千个连接也只有一个线程，不占用公共的 ForkJoinPool
+ *
+ * 默认值可以通过系统属性调整
+ * goai.websocket.tick 每格毫秒数
+ *
+ * @author GOAi
+ */
+public class WheelTimer {
+
+    /**
+     * 所有推送连接共用
+     */
+    public static final WheelTimer DEFAULT = new WheelTimer("websocket-timer",
+            Long.getLong("goai.websocket.tick", 100), 512);
+
+    private static final Logger LOG = LoggerFactory.getLogger(WheelTimer.class);
+
+    /**
+     * 每次转动最多挂入的新任务，防止一直加入导致转不动
+     */
+    private static final int TRANSFER = 100000;
+
+    /**
+     * 每格纳秒数
+     */
+    private final long tick;
+
+    private final Bucket[] wheel;
+
+    private final int mask;
+
+    /**
+     * 等待挂到格子上的新任务
+     */
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 未到期的任务数
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final Thread thread;
+
+    /**
+     * 启动时间，所有到期时间都相对于它
+     */
+    private final long start;
+
+    /**
+     * 已经转过的格数，只在定时线程访问
+     */
+    private long ticks = 0;
+
+    private volatile boolean running = true;
+
+    /**
+     * @param name 线程名
+     * @param tick 每格毫秒数
+     * @param wheelSize 格数，取不小于它的2的幂
+     */
+    public WheelTimer(String name, long tick, int wheelSize) {
+        this.tick = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tick));
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            this.wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.start = System.nanoTime();
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * 延迟执行一次
+     * @param task 任务，在定时线程执行
+     * @param delay 延迟毫秒
+     * @return 可以取消
+     */
+    public Timeout schedule(Runnable task, long delay) {
+        return this.add(new Timeout(this, task, 0), delay);
+    }
+
+    /**
+     * 定时执行，直到取消
+     * @param task 任务，在定时线程执行
+     * @param delay 第一次延迟毫秒
+     * @param period 之后间隔毫秒
+     * @return 可以取消
+     */
+    public Timeout every(Runnable task, long delay, long period) {
+        return this.add(new Timeout(this, task, TimeUnit.MILLISECONDS.toNanos(Math.max(1, period))), delay);
+    }
+
+    private Timeout add(Timeout timeout, long delay) {
+        timeout.deadline = System.nanoTime() - this.start + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delay));
+        this.size.incrementAndGet();
+        this.pending.add(timeout);
+        return timeout;
+    }
+
+    private void run() {
+        while (this.running) {
+            long deadline = this.tick * (this.ticks + 1);
+            long sleep = deadline - (System.nanoTime() - this.start);
+            if (0 < sleep) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    if (!this.running) {
+                        return;
+                    }
+                }
+                continue;
+            }
+            this.transfer();
+            this.wheel[(int) (this.ticks & this.mask)].expire();
+            this.ticks++;
+        }
+    }
+
+    /**
+     * 新任务挂到格子上
+     */
+    private void transfer() {
+        for (int i = 0; i < TRANSFER; i++) {
+            Timeout timeout = this.pending.poll();
+            if (null == timeout) {
+                return;
+            }
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            // 已经过期的放在当前格，马上执行
+            long calculated = Math.max(timeout.deadline / this.tick, this.ticks);
+            timeout.rounds = (calculated - this.ticks) / this.wheel.length;
+            this.wheel[(int) (calculated & this.mask)].add(timeout);
+        }
+    }
+
+    /**
+     * 执行到期任务，定时任务重新加入
+     */
+    private void fire(Timeout timeout) {
+        boolean once = 0 == timeout.period;
+        if (once && !Timeout.STATE.compareAndSet(timeout, Timeout.INIT, Timeout.EXPIRED)) {
+            // 刚刚被取消
+            return;
+        }
+        if (once) {
+            this.size.decrementAndGet();
+        }
+        try {
+            timeout.task.run();
+        } catch (Throwable e) {
+            LOG.error("{} task failed: {}", this.thread.getName(), e.getMessage(), e);
+        }
+        if (!once && !timeout.isCancelled()) {
+            // 按固定频率，执行慢了也不会累积延迟
+            timeout.deadline += timeout.period;
+            this.pending.add(timeout);
+        }
+    }
+
+    /**
+     * 停止，未执行的任务不再执行
+     */
+    public void stop() {
+        this.running = false;
+        this.thread.interrupt();
+    }
+
+    /**
+     * 未到期的任务数
+     */
+    public int size() {
+        return this.size.get();
+    }
+
+    @Override
+    public String toString() {
+        return "WheelTimer{" +
+                "name=" + this.thread.getName() +
+                ", tick=" + TimeUnit.NANOSECONDS.toMillis(this.tick) +
+                ", wheel=" + this.wheel.length +
+                ", size=" + this.size.get() +
+                '}';
+    }
+
+    /**
+     * 定时任务
+     */
+    public static final class Timeout {
+
+        private final WheelTimer timer;
+
+        private final Runnable task;
+
+        /**
+         * 间隔纳秒，0为只执行一次
+         */
+        private final long period;
+
+        /**
+         * 到期时间，相对于定时器启动
+         */
+        private long deadline;
+
+        /**
+         * 剩余圈数
+         */
+        private long rounds;
+
+        private static final int INIT = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private volatile int state = INIT;
+
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(WheelTimer timer, Runnable task, long period) {
+            this.timer = timer;
+            this.task = task;
+            this.period = period;
+        }
+
+        /**
+         * 取消，已经在执行的不受影响，定时任务不再执行
+         */
+        public void cancel() {
+            if (STATE.compareAndSet(this, INIT, CANCELLED)) {
+                this.timer.size.decrementAndGet();
+            }
+        }
+
+        public boolean isCancelled() {
+            return CANCELLED == this.state;
+        }
+
+        /**
+         * 是否已经执行或者取消，定时任务只有取消后才结束
+         */
+        public boolean isDone() {
+            return INIT != this.state;
+        }
+    }
+
+    /**
+     * 时间轮的一格，只在定时线程访问
+     */
+    private final class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(Timeout timeout) {
+            if (null == this.head) {
+                this.head = this.tail = timeout;
+            } else {
+                this.tail.next = timeout;
+                timeout.prev = this.tail;
+                this.tail = timeout;
+            }
+        }
+
+        private void expire() {
+            Timeout timeout = this.head;
+            while (null != timeout) {
+                Timeout next = timeout.next;
+                if (timeout.isCancelled()) {
+                    this.remove(timeout);
+                } else if (timeout.rounds <= 0) {
+                    this.remove(timeout);
+                    WheelTimer.this.fire(timeout);
+                } else {
+                    timeout.rounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        private void remove(Timeout timeout) {
+            if (null != timeout.prev) {
+                timeout.prev.next = timeout.next;
+            }
+            if (null != timeout.next) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (this.head == timeout) {
+                this.head = timeout.next;
+            }
+            if (this.tail == timeout) {
+                this.tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+package cqt.goai.exchange.util.okexv3;
+
+import cqt.goai.exchange.util.OrderBook;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.zip.CRC32;
+
+/**
+ * OKEx V3 深度校验
+ *
+ * 校验字符串为 买1价:买1量:卖1价:卖1量:买2价:买2量... 取前25档，结果为有符号32位整数
+ * 直接从本地盘口逐档拼接到复用的字节缓冲，再一次性计算CRC32，每档字节形式由盘口缓存，
+ * 校验过程不产生新的字符串和CRC32
+ *
+ * 非线程安全，每个盘口一个实例
+ *
+ * @author GOAi
+ */
+public class Okexv3CheckSum {
+
+    /**
+     * 校验档位数
+     */
+    public static final int SIZE = 25;
+
+    private static final byte COLON = ':';
+
+    /**
+     * 复用的校验状态
+     */
+    private final CRC32 crc32 = new CRC32();
+
+    /**
+     * 复用的校验字符串缓冲，不够时扩容
+     */
+    private byte[] buffer = new byte[1024];
+
+    /**
+     * 缓冲中已写入的长度
+     */
+    private int length;
+
+    /**
+     * 计算校验值
+     * @param book 本地盘口
+     * @return 有符号32位校验值
+     */
+    public int checksum(OrderBook book) {
+        this.length = 0;
+        Iterator<OrderBook.Level> bids = book.bidLevels();
+        Iterator<OrderBook.Level> asks = book.askLevels();
+        for (int i = 0; i < SIZE && (bids.hasNext() || asks.hasNext()); i++) {
+            if (bids.hasNext()) {
+                this.append(bids.next());
+            }
+            if (asks.hasNext()) {
+                this.append(asks.next());
+            }
+        }
+        this.crc32.reset();
+        this.crc32.update(this.buffer, 0, this.length);
+        return (int) this.crc32.getValue();
+    }
+
+    /**
+     * 校验是否通过
+     * @param book 本地盘口
+     * @param checksum 交易所给出的校验值
+     * @return 是否一致，空盘口视为通过
+     */
+    public boolean check(OrderBook book, long checksum) {
+        return book.isEmpty() || this.checksum(book) == (int) checksum;
+    }
+
+    private void append(OrderBook.Level level) {
+        byte[] bytes = level.bytes();
+        int required = this.length + bytes.length + 1;
+        if (this.buffer.length < required) {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(required, this.buffer.length * 2));
+        }
+        if (0 < this.length) {
+            this.buffer[this.length++] = COLON;
+        }
+        System.arraycopy(bytes, 0, this.buffer, this.length, bytes.length);
+        this.length += bytes.length;
+    }
+
+}
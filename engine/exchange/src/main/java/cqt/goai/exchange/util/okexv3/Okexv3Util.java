@@ -3,6 +3,7 @@ package cqt.goai.exchange.util.okexv3;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import cqt.goai.exchange.util.CommonUtil;
+import cqt.goai.exchange.util.JsonReader;
 import cqt.goai.model.enums.Period;
 import cqt.goai.model.enums.Side;
 import cqt.goai.model.enums.State;
@@ -19,6 +20,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
@@ -33,6 +35,11 @@ import static java.math.BigDecimal.ZERO;
  */
 public class Okexv3Util {
 
+    /**
+     * 深度推送的频道
+     */
+    private static final String DEPTH = "spot/depth";
+
     /**
      * okexv3 的周期换算
      * @param period 周期
@@ -122,6 +129,126 @@ public class Okexv3Util {
         return CommonUtil.parseDepthByIndex(time, r.getJSONArray("asks"), r.getJSONArray("bids"));
     }
 
+    /**
+     * 流式解析Depth，不构建JSONObject
+     * @param result {"asks":[["3600.1","11.4","1"]...],"bids":[...],"timestamp":"2019-01-15T09:51:00.157Z"}
+     * @return Depth
+     */
+    public static Depth parseDepth(String result) {
+        JsonReader reader = new JsonReader(result);
+        Long time = null;
+        List<Row> asks = null;
+        List<Row> bids = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "asks": asks = CommonUtil.parseRowsByIndex(reader); break;
+                case "bids": bids = CommonUtil.parseRowsByIndex(reader); break;
+                case "timestamp": time = Instant.parse(reader.nextString()).toEpochMilli(); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new Depth(time, new Rows(asks), new Rows(bids));
+    }
+
+    /**
+     * 流式解析深度推送帧，不构建JSONObject
+     * {"table":"spot/depth","action":"update","data":[{"instrument_id":"BTC-USDT","asks":[...],"bids":[...],
+     * "timestamp":"2019-01-15T09:51:00.157Z","checksum":-1200119424}]}
+     * @param message 推送帧
+     * @return 第一个字段是table且为深度时返回解析结果，其他返回null，交给JSONObject解析
+     */
+    public static DepthFrame parseDepthFrame(String message) {
+        JsonReader reader = new JsonReader(message);
+        if ('{' != reader.peek()) {
+            return null;
+        }
+        reader.beginObject();
+        if (!reader.hasNext() || !"table".equals(reader.nextName()) || !DEPTH.equals(reader.nextString())) {
+            return null;
+        }
+        DepthFrame frame = new DepthFrame();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "action": frame.action = reader.nextString(); break;
+                case "data":
+                    reader.beginArray();
+                    if (reader.hasNext()) {
+                        Okexv3Util.parseDepthData(reader, frame);
+                        while (reader.hasNext()) {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endArray();
+                    break;
+                default: reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return frame;
+    }
+
+    private static void parseDepthData(JsonReader reader, DepthFrame frame) {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "instrument_id": frame.instrumentId = reader.nextString(); break;
+                case "asks": frame.asks = CommonUtil.parseRowsByIndex(reader); break;
+                case "bids": frame.bids = CommonUtil.parseRowsByIndex(reader); break;
+                case "timestamp": frame.time = Instant.parse(reader.nextString()).toEpochMilli(); break;
+                case "checksum": frame.checksum = reader.nextLong(); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * 深度推送的一帧
+     */
+    public static final class DepthFrame {
+
+        private String action;
+        private String instrumentId;
+        private Long time;
+        private List<Row> asks;
+        private List<Row> bids;
+        private Long checksum;
+
+        private DepthFrame() {}
+
+        /**
+         * partial 或 update
+         */
+        public String getAction() {
+            return this.action;
+        }
+
+        public String getInstrumentId() {
+            return this.instrumentId;
+        }
+
+        public Long getTime() {
+            return this.time;
+        }
+
+        public List<Row> getAsks() {
+            return this.asks;
+        }
+
+        public List<Row> getBids() {
+            return this.bids;
+        }
+
+        /**
+         * 校验值，没有时为null
+         */
+        public Long getChecksum() {
+            return this.checksum;
+        }
+    }
+
     /**
      * 统一解析Trades
      */
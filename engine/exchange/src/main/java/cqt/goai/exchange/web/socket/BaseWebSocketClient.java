@@ -1,7 +1,13 @@
 package cqt.goai.exchange.web.socket;
 
+import cqt.goai.exchange.ExchangeInfo;
+import cqt.goai.exchange.ExchangeManager;
+import cqt.goai.exchange.ExchangeName;
+import cqt.goai.exchange.util.KlineBuffer;
 import cqt.goai.exchange.util.RateLimit;
+import cqt.goai.exchange.util.WheelTimer;
 import cqt.goai.model.enums.Period;
+import cqt.goai.model.market.Kline;
 import cqt.goai.model.market.Klines;
 import cqt.goai.model.market.Depth;
 import cqt.goai.model.market.Ticker;
@@ -11,6 +17,12 @@ import cqt.goai.model.trade.Orders;
 import org.slf4j.Logger;
 
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 import static dive.common.util.Util.exist;
@@ -22,6 +34,38 @@ import static dive.common.util.Util.exist;
  */
 public abstract class BaseWebSocketClient {
 
+    /**
+     * 定时调用ping的间隔，是否真的发送由limit决定
+     */
+    private static final long PING = 1000 * 7;
+
+    /**
+     * k线保留最大长度
+     */
+    private static final int KLINES = 200;
+
+    /**
+     * 补全历史k线失败后，至少间隔多久再试，毫秒
+     */
+    private static final long BACKFILL_RETRY = 5000;
+
+    /**
+     * 通过http补全历史k线，不占用推送的分发线程
+     */
+    private static final ExecutorService BACKFILL;
+
+    static {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "goai-kline-backfill-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        BACKFILL = executor;
+    }
+
     /**
      * 日志
      */
@@ -47,6 +91,11 @@ public abstract class BaseWebSocketClient {
      */
     protected final RateLimit limit;
 
+    /**
+     * 定时ping
+     */
+    private WheelTimer.Timeout keepAlive;
+
     /**
      * 消费函数
      */
@@ -54,6 +103,16 @@ public abstract class BaseWebSocketClient {
 
     private ConcurrentHashMap<Period, Consumer<Klines>> onKlines = new ConcurrentHashMap<>();
 
+    /**
+     * 每个周期的k线缓存
+     */
+    private final ConcurrentHashMap<Period, KlineBuffer> klines = new ConcurrentHashMap<>();
+
+    /**
+     * 每个周期上次开始补全历史k线的时间，正在补全为-1
+     */
+    private final ConcurrentHashMap<Period, Long> backfills = new ConcurrentHashMap<>();
+
     private Consumer<Depth> onDepth;
 
     private Consumer<Trades> onTrades;
@@ -95,6 +154,35 @@ public abstract class BaseWebSocketClient {
         }
     }
 
+    /**
+     * 开始定时ping，连接建立后调用
+     * 第一次随机延迟，数千个连接的ping分散在各个时刻
+     */
+    protected synchronized void keepAlive() {
+        if (null == this.keepAlive) {
+            this.keepAlive = WheelTimer.DEFAULT.every(this::ping,
+                    ThreadLocalRandom.current().nextLong(PING) + 1, PING);
+        }
+    }
+
+    /**
+     * 取消定时ping，主动关闭时调用
+     */
+    protected synchronized void noPing() {
+        if (null != this.keepAlive) {
+            this.keepAlive.cancel();
+            this.keepAlive = null;
+        }
+    }
+
+    /**
+     * 收到连接传来的信息，可能是复用的缓冲，需要在本次调用内处理完
+     * @param message 收到信息
+     */
+    protected void receive(CharSequence message) {
+        this.transform(message.toString());
+    }
+
     /**
      * 处理收到的新信息
      * @param message 收到信息
@@ -182,6 +270,60 @@ public abstract class BaseWebSocketClient {
      */
     public abstract void noKlines(Period period);
 
+    /**
+     * 周期的k线缓存
+     * @param period 周期
+     */
+    protected KlineBuffer buffer(Period period) {
+        return this.klines.computeIfAbsent(period, p -> new KlineBuffer(KLINES));
+    }
+
+    /**
+     * 构造Klines
+     *
+     * 还没有历史k线时，在BACKFILL线程通过http获取，分发线程不等待，
+     * 补全之前发布的视图只有推送的k线，补全之后的下一次推送包含历史
+     *
+     * @param kline 最新的k线
+     * @param period 周期
+     * @param name 获取历史k线的交易所
+     * @return 最多KLINES根k线的视图，过期的k线返回null
+     */
+    protected Klines onKline(Kline kline, Period period, ExchangeName name) {
+        KlineBuffer buffer = this.buffer(period);
+        Klines klines = buffer.update(kline);
+        if (!buffer.isFilled()) {
+            this.backfill(buffer, period, name);
+        }
+        return klines;
+    }
+
+    private void backfill(KlineBuffer buffer, Period period, ExchangeName name) {
+        long now = System.currentTimeMillis();
+        boolean[] start = new boolean[1];
+        this.backfills.compute(period, (p, last) -> {
+            if (null == last || (0 <= last && BACKFILL_RETRY <= now - last)) {
+                start[0] = true;
+                return -1L;
+            }
+            return last;
+        });
+        if (!start[0]) {
+            return;
+        }
+        BACKFILL.execute(() -> {
+            try {
+                Klines history = ExchangeManager.getHttpExchange(name, this.log)
+                        .getKlines(ExchangeInfo.klines(this.symbol, "", "", period));
+                buffer.backfill(history.getList());
+                this.backfills.put(period, now);
+            } catch (Exception e) {
+                this.log.error("{} {} backfill klines {} failed", name, this.symbol, period, e);
+                this.backfills.put(period, System.currentTimeMillis());
+            }
+        });
+    }
+
     // ===================== depth =====================
 
     /**
@@ -308,4 +450,33 @@ public abstract class BaseWebSocketClient {
      */
     public abstract void noOrders();
 
+    // ===================== replay =====================
+
+    /**
+     * 只注册消费函数，不向交易所订阅，回放记录的推送时使用
+     */
+    void listenTicker(Consumer<Ticker> onTicker) {
+        this.onTicker = onTicker;
+    }
+
+    void listenKlines(Consumer<Klines> onKlines, Period period) {
+        this.onKlines.put(period, onKlines);
+    }
+
+    void listenDepth(Consumer<Depth> onDepth) {
+        this.onDepth = onDepth;
+    }
+
+    void listenTrades(Consumer<Trades> onTrades) {
+        this.onTrades = onTrades;
+    }
+
+    void listenAccount(Consumer<Account> onAccount) {
+        this.onAccount = onAccount;
+    }
+
+    void listenOrders(Consumer<Orders> onOrders) {
+        this.onOrders = onOrders;
+    }
+
 }
@@ -0,0 +1,343 @@
+package cqt.goai.exchange.web.socket;
+
+import cqt.goai.exchange.util.OrderBook;
+import cqt.goai.model.market.Depth;
+import cqt.goai.model.market.Row;
+import org.slf4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 增量深度同步，维护本地盘口的状态
+ *
+ * STALE   -> 收到增量时请求全量快照，进入 SYNCING
+ * SYNCING -> 快照返回之前的增量按顺序缓存，快照返回后依次合并，进入 LIVE
+ * LIVE    -> 增量必须接上上一条，否则为丢数据，立即重新请求快照
+ *
+ * 序号规则: 每条增量有 prev (基于哪个序号) 和 seq (合并后的序号)
+ * 快照之后丢弃 seq <= 快照序号 的增量，第一条需要 prev <= 快照序号，之后每条 prev 必须等于上一条的 seq
+ * 如 币安 prev = U - 1, seq = u; 火币 prev = prevSeqNum, seq = seqNum
+ * 没有序号的交易所传 NONE，SYNCING 时的增量属于旧的订阅，直接丢弃
+ *
+ * 每次合并后检查盘口是否交叉 (买一 >= 卖一)，以及交易所提供的校验，不通过同样重新请求快照，
+ * 只有 LIVE 且校验通过时才返回true，调用方据此发布，不会推送过期或者交叉的盘口
+ *
+ * 快照请求可以是同步的 (请求函数内直接调用 snapshot)，也可以是异步的 (之后收到快照时调用 snapshot)
+ *
+ * 非线程安全，除 stale() 外都在推送连接的分发线程(或持锁)内调用
+ *
+ * @author GOAi
+ */
+public class BookSync {
+
+    /**
+     * 没有序号
+     */
+    public static final long NONE = -1;
+
+    /**
+     * 两次请求快照最小间隔，防止持续丢数据时频繁请求
+     */
+    private static final long INTERVAL = 1000;
+
+    /**
+     * 请求快照后超过该时间没有返回，重新请求
+     */
+    private static final long TIMEOUT = 5000;
+
+    /**
+     * 状态
+     */
+    public enum State {
+        // 需要全量
+        STALE,
+        // 等待快照
+        SYNCING,
+        // 正常同步
+        LIVE
+    }
+
+    /**
+     * 币对，日志用
+     */
+    private final String symbol;
+
+    /**
+     * 本地盘口
+     */
+    private final OrderBook book;
+
+    /**
+     * 等待快照时最多缓存的增量
+     */
+    private final int capacity;
+
+    /**
+     * 请求快照
+     */
+    private final Consumer<BookSync> request;
+
+    private final Logger log;
+
+    /**
+     * 等待快照期间的增量
+     */
+    private final ArrayDeque<Delta> buffer = new ArrayDeque<>();
+
+    private State state = State.STALE;
+
+    /**
+     * 其他线程标记需要重新同步，如断线、分发队列丢帧
+     */
+    private volatile boolean stale = false;
+
+    /**
+     * 本地盘口最后合并的序号
+     */
+    private long seq = NONE;
+
+    /**
+     * 已经拿到快照，等待第一条能接上的增量
+     */
+    private boolean first = false;
+
+    /**
+     * 最后一次请求快照的时间
+     */
+    private long requested = 0;
+
+    /**
+     * 请求快照次数
+     */
+    private volatile long resyncs = 0;
+
+    /**
+     * @param symbol 币对
+     * @param max 每边最多保留档位数
+     * @param capacity 等待快照时最多缓存的增量
+     * @param request 请求快照，快照返回后调用 snapshot
+     * @param log 日志
+     */
+    public BookSync(String symbol, int max, int capacity, Consumer<BookSync> request, Logger log) {
+        this.symbol = symbol;
+        this.book = new OrderBook(max);
+        this.capacity = capacity;
+        this.request = request;
+        this.log = log;
+    }
+
+    /**
+     * 标记需要重新同步，下一条增量时请求快照，可以在任意线程调用
+     */
+    public void stale() {
+        this.stale = true;
+    }
+
+    /**
+     * 收到全量快照，合并缓存的增量
+     * @param seq 快照序号，没有为NONE
+     * @param asks 卖盘
+     * @param bids 买盘
+     * @return 盘口是否可以发布
+     */
+    public boolean snapshot(long seq, List<Row> asks, List<Row> bids) {
+        this.stale = false;
+        this.book.partial(asks, bids);
+        this.seq = seq;
+        this.first = true;
+        this.state = State.LIVE;
+        while (!this.buffer.isEmpty()) {
+            Delta delta = this.buffer.poll();
+            if (!this.apply(delta.prev, delta.seq, delta.asks, delta.bids)) {
+                // 快照之后仍然接不上，等下一条增量重新请求
+                this.buffer.clear();
+                this.state = State.STALE;
+                return false;
+            }
+        }
+        return this.valid(null);
+    }
+
+    /**
+     * 收到增量
+     * @param prev 基于哪个序号，没有为NONE
+     * @param seq 合并后的序号，没有为NONE
+     * @param asks 卖盘变化，可以为null
+     * @param bids 买盘变化，可以为null
+     * @return 盘口是否可以发布
+     */
+    public boolean delta(long prev, long seq, List<Row> asks, List<Row> bids) {
+        return this.delta(prev, seq, asks, bids, null);
+    }
+
+    /**
+     * 收到增量
+     * @param prev 基于哪个序号，没有为NONE
+     * @param seq 合并后的序号，没有为NONE
+     * @param asks 卖盘变化，可以为null
+     * @param bids 买盘变化，可以为null
+     * @param check 合并后交易所提供的校验，如 OKEx 的 checksum，可以为null
+     * @return 盘口是否可以发布
+     */
+    public boolean delta(long prev, long seq, List<Row> asks, List<Row> bids, Predicate<OrderBook> check) {
+        if (this.stale || State.STALE == this.state
+                || (State.SYNCING == this.state && this.requested + TIMEOUT < System.currentTimeMillis())) {
+            if (!this.request()) {
+                return false;
+            }
+        }
+        if (State.SYNCING == this.state) {
+            this.buffer(prev, seq, asks, bids);
+            return false;
+        }
+        if (!this.apply(prev, seq, asks, bids)) {
+            // 丢了数据，立即重新请求，这一条缓存起来等快照
+            if (!this.request()) {
+                return false;
+            }
+            if (State.SYNCING == this.state) {
+                this.buffer(prev, seq, asks, bids);
+                return false;
+            }
+            // 同步请求已经拿到新快照
+            if (!this.apply(prev, seq, asks, bids)) {
+                this.state = State.STALE;
+                return false;
+            }
+        }
+        return this.valid(check);
+    }
+
+    /**
+     * 按序号合并一条增量
+     * @return 是否接得上，快照之前的增量直接忽略，也算接得上
+     */
+    private boolean apply(long prev, long seq, List<Row> asks, List<Row> bids) {
+        if (NONE != seq && NONE != this.seq) {
+            if (seq <= this.seq) {
+                return true;
+            }
+            if (this.first ? this.seq < prev : this.seq != prev) {
+                this.log.warn("{} depth gap, last: {} prev: {} seq: {}", this.symbol, this.seq, prev, seq);
+                return false;
+            }
+        }
+        this.first = false;
+        this.seq = seq;
+        this.book.update(asks, bids);
+        return true;
+    }
+
+    /**
+     * 检查盘口，不通过则重新请求快照
+     */
+    private boolean valid(Predicate<OrderBook> check) {
+        if (State.LIVE != this.state) {
+            return false;
+        }
+        Row ask = this.book.bestAsk();
+        Row bid = this.book.bestBid();
+        if (null != ask && null != bid && ask.getPrice().compareTo(bid.getPrice()) <= 0) {
+            this.log.warn("{} crossed book, ask: {} bid: {}", this.symbol, ask.getPrice(), bid.getPrice());
+            this.request();
+            return false;
+        }
+        if (null != check && !check.test(this.book)) {
+            this.log.warn("{} depth check failed", this.symbol);
+            this.request();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 请求快照
+     * @return 是否请求，间隔太短不请求
+     */
+    private boolean request() {
+        long now = System.currentTimeMillis();
+        if (now < this.requested + INTERVAL) {
+            this.state = State.STALE;
+            return false;
+        }
+        this.requested = now;
+        this.resyncs++;
+        this.stale = false;
+        this.state = State.SYNCING;
+        this.buffer.clear();
+        this.book.clear();
+        this.seq = NONE;
+        this.request.accept(this);
+        return true;
+    }
+
+    private void buffer(long prev, long seq, List<Row> asks, List<Row> bids) {
+        if (NONE == seq) {
+            // 没有序号，不知道是否在快照之后
+            return;
+        }
+        if (this.capacity <= this.buffer.size()) {
+            this.log.warn("{} depth snapshot timeout, buffered: {}", this.symbol, this.buffer.size());
+            this.buffer.clear();
+            this.state = State.STALE;
+            return;
+        }
+        this.buffer.add(new Delta(prev, seq, asks, bids));
+    }
+
+    /**
+     * 当前盘口
+     * @param time 时间戳
+     * @return Depth
+     */
+    public Depth depth(Long time) {
+        return this.book.snapshot(time);
+    }
+
+    public State getState() {
+        return this.state;
+    }
+
+    public long getSeq() {
+        return this.seq;
+    }
+
+    /**
+     * 请求快照次数
+     */
+    public long getResyncs() {
+        return this.resyncs;
+    }
+
+    @Override
+    public String toString() {
+        return "BookSync{" +
+                "symbol=" + this.symbol +
+                ", state=" + this.state +
+                ", seq=" + this.seq +
+                ", buffered=" + this.buffer.size() +
+                ", resyncs=" + this.resyncs +
+                '}';
+    }
+
+    /**
+     * 缓存的增量
+     */
+    private static class Delta {
+        private final long prev;
+        private final long seq;
+        private final List<Row> asks;
+        private final List<Row> bids;
+
+        private Delta(long prev, long seq, List<Row> asks, List<Row> bids) {
+            this.prev = prev;
+            this.seq = seq;
+            this.asks = asks;
+            this.bids = bids;
+        }
+    }
+
+}
@@ -0,0 +1,306 @@
+package cqt.goai.exchange.web.socket;
+
+import cqt.goai.exchange.ExchangeException;
+import cqt.goai.exchange.ExchangeName;
+import cqt.goai.exchange.ExchangeUtil;
+import cqt.goai.exchange.util.FrameDispatcher;
+import cqt.goai.exchange.util.OkhttpWebSocket;
+import cqt.goai.exchange.util.RateLimit;
+import cqt.goai.model.enums.Period;
+import cqt.goai.model.market.Kline;
+import cqt.goai.model.market.Klines;
+import dive.http.common.MimeRequest;
+import okio.ByteString;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 只有公共行情的币对连接
+ *
+ * 第一次订阅时才建立连接，记录全部订阅，断线重连后重新订阅
+ * 推送在分发线程解码处理，分发队列丢帧或者断线时调用 resync()，由子类重新同步增量深度
+ *
+ * @author GOAi
+ */
+public abstract class MarketWebSocketClient extends BaseWebSocketClient {
+
+    /**
+     * 盘口保留最大档数
+     */
+    protected static final int MAX = 200;
+
+    /**
+     * 交易所
+     */
+    protected final ExchangeName name;
+
+    /**
+     * 连接url
+     */
+    protected final String url;
+
+    /**
+     * 收到消息转码方式
+     */
+    private final Function<ByteString, ? extends CharSequence> decode;
+
+    /**
+     * 推送回调，第一次订阅时建立
+     */
+    private OkhttpWebSocket client;
+
+    /**
+     * 当前全部订阅，重连后重新订阅
+     */
+    private final Set<String> channels = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 每个周期的k线
+     */
+
+    /**
+     * 是否已经连接
+     */
+    private volatile boolean connected = false;
+
+    /**
+     * 标记是否主动关闭
+     */
+    private volatile boolean dead = false;
+
+    /**
+     * 回放时代替http请求，依次返回记录的快照
+     */
+    private volatile Supplier<String> snapshots;
+
+    protected MarketWebSocketClient(ExchangeName name, String url, String symbol,
+                                    Function<ByteString, ? extends CharSequence> decode, RateLimit limit, Logger log) {
+        super(symbol, null, null, limit, log);
+        this.name = name;
+        this.url = url;
+        this.decode = decode;
+    }
+
+    /**
+     * 订阅或取消订阅的命令
+     * @param subscribe 是否订阅
+     * @param channels 订阅内容
+     * @return 需要发送的命令
+     */
+    protected abstract List<String> commands(boolean subscribe, List<String> channels);
+
+    /**
+     * 增量深度已经不连续，需要重新拿全量
+     * 可能在读线程调用，子类只做标记，由分发线程处理
+     */
+    protected void resync() {}
+
+    /**
+     * 连接后，重新订阅之前需要做的
+     */
+    protected void opened() {}
+
+    /**
+     * 定时发送的保活命令，null为不需要
+     */
+    protected String alive() {
+        return null;
+    }
+
+    /**
+     * 建立连接
+     */
+    private synchronized OkhttpWebSocket connection() {
+        if (null == this.client) {
+            this.client = new OkhttpWebSocket(this.url, this.decode,
+                    this::open, this::receive, this::closed, this.log,
+                    FrameDispatcher.DEFAULT_CAPACITY, FrameDispatcher.MARKET_OVERFLOW, this::resync);
+            super.keepAlive();
+        }
+        return this.client;
+    }
+
+    @Override
+    public void open() {
+        this.connected = true;
+        this.opened();
+        // 重新订阅
+        this.send(this.commands(true, new ArrayList<>(this.channels)));
+    }
+
+    @Override
+    public void closed() {
+        this.connected = false;
+        this.resync();
+        if (!this.dead) {
+            this.client.reconnect();
+        }
+    }
+
+    @Override
+    protected void receive(CharSequence message) {
+        super.limit.update();
+        super.receive(message);
+    }
+
+    @Override
+    protected void send(String message) {
+        super.commandLog(message, this.url);
+        this.reply(message);
+    }
+
+    /**
+     * 发送不记录日志的消息，如回复心跳
+     * 回放时没有连接，直接忽略
+     * @param message 消息
+     */
+    protected void reply(String message) {
+        OkhttpWebSocket client = this.client;
+        if (null != client) {
+            client.send(message);
+        }
+    }
+
+    private void send(List<String> messages) {
+        if (this.connected) {
+            messages.forEach(this::send);
+        }
+    }
+
+    @Override
+    public void ping() {
+        String alive = this.alive();
+        if (this.connected && null != alive && super.limit.timeout(true)) {
+            this.reply(alive);
+        }
+    }
+
+    /**
+     * 订阅并记录
+     * @param channel 订阅内容
+     */
+    protected void subscribe(String channel) {
+        this.channels.add(channel);
+        this.connection();
+        this.send(this.commands(true, Collections.singletonList(channel)));
+    }
+
+    /**
+     * 取消订阅
+     * @param channel 订阅内容
+     */
+    protected void unsubscribe(String channel) {
+        this.channels.remove(channel);
+        this.send(this.commands(false, Collections.singletonList(channel)));
+    }
+
+    /**
+     * 是否订阅中
+     * @param channel 订阅内容
+     */
+    protected boolean subscribed(String channel) {
+        return this.channels.contains(channel);
+    }
+
+    @Override
+    public void close(int code, String reason) {
+        this.dead = true;
+        super.noPing();
+        if (null != this.client) {
+            this.client.close(code, reason);
+        }
+    }
+
+    /**
+     * 分发队列情况，未连接返回null
+     */
+    public FrameDispatcher getDispatcher() {
+        return null == this.client ? null : this.client.getDispatcher();
+    }
+
+    /**
+     * 通过http获取全量快照
+     * 开启原始帧记录时结果作为 SNAPSHOT 帧一起记录，回放时按顺序取出记录的结果，不请求http
+     * 请求失败记录为空，回放时同样失败，后面的快照顺序不乱
+     * @param url 快照地址
+     * @return 结果
+     */
+    protected String fetchSnapshot(String url) {
+        Supplier<String> snapshots = this.snapshots;
+        if (null != snapshots) {
+            return snapshots.get();
+        }
+        String result = null;
+        try {
+            result = new MimeRequest.Builder()
+                    .url(url)
+                    .build()
+                    .execute(ExchangeUtil.OKHTTP);
+            return result;
+        } finally {
+            OkhttpWebSocket client = this.client;
+            if (null != client) {
+                client.recordSnapshot(null == result ? "" : result);
+            }
+        }
+    }
+
+    /**
+     * 回放时设置快照来源
+     */
+    void setSnapshots(Supplier<String> snapshots) {
+        this.snapshots = snapshots;
+    }
+
+    /**
+     * 收到消息转码方式，回放时使用
+     */
+    Function<ByteString, ? extends CharSequence> getDecode() {
+        return this.decode;
+    }
+
+    /**
+     * 连接情况，连接时长、重连次数、消息频率，未连接返回null
+     */
+    public OkhttpWebSocket getClient() {
+        return this.client;
+    }
+
+    /**
+     * 构造Klines，没有历史k线时在后台通过http补全
+     * @param kline 最新的k线
+     * @param period 周期
+     * @return 最多200根k线的视图
+     */
+    protected Klines onKline(Kline kline, Period period) {
+        return super.onKline(kline, period, this.name);
+    }
+
+    @Override
+    protected void askAccount() {
+        throw new ExchangeException(this.name + " " + super.symbol + " onAccount is not supported.");
+    }
+
+    @Override
+    public void noAccount() {
+        throw new ExchangeException(this.name + " " + super.symbol + " noAccount is not supported.");
+    }
+
+    @Override
+    protected void askOrders() {
+        throw new ExchangeException(this.name + " " + super.symbol + " onOrders is not supported.");
+    }
+
+    @Override
+    public void noOrders() {
+        throw new ExchangeException(this.name + " " + super.symbol + " noOrders is not supported.");
+    }
+
+}
@@ -0,0 +1,203 @@
+package cqt.goai.exchange.web.socket;
+
+import cqt.goai.exchange.Action;
+import cqt.goai.exchange.ExchangeInfo;
+import cqt.goai.exchange.ExchangeName;
+import cqt.goai.model.enums.Period;
+import cqt.goai.model.market.Depth;
+import cqt.goai.model.market.Klines;
+import cqt.goai.model.market.Ticker;
+import cqt.goai.model.market.Trades;
+import org.slf4j.Logger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 只有公共行情推送的交易所
+ *
+ * 同一交易所同一币对共用一个连接，同一币对同一类型的多个订阅只向交易所订阅一次，
+ * 收到推送后依次交给每个订阅的消费函数，最后一个订阅取消时才向交易所取消订阅
+ *
+ * 订阅记录按交易所分开，同一进程内所有实例共用
+ *
+ * @author GOAi
+ */
+public abstract class MarketWebSocketExchange extends WebSocketExchange {
+
+    /**
+     * 订阅id和每个订阅基本信息  id -> info
+     */
+    private static final ConcurrentHashMap<String, WebSocketInfo> CONSUMERS
+            = new ConcurrentHashMap<>();
+
+    /**
+     * 每个交易所的订阅 name -> 订阅
+     */
+    private static final ConcurrentHashMap<ExchangeName, Market> MARKETS
+            = new ConcurrentHashMap<>();
+
+    /**
+     * 本交易所的订阅
+     */
+    private final Market market;
+
+    public MarketWebSocketExchange(ExchangeName name, Logger log) {
+        super(name, log);
+        this.market = MarketWebSocketExchange.MARKETS.computeIfAbsent(name, n -> new Market());
+    }
+
+    /**
+     * 新建币对连接
+     * @param symbol 币对
+     * @return 连接
+     */
+    protected abstract BaseWebSocketClient client(String symbol);
+
+    /**
+     * 统一添加订阅
+     * @param subscriptions 该类型所有币对的订阅 symbol -> info
+     * @param onInfo 订阅信息
+     * @param ask 该币对第一个订阅时，向交易所订阅
+     */
+    private <T> boolean on(Map<String, ConcurrentLinkedQueue<WebSocketInfo<T>>> subscriptions, WebSocketInfo<T> onInfo,
+                           BiConsumer<BaseWebSocketClient, Consumer<T>> ask) {
+        String symbol = onInfo.getSymbol();
+        ConcurrentLinkedQueue<WebSocketInfo<T>> list = subscriptions
+                .computeIfAbsent(symbol, k -> new ConcurrentLinkedQueue<>());
+        boolean first;
+        synchronized (list) {
+            first = list.isEmpty();
+            list.add(onInfo);
+        }
+        // 将这个订阅添加到总记录里
+        MarketWebSocketExchange.CONSUMERS.put(onInfo.getId(), onInfo);
+        if (first) {
+            // 该币对第一个订阅，取出或新建这个币对的连接并订阅
+            BaseWebSocketClient client = this.market.clients.computeIfAbsent(symbol, this::client);
+            ask.accept(client, t -> list.forEach(i -> i.getConsumer().accept(t)));
+        }
+        return true;
+    }
+
+    /**
+     * 统一取消订阅
+     * @param pushId 订阅id
+     * @param subscriptions 订阅所在的记录 symbol -> info
+     * @param no 该币对最后一个订阅取消时，向交易所取消订阅
+     */
+    private <T> void no(String pushId, Function<WebSocketInfo, Map<String, ConcurrentLinkedQueue<WebSocketInfo<T>>>> subscriptions,
+                        Consumer<BaseWebSocketClient> no) {
+        WebSocketInfo info = MarketWebSocketExchange.CONSUMERS.remove(pushId);
+        if (null == info) {
+            return;
+        }
+        String symbol = info.getSymbol();
+        Map<String, ConcurrentLinkedQueue<WebSocketInfo<T>>> map = subscriptions.apply(info);
+        ConcurrentLinkedQueue<WebSocketInfo<T>> list = null == map ? null : map.get(symbol);
+        if (null == list) {
+            return;
+        }
+        boolean last;
+        synchronized (list) {
+            last = list.remove(info) && list.isEmpty();
+        }
+        if (last) {
+            // 这是最后一个订阅，需要取消订阅
+            BaseWebSocketClient client = this.market.clients.get(symbol);
+            if (null != client) {
+                no.accept(client);
+            }
+        }
+    }
+
+    @Override
+    public boolean onTicker(ExchangeInfo info, Consumer<Ticker> onTicker) {
+        return this.on(this.market.tickers, new WebSocketInfo<>(info.getPushId(), Action.ON_TICKER,
+                info.getSymbol(), info.getAccess(), onTicker), BaseWebSocketClient::onTicker);
+    }
+
+    @Override
+    public void noTicker(String pushId) {
+        this.no(pushId, i -> this.market.tickers, BaseWebSocketClient::noTicker);
+    }
+
+    @Override
+    public boolean onKlines(ExchangeInfo info, Consumer<Klines> onKlines) {
+        Period period = info.getPeriod();
+        return this.on(this.market.klines(period), new WebSocketInfo<>(info.getPushId(), Action.ON_KLINES,
+                info.getSymbol(), info.getAccess(), onKlines, period), (c, consumer) -> c.onKlines(consumer, period));
+    }
+
+    @Override
+    public void noKlines(Period period, String pushId) {
+        this.no(pushId, i -> this.market.klines(i.getPeriod()), c -> c.noKlines(period));
+    }
+
+    @Override
+    public boolean onDepth(ExchangeInfo info, Consumer<Depth> onDepth) {
+        return this.on(this.market.depth, new WebSocketInfo<>(info.getPushId(), Action.ON_DEPTH,
+                info.getSymbol(), info.getAccess(), onDepth), BaseWebSocketClient::onDepth);
+    }
+
+    @Override
+    public void noDepth(String pushId) {
+        this.no(pushId, i -> this.market.depth, BaseWebSocketClient::noDepth);
+    }
+
+    @Override
+    public boolean onTrades(ExchangeInfo info, Consumer<Trades> onTrades) {
+        return this.on(this.market.trades, new WebSocketInfo<>(info.getPushId(), Action.ON_TRADES,
+                info.getSymbol(), info.getAccess(), onTrades), BaseWebSocketClient::onTrades);
+    }
+
+    @Override
+    public void noTrades(String pushId) {
+        this.no(pushId, i -> this.market.trades, BaseWebSocketClient::noTrades);
+    }
+
+    /**
+     * 一个交易所的订阅记录
+     */
+    private static class Market {
+
+        /**
+         * 同一币对的连接 symbol -> client
+         */
+        private final ConcurrentHashMap<String, BaseWebSocketClient> clients = new ConcurrentHashMap<>();
+
+        /**
+         * ticker订阅信息 symbol -> info , Ticker来了，推送Ticker的地方
+         */
+        private final ConcurrentHashMap<String, ConcurrentLinkedQueue<WebSocketInfo<Ticker>>> tickers
+                = new ConcurrentHashMap<>();
+
+        /**
+         * klines订阅信息 period -> (symbol -> info)
+         */
+        private final ConcurrentHashMap<Period,
+                ConcurrentHashMap<String, ConcurrentLinkedQueue<WebSocketInfo<Klines>>>> klines
+                = new ConcurrentHashMap<>();
+
+        /**
+         * depth订阅信息 symbol -> info , Depth来了，推送Depth的地方
+         */
+        private final ConcurrentHashMap<String, ConcurrentLinkedQueue<WebSocketInfo<Depth>>> depth
+                = new ConcurrentHashMap<>();
+
+        /**
+         * trades订阅信息 symbol -> info , Trades来了，推送Trades的地方
+         */
+        private final ConcurrentHashMap<String, ConcurrentLinkedQueue<WebSocketInfo<Trades>>> trades
+                = new ConcurrentHashMap<>();
+
+        private ConcurrentHashMap<String, ConcurrentLinkedQueue<WebSocketInfo<Klines>>> klines(Period period) {
+            return this.klines.computeIfAbsent(period, p -> new ConcurrentHashMap<>(16));
+        }
+    }
+
+}
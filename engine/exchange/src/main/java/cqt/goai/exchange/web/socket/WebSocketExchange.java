@@ -11,60 +11,19 @@ import cqt.goai.model.market.Ticker;
 import cqt.goai.model.market.Trades;
 import cqt.goai.model.trade.Account;
 import cqt.goai.model.trade.Orders;
-import dive.common.math.RandomUtil;
 import org.slf4j.Logger;
 
-import java.util.concurrent.*;
 import java.util.function.Consumer;
 
 /**
  * WebSocket请求，每个交易所的WebSocket请求方式都要继承该类
+ * 保活由每个连接在 WheelTimer 上自行定时，交易所不再统一ping
  * @author GOAi
  */
 public class WebSocketExchange extends BaseExchange {
 
-    /**
-     * 每个连接加入ping的id，取消时用
-     */
-    private String id;
-
-    /**
-     * 需要ping的连接
-     */
-    private static final ConcurrentHashMap<String, WebSocketExchange> EXCHANGES = new ConcurrentHashMap<>();
-
-    static {
-        ScheduledExecutorService timer = new ScheduledThreadPoolExecutor(1, new ThreadPoolExecutor.DiscardPolicy());
-        timer.scheduleAtFixedRate(() -> EXCHANGES.values().stream().parallel().forEach(WebSocketExchange::ping), 7, 7, TimeUnit.SECONDS);
-    }
-
     public WebSocketExchange(ExchangeName name, Logger log) {
         super(name, log);
-        this.ping(this);
-    }
-
-    /**
-     * 定时某些交易所需要定时向服务器发送ping
-     */
-    protected void ping() {}
-
-    /**
-     * 加入ping
-     * @param e ping对象
-     */
-    private void ping(WebSocketExchange e) {
-        if (null != this.id && EXCHANGES.containsKey(this.id)) {
-            return;
-        }
-        this.id = RandomUtil.token();
-        EXCHANGES.put(this.id, e);
-    }
-
-    /**
-     * 取消ping
-     */
-    protected void noPing() {
-        EXCHANGES.remove(this.id);
     }
 
     // =============== ticker ===============
@@ -0,0 +1,286 @@
+package cqt.goai.exchange.web.socket;
+
+import cqt.goai.exchange.ExchangeException;
+import cqt.goai.exchange.ExchangeManager;
+import cqt.goai.exchange.ExchangeName;
+import cqt.goai.exchange.util.FrameInflater;
+import cqt.goai.exchange.util.FrameRecorder;
+import cqt.goai.exchange.web.socket.okexv3.Okexv3WebSocketClient;
+import cqt.goai.model.enums.Period;
+import cqt.goai.model.market.Depth;
+import cqt.goai.model.market.Klines;
+import cqt.goai.model.market.Ticker;
+import cqt.goai.model.market.Trades;
+import cqt.goai.model.trade.Account;
+import cqt.goai.model.trade.Orders;
+import okio.ByteString;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 回放 FrameRecorder 记录的原始帧
+ *
+ * 在调用线程内依次解码，交给连接的 transform 解析，再推送给注册的消费函数，不需要网络，
+ * 可以离线复现行情，测量解压、解析、盘口维护和策略回调的吞吐
+ *
+ * speed 为1时按记录的时间间隔回放，为2时两倍速，为0时不等待，尽快回放
+ *
+ * 连接不会向交易所订阅，用 onTicker onDepth 等只注册消费函数
+ * 记录时通过http获取的深度快照(如币安)记录为 SNAPSHOT 帧，回放时连接请求快照直接按顺序取出，不请求http
+ * 第一次推送k线时补全历史k线仍然走http，在后台线程进行，不阻塞回放
+ *
+ * @author GOAi
+ */
+public class WebSocketReplayer {
+
+    /**
+     * 剩余等待时间小于它时自旋，大于它时休眠
+     */
+    private static final long SPIN = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * 记录的各段
+     */
+    private final List<Path> segments;
+
+    /**
+     * 解析推送的连接
+     */
+    private final BaseWebSocketClient client;
+
+    /**
+     * 二进制帧转码方式，与记录时的连接一致
+     */
+    private final Function<ByteString, ? extends CharSequence> decode;
+
+    /**
+     * 回放速度，0为尽快
+     */
+    private final double speed;
+
+    private final Logger log;
+
+    /**
+     * 第一帧接收时间
+     */
+    private long first = 0;
+
+    /**
+     * 开始回放时间
+     */
+    private long start = 0;
+
+    private long frames = 0;
+    private long snapshots = 0;
+    private long bytes = 0;
+    private long errors = 0;
+    private long nanos = 0;
+
+    /**
+     * @param segments 记录的各段，按顺序
+     * @param client 解析推送的连接
+     * @param decode 二进制帧转码方式
+     * @param speed 回放速度，0为尽快
+     * @param log 日志
+     */
+    public WebSocketReplayer(List<Path> segments, BaseWebSocketClient client,
+                             Function<ByteString, ? extends CharSequence> decode, double speed, Logger log) {
+        if (speed < 0) {
+            throw new ExchangeException("replay speed must not be negative: " + speed);
+        }
+        this.segments = segments;
+        this.client = client;
+        this.decode = decode;
+        this.speed = speed;
+        this.log = log;
+    }
+
+    /**
+     * 新建一个不连接的币对连接来解析，支持只有公共行情的交易所和OKExV3
+     * @param name 交易所
+     * @param symbol 币对
+     * @param segments 记录的各段
+     * @param speed 回放速度，0为尽快
+     * @param log 日志
+     * @return 回放
+     */
+    public static WebSocketReplayer of(ExchangeName name, String symbol, List<Path> segments,
+                                       double speed, Logger log) {
+        if (ExchangeName.OKEXV3 == name) {
+            // 公共行情记录的是多个币对共用的连接，按 instrument_id 只取该币对
+            return new WebSocketReplayer(segments, Okexv3WebSocketClient.offline(symbol, log),
+                    new FrameInflater()::decode, speed, log);
+        }
+        WebSocketExchange exchange = ExchangeManager.getWebSocketExchange(name, log);
+        if (!(exchange instanceof MarketWebSocketExchange)) {
+            throw new ExchangeException(name + " replay is not supported.");
+        }
+        MarketWebSocketClient client = (MarketWebSocketClient) ((MarketWebSocketExchange) exchange).client(symbol);
+        return new WebSocketReplayer(segments, client, client.getDecode(), speed, log);
+    }
+
+    // =============== 消费函数 ===============
+
+    public WebSocketReplayer onTicker(Consumer<Ticker> onTicker) {
+        this.client.listenTicker(onTicker);
+        return this;
+    }
+
+    public WebSocketReplayer onKlines(Consumer<Klines> onKlines, Period period) {
+        this.client.listenKlines(onKlines, period);
+        return this;
+    }
+
+    public WebSocketReplayer onDepth(Consumer<Depth> onDepth) {
+        this.client.listenDepth(onDepth);
+        return this;
+    }
+
+    public WebSocketReplayer onTrades(Consumer<Trades> onTrades) {
+        this.client.listenTrades(onTrades);
+        return this;
+    }
+
+    public WebSocketReplayer onAccount(Consumer<Account> onAccount) {
+        this.client.listenAccount(onAccount);
+        return this;
+    }
+
+    public WebSocketReplayer onOrders(Consumer<Orders> onOrders) {
+        this.client.listenOrders(onOrders);
+        return this;
+    }
+
+    /**
+     * 回放全部帧，在调用线程执行
+     * @return 回放帧数
+     */
+    public long replay() throws IOException {
+        // 快照在获取到时才记录，可能排在请求快照的增量之后，先全部取出，连接请求时按顺序提供
+        Queue<String> snapshots = new ArrayDeque<>();
+        for (Path segment : this.segments) {
+            FrameRecorder.read(segment, (type, nanos, frame) -> {
+                if (FrameRecorder.SNAPSHOT == type) {
+                    snapshots.add(StandardCharsets.UTF_8.decode(frame).toString());
+                }
+            });
+        }
+        this.snapshots = snapshots.size();
+        if (this.client instanceof MarketWebSocketClient) {
+            ((MarketWebSocketClient) this.client).setSnapshots(snapshots::poll);
+        }
+
+        this.first = 0;
+        this.start = System.nanoTime();
+        this.frames = 0;
+        this.bytes = 0;
+        this.errors = 0;
+        for (Path segment : this.segments) {
+            FrameRecorder.read(segment, this::frame);
+        }
+        this.nanos = System.nanoTime() - this.start;
+        this.log.info("replay finished: {}", this);
+        return this.frames;
+    }
+
+    private void frame(byte type, long nanos, ByteBuffer frame) {
+        if (FrameRecorder.SNAPSHOT == type) {
+            return;
+        }
+        if (0 == this.frames) {
+            this.first = nanos;
+        } else if (0 < this.speed) {
+            this.await(this.start + (long) ((nanos - this.first) / this.speed));
+        }
+        this.frames++;
+        this.bytes += frame.remaining();
+        try {
+            CharSequence message = FrameRecorder.TEXT == type
+                    ? StandardCharsets.UTF_8.decode(frame)
+                    : this.decode.apply(ByteString.of(frame));
+            this.client.receive(message);
+        } catch (Exception e) {
+            this.errors++;
+            this.log.error("replay frame {} failed: {}", this.frames, e.getMessage());
+        }
+    }
+
+    /**
+     * 等到该帧的回放时间
+     */
+    private void await(long deadline) {
+        long wait;
+        while (0 < (wait = deadline - System.nanoTime())) {
+            if (SPIN < wait) {
+                LockSupport.parkNanos(wait - SPIN);
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    public long getFrames() {
+        return this.frames;
+    }
+
+    /**
+     * 记录的http快照数
+     */
+    public long getSnapshots() {
+        return this.snapshots;
+    }
+
+    /**
+     * 原始帧的总字节数，压缩的为压缩后大小
+     */
+    public long getBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * 解码或解析失败的帧数
+     */
+    public long getErrors() {
+        return this.errors;
+    }
+
+    /**
+     * 回放耗时纳秒
+     */
+    public long getNanos() {
+        return this.nanos;
+    }
+
+    /**
+     * 每秒帧数
+     */
+    public double getRate() {
+        return 0 == this.nanos ? 0 : this.frames * 1e9 / this.nanos;
+    }
+
+    @Override
+    public String toString() {
+        return "WebSocketReplayer{" +
+                "segments=" + this.segments.size() +
+                ", speed=" + this.speed +
+                ", frames=" + this.frames +
+                ", snapshots=" + this.snapshots +
+                ", bytes=" + this.bytes +
+                ", errors=" + this.errors +
+                ", millis=" + TimeUnit.NANOSECONDS.toMillis(this.nanos) +
+                ", rate=" + String.format("%.0f", this.getRate()) +
+                '}';
+    }
+
+}
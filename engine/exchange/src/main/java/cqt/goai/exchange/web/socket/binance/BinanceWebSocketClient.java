@@ -0,0 +1,291 @@
+package cqt.goai.exchange.web.socket.binance;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import cqt.goai.exchange.ExchangeError;
+import cqt.goai.exchange.ExchangeException;
+import cqt.goai.exchange.ExchangeName;
+import cqt.goai.exchange.util.CommonUtil;
+import cqt.goai.exchange.util.FrameInflater;
+import cqt.goai.exchange.util.RateLimit;
+import cqt.goai.exchange.web.socket.BookSync;
+import cqt.goai.exchange.web.socket.MarketWebSocketClient;
+import cqt.goai.model.enums.Period;
+import cqt.goai.model.enums.Side;
+import cqt.goai.model.market.*;
+import org.slf4j.Logger;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static dive.common.util.Util.exist;
+import static dive.common.util.Util.useful;
+
+/**
+ * 币安的websocket连接，每个币对一个连接
+ *
+ * 深度使用增量推送 depth@100ms，由 BookSync 维护本地盘口，
+ * 快照通过http同步获取 lastUpdateId，增量 prev = U - 1, seq = u，
+ * 记录原始帧时快照一起记录，回放时不请求http
+ *
+ * @author GOAi
+ */
+public class BinanceWebSocketClient extends MarketWebSocketClient {
+
+    private static final String URL = "wss://stream.binance.com:9443/ws";
+
+    private static final String DEPTH = "https://api.binance.com/api/v1/depth?limit=1000&symbol=";
+
+    /**
+     * 同步获取快照，不需要缓存增量
+     */
+    private static final int BUFFER = 0;
+
+    /**
+     * 订阅命令id
+     */
+    private static final AtomicLong ID = new AtomicLong();
+
+    /**
+     * 保活命令的id，订阅命令id从1开始
+     */
+    private static final long ALIVE = 0;
+
+    /**
+     * 小写币对 btcusdt
+     */
+    private final String stream;
+
+    /**
+     * 本地维护的盘口
+     */
+    private final BookSync sync;
+
+    BinanceWebSocketClient(String symbol, Logger log) {
+        super(ExchangeName.BINANCE, URL, symbol, new FrameInflater()::text, RateLimit.second13(), log);
+        this.stream = symbol.replace("_", "").toLowerCase();
+        this.sync = new BookSync(symbol, MAX, BUFFER, this::snapshot, log);
+    }
+
+    @Override
+    protected List<String> commands(boolean subscribe, List<String> channels) {
+        if (channels.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // 一个命令可以包含多个stream，重连后一次订阅
+        JSONObject command = new JSONObject(true);
+        command.put("method", subscribe ? "SUBSCRIBE" : "UNSUBSCRIBE");
+        command.put("params", channels);
+        command.put("id", ID.incrementAndGet());
+        return Collections.singletonList(command.toJSONString());
+    }
+
+    @Override
+    protected void resync() {
+        this.sync.stale();
+    }
+
+    /**
+     * 币安没有ping命令，用查询订阅代替，有回复即可
+     */
+    @Override
+    protected String alive() {
+        return "{\"method\":\"LIST_SUBSCRIPTIONS\",\"id\":" + ALIVE + "}";
+    }
+
+    @Override
+    protected void transform(String message) {
+        JSONObject r = JSON.parseObject(message);
+        if (r.containsKey(EVENT)) {
+            switch (r.getString(EVENT)) {
+                case "24hrTicker":
+                    this.transformTicker(message, r);
+                    return;
+                case "depthUpdate":
+                    this.transformDepth(r);
+                    return;
+                case "aggTrade":
+                    this.transformTrades(message, r);
+                    return;
+                case "kline":
+                    this.transformKlines(r);
+                    return;
+                default:
+            }
+        }
+        if (r.containsKey("id")) {
+            if (ALIVE == r.getLongValue("id") && !r.containsKey("error")) {
+                return;
+            }
+            if (r.containsKey("error")) {
+                this.log.error("{} command failed: {}", super.symbol, message);
+            } else {
+                this.log.info("{} command success: {}", super.symbol, message);
+            }
+            return;
+        }
+        this.log.error("can not transform: {}", message);
+    }
+
+    private void transformTicker(String message, JSONObject r) {
+        Ticker ticker = CommonUtil.parseTicker(message, r, r.getLong("E"),
+                "o", "h", "l", "c", "v");
+        super.onTicker(ticker);
+    }
+
+    private void transformTrades(String message, JSONObject r) {
+        /*
+         * "a": 12345,         // Aggregate trade ID
+         * "p": "0.001",       // Price
+         * "q": "100",         // Quantity
+         * "f": 100,           // First trade ID
+         * "l": 105,           // Last trade ID
+         * "T": 123456785,     // Trade time
+         * "m": true,          // Is the buyer the market maker?
+         */
+        Trade trade = new Trade(message, r.getLong("T"), r.getString("f") + "_" + r.getString("l"),
+                r.getBooleanValue("m") ? Side.SELL : Side.BUY, r.getBigDecimal("p"), r.getBigDecimal("q"));
+        super.onTrades(new Trades(Collections.singletonList(trade)));
+    }
+
+    private void transformKlines(JSONObject r) {
+        /*
+         * "t": 123400000, // Kline start time
+         * "i": "1m",      // Interval
+         * "o": "0.0010",  // Open price
+         * "c": "0.0020",  // Close price
+         * "h": "0.0025",  // High price
+         * "l": "0.0015",  // Low price
+         * "v": "1000",    // Base asset volume
+         */
+        JSONObject k = r.getJSONObject("k");
+        Period period = BinanceWebSocketClient.parsePeriod(k.getString("i"));
+        if (null == period) {
+            return;
+        }
+        Kline kline = new Kline(r.getString("k"), k.getLong("t") / 1000, k.getBigDecimal("o"),
+                k.getBigDecimal("h"), k.getBigDecimal("l"), k.getBigDecimal("c"), k.getBigDecimal("v"));
+        Klines klines = super.onKline(kline, period);
+        if (null != klines) {
+            super.onKlines(klines, period);
+        }
+    }
+
+    private void transformDepth(JSONObject r) {
+        if (this.sync.delta(r.getLongValue("U") - 1, r.getLongValue("u"),
+                CommonUtil.parseRowsByIndex(r.getJSONArray("a")),
+                CommonUtil.parseRowsByIndex(r.getJSONArray("b")))) {
+            super.onDepth(this.sync.depth(r.getLong("E")));
+        }
+    }
+
+    /**
+     * 通过http获取全量快照，获取期间的推送在分发队列中排队
+     */
+    private void snapshot(BookSync sync) {
+        try {
+            String result = super.fetchSnapshot(DEPTH + this.stream.toUpperCase());
+            if (useful(result)) {
+                JSONObject r = JSON.parseObject(result);
+                if (r.containsKey("lastUpdateId")) {
+                    // 快照在增量的处理过程中同步获取，由触发请求的那条增量合并后发布，这里不发布
+                    sync.snapshot(r.getLongValue("lastUpdateId"),
+                            CommonUtil.parseRowsByIndex(r.getJSONArray("asks")),
+                            CommonUtil.parseRowsByIndex(r.getJSONArray("bids")));
+                    return;
+                }
+            }
+            this.log.error("{} depth snapshot failed: {}", super.symbol, result);
+        } catch (Exception e) {
+            this.log.error("{} depth snapshot failed", super.symbol, e);
+        }
+    }
+
+    @Override
+    protected void askTicker() {
+        super.subscribe(this.stream + "@ticker");
+    }
+
+    @Override
+    public void noTicker() {
+        super.unsubscribe(this.stream + "@ticker");
+    }
+
+    @Override
+    protected void askKlines(Period period) {
+        super.subscribe(this.stream + "@kline_" + BinanceWebSocketClient.getPeriod(period));
+    }
+
+    @Override
+    public void noKlines(Period period) {
+        super.unsubscribe(this.stream + "@kline_" + BinanceWebSocketClient.getPeriod(period));
+    }
+
+    @Override
+    protected void askDepth() {
+        this.sync.stale();
+        super.subscribe(this.stream + "@depth@100ms");
+    }
+
+    @Override
+    public void noDepth() {
+        super.unsubscribe(this.stream + "@depth@100ms");
+    }
+
+    @Override
+    protected void askTrades() {
+        super.subscribe(this.stream + "@aggTrade");
+    }
+
+    @Override
+    public void noTrades() {
+        super.unsubscribe(this.stream + "@aggTrade");
+    }
+
+    /**
+     * 币安的周期
+     * @param period 周期
+     * @return 周期
+     */
+    private static String getPeriod(Period period) {
+        String interval = BinanceWebSocketClient.interval(period);
+        if (!exist(interval)) {
+            throw new ExchangeException(ExchangeError.PERIOD,
+                    "Binance is not supported for period: " + period.name());
+        }
+        return interval;
+    }
+
+    private static String interval(Period period) {
+        switch (period) {
+            case MIN1: return "1m";
+            case MIN3: return "3m";
+            case MIN5: return "5m";
+            case MIN15: return "15m";
+            case MIN30: return "30m";
+            case HOUR1: return "1h";
+            case HOUR2: return "2h";
+            case HOUR4: return "4h";
+            case HOUR6: return "6h";
+            case HOUR12: return "12h";
+            case DAY1: return "1d";
+            case DAY3: return "3d";
+            case WEEK1: return "1w";
+            case MONTH1: return "1M";
+            default: return null;
+        }
+    }
+
+    private static Period parsePeriod(String interval) {
+        for (Period period : Period.values()) {
+            if (interval.equals(BinanceWebSocketClient.interval(period))) {
+                return period;
+            }
+        }
+        return null;
+    }
+
+    private static final String EVENT = "e";
+
+}
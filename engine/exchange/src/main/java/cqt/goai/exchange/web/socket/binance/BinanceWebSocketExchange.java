@@ -0,0 +1,22 @@
+package cqt.goai.exchange.web.socket.binance;
+
+import cqt.goai.exchange.ExchangeName;
+import cqt.goai.exchange.web.socket.BaseWebSocketClient;
+import cqt.goai.exchange.web.socket.MarketWebSocketExchange;
+import org.slf4j.Logger;
+
+/**
+ * @author GOAi
+ */
+public class BinanceWebSocketExchange extends MarketWebSocketExchange {
+
+    public BinanceWebSocketExchange(Logger log) {
+        super(ExchangeName.BINANCE, log);
+    }
+
+    @Override
+    protected BaseWebSocketClient client(String symbol) {
+        return new BinanceWebSocketClient(symbol, super.log);
+    }
+
+}
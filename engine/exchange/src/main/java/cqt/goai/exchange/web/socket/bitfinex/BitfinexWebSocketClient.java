@@ -0,0 +1,375 @@
+package cqt.goai.exchange.web.socket.bitfinex;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import cqt.goai.exchange.ExchangeError;
+import cqt.goai.exchange.ExchangeException;
+import cqt.goai.exchange.ExchangeName;
+import cqt.goai.exchange.util.FrameInflater;
+import cqt.goai.exchange.util.RateLimit;
+import cqt.goai.exchange.util.bitfinex.BitfinexUtil;
+import cqt.goai.exchange.web.socket.BookSync;
+import cqt.goai.exchange.web.socket.MarketWebSocketClient;
+import cqt.goai.model.enums.Period;
+import cqt.goai.model.enums.Side;
+import cqt.goai.model.market.*;
+import org.slf4j.Logger;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static dive.common.util.Util.exist;
+
+/**
+ * bitfinex的websocket连接，每个币对一个连接
+ *
+ * 数据按订阅返回的 chanId 区分，连接后设置 SEQ_ALL，每条推送最后一位为连接内连续的序号，
+ * 序号不连续说明丢了数据，由 BookSync 重新订阅盘口拿全量
+ *
+ * @author GOAi
+ */
+public class BitfinexWebSocketClient extends MarketWebSocketClient {
+
+    private static final String URL = "wss://api-pub.bitfinex.com/ws/2";
+
+    /**
+     * 推送带序号
+     */
+    private static final int SEQ_ALL = 65536;
+
+    /**
+     * 订阅盘口档位，可选 25 100
+     */
+    private static final String LEN = "100";
+
+    /**
+     * tBTCUSD
+     */
+    private final String pair;
+
+    /**
+     * chanId -> 订阅内容
+     */
+    private final ConcurrentHashMap<Integer, String> channels = new ConcurrentHashMap<>();
+
+    /**
+     * 订阅内容 -> chanId，取消订阅时使用
+     */
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+
+    /**
+     * 本地维护的盘口，重新同步时重新订阅，订阅后第一条为全量
+     */
+    private final BookSync sync;
+
+    /**
+     * 上一条推送的序号，0为重新开始
+     */
+    private long seq = 0;
+
+    BitfinexWebSocketClient(String symbol, Logger log) {
+        super(ExchangeName.BITFINEX, URL, symbol, new FrameInflater()::text, RateLimit.second13(), log);
+        this.pair = "t" + symbol.replace("_", "").toUpperCase();
+        this.sync = new BookSync(symbol, MAX, 0, s -> this.resubscribe(), log);
+    }
+
+    @Override
+    protected void opened() {
+        this.seq = 0;
+        this.channels.clear();
+        this.ids.clear();
+        super.send("{\"event\":\"conf\",\"flags\":" + SEQ_ALL + "}");
+    }
+
+    @Override
+    protected String alive() {
+        return "{\"event\":\"ping\"}";
+    }
+
+    @Override
+    protected List<String> commands(boolean subscribe, List<String> channels) {
+        List<String> commands = new ArrayList<>(channels.size());
+        for (String channel : channels) {
+            if (!subscribe) {
+                Integer id = this.ids.get(channel);
+                if (null != id) {
+                    commands.add("{\"event\":\"unsubscribe\",\"chanId\":" + id + "}");
+                }
+                continue;
+            }
+            JSONObject command = new JSONObject(true);
+            command.put("event", "subscribe");
+            if (channel.startsWith(CANDLES)) {
+                command.put("channel", CANDLES);
+                command.put("key", channel.substring(CANDLES.length() + 1));
+            } else {
+                command.put("channel", channel);
+                command.put("symbol", this.pair);
+            }
+            if (BOOK.equals(channel)) {
+                command.put("prec", "P0");
+                command.put("freq", "F0");
+                command.put("len", LEN);
+            }
+            commands.add(command.toJSONString());
+        }
+        return commands;
+    }
+
+    @Override
+    protected void resync() {
+        this.sync.stale();
+    }
+
+    /**
+     * 重新订阅盘口拿全量，还没有订阅成功的等订阅返回即可
+     */
+    private void resubscribe() {
+        if (null != this.ids.get(BOOK)) {
+            super.send(this.commands(false, Collections.singletonList(BOOK)).get(0));
+            super.send(this.commands(true, Collections.singletonList(BOOK)).get(0));
+        }
+    }
+
+    @Override
+    protected void transform(String message) {
+        if (message.startsWith("{")) {
+            this.event(message, JSON.parseObject(message));
+            return;
+        }
+        JSONArray r = JSON.parseArray(message);
+        this.sequence(r);
+        String channel = this.channels.get(r.getInteger(0));
+        if (null == channel) {
+            return;
+        }
+        Object data = r.get(1);
+        if (HEARTBEAT.equals(data)) {
+            return;
+        }
+        switch (channel) {
+            case TICKER:
+                this.transformTicker(r.getJSONArray(1));
+                return;
+            case BOOK:
+                this.transformDepth(r.getJSONArray(1));
+                return;
+            case TRADES:
+                if (TRADE_EXECUTED.equals(data)) {
+                    this.transformTrade(r.getJSONArray(2));
+                }
+                // 订阅时的快照为历史成交，tu 与 te 重复，都不推送
+                return;
+            default:
+        }
+        if (channel.startsWith(CANDLES)) {
+            this.transformKlines(channel, r.getJSONArray(1));
+            return;
+        }
+        this.log.error("can not transform: {}", message);
+    }
+
+    /**
+     * 检查序号，不连续则重新订阅盘口
+     */
+    private void sequence(JSONArray r) {
+        Object last = r.get(r.size() - 1);
+        if (1 < r.size() && last instanceof Number) {
+            long seq = ((Number) last).longValue();
+            if (0 != this.seq && this.seq + 1 != seq) {
+                this.log.warn("{} sequence gap, last: {} seq: {}", super.symbol, this.seq, seq);
+                this.sync.stale();
+            }
+            this.seq = seq;
+        }
+    }
+
+    private void event(String message, JSONObject r) {
+        switch (r.getString("event")) {
+            case "subscribed":
+                String channel = r.getString("channel");
+                if (CANDLES.equals(channel)) {
+                    channel = CANDLES + ":" + r.getString("key");
+                }
+                Integer id = r.getInteger("chanId");
+                this.channels.put(id, channel);
+                this.ids.put(channel, id);
+                this.log.info("{} subscribe success: {}", super.symbol, message);
+                if (!super.subscribed(channel)) {
+                    // 返回之前已经取消
+                    super.send(this.commands(false, Collections.singletonList(channel)).get(0));
+                }
+                return;
+            case "unsubscribed":
+                String removed = this.channels.remove(r.getInteger("chanId"));
+                if (null != removed) {
+                    this.ids.remove(removed, r.getInteger("chanId"));
+                }
+                this.log.info("{} unsubscribe success: {}", super.symbol, message);
+                return;
+            case "pong":
+                return;
+            case "error":
+                this.log.error("{} command failed: {}", super.symbol, message);
+                return;
+            default:
+                // info conf 20051需要重连 20060 20061为维护开始和结束
+                this.log.info("{} {}", super.symbol, message);
+        }
+    }
+
+    /**
+     * [BID, BID_SIZE, ASK, ASK_SIZE, DAILY_CHANGE, DAILY_CHANGE_RELATIVE, LAST_PRICE, VOLUME, HIGH, LOW]
+     */
+    private void transformTicker(JSONArray t) {
+        BigDecimal last = t.getBigDecimal(6);
+        BigDecimal open = last.subtract(t.getBigDecimal(4));
+        super.onTicker(new Ticker(t.toJSONString(), System.currentTimeMillis(),
+                open, t.getBigDecimal(8), t.getBigDecimal(9), last, t.getBigDecimal(7)));
+    }
+
+    /**
+     * 快照 [[PRICE, COUNT, AMOUNT], ...]，更新 [PRICE, COUNT, AMOUNT]
+     * AMOUNT 正数为买盘，负数为卖盘，COUNT 为0时删除该价格
+     */
+    private void transformDepth(JSONArray data) {
+        List<Row> asks = new ArrayList<>();
+        List<Row> bids = new ArrayList<>();
+        boolean publish;
+        if (data.isEmpty() || data.get(0) instanceof JSONArray) {
+            for (int i = 0; i < data.size(); i++) {
+                BitfinexWebSocketClient.row(data.getString(i), data.getJSONArray(i), asks, bids);
+            }
+            publish = this.sync.snapshot(BookSync.NONE, asks, bids);
+        } else {
+            BitfinexWebSocketClient.row(data.toJSONString(), data, asks, bids);
+            publish = this.sync.delta(BookSync.NONE, BookSync.NONE, asks, bids);
+        }
+        if (publish) {
+            super.onDepth(this.sync.depth(System.currentTimeMillis()));
+        }
+    }
+
+    private static void row(String result, JSONArray r, List<Row> asks, List<Row> bids) {
+        BigDecimal price = r.getBigDecimal(0);
+        BigDecimal amount = r.getBigDecimal(2);
+        boolean bid = 0 < amount.signum();
+        // 数量为0表示删除
+        amount = 0 == r.getIntValue(1) ? BigDecimal.ZERO : amount.abs();
+        (bid ? bids : asks).add(new Row(result, price, amount));
+    }
+
+    /**
+     * [ID, MTS, AMOUNT, PRICE]，AMOUNT 正数为买，负数为卖
+     */
+    private void transformTrade(JSONArray t) {
+        BigDecimal amount = t.getBigDecimal(2);
+        Trade trade = new Trade(t.toJSONString(), t.getLong(1), t.getString(0),
+                0 < amount.signum() ? Side.BUY : Side.SELL, t.getBigDecimal(3), amount.abs());
+        super.onTrades(new Trades(Collections.singletonList(trade)));
+    }
+
+    /**
+     * 快照 [[MTS, OPEN, CLOSE, HIGH, LOW, VOLUME], ...]，更新 [MTS, OPEN, CLOSE, HIGH, LOW, VOLUME]
+     * 快照直接作为k线缓存，不需要再通过http获取
+     */
+    private void transformKlines(String channel, JSONArray data) {
+        Period period = BitfinexWebSocketClient.parsePeriod(channel.split(":")[2]);
+        if (null == period || data.isEmpty()) {
+            return;
+        }
+        Klines klines;
+        if (data.get(0) instanceof JSONArray) {
+            List<Kline> list = new ArrayList<>(data.size());
+            for (int i = 0; i < data.size(); i++) {
+                list.add(BitfinexWebSocketClient.kline(data.getString(i), data.getJSONArray(i)));
+            }
+            // 由近到远
+            list.sort((k1, k2) -> k2.getTime().compareTo(k1.getTime()));
+            klines = super.buffer(period).reset(list);
+        } else {
+            klines = super.buffer(period).update(BitfinexWebSocketClient.kline(data.toJSONString(), data));
+        }
+        if (null != klines) {
+            super.onKlines(klines, period);
+        }
+    }
+
+    private static Kline kline(String result, JSONArray t) {
+        return new Kline(result, t.getLong(0) / 1000, t.getBigDecimal(1), t.getBigDecimal(3),
+                t.getBigDecimal(4), t.getBigDecimal(2), t.getBigDecimal(5));
+    }
+
+    @Override
+    protected void askTicker() {
+        super.subscribe(TICKER);
+    }
+
+    @Override
+    public void noTicker() {
+        super.unsubscribe(TICKER);
+    }
+
+    @Override
+    protected void askKlines(Period period) {
+        super.subscribe(this.candles(period));
+    }
+
+    @Override
+    public void noKlines(Period period) {
+        super.unsubscribe(this.candles(period));
+    }
+
+    @Override
+    protected void askDepth() {
+        super.subscribe(BOOK);
+    }
+
+    @Override
+    public void noDepth() {
+        super.unsubscribe(BOOK);
+    }
+
+    @Override
+    protected void askTrades() {
+        super.subscribe(TRADES);
+    }
+
+    @Override
+    public void noTrades() {
+        super.unsubscribe(TRADES);
+    }
+
+    /**
+     * candles:trade:1m:tBTCUSD
+     */
+    private String candles(Period period) {
+        String timeFrame = BitfinexUtil.getPeriod(period);
+        if (!exist(timeFrame)) {
+            throw new ExchangeException(ExchangeError.PERIOD,
+                    "Bitfinex is not supported for period: " + period.name());
+        }
+        return CANDLES + ":trade:" + timeFrame + ":" + this.pair;
+    }
+
+    private static Period parsePeriod(String timeFrame) {
+        for (Period period : Period.values()) {
+            if (timeFrame.equals(BitfinexUtil.getPeriod(period))) {
+                return period;
+            }
+        }
+        return null;
+    }
+
+    private static final String TICKER = "ticker";
+    private static final String BOOK = "book";
+    private static final String TRADES = "trades";
+    private static final String CANDLES = "candles";
+    private static final String HEARTBEAT = "hb";
+    private static final String TRADE_EXECUTED = "te";
+
+}
@@ -0,0 +1,22 @@
+package cqt.goai.exchange.web.socket.bitfinex;
+
+import cqt.goai.exchange.ExchangeName;
+import cqt.goai.exchange.web.socket.BaseWebSocketClient;
+import cqt.goai.exchange.web.socket.MarketWebSocketExchange;
+import org.slf4j.Logger;
+
+/**
+ * @author GOAi
+ */
+public class BitfinexWebSocketExchange extends MarketWebSocketExchange {
+
+    public BitfinexWebSocketExchange(Logger log) {
+        super(ExchangeName.BITFINEX, log);
+    }
+
+    @Override
+    protected BaseWebSocketClient client(String symbol) {
+        return new BitfinexWebSocketClient(symbol, super.log);
+    }
+
+}
@@ -0,0 +1,289 @@
+package cqt.goai.exchange.web.socket.huobi.pro;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import cqt.goai.exchange.ExchangeError;
+import cqt.goai.exchange.ExchangeException;
+import cqt.goai.exchange.ExchangeName;
+import cqt.goai.exchange.util.CommonUtil;
+import cqt.goai.exchange.util.FrameInflater;
+import cqt.goai.exchange.util.RateLimit;
+import cqt.goai.exchange.util.huobi.pro.HoubiProUtil;
+import cqt.goai.exchange.web.socket.BookSync;
+import cqt.goai.exchange.web.socket.MarketWebSocketClient;
+import cqt.goai.model.enums.Period;
+import cqt.goai.model.enums.Side;
+import cqt.goai.model.market.*;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static dive.common.util.Util.exist;
+
+/**
+ * 火币的websocket连接，每个币对一个连接，推送为gzip压缩的二进制帧
+ *
+ * 深度使用增量推送 mbp.20，由 BookSync 维护本地盘口，
+ * 快照通过 req 异步获取，增量 prev = prevSeqNum, seq = seqNum
+ *
+ * @author GOAi
+ */
+public class HuobiProWebSocketClient extends MarketWebSocketClient {
+
+    private static final String URL = "wss://api.huobi.pro/ws";
+
+    /**
+     * 增量深度档位，/ws 地址支持 5 和 20 档
+     */
+    private static final int LEVELS = 20;
+
+    /**
+     * 等待快照时最多缓存的增量
+     */
+    private static final int BUFFER = 1000;
+
+    /**
+     * 小写币对 btcusdt
+     */
+    private final String market;
+
+    /**
+     * 本地维护的盘口
+     */
+    private final BookSync sync;
+
+    HuobiProWebSocketClient(String symbol, Logger log) {
+        super(ExchangeName.HUOBIPRO, URL, symbol, new FrameInflater(true)::decode, RateLimit.second13(), log);
+        this.market = "market." + symbol.replace("_", "").toLowerCase();
+        this.sync = new BookSync(symbol, MAX, BUFFER, s -> super.send(
+                String.format("{\"req\":\"%s\",\"id\":\"%s\"}", this.depth(), this.depth())), log);
+    }
+
+    @Override
+    protected List<String> commands(boolean subscribe, List<String> channels) {
+        List<String> commands = new ArrayList<>(channels.size());
+        for (String channel : channels) {
+            commands.add(String.format("{\"%s\":\"%s\",\"id\":\"%s\"}",
+                    subscribe ? "sub" : "unsub", channel, channel));
+        }
+        return commands;
+    }
+
+    @Override
+    protected void resync() {
+        this.sync.stale();
+    }
+
+    @Override
+    protected void transform(String message) {
+        JSONObject r = JSON.parseObject(message);
+        if (r.containsKey(PING)) {
+            // 服务端5秒一次心跳，连续2次没有回复会断开
+            super.reply("{\"pong\":" + r.getLong(PING) + "}");
+            return;
+        }
+        if (r.containsKey(CH)) {
+            String ch = r.getString(CH);
+            JSONObject tick = r.getJSONObject("tick");
+            if (ch.endsWith(".detail") && !ch.endsWith(".trade.detail")) {
+                Ticker ticker = CommonUtil.parseTicker(r.getString("tick"), tick, r.getLong("ts"),
+                        "open", "high", "low", "close", "amount");
+                super.onTicker(ticker);
+                return;
+            }
+            if (ch.endsWith(".trade.detail")) {
+                this.transformTrades(tick);
+                return;
+            }
+            if (ch.contains(".mbp.")) {
+                this.transformDepth(tick, r.getLong("ts"));
+                return;
+            }
+            if (ch.contains(".kline.")) {
+                this.transformKlines(ch, r.getString("tick"), tick);
+                return;
+            }
+        }
+        if (r.containsKey("rep")) {
+            this.snapshot(r);
+            return;
+        }
+        if (r.containsKey(STATUS)) {
+            if (OK.equals(r.getString(STATUS))) {
+                this.log.info("{} command success: {}", super.symbol, message);
+            } else {
+                this.log.error("{} command failed: {}", super.symbol, message);
+            }
+            return;
+        }
+        this.log.error("can not transform: {}", message);
+    }
+
+    private void transformTrades(JSONObject tick) {
+        /*
+         * {
+         *  "id":100159178954,
+         *  "ts":1549002100105,
+         *  "data":[
+         *      {
+         *       "amount":0.009000000000000000,
+         *       "ts":1549002100105,
+         *       "id":10015917895423497145394,
+         *       "price":3414.610000000000000000,
+         *       "direction":"buy"
+         *      }
+         *   ]
+         * }
+         */
+        JSONArray data = tick.getJSONArray("data");
+        List<Trade> trades = new ArrayList<>(data.size());
+        for (int i = 0; i < data.size(); i++) {
+            JSONObject t = data.getJSONObject(i);
+            trades.add(new Trade(data.getString(i), t.getLong("ts"), t.getString("id"),
+                    Side.valueOf(t.getString("direction").toUpperCase()),
+                    t.getBigDecimal("price"), t.getBigDecimal("amount")));
+        }
+        super.onTrades(new Trades(trades));
+    }
+
+    private void transformKlines(String ch, String result, JSONObject tick) {
+        Period period = HuobiProWebSocketClient.parsePeriod(ch.substring(ch.lastIndexOf('.') + 1));
+        if (null == period) {
+            return;
+        }
+        Kline kline = new Kline(result, tick.getLong("id"), tick.getBigDecimal("open"),
+                tick.getBigDecimal("high"), tick.getBigDecimal("low"), tick.getBigDecimal("close"),
+                tick.getBigDecimal("amount"));
+        Klines klines = super.onKline(kline, period);
+        if (null != klines) {
+            super.onKlines(klines, period);
+        }
+    }
+
+    /**
+     * 增量深度
+     * {
+     *     "seqNum":100020142010,
+     *     "prevSeqNum":100020142009,
+     *     "bids":[[618.37, 71.594]],
+     *     "asks":[[618.38, 0]]
+     * }
+     */
+    private void transformDepth(JSONObject tick, Long time) {
+        if (this.sync.delta(tick.getLongValue("prevSeqNum"), tick.getLongValue("seqNum"),
+                HuobiProWebSocketClient.rows(tick.getJSONArray("asks")),
+                HuobiProWebSocketClient.rows(tick.getJSONArray("bids")))) {
+            super.onDepth(this.sync.depth(time));
+        }
+    }
+
+    /**
+     * 快照返回
+     * {
+     *     "id":"market.btcusdt.mbp.20",
+     *     "rep":"market.btcusdt.mbp.20",
+     *     "status":"ok",
+     *     "data":{
+     *         "seqNum":100020146795,
+     *         "bids":[[618.37, 71.594]],
+     *         "asks":[[618.38, 4.7]]
+     *     }
+     * }
+     */
+    private void snapshot(JSONObject r) {
+        JSONObject data = r.getJSONObject("data");
+        if (!OK.equals(r.getString(STATUS)) || null == data) {
+            this.log.error("{} depth snapshot failed: {}", super.symbol, r);
+            this.sync.stale();
+            return;
+        }
+        if (this.sync.snapshot(data.getLongValue("seqNum"),
+                HuobiProWebSocketClient.rows(data.getJSONArray("asks")),
+                HuobiProWebSocketClient.rows(data.getJSONArray("bids")))) {
+            super.onDepth(this.sync.depth(r.getLong("ts")));
+        }
+    }
+
+    /**
+     * 没有变化的一边不推送
+     */
+    private static List<Row> rows(JSONArray rows) {
+        return null == rows ? null : CommonUtil.parseRowsByIndex(rows);
+    }
+
+    private String depth() {
+        return this.market + ".mbp." + LEVELS;
+    }
+
+    @Override
+    protected void askTicker() {
+        super.subscribe(this.market + ".detail");
+    }
+
+    @Override
+    public void noTicker() {
+        super.unsubscribe(this.market + ".detail");
+    }
+
+    @Override
+    protected void askKlines(Period period) {
+        super.subscribe(this.market + ".kline." + HuobiProWebSocketClient.getPeriod(period));
+    }
+
+    @Override
+    public void noKlines(Period period) {
+        super.unsubscribe(this.market + ".kline." + HuobiProWebSocketClient.getPeriod(period));
+    }
+
+    @Override
+    protected void askDepth() {
+        this.sync.stale();
+        super.subscribe(this.depth());
+    }
+
+    @Override
+    public void noDepth() {
+        super.unsubscribe(this.depth());
+    }
+
+    @Override
+    protected void askTrades() {
+        super.subscribe(this.market + ".trade.detail");
+    }
+
+    @Override
+    public void noTrades() {
+        super.unsubscribe(this.market + ".trade.detail");
+    }
+
+    /**
+     * 火币的周期
+     * @param period 周期
+     * @return 周期
+     */
+    private static String getPeriod(Period period) {
+        String type = HoubiProUtil.getPeriod(period);
+        if (!exist(type)) {
+            throw new ExchangeException(ExchangeError.PERIOD,
+                    "Huobi is not supported for period: " + period.name());
+        }
+        return type;
+    }
+
+    private static Period parsePeriod(String type) {
+        for (Period period : Period.values()) {
+            if (type.equals(HoubiProUtil.getPeriod(period))) {
+                return period;
+            }
+        }
+        return null;
+    }
+
+    private static final String PING = "ping";
+    private static final String CH = "ch";
+    private static final String STATUS = "status";
+    private static final String OK = "ok";
+
+}
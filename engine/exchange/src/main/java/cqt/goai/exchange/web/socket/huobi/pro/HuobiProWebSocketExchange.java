@@ -0,0 +1,22 @@
+package cqt.goai.exchange.web.socket.huobi.pro;
+
+import cqt.goai.exchange.ExchangeName;
+import cqt.goai.exchange.web.socket.BaseWebSocketClient;
+import cqt.goai.exchange.web.socket.MarketWebSocketExchange;
+import org.slf4j.Logger;
+
+/**
+ * @author GOAi
+ */
+public class HuobiProWebSocketExchange extends MarketWebSocketExchange {
+
+    public HuobiProWebSocketExchange(Logger log) {
+        super(ExchangeName.HUOBIPRO, log);
+    }
+
+    @Override
+    protected BaseWebSocketClient client(String symbol) {
+        return new HuobiProWebSocketClient(symbol, super.log);
+    }
+
+}
@@ -0,0 +1,343 @@
+package cqt.goai.exchange.web.socket.okexv3;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import cqt.goai.exchange.util.FrameDispatcher;
+import cqt.goai.exchange.util.FrameInflater;
+import cqt.goai.exchange.util.OkhttpWebSocket;
+import cqt.goai.exchange.util.RateLimit;
+import cqt.goai.exchange.util.WheelTimer;
+import cqt.goai.exchange.util.okexv3.Okexv3Util;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * OKExV3 公共行情连接，多个币对共用
+ *
+ * 每个连接记录自己的全部订阅参数 channel:instrument_id，
+ * 收到的数据按 data[0].instrument_id 交给对应币对的 Okexv3WebSocketClient 处理，
+ * 断线重连后按批重新订阅
+ *
+ * 连接数量可以通过系统属性 goai.okexv3.connections 调整，
+ * 前几个币对各自新建连接，之后的币对分配到订阅币对最少的连接上，
+ * 连接上的币对全部取消后关闭连接并移出连接池
+ *
+ * @author GOAi
+ */
+public class Okexv3Connection {
+
+    /**
+     * 公共行情最多连接数
+     */
+    static final int SIZE = Math.max(1, Integer.getInteger("goai.okexv3.connections", 4));
+
+    /**
+     * 每个订阅命令最多参数个数
+     */
+    private static final int BATCH = 50;
+
+    /**
+     * 定时检查是否需要ping
+     */
+    private static final long PING = 1000 * 7;
+
+    /**
+     * 连接池
+     */
+    private static final CopyOnWriteArrayList<Okexv3Connection> POOL = new CopyOnWriteArrayList<>();
+
+    /**
+     * 推送回调
+     */
+    private final OkhttpWebSocket client;
+
+    /**
+     * 本连接的解压缓冲
+     */
+    private final FrameInflater inflater = new FrameInflater();
+
+    /**
+     * 日志
+     */
+    private final Logger log;
+
+    /**
+     * 连接上的币对 instrument_id -> client
+     */
+    private final ConcurrentHashMap<String, Okexv3WebSocketClient> clients = new ConcurrentHashMap<>();
+
+    /**
+     * 当前全部订阅参数，重连后按批重新订阅
+     */
+    private final Set<String> subscriptions = ConcurrentHashMap.newKeySet();
+
+    /**
+     * ping频率
+     */
+    private final RateLimit limit = RateLimit.second13();
+
+    /**
+     * 定时ping
+     */
+    private final WheelTimer.Timeout ping;
+
+    /**
+     * 是否已经连接
+     */
+    private volatile boolean connected = false;
+
+    /**
+     * 是否已经关闭，关闭后不再重连
+     */
+    private volatile boolean dead = false;
+
+    private Okexv3Connection(Logger log) {
+        this.log = log;
+        this.client = new OkhttpWebSocket(Okexv3WebSocketClient.URL, this.inflater::decode,
+                this::open, this::receive, this::closed, log,
+                FrameDispatcher.DEFAULT_CAPACITY, FrameDispatcher.MARKET_OVERFLOW, this::overflow);
+        this.ping = WheelTimer.DEFAULT.every(this::ping, PING, PING);
+    }
+
+    /**
+     * 为币对分配连接
+     * @param client 币对
+     * @param log 日志
+     * @return 连接
+     */
+    static synchronized Okexv3Connection register(Okexv3WebSocketClient client, Logger log) {
+        Okexv3Connection connection = null;
+        for (Okexv3Connection c : POOL) {
+            if (c.clients.containsKey(client.getInstrumentId())) {
+                connection = c;
+                break;
+            }
+        }
+        if (null == connection) {
+            if (POOL.size() < SIZE) {
+                connection = new Okexv3Connection(log);
+                POOL.add(connection);
+            } else {
+                connection = POOL.get(0);
+                for (Okexv3Connection c : POOL) {
+                    if (c.clients.size() < connection.clients.size()) {
+                        connection = c;
+                    }
+                }
+            }
+        }
+        connection.clients.put(client.getInstrumentId(), client);
+        return connection;
+    }
+
+    /**
+     * 币对不再使用该连接
+     * @param client 币对
+     */
+    void remove(Okexv3WebSocketClient client) {
+        this.clients.remove(client.getInstrumentId(), client);
+        String suffix = ":" + client.getInstrumentId();
+        List<String> args = new ArrayList<>();
+        for (String arg : this.subscriptions) {
+            if (arg.endsWith(suffix)) {
+                args.add(arg);
+            }
+        }
+        this.subscriptions.removeAll(args);
+        this.send("unsubscribe", args);
+        Okexv3Connection.evict(this);
+    }
+
+    /**
+     * 没有币对的连接移出连接池并关闭
+     * 与 register 互斥，移出后不会再分配给新的币对
+     * @param connection 连接
+     */
+    private static synchronized void evict(Okexv3Connection connection) {
+        if (!connection.clients.isEmpty() || !POOL.remove(connection)) {
+            return;
+        }
+        connection.dead = true;
+        connection.connected = false;
+        connection.ping.cancel();
+        connection.client.close(1000, "no symbols");
+        connection.log.info("okexv3 connection closed, no symbols left: {}", connection);
+    }
+
+    private void open() {
+        this.connected = true;
+        // 重新订阅
+        this.send("subscribe", new ArrayList<>(this.subscriptions));
+    }
+
+    private void closed() {
+        this.connected = false;
+        if (this.dead) {
+            return;
+        }
+        this.client.reconnect();
+    }
+
+    /**
+     * 分发队列丢帧，各币对自行决定是否重新拿全量
+     */
+    private void overflow() {
+        this.clients.values().forEach(Okexv3WebSocketClient::overflow);
+    }
+
+    /**
+     * 订阅并记录
+     * @param arg channel:instrument_id
+     */
+    void subscribe(String arg) {
+        this.subscriptions.add(arg);
+        this.command("subscribe", arg);
+    }
+
+    /**
+     * 取消订阅
+     * @param arg channel:instrument_id
+     */
+    void unsubscribe(String arg) {
+        this.subscriptions.remove(arg);
+        this.command("unsubscribe", arg);
+    }
+
+    /**
+     * 发送不记录的命令
+     * @param op subscribe unsubscribe
+     * @param arg channel:instrument_id
+     */
+    void command(String op, String arg) {
+        List<String> args = new ArrayList<>(1);
+        args.add(arg);
+        this.send(op, args);
+    }
+
+    /**
+     * 按批发送命令
+     * @param op subscribe unsubscribe
+     * @param args 参数
+     */
+    private void send(String op, List<String> args) {
+        if (!this.connected) {
+            return;
+        }
+        for (String message : Okexv3Connection.commands(op, args)) {
+            this.log.info("websocket send: {} to {}", message, Okexv3WebSocketClient.URL);
+            this.client.send(message);
+        }
+    }
+
+    /**
+     * 按批生成命令，每个命令最多 BATCH 个参数
+     * @param op subscribe unsubscribe
+     * @param args 参数
+     * @return 命令
+     */
+    static List<String> commands(String op, List<String> args) {
+        List<String> commands = new ArrayList<>(args.size() / BATCH + 1);
+        for (int i = 0; i < args.size(); i += BATCH) {
+            List<String> batch = args.subList(i, Math.min(args.size(), i + BATCH));
+            commands.add("{\"op\":\"" + op + "\",\"args\":" + JSON.toJSONString(batch) + "}");
+        }
+        return commands;
+    }
+
+    /**
+     * okhttp 30s 未收消息会关闭连接，定时发个命令
+     */
+    void ping() {
+        if (this.limit.timeout(true)) {
+            this.client.send(Okexv3WebSocketClient.ALIVE);
+        }
+    }
+
+    private void receive(CharSequence message) {
+        this.limit.update();
+        if (!Okexv3Connection.dispatch(message.toString(), this.clients::get, this.log)) {
+            this.log.error("can not transform: {}", message);
+        }
+    }
+
+    /**
+     * 按 instrument_id 把推送交给对应币对处理，离线回放的币对也经过这里
+     * @param text 推送
+     * @param clients instrument_id -> 币对，不在该连接上的返回null
+     * @param log 日志
+     * @return 是否处理，没有对应币对的推送也算未处理
+     */
+    static boolean dispatch(String text, Function<String, Okexv3WebSocketClient> clients, Logger log) {
+        // 深度推送最频繁，流式解析后按币对路由
+        Okexv3Util.DepthFrame depth = Okexv3Util.parseDepthFrame(text);
+        if (null != depth) {
+            Okexv3WebSocketClient client = null == depth.getInstrumentId()
+                    ? null : clients.apply(depth.getInstrumentId());
+            return null != client && client.depth(depth);
+        }
+        JSONObject r = JSON.parseObject(text);
+        if (r.containsKey(Okexv3WebSocketClient.EVENT)) {
+            String event = r.getString(Okexv3WebSocketClient.EVENT);
+            if (!"error".equals(event) || !String.valueOf(r.getString(Okexv3WebSocketClient.MESSAGE))
+                    .endsWith(Okexv3WebSocketClient.ALIVE)) {
+                log.info("{} {}", event, text);
+            }
+            return true;
+        }
+        if (r.containsKey(Okexv3WebSocketClient.TABLE)) {
+            JSONArray data = r.getJSONArray("data");
+            if (null != data && !data.isEmpty()) {
+                String id = data.getJSONObject(0).getString("instrument_id");
+                Okexv3WebSocketClient client = null == id ? null : clients.apply(id);
+                return null != client && client.table(r);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 分发队列情况
+     */
+    FrameDispatcher getDispatcher() {
+        return this.client.getDispatcher();
+    }
+
+    public int getSymbols() {
+        return this.clients.size();
+    }
+
+    public int getSubscriptions() {
+        return this.subscriptions.size();
+    }
+
+    /**
+     * 当前全部公共行情连接
+     */
+    public static List<Okexv3Connection> connections() {
+        return new ArrayList<>(POOL);
+    }
+
+    /**
+     * 连接情况，连接时长、重连次数、消息频率
+     */
+    public OkhttpWebSocket getClient() {
+        return this.client;
+    }
+
+    @Override
+    public String toString() {
+        return "Okexv3Connection{" +
+                "symbols=" + this.clients.size() +
+                ", subscriptions=" + this.subscriptions.size() +
+                ", connected=" + this.connected +
+                ", client=" + this.client +
+                '}';
+    }
+}
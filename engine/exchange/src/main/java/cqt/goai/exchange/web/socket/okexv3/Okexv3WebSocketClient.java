@@ -4,50 +4,61 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import cqt.goai.exchange.*;
 import cqt.goai.exchange.util.CommonUtil;
+import cqt.goai.exchange.util.FrameDispatcher;
+import cqt.goai.exchange.util.FrameInflater;
 import cqt.goai.exchange.util.OkhttpWebSocket;
 import cqt.goai.exchange.util.RateLimit;
 import cqt.goai.exchange.util.Seal;
+import cqt.goai.exchange.util.Signer;
+import cqt.goai.exchange.util.okexv3.Okexv3CheckSum;
 import cqt.goai.exchange.util.okexv3.Okexv3Util;
 import cqt.goai.exchange.web.socket.BaseWebSocketClient;
+import cqt.goai.exchange.web.socket.BookSync;
 import cqt.goai.model.enums.Period;
 import cqt.goai.model.market.*;
 import cqt.goai.model.trade.Account;
 import cqt.goai.model.trade.Balance;
 import cqt.goai.model.trade.Orders;
-import dive.common.crypto.Base64Util;
-import dive.common.crypto.HmacUtil;
 import org.slf4j.Logger;
 
-import java.math.BigDecimal;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.stream.Collectors;
-import java.util.zip.CRC32;
 
 import static dive.common.util.Util.exist;
 
 /**
  * OKExV3的websocket连接
+ *
+ * 公共行情(ticker klines depth trades)共用 Okexv3Connection 的连接，本类只维护该币对的状态
+ * 需要登录的推送(account orders)独占一个连接
+ *
  * @author GOAi
  */
 public class Okexv3WebSocketClient extends BaseWebSocketClient {
 
-    private static final String URL = "wss://real.okex.com:10442/ws/v3";
+    static final String URL = "wss://real.okex.com:10442/ws/v3";
 
     /**
-     * 推送回调
+     * 推送回调，登录连接独占
      */
     private OkhttpWebSocket client;
 
+    /**
+     * 公共行情共用的连接
+     */
+    private final Okexv3Connection connection;
+
+    /**
+     * 币对 BTC-USDT
+     */
+    private final String instrumentId;
+
     /**
      * 是否需要登录
      */
@@ -69,38 +80,81 @@ public class Okexv3WebSocketClient extends BaseWebSocketClient {
     private boolean dead = false;
 
     /**
-     * 普通命令
+     * 离线回放，没有连接
+     */
+    private final boolean offline;
+
+    /**
+     * 当前订阅 channel:instrument_id，重连后按批重新订阅
      */
-    private CopyOnWriteArrayList<String> commands = new CopyOnWriteArrayList<>();
+    private final Set<String> subscriptions = ConcurrentHashMap.newKeySet();
 
     /**
-     * 需要登录的命令
+     * 需要登录的订阅，登录后按批重新订阅
      */
-    private CopyOnWriteArrayList<String> loginCommands = new CopyOnWriteArrayList<>();
+    private final Set<String> loginSubscriptions = ConcurrentHashMap.newKeySet();
 
-    private ConcurrentHashMap<Period, ConcurrentLinkedDeque<Kline>> klines = new ConcurrentHashMap<>();
-    private ConcurrentHashMap<Period, Lock> klinesLocks = new ConcurrentHashMap<>();
+    /**
+     * 每个周期的k线
+     */
 
-    private ConcurrentHashMap<BigDecimal, Row> asks = new ConcurrentHashMap<>();
-    private ConcurrentHashMap<BigDecimal, Row> bids = new ConcurrentHashMap<>();
+    /**
+     * 本地维护的盘口，校验不通过或者丢帧后立即重新订阅拿全量
+     */
+    private final BookSync sync = new BookSync(super.symbol, MAX, 0,
+            s -> this.send("subscribe", "spot/depth", false), super.log);
+    private final Okexv3CheckSum checkSum = new Okexv3CheckSum();
     private Lock depthLock = new ReentrantLock();
-    private RateLimit depthLimit = RateLimit.second10();
+
+    /**
+     * 是否订阅了深度，分发队列丢帧后需要重新拿全量
+     */
+    private volatile boolean depthSubscribed = false;
 
     private Balance base;
     private Balance count;
 
+    /**
+     * 登录连接的解压缓冲
+     */
+    private final FrameInflater inflater = new FrameInflater();
+
     Okexv3WebSocketClient(String symbol, Logger log) {
+        this(symbol, log, false);
+    }
+
+    /**
+     * @param offline 离线时不分配共用连接，也不连接交易所，回放记录的推送时使用，
+     *                收到的推送与共用连接一样按 instrument_id 路由，不是该币对的推送忽略
+     */
+    Okexv3WebSocketClient(String symbol, Logger log, boolean offline) {
         super(symbol, null, null, RateLimit.second13(),  log);
-        this.client = new OkhttpWebSocket(URL, Okexv3Util::uncompress,
-                this::open, this::transform, this::closed, this.log);
+        this.instrumentId = symbol.replace("_", "-");
         this.doLogin = false;
+        this.offline = offline;
+        this.connection = offline ? null : Okexv3Connection.register(this, log);
+    }
+
+    /**
+     * 回放用的离线连接
+     * @param symbol 币对
+     * @param log 日志
+     * @return 不连接交易所的币对连接
+     */
+    public static Okexv3WebSocketClient offline(String symbol, Logger log) {
+        return new Okexv3WebSocketClient(symbol, log, true);
     }
 
     Okexv3WebSocketClient(String symbol, String access, String secret, Logger log) {
         super(symbol, access, secret, RateLimit.second13(),  log);
-        this.client = new OkhttpWebSocket(URL, Okexv3Util::uncompress,
-                this::open, this::transform, this::closed, this.log);
+        this.instrumentId = symbol.replace("_", "-");
+        this.connection = null;
+        this.offline = false;
+        this.client = new OkhttpWebSocket(URL, this.inflater::decode,
+                this::open, this::receive, this::closed, this.log,
+                FrameDispatcher.DEFAULT_CAPACITY, FrameDispatcher.Overflow.BLOCK, null);
         this.doLogin = true;
+        super.keepAlive();
     }
 
     @Override
@@ -109,7 +163,7 @@ public class Okexv3WebSocketClient extends BaseWebSocketClient {
         if (this.doLogin) {
             this.login();
         }
-        this.commands.forEach(this::send);
+        Okexv3Connection.commands("subscribe", new ArrayList<>(this.subscriptions)).forEach(this::send);
     }
 
     /**
@@ -125,11 +179,7 @@ public class Okexv3WebSocketClient extends BaseWebSocketClient {
         String secret = split[0];
         String passphrase = split[1];
         long timestamp = System.currentTimeMillis() / 1000;
-        String sign = null;
-        try {
-            sign = Base64Util.base64EncodeToString(HmacUtil.hmac((timestamp + "GET/users/self/verify").getBytes(),
-                    secret, HmacUtil.HMAC_SHA256));
-        } catch (NoSuchAlgorithmException | InvalidKeyException ignored) { }
+        String sign = Signer.hmacBase64(Signer.HMAC_SHA256, secret, timestamp + "GET/users/self/verify");
         super.commandLog(String.format("{\"op\":\"login\",\"args\":[\"%s\",\"%s\",\"%s\",\"%s\"]}",
                 Seal.seal(access), Seal.seal(passphrase), timestamp, sign),
                 Okexv3WebSocketClient.URL);
@@ -138,11 +188,34 @@ public class Okexv3WebSocketClient extends BaseWebSocketClient {
         this.client.send(message);
     }
 
+    /**
+     * 分发队列丢帧，增量深度已经不连续，重新订阅拿全量
+     */
+    void overflow() {
+        if (this.depthSubscribed) {
+            this.sync.stale();
+        }
+    }
+
+    /**
+     * 分发队列情况
+     */
+    public FrameDispatcher getDispatcher() {
+        if (null != this.connection) {
+            return this.connection.getDispatcher();
+        }
+        return this.offline ? null : this.client.getDispatcher();
+    }
+
+    String getInstrumentId() {
+        return this.instrumentId;
+    }
+
     @Override
     public void closed() {
         this.connected = false;
-        if (!this.dead) {
-            this.client.connect();
+        if (!this.dead && !this.offline) {
+            this.client.reconnect();
         }
     }
 
@@ -154,6 +227,10 @@ public class Okexv3WebSocketClient extends BaseWebSocketClient {
 
     @Override
     public void ping() {
+        if (null != this.connection) {
+            // 共用连接自己定时ping
+            return;
+        }
         // okhttp 30s 未收消息会关闭连接
         // 所以定时发个命令，也算是接收消息了
         if (this.limit.timeout(true)) {
@@ -161,8 +238,28 @@ public class Okexv3WebSocketClient extends BaseWebSocketClient {
         }
     }
 
+    @Override
+    protected void receive(CharSequence message) {
+        if (this.offline) {
+            String text = message.toString();
+            if (!Okexv3Connection.dispatch(text, id -> this.instrumentId.equals(id) ? this : null, this.log)) {
+                this.log.debug("skip: {}", text);
+            }
+            return;
+        }
+        super.receive(message);
+    }
+
     @Override
     protected void transform(String message) {
+        // 深度推送最频繁，流式解析
+        Okexv3Util.DepthFrame depth = Okexv3Util.parseDepthFrame(message);
+        if (null != depth) {
+            if (!this.depth(depth)) {
+                this.log.error("can not transform: {}", message);
+            }
+            return;
+        }
         JSONObject r = JSON.parseObject(message);
         if (r.containsKey(EVENT)) {
             switch (r.getString(EVENT)) {
@@ -182,7 +279,8 @@ public class Okexv3WebSocketClient extends BaseWebSocketClient {
                             this.count = account.getQuote();
                         }
                         this.login = true;
-                        this.loginCommands.forEach(this::send);
+                        Okexv3Connection.commands("subscribe", new ArrayList<>(this.loginSubscriptions))
+                                .forEach(this::send);
                     }
                     return;
                 case "error":
@@ -206,43 +304,53 @@ public class Okexv3WebSocketClient extends BaseWebSocketClient {
                 default:
             }
         }
-        if (r.containsKey(TABLE)) {
-            String table = r.getString(TABLE);
-            switch (table) {
-                case "spot/ticker":
-                    // 解析Ticker
-                    this.transformTicker(r);
-                    return;
-                case "spot/depth":
-                    // 解析Depth
-                    if (this.transformDepth(r)) {
-                        return;
-                    }
-                    super.limit.update();
-                    break;
-                case "spot/trade":
-                    // 解析Trades
-                    this.transformTrades(r);
-                    return;
-                case "spot/account":
-                    // 解析account
-                    log.info("account: {}", message);
-                    this.transformAccount(r);
-                    return;
-                case "spot/order":
-                    // 解析Trades
-                    this.transformOrders(r);
-                    return;
-                default:
-            }
-            if (table.startsWith(KLINE_START)) {
-                this.transformKlines(table, r);
-                return;
-            }
+        if (r.containsKey(TABLE) && this.table(r)) {
+            return;
         }
         this.log.error("can not transform: {}", message);
     }
 
+    /**
+     * 处理推送数据，共用连接按币对路由过来
+     * @param r 推送数据
+     * @return 是否处理
+     */
+    boolean table(JSONObject r) {
+        String table = r.getString(TABLE);
+        switch (table) {
+            case "spot/ticker":
+                // 解析Ticker
+                this.transformTicker(r);
+                return true;
+            case "spot/depth":
+                // 解析Depth
+                if (this.transformDepth(r)) {
+                    return true;
+                }
+                super.limit.update();
+                return false;
+            case "spot/trade":
+                // 解析Trades
+                this.transformTrades(r);
+                return true;
+            case "spot/account":
+                // 解析account
+                log.info("account: {}", r);
+                this.transformAccount(r);
+                return true;
+            case "spot/order":
+                // 解析Trades
+                this.transformOrders(r);
+                return true;
+            default:
+        }
+        if (table.startsWith(KLINE_START)) {
+            this.transformKlines(table, r);
+            return true;
+        }
+        return false;
+    }
+
     private void transformOrders(JSONObject r) {
         Orders orders = Okexv3Util.parseOrders(r.getJSONArray("data"));
         if (exist(orders)) {
@@ -279,42 +387,44 @@ public class Okexv3WebSocketClient extends BaseWebSocketClient {
     }
 
     private boolean transformDepth(JSONObject r) {
-        String action = r.getString("action");
+        JSONObject data = r.getJSONArray("data").getJSONObject(0);
+        return this.depth(r.getString("action"), data.getDate("timestamp").getTime(),
+                CommonUtil.parseRowsByIndex(data.getJSONArray("asks")),
+                CommonUtil.parseRowsByIndex(data.getJSONArray("bids")),
+                data.containsKey(CHECK_SUM) ? data.getLong(CHECK_SUM) : null);
+    }
+
+    /**
+     * 处理流式解析的深度推送，共用连接按币对路由过来
+     * @param frame 深度推送
+     * @return 是否处理
+     */
+    boolean depth(Okexv3Util.DepthFrame frame) {
+        boolean done = this.depth(frame.getAction(), frame.getTime(), frame.getAsks(), frame.getBids(),
+                frame.getChecksum());
+        if (!done) {
+            super.limit.update();
+        }
+        return done;
+    }
+
+    private boolean depth(String action, Long time, List<Row> asks, List<Row> bids, Long checksum) {
         if (PARTIAL.equals(action) || UPDATE.equals(action)) {
             try {
                 if (this.depthLock.tryLock(TRY_TIME, TimeUnit.MILLISECONDS)) {
                     try {
                         Depth depth = null;
-                        r = r.getJSONArray("data").getJSONObject(0);
                         if (PARTIAL.equals(action)) {
                             // 全更新
-                            depth = Okexv3Util.parseDepth(r);
-                            this.depthLimit.update();
-                            this.updateLocalRows(depth.getAsks().getList(), depth.getBids().getList());
+                            if (this.sync.snapshot(BookSync.NONE, asks, bids)) {
+                                depth = this.sync.depth(time);
+                            }
                         } else {
-                            // 部分更新
-                            Long time = r.getDate("timestamp").getTime();
-                            // 把更新的替换
-                            List<Row> asks = CommonUtil.parseRowsByIndex(r.getJSONArray("asks"));
-                            List<Row> bids = CommonUtil.parseRowsByIndex(r.getJSONArray("bids"));
-                            asks.forEach(row -> this.asks.put(row.getPrice(), row));
-                            bids.forEach(row -> this.bids.put(row.getPrice(), row));
-                            // 排序过滤
-                            asks = this.asks.values().stream()
-                                    .filter(row -> 0 < row.getAmount().compareTo(BigDecimal.ZERO))
-                                    .sorted(Comparator.comparing(Row::getPrice))
-                                    .limit(MAX)
-                                    .collect(Collectors.toList());
-                            bids = this.bids.values().stream()
-                                    .filter(row -> 0 < row.getAmount().compareTo(BigDecimal.ZERO))
-                                    .sorted((r1, r2) -> r2.getPrice().compareTo(r1.getPrice()))
-                                    .limit(MAX)
-                                    .collect(Collectors.toList());
-                            boolean check = this.depthCheckSum(asks, bids, r);
-                            if (check) {
-                                depth = new Depth(time, new Rows(asks), new Rows(bids));
+                            // 部分更新，把更新的合并到本地盘口，盘口本身有序
+                            if (this.sync.delta(BookSync.NONE, BookSync.NONE, asks, bids,
+                                    book -> null == checksum || this.checkSum.check(book, checksum))) {
+                                depth = this.sync.depth(time);
                             }
-                            this.updateLocalRows(asks, bids);
                         }
                         if (exist(depth)) {
                             super.onDepth(depth);
@@ -332,59 +442,6 @@ public class Okexv3WebSocketClient extends BaseWebSocketClient {
         return false;
     }
 
-    private boolean depthCheckSum(List<Row> asks, List<Row> bids, JSONObject r) {
-        // 检查
-        // 校验个数
-        int size = 25;
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < size; i++) {
-            if (i < bids.size()) {
-                // COLON ':'
-                sb.append(bids.get(i).getPrice().toPlainString())
-                        .append(COLON)
-                        .append(bids.get(i).getAmount().toPlainString())
-                        .append(COLON);
-            }
-            if (i < asks.size()) {
-                // COLON ':'
-                sb.append(asks.get(i).getPrice().toPlainString())
-                        .append(COLON)
-                        .append(asks.get(i).getAmount().toPlainString())
-                        .append(COLON);
-            }
-        }
-        if (0 < sb.length()
-                && COLON == sb.charAt(sb.length() - 1)
-                && r.containsKey(CHECK_SUM)) {
-            sb.deleteCharAt(sb.length() - 1);
-            long check = Okexv3WebSocketClient.crc32(sb.toString().getBytes());
-            Long checkSum = r.getLong(CHECK_SUM);
-            if (check != checkSum) {
-                // 校验不通过
-                if (this.depthLimit.timeout(true)) {
-                    // 如果10s都不是完全正确的，则强制注册推送完整版
-                    this.send("subscribe", "spot/depth", false);
-                    return false;
-                }
-            }
-        }
-        this.depthLimit.update();
-        return true;
-    }
-
-    private static long crc32(byte[] data) {
-        CRC32 crc32 = new CRC32();
-        crc32.update(data);
-        return crc32.getValue();
-    }
-
-    private void updateLocalRows(List<Row> asks, List<Row> bids) {
-        this.asks.clear();
-        asks.forEach(row -> this.asks.put(row.getPrice(), row));
-        this.bids.clear();
-        bids.forEach(row -> this.bids.put(row.getPrice(), row));
-    }
-
     private void transformKlines(String table, JSONObject r) {
         String type = table.substring(11);
         type = type.substring(0, type.length() - 1);
@@ -393,7 +450,7 @@ public class Okexv3WebSocketClient extends BaseWebSocketClient {
         Kline kline = Okexv3Util.parseKline(result,
                 r.getJSONArray("data").getJSONObject(0).getJSONArray("candle"));
         if (exist(kline)) {
-            Klines klines = this.onKline(kline, period);
+            Klines klines = super.onKline(kline, period, ExchangeName.OKEXV3);
             if (null != klines) {
                 super.onKlines(klines, period);
             }
@@ -416,66 +473,21 @@ public class Okexv3WebSocketClient extends BaseWebSocketClient {
      */
     private static final long TRY_TIME = 3000;
     /**
-     * k线保留最大长度
+     * 盘口保留最大档数
      */
     private static final int MAX = 200;
 
-    /**
-     * 构造Klines
-     * @param kline 最新的k线
-     * @param period 周期
-     * @return 100根k线
-     */
-    private Klines onKline(Kline kline, Period period) {
-        Lock lock = this.klinesLocks.computeIfAbsent(period, p -> new ReentrantLock());
-        try {
-            if (lock.tryLock(TRY_TIME, TimeUnit.MILLISECONDS)) {
-                try {
-                    ConcurrentLinkedDeque<Kline> klines =
-                            this.klines.computeIfAbsent(period, p -> new ConcurrentLinkedDeque<>());
-                    if (klines.isEmpty()) {
-                        // 如果没有k线，则通过http方式获取
-                        try {
-                            Klines cs = ExchangeManager.getHttpExchange(ExchangeName.OKEXV3, this.log)
-                                    .getKlines(ExchangeInfo.klines(super.symbol, "", "", period));
-                            klines.addAll(cs.getList());
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                            this.log.error(e.getMessage());
-                        }
-                    }
-                    if (klines.isEmpty()) {
-                        klines.add(kline);
-                    } else {
-                        // 取出第1根，比较时间，相同则替换，不相同则插入，然后判断长度，
-                        Kline c = klines.peek();
-                        if (c.getTime().equals(kline.getTime())) {
-                            // 相同
-                            klines.poll();
-                            klines.addFirst(kline);
-                        } else {
-                            klines.addFirst(kline);
-                            while (MAX < klines.size()) {
-                                klines.pollLast();
-                            }
-                        }
-                    }
-                    return new Klines(new ArrayList<>(klines));
-                } finally {
-                    lock.unlock();
-                }
-            }
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-            this.log.error(e.getMessage());
-        }
-        return null;
-    }
-
     @Override
     public void close(int code, String reason) {
         this.dead = true;
-        this.client.close(code, reason);
+        super.noPing();
+        if (null != this.connection) {
+            this.connection.remove(this);
+            return;
+        }
+        if (!this.offline) {
+            this.client.close(code, reason);
+        }
     }
 
     /**
@@ -484,14 +496,27 @@ public class Okexv3WebSocketClient extends BaseWebSocketClient {
      * @param channel 订阅类型 spot/ticker spot/candle60s 等
      */
     private void send(String command, String channel, boolean record) {
-        String symbol = super.symbol.replace("_", "-");
-        String message = String.format("{\"op\":\"%s\",\"args\":[\"%s:%s\"]}", command, channel, symbol);
-        super.commandLog(message, Okexv3WebSocketClient.URL);
+        if (null != this.connection) {
+            String arg = channel + ":" + this.instrumentId;
+            if (!record) {
+                this.connection.command(command, arg);
+            } else if ("subscribe".equals(command)) {
+                this.connection.subscribe(arg);
+            } else {
+                this.connection.unsubscribe(arg);
+            }
+            return;
+        }
+        String arg = channel + ":" + this.instrumentId;
         if (record) {
-            this.commands.add(message);
+            if ("subscribe".equals(command)) {
+                this.subscriptions.add(arg);
+            } else {
+                this.subscriptions.remove(arg);
+            }
         }
         if (this.connected) {
-            this.send(message);
+            this.send(Okexv3Connection.commands(command, Collections.singletonList(arg)).get(0));
         }
     }
 
@@ -547,11 +572,14 @@ public class Okexv3WebSocketClient extends BaseWebSocketClient {
 
     @Override
     protected void askDepth() {
+        this.depthSubscribed = true;
+        this.sync.stale();
         this.send("subscribe", "spot/depth", true);
     }
 
     @Override
     public void noDepth() {
+        this.depthSubscribed = false;
         this.send("unsubscribe", "spot/depth", true);
     }
 
@@ -569,55 +597,52 @@ public class Okexv3WebSocketClient extends BaseWebSocketClient {
     protected void askAccount() {
 //        this.askTicker();
         String[] split = CommonUtil.split(super.symbol);
-        String message1 = "{\"op\": \"subscribe\", \"args\": [\"spot/account:" + split[0] + "\"]}";
-        String message2 = "{\"op\": \"subscribe\", \"args\": [\"spot/account:" + split[1] + "\"]}";
-        this.loginCommand(message1);
-        this.loginCommand(message2);
+        this.loginCommand("subscribe", "spot/account:" + split[0]);
+        this.loginCommand("subscribe", "spot/account:" + split[1]);
     }
 
-    private void loginCommand(String command) {
-        this.loginCommands.add(command);
+    /**
+     * 需要登录的订阅，已经登录则直接发送，否则登录后发送
+     * @param command subscribe unsubscribe
+     * @param arg channel:xxx
+     */
+    private void loginCommand(String command, String arg) {
+        if ("subscribe".equals(command)) {
+            this.loginSubscriptions.add(arg);
+        } else {
+            this.loginSubscriptions.remove(arg);
+        }
         if (this.login) {
-            super.commandLog(command, Okexv3WebSocketClient.URL);
-            this.send(command);
+            this.send(Okexv3Connection.commands(command, Collections.singletonList(arg)).get(0));
         }
     }
 
     @Override
     public void noAccount() {
         String[] split = CommonUtil.split(super.symbol);
-        String message1 = "{\"op\": \"unsubscribe\", \"args\": [\"spot/account:" + split[0] + "\"]}";
-        String message2 = "{\"op\": \"unsubscribe\", \"args\": [\"spot/account:" + split[1] + "\"]}";
-        this.loginCommand(message1);
-        this.loginCommand(message2);
+        this.loginCommand("unsubscribe", "spot/account:" + split[0]);
+        this.loginCommand("unsubscribe", "spot/account:" + split[1]);
     }
 
     @Override
     protected void askOrders() {
-        String message = "{\"op\":\"subscribe\",\"args\":[\"spot/order:"
-                + super.symbol.replace("_", "-") + "\"]}";
-        this.loginCommands.add(message);
-        this.send(message);
+        this.loginCommand("subscribe", "spot/order:" + this.instrumentId);
     }
 
     @Override
     public void noOrders() {
-        String message = "{\"op\":\"unsubscribe\",\"args\":[\"spot/order:"
-                + super.symbol.replace("_", "-") + "\"]}";
-        this.loginCommands.add(message);
-        this.send(message);
+        this.loginCommand("unsubscribe", "spot/order:" + this.instrumentId);
     }
 
     // ================= tools =================
 
-    private static final String EVENT = "event";
-    private static final String TABLE = "table";
-    private static final String MESSAGE = "message";
-    private static final String ALIVE = "alive";
+    static final String EVENT = "event";
+    static final String TABLE = "table";
+    static final String MESSAGE = "message";
+    static final String ALIVE = "alive";
     private static final String KLINE_START = "spot/candle";
     private static final String PARTIAL = "partial";
     private static final String UPDATE = "update";
-    private static final char COLON = ':';
     private static final String CHECK_SUM = "checksum";
     private static final String SUCCESS = "success";
     private static final String ERROR_CODE = "errorCode";
@@ -3,8 +3,6 @@ package cqt.goai.exchange.web.socket.okexv3;
 import cqt.goai.exchange.Action;
 import cqt.goai.exchange.ExchangeInfo;
 import cqt.goai.exchange.ExchangeName;
-import cqt.goai.exchange.util.RateLimit;
-import cqt.goai.exchange.web.socket.BaseWebSocketClient;
 import cqt.goai.exchange.web.socket.WebSocketExchange;
 import cqt.goai.exchange.web.socket.WebSocketInfo;
 import cqt.goai.model.enums.Period;
@@ -28,11 +26,6 @@ import static dive.common.util.Util.exist;
  */
 public class Okexv3WebSocketExchange extends WebSocketExchange {
 
-    /**
-     * ping的频率限制
-     */
-    private static final RateLimit LIMIT = RateLimit.limit(1000 * 17);
-
     /**
      * 订阅id和每个订阅基本信息  id -> info
      */
@@ -90,18 +83,6 @@ public class Okexv3WebSocketExchange extends WebSocketExchange {
         super(ExchangeName.OKEXV3, log);
     }
 
-    @Override
-    protected void ping() {
-        if (!Okexv3WebSocketExchange.LIMIT.timeout()) {
-            return;
-        }
-        // 已经到了ping的时间了，就要遍历每个连接，ping一下
-        Okexv3WebSocketExchange.CLIENTS.values().parallelStream().forEach(BaseWebSocketClient::ping);
-        if (null != this.client) {
-            this.client.ping();
-        }
-    }
-
     /**
      * 统一添加订阅
      * @param list 订阅list
@@ -142,9 +123,7 @@ public class Okexv3WebSocketExchange extends WebSocketExchange {
         Okexv3WebSocketClient client = this.addInfo(list, onInfo, symbol);
         if (null != client) {
             // 对这个连接订阅ticker
-            client.onTicker(ticker -> list.stream()
-                    .parallel()
-                    .forEach(i -> i.getConsumer().accept(ticker)));
+            client.onTicker(ticker -> list.forEach(i -> i.getConsumer().accept(ticker)));
         }
         // 将这个订阅添加到总记录里
         Okexv3WebSocketExchange.CONSUMERS.put(id, onInfo);
@@ -188,8 +167,7 @@ public class Okexv3WebSocketExchange extends WebSocketExchange {
         Okexv3WebSocketClient client = this.addInfo(list, onInfo, symbol);
         if (null != client) {
             // 对这个连接订阅klines
-            client.onKlines(klines -> list.stream().parallel()
-                    .forEach(i -> i.getConsumer().accept(klines)), period);
+            client.onKlines(klines -> list.forEach(i -> i.getConsumer().accept(klines)), period);
         }
         // 将这个订阅添加到总记录里
         Okexv3WebSocketExchange.CONSUMERS.put(id, onInfo);
@@ -234,8 +212,7 @@ public class Okexv3WebSocketExchange extends WebSocketExchange {
         Okexv3WebSocketClient client = this.addInfo(list, onInfo, symbol);
         if (null != client) {
             // 对这个连接订阅depth
-            client.onDepth(depth -> list.stream().parallel()
-                    .forEach(i -> i.getConsumer().accept(depth)));
+            client.onDepth(depth -> list.forEach(i -> i.getConsumer().accept(depth)));
         }
         // 将这个订阅添加到总记录里
         Okexv3WebSocketExchange.CONSUMERS.put(id, onInfo);
@@ -277,8 +254,7 @@ public class Okexv3WebSocketExchange extends WebSocketExchange {
         Okexv3WebSocketClient client = this.addInfo(list, onInfo, symbol);
         if (null != client) {
             // 对这个连接订阅ticker
-            client.onTrades(trades -> list.stream().parallel()
-                    .forEach(i -> i.getConsumer().accept(trades)));
+            client.onTrades(trades -> list.forEach(i -> i.getConsumer().accept(trades)));
         }
         // 将这个订阅添加到总记录里
         Okexv3WebSocketExchange.CONSUMERS.put(id, onInfo);
@@ -320,8 +296,7 @@ public class Okexv3WebSocketExchange extends WebSocketExchange {
         }
         this.accounts.add(onInfo);
         // 对这个连接订阅account
-        this.client.onAccount(account -> this.accounts.stream().parallel()
-                .forEach(i -> i.getConsumer().accept(account)));
+        this.client.onAccount(account -> this.accounts.forEach(i -> i.getConsumer().accept(account)));
         // 将这个订阅添加到总记录里
         Okexv3WebSocketExchange.CONSUMERS.put(id, onInfo);
         return true;
@@ -356,8 +331,7 @@ public class Okexv3WebSocketExchange extends WebSocketExchange {
         }
         this.orders.add(onInfo);
         // 对这个连接订阅orders
-        this.client.onOrders(orders -> this.orders.stream().parallel()
-                .forEach(i -> i.getConsumer().accept(orders)));
+        this.client.onOrders(orders -> this.orders.forEach(i -> i.getConsumer().accept(orders)));
         // 将这个订阅添加到总记录里
         Okexv3WebSocketExchange.CONSUMERS.put(id, onInfo);
         return true;
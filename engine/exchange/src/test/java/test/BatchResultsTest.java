@@ -0,0 +1,93 @@
+package test;
+
+import cqt.goai.exchange.ExchangeInfo;
+import cqt.goai.exchange.http.BatchResults;
+import cqt.goai.exchange.http.okexv3.Okexv3Exchange;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 一批请求中部分失败
+ * @author GOAi
+ */
+public class BatchResultsTest {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchResultsTest.class);
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r);
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Test
+    public void oneFails() {
+        for (int concurrency : new int[]{1, 4}) {
+            BatchResults results = BatchResults.execute(5, concurrency, this.executor, i -> {
+                if (2 == i) {
+                    throw new IllegalStateException("timeout");
+                }
+                return "r" + i;
+            }, log);
+            Assert.assertEquals(5, results.size());
+            Assert.assertEquals(Collections.singletonList(2), results.getFailed());
+            Assert.assertTrue(results.isFailed(2));
+            Assert.assertTrue(BatchResults.failed(results, 2));
+            Assert.assertFalse(BatchResults.failed(results, 3));
+            Assert.assertNull(results.get(2));
+            Assert.assertEquals("timeout", results.getException(2).getMessage());
+            Assert.assertEquals(Arrays.asList("r0", "r1", null, "r3", "r4"), results);
+        }
+    }
+
+    @Test
+    public void allFail() {
+        try {
+            BatchResults.execute(3, 3, this.executor, i -> {
+                throw new IllegalStateException("failed " + i);
+            }, log);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("failed 0", e.getMessage());
+        }
+    }
+
+    @Test
+    public void multiBuy() {
+        // 3批下单，第2批请求失败，其他批次已经成功的订单id不能丢
+        List<String> responses = Arrays.asList(
+                "{\"btc_usdt\":[{\"client_oid\":\"1\",\"order_id\":\"101\",\"result\":true}," +
+                        "{\"client_oid\":\"2\",\"order_id\":\"102\",\"result\":true}]}",
+                null,
+                "{\"btc_usdt\":[{\"client_oid\":\"5\",\"order_id\":\"105\",\"result\":true}," +
+                        "{\"client_oid\":\"6\",\"order_id\":\"-1\",\"result\":false}]}");
+        BatchResults results = BatchResults.execute(3, 3, this.executor, i -> {
+            if (null == responses.get(i)) {
+                throw new IllegalStateException("connection reset");
+            }
+            return responses.get(i);
+        }, log);
+        Okexv3Exchange exchange = new Okexv3Exchange(log);
+        ExchangeInfo info = ExchangeInfo.multiBuy("BTC_USDT", "access", "secret", Collections.emptyList());
+        Assert.assertEquals(Arrays.asList("101", "102", "105"), exchange.transformMultiBuy(results, info));
+
+        ExchangeInfo cancel = ExchangeInfo.cancelOrders("BTC_USDT", "access", "secret",
+                Arrays.asList("101", "102", "105"));
+        BatchResults canceled = BatchResults.execute(2, 2, this.executor, i -> {
+            if (0 == i) {
+                throw new IllegalStateException("connection reset");
+            }
+            return "{\"btc-usdt\":{\"order_id\":[\"105\"],\"result\":true}}";
+        }, log);
+        Assert.assertEquals(Collections.singletonList("105"), exchange.transformCancelOrders(canceled, cancel));
+    }
+
+}
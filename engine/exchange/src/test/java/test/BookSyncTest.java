@@ -0,0 +1,111 @@
+package test;
+
+import cqt.goai.exchange.web.socket.BookSync;
+import cqt.goai.model.market.Depth;
+import cqt.goai.model.market.Row;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 增量深度同步
+ * @author GOAi
+ */
+public class BookSyncTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BookSyncTest.class);
+
+    private static List<Row> rows(String price, String amount) {
+        return Collections.singletonList(new Row(null, new BigDecimal(price), new BigDecimal(amount)));
+    }
+
+    private static BigDecimal bid(Depth depth) {
+        return depth.getBids().getList().get(0).getPrice();
+    }
+
+    @Test
+    public void async() {
+        AtomicInteger requests = new AtomicInteger();
+        BookSync sync = new BookSync("BTC_USDT", 200, 100, s -> requests.incrementAndGet(), LOG);
+
+        // 第一条增量请求快照，快照返回前缓存
+        Assert.assertFalse(sync.delta(9, 10, rows("101", "1"), rows("99", "1")));
+        Assert.assertEquals(1, requests.get());
+        Assert.assertEquals(BookSync.State.SYNCING, sync.getState());
+        Assert.assertFalse(sync.delta(10, 11, null, rows("99.5", "1")));
+        Assert.assertFalse(sync.delta(11, 12, null, rows("99.8", "1")));
+
+        // 快照在10和11之间，丢弃10，合并11 12
+        Assert.assertTrue(sync.snapshot(10, rows("101", "1"), rows("99", "1")));
+        Assert.assertEquals(BookSync.State.LIVE, sync.getState());
+        Assert.assertEquals(12, sync.getSeq());
+        Assert.assertEquals(new BigDecimal("99.8"), bid(sync.depth(0L)));
+
+        // 正常接上
+        Assert.assertTrue(sync.delta(12, 13, null, rows("99.8", "0")));
+        Assert.assertEquals(new BigDecimal("99.5"), bid(sync.depth(0L)));
+        Assert.assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void gap() throws InterruptedException {
+        AtomicInteger requests = new AtomicInteger();
+        BookSync sync = new BookSync("BTC_USDT", 200, 100, s -> requests.incrementAndGet(), LOG);
+        sync.delta(0, 1, null, null);
+        Assert.assertTrue(sync.snapshot(5, rows("101", "1"), rows("99", "1")));
+        // 第一条可以与快照重叠
+        Assert.assertTrue(sync.delta(3, 6, null, rows("99.1", "1")));
+        Assert.assertEquals(1, requests.get());
+
+        // 两次请求间隔不足时不请求
+        Assert.assertFalse(sync.delta(7, 8, null, null));
+        Assert.assertEquals(1, requests.get());
+        Assert.assertEquals(BookSync.State.STALE, sync.getState());
+
+        Thread.sleep(1100);
+        // 丢了7，重新请求快照，这一条缓存
+        Assert.assertFalse(sync.delta(8, 9, null, rows("99.2", "1")));
+        Assert.assertEquals(2, requests.get());
+        Assert.assertTrue(sync.snapshot(8, rows("101", "1"), rows("99", "1")));
+        Assert.assertEquals(9, sync.getSeq());
+        Assert.assertEquals(new BigDecimal("99.2"), bid(sync.depth(0L)));
+    }
+
+    @Test
+    public void synchronous() {
+        // 请求函数内直接返回快照，如币安通过http获取
+        BookSync sync = new BookSync("BTC_USDT", 200, 0,
+                s -> s.snapshot(100, rows("101", "1"), rows("99", "1")), LOG);
+        // 快照之前的增量丢弃，仍然可以发布
+        Assert.assertTrue(sync.delta(90, 100, null, rows("98", "1")));
+        Assert.assertEquals(1, sync.depth(0L).getBids().getList().size());
+        Assert.assertTrue(sync.delta(100, 101, null, rows("98", "1")));
+        Assert.assertEquals(2, sync.depth(0L).getBids().getList().size());
+    }
+
+    @Test
+    public void crossed() {
+        AtomicInteger requests = new AtomicInteger();
+        BookSync sync = new BookSync("BTC_USDT", 200, 0, s -> requests.incrementAndGet(), LOG);
+        Assert.assertTrue(sync.snapshot(BookSync.NONE, rows("101", "1"), rows("99", "1")));
+        // 没有序号时只能靠校验，买一高于卖一不发布，重新请求
+        Assert.assertFalse(sync.delta(BookSync.NONE, BookSync.NONE, null, rows("102", "1")));
+        Assert.assertEquals(1, requests.get());
+        Assert.assertEquals(BookSync.State.SYNCING, sync.getState());
+        // 等待快照期间没有序号的增量直接丢弃
+        Assert.assertFalse(sync.delta(BookSync.NONE, BookSync.NONE, null, rows("99.5", "1")));
+        Assert.assertTrue(sync.snapshot(BookSync.NONE, rows("101", "1"), rows("99", "1")));
+        Assert.assertEquals(new BigDecimal("99"), bid(sync.depth(0L)));
+
+        // 交易所校验不通过
+        Assert.assertFalse(sync.delta(BookSync.NONE, BookSync.NONE, null, rows("99.1", "1"), book -> false));
+        Assert.assertEquals(BookSync.State.STALE, sync.getState());
+    }
+
+}
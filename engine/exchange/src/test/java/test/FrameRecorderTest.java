@@ -0,0 +1,59 @@
+package test;
+
+import cqt.goai.exchange.util.FrameRecorder;
+import okio.ByteString;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 原始推送帧记录
+ * @author GOAi
+ */
+public class FrameRecorderTest {
+
+    @Test
+    public void record() throws IOException {
+        Path dir = Files.createTempDirectory("frames");
+        List<String> sent = new ArrayList<>();
+        // 每段很小，强制换段
+        try (FrameRecorder recorder = new FrameRecorder(dir, "test", 256)) {
+            for (int i = 0; i < 50; i++) {
+                String message = "{\"seq\":" + i + "}";
+                sent.add(message);
+                byte type = 0 == i % 2 ? FrameRecorder.TEXT : FrameRecorder.BINARY;
+                recorder.record(type, i, ByteString.encodeUtf8(message));
+            }
+            // 超过每段大小的帧单独一段
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 100; i++) {
+                sb.append("0123456789");
+            }
+            sent.add(sb.toString());
+            recorder.record(FrameRecorder.TEXT, 50, ByteString.encodeUtf8(sb.toString()));
+            Assert.assertEquals(51, recorder.getFrames());
+            Assert.assertTrue(0 < recorder.getIndex());
+        }
+
+        List<Path> segments = FrameRecorder.segments(dir, "test");
+        Assert.assertTrue(1 < segments.size());
+        List<String> received = new ArrayList<>();
+        long count = 0;
+        for (Path segment : segments) {
+            count += FrameRecorder.read(segment, (type, nanos, frame) -> {
+                Assert.assertEquals(received.size(), nanos);
+                Assert.assertEquals(0 == nanos % 2 ? FrameRecorder.TEXT : FrameRecorder.BINARY, type);
+                received.add(StandardCharsets.UTF_8.decode(frame).toString());
+            });
+        }
+        Assert.assertEquals(51, count);
+        Assert.assertEquals(sent, received);
+    }
+
+}
@@ -0,0 +1,141 @@
+package test;
+
+import cqt.goai.exchange.util.HedgedCall;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 超时、对冲调用
+ * @author GOAi
+ */
+public class HedgedCallTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r);
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Test
+    public void fast() throws TimeoutException {
+        AtomicInteger hedged = new AtomicInteger();
+        String r = HedgedCall.call(this.executor, () -> "first", 1000 * MS, 100 * MS,
+                hedged::incrementAndGet, null);
+        Assert.assertEquals("first", r);
+        Assert.assertEquals(0, hedged.get());
+    }
+
+    @Test
+    public void hedge() throws TimeoutException {
+        AtomicInteger hedged = new AtomicInteger();
+        AtomicInteger won = new AtomicInteger();
+        String r = HedgedCall.call(this.executor, calls(() -> {
+            sleep(500);
+            return "first";
+        }, () -> "second"), 1000 * MS, 50 * MS, hedged::incrementAndGet, won::incrementAndGet);
+        Assert.assertEquals("second", r);
+        Assert.assertEquals(1, hedged.get());
+        // 在对冲调用的线程上回调，可能稍晚于结果返回
+        for (int i = 0; i < 100 && 0 == won.get(); i++) {
+            sleep(10);
+        }
+        Assert.assertEquals(1, won.get());
+    }
+
+    @Test
+    public void firstFailsWhileHedging() throws TimeoutException {
+        // 第一次调用在对冲发出后失败，仍然等待对冲的结果
+        String r = HedgedCall.call(this.executor, calls(() -> {
+            sleep(80);
+            throw new IllegalStateException("first");
+        }, () -> {
+            sleep(150);
+            return "second";
+        }), 1000 * MS, 50 * MS, null, null);
+        Assert.assertEquals("second", r);
+    }
+
+    @Test
+    public void allFail() throws TimeoutException {
+        try {
+            HedgedCall.call(this.executor, calls(() -> {
+                sleep(100);
+                throw new IllegalStateException("first");
+            }, () -> {
+                sleep(150);
+                throw new IllegalStateException("second");
+            }), 1000 * MS, 50 * MS, null, null);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("second", e.getMessage());
+        }
+        // 不对冲时直接抛出第一次调用的异常
+        try {
+            HedgedCall.call(this.executor, () -> {
+                throw new IllegalStateException("only");
+            }, 1000 * MS, -1, null, null);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("only", e.getMessage());
+        }
+    }
+
+    @Test
+    public void timeout() throws InterruptedException {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        long start = System.nanoTime();
+        try {
+            HedgedCall.call(this.executor, () -> {
+                try {
+                    Thread.sleep(5000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return "late";
+            }, 100 * MS, -1, null, null);
+            Assert.fail();
+        } catch (TimeoutException ignored) { }
+        Assert.assertTrue(System.nanoTime() - start < 1000 * MS);
+        // 超时后中断调用
+        Assert.assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void rejected() throws TimeoutException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        Thread caller = Thread.currentThread();
+        // 线程池已满时在调用线程执行
+        Boolean r = HedgedCall.call(executor, () -> Thread.currentThread() == caller,
+                1000 * MS, 50 * MS, null, null);
+        Assert.assertTrue(r);
+    }
+
+    /**
+     * 依次使用不同的调用
+     */
+    @SafeVarargs
+    private static <R> Supplier<R> calls(Supplier<R>... calls) {
+        AtomicInteger count = new AtomicInteger();
+        return () -> calls[Math.min(count.getAndIncrement(), calls.length - 1)].get();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+package test;
+
+import cqt.goai.exchange.util.Histogram;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 直方图分位数误差
+ * @author GOAi
+ */
+public class HistogramTest {
+
+    @Test
+    public void percentile() {
+        Histogram histogram = new Histogram();
+        Random random = new Random(42);
+        long[] values = new long[100000];
+        for (int i = 0; i < values.length; i++) {
+            // 0.1ms ~ 1s 的对数分布，纳秒
+            values[i] = (long) Math.pow(10, 5 + random.nextDouble() * 4);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(values.length, snapshot.getCount());
+        Assert.assertEquals(values[values.length - 1], snapshot.getMax());
+        for (double q : new double[]{0.5, 0.9, 0.99, 0.999}) {
+            long exact = values[(int) Math.ceil(q * values.length) - 1];
+            long value = snapshot.percentile(q);
+            Assert.assertTrue(q + " " + exact + " " + value, Math.abs(value - exact) <= exact / 32);
+        }
+    }
+
+    @Test
+    public void small() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+        histogram.record(-1);
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(11, snapshot.getCount());
+        Assert.assertEquals(5, snapshot.getP50());
+        Assert.assertEquals(10, snapshot.percentile(1));
+        Assert.assertEquals(0, snapshot.percentile(0));
+        histogram.reset();
+        Assert.assertEquals(0, histogram.snapshot().getP99());
+    }
+
+}
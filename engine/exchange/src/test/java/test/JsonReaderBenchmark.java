@@ -0,0 +1,88 @@
+package test;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import cqt.goai.exchange.util.CommonUtil;
+import cqt.goai.exchange.util.okexv3.Okexv3Util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * 深度推送解析耗时与内存分配，JSONObject解析与流式解析对比
+ *
+ * 不是单元测试，手动运行 main，用 okexv3_depth.txt 中的每一帧完整解析:
+ * dom 为原来的 JSON.parseObject 后取 action、时间、asks、bids、checksum，
+ * stream 为 Okexv3Util.parseDepthFrame
+ * 每轮先预热再计时，结果为每帧的纳秒数和分配字节数(JVM不支持线程分配统计时为-1)
+ *
+ * @author GOAi
+ */
+public class JsonReaderBenchmark {
+
+    private static final int WARMUP = 200;
+    private static final int ROUNDS = 2000;
+
+    public static void main(String[] args) throws IOException {
+        List<String> frames = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                JsonReaderBenchmark.class.getResourceAsStream("/okexv3_depth.txt"), StandardCharsets.UTF_8))) {
+            String line;
+            while (null != (line = reader.readLine())) {
+                if (!line.isEmpty()) {
+                    frames.add(line);
+                }
+            }
+        }
+        run("dom", frames, JsonReaderBenchmark::dom);
+        run("stream", frames, JsonReaderBenchmark::stream);
+        run("dom", frames, JsonReaderBenchmark::dom);
+        run("stream", frames, JsonReaderBenchmark::stream);
+    }
+
+    /**
+     * 原来的解析方式，与 Okexv3WebSocketClient.transformDepth 一致
+     */
+    private static int dom(String message) {
+        JSONObject r = JSON.parseObject(message);
+        String action = r.getString("action");
+        JSONObject data = r.getJSONArray("data").getJSONObject(0);
+        long time = data.getDate("timestamp").getTime();
+        int size = CommonUtil.parseRowsByIndex(data.getJSONArray("asks")).size()
+                + CommonUtil.parseRowsByIndex(data.getJSONArray("bids")).size();
+        return action.length() + size + (int) time + data.getIntValue("checksum");
+    }
+
+    private static int stream(String message) {
+        Okexv3Util.DepthFrame frame = Okexv3Util.parseDepthFrame(message);
+        int size = frame.getAsks().size() + frame.getBids().size();
+        return frame.getAction().length() + size + frame.getTime().intValue() + frame.getChecksum().intValue();
+    }
+
+    private static void run(String name, List<String> frames, ToIntFunction<String> parse) {
+        int sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            for (String frame : frames) {
+                sink += parse.applyAsInt(frame);
+            }
+        }
+        long bytes = Okexv3CheckSumBenchmark.allocated();
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            for (String frame : frames) {
+                sink += parse.applyAsInt(frame);
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = 0 <= bytes ? Okexv3CheckSumBenchmark.allocated() - bytes : -1;
+        long ops = (long) ROUNDS * frames.size();
+        System.out.println(String.format("%-6s %d ops, %d ns/op, %d bytes/op (%d)",
+                name, ops, nanos / ops, 0 <= allocated ? allocated / ops : -1, sink));
+    }
+
+}
@@ -0,0 +1,120 @@
+package test;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import cqt.goai.exchange.util.CommonUtil;
+import cqt.goai.exchange.util.JsonReader;
+import cqt.goai.exchange.util.okexv3.Okexv3Util;
+import cqt.goai.model.market.Depth;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 流式解析与JSONObject解析结果一致，耗时和内存分配对比见 JsonReaderBenchmark
+ * @author GOAi
+ */
+public class JsonReaderTest {
+
+    @Test
+    public void reader() {
+        JsonReader reader = new JsonReader(
+                " {\"a\" : [1, {\"x\":[\"]\"]}, null], \"b\":\"x\\\"y\\u0041\", \"c\":-12.50, \"d\":true, \"e\":\"\"} ");
+        reader.beginObject();
+        Assert.assertEquals("a", reader.nextName());
+        reader.skipValue();
+        Assert.assertTrue(reader.hasNext());
+        Assert.assertEquals("b", reader.nextName());
+        Assert.assertEquals("x\"yA", reader.nextString());
+        reader.hasNext();
+        Assert.assertEquals("c", reader.nextName());
+        int start = reader.mark();
+        Assert.assertEquals(new BigDecimal("-12.50"), reader.nextDecimal());
+        Assert.assertEquals("-12.50", reader.raw(start));
+        reader.hasNext();
+        Assert.assertEquals("d", reader.nextName());
+        Assert.assertTrue(reader.nextBoolean());
+        reader.hasNext();
+        Assert.assertEquals("e", reader.nextName());
+        Assert.assertNull(reader.nextDecimal());
+        Assert.assertFalse(reader.hasNext());
+        reader.endObject();
+    }
+
+    @Test
+    public void frame() {
+        // 其他频道，或者table不在第一个字段，不流式解析
+        Assert.assertNull(Okexv3Util.parseDepthFrame("{\"table\":\"spot/ticker\",\"data\":[]}"));
+        Assert.assertNull(Okexv3Util.parseDepthFrame("{\"action\":\"update\",\"table\":\"spot/depth\"}"));
+        Assert.assertNull(Okexv3Util.parseDepthFrame("{\"event\":\"subscribe\",\"channel\":\"spot/depth:BTC-USDT\"}"));
+        Okexv3Util.DepthFrame frame = Okexv3Util.parseDepthFrame("{\"table\":\"spot/depth\",\"action\":\"update\"," +
+                "\"data\":[{\"instrument_id\":\"ETH-USDT\",\"asks\":[],\"bids\":[[\"1.5\",\"0\",\"0\"]]," +
+                "\"timestamp\":\"2019-01-15T09:51:00.157Z\"}]}");
+        Assert.assertNotNull(frame);
+        Assert.assertEquals("update", frame.getAction());
+        Assert.assertEquals("ETH-USDT", frame.getInstrumentId());
+        Assert.assertEquals(Long.valueOf(1547545860157L), frame.getTime());
+        Assert.assertTrue(frame.getAsks().isEmpty());
+        Assert.assertEquals(1, frame.getBids().size());
+        Assert.assertNull(frame.getChecksum());
+    }
+
+    @Test
+    public void nextLong() {
+        Assert.assertEquals(-1200119424L, new JsonReader("-1200119424").nextLong());
+        Assert.assertEquals(Long.MAX_VALUE, new JsonReader("\"9223372036854775807\"").nextLong());
+        Assert.assertEquals(Long.MIN_VALUE, new JsonReader("-9223372036854775808").nextLong());
+        for (String overflow : new String[]{"9223372036854775808", "-9223372036854775809", "99999999999999999999"}) {
+            try {
+                new JsonReader(overflow).nextLong();
+                Assert.fail(overflow);
+            } catch (IllegalStateException ignored) { }
+        }
+    }
+
+    @Test
+    public void depth() throws IOException {
+        int count = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                this.getClass().getResourceAsStream("/okexv3_depth.txt"), StandardCharsets.UTF_8))) {
+            String line;
+            while (null != (line = reader.readLine())) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                JSONObject frame = JSON.parseObject(line);
+                String result = frame.getJSONArray("data").getString(0);
+                Depth dom = Okexv3Util.parseDepth(JSONObject.parseObject(result));
+                Depth stream = Okexv3Util.parseDepth(result);
+                Assert.assertEquals(dom, stream);
+
+                // 推送帧整体流式解析，与JSONObject一致
+                Okexv3Util.DepthFrame depth = Okexv3Util.parseDepthFrame(line);
+                Assert.assertNotNull(depth);
+                JSONObject data = frame.getJSONArray("data").getJSONObject(0);
+                Assert.assertEquals(frame.getString("action"), depth.getAction());
+                Assert.assertEquals(data.getString("instrument_id"), depth.getInstrumentId());
+                Assert.assertEquals(dom.getTime(), depth.getTime());
+                Assert.assertEquals(dom.getAsks().getList(), depth.getAsks());
+                Assert.assertEquals(dom.getBids().getList(), depth.getBids());
+                Assert.assertEquals(data.getLong("checksum"), depth.getChecksum());
+                count++;
+            }
+        }
+        Assert.assertTrue(0 < count);
+
+        Depth binance = CommonUtil.parseDepthByIndex(1L,
+                "{\"lastUpdateId\":1027024,\"bids\":[[\"4.00000000\",\"431.00000000\",[]]]," +
+                        "\"asks\":[[\"4.00000200\",\"12.00000000\",[]]]}");
+        // Row 去掉末尾的0
+        Assert.assertEquals(new BigDecimal("4"), binance.getBids().getList().get(0).getPrice());
+        Assert.assertEquals(new BigDecimal("12"), binance.getAsks().getList().get(0).getAmount());
+        Assert.assertEquals("[\"4.00000200\",\"12.00000000\",[]]", binance.getAsks().getList().get(0).getData());
+    }
+
+}
@@ -0,0 +1,93 @@
+package test;
+
+import cqt.goai.exchange.util.KlineBuffer;
+import cqt.goai.model.market.Kline;
+import cqt.goai.model.market.Klines;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * @author GOAi
+ */
+public class KlineBufferTest {
+
+    private static Kline kline(long time, String close) {
+        BigDecimal c = new BigDecimal(close);
+        return new Kline(null, time, c, c, c, c, BigDecimal.ONE);
+    }
+
+    @Test
+    public void test() {
+        KlineBuffer buffer = new KlineBuffer(3);
+        Assert.assertTrue(buffer.isEmpty());
+
+        // 由近到远
+        Klines klines = buffer.reset(Arrays.asList(kline(3, "3"), kline(2, "2"), kline(1, "1")));
+        Assert.assertEquals(3, klines.size());
+        Assert.assertEquals(3L, (long) klines.first().getTime());
+        Assert.assertEquals(1L, (long) klines.last().getTime());
+
+        // 同一根替换
+        Klines same = buffer.update(kline(3, "3.5"));
+        Assert.assertEquals(3, same.size());
+        Assert.assertEquals(new BigDecimal("3.5"), same.first().getClose());
+        // 旧视图不变
+        Assert.assertEquals(new BigDecimal("3"), klines.first().getClose());
+
+        // 新的一根，最远的一根移出视图
+        Klines next = buffer.update(kline(4, "4"));
+        Assert.assertEquals(3, next.size());
+        Assert.assertEquals(4L, (long) next.get(0).getTime());
+        Assert.assertEquals(3L, (long) next.get(1).getTime());
+        Assert.assertEquals(new BigDecimal("3.5"), next.get(1).getClose());
+        Assert.assertEquals(2L, (long) next.get(2).getTime());
+
+        // 过期的忽略
+        Assert.assertNull(buffer.update(kline(2, "9")));
+
+        // 写满数组后整理，旧视图仍然可用
+        Klines last = next;
+        for (int i = 5; i < 20; i++) {
+            Klines k = buffer.update(kline(i, String.valueOf(i)));
+            Assert.assertEquals(3, k.size());
+            Assert.assertEquals(i, (long) k.get(0).getTime());
+            Assert.assertEquals(i - 2, (long) k.get(2).getTime());
+            Assert.assertTrue(((KlineBuffer.View) k.getList()).getSeq()
+                    > ((KlineBuffer.View) last.getList()).getSeq());
+            last = k;
+        }
+        Assert.assertEquals(4L, (long) next.get(0).getTime());
+        Assert.assertEquals(2L, (long) next.get(2).getTime());
+    }
+
+    @Test
+    public void backfill() {
+        KlineBuffer buffer = new KlineBuffer(4);
+        Assert.assertFalse(buffer.isFilled());
+
+        // 历史还没到，先按推送发布
+        Klines pushed = buffer.update(kline(5, "5"));
+        Assert.assertEquals(1, pushed.size());
+        buffer.update(kline(6, "6"));
+        Assert.assertFalse(buffer.isFilled());
+
+        // 历史中与推送重叠的(5 6)以推送为准，只补更早的
+        buffer.backfill(Arrays.asList(kline(6, "60"), kline(5, "50"), kline(4, "4"), kline(3, "3"), kline(2, "2")));
+        Assert.assertTrue(buffer.isFilled());
+        Klines klines = buffer.update(kline(6, "6.5"));
+        Assert.assertEquals(4, klines.size());
+        Assert.assertEquals(new BigDecimal("6.5"), klines.get(0).getClose());
+        Assert.assertEquals(new BigDecimal("5"), klines.get(1).getClose());
+        Assert.assertEquals(4L, (long) klines.get(2).getTime());
+        Assert.assertEquals(3L, (long) klines.get(3).getTime());
+
+        // 没有推送时直接使用历史
+        KlineBuffer empty = new KlineBuffer(4);
+        empty.backfill(Arrays.asList(kline(2, "2"), kline(1, "1")));
+        Assert.assertEquals(3, empty.update(kline(3, "3")).size());
+    }
+
+}
@@ -0,0 +1,105 @@
+package test;
+
+import cqt.goai.exchange.ExchangeException;
+import cqt.goai.exchange.util.NonceGenerator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * nonce 单调递增与持久化
+ * @author GOAi
+ */
+public class NonceGeneratorTest {
+
+    private static final int THREADS = 8;
+    private static final int COUNT = 20000;
+
+    @Test
+    public void contention() throws Exception {
+        Path dir = Files.createTempDirectory("nonce");
+        NonceGenerator generator = new NonceGenerator(dir.resolve("nonce"));
+        List<long[]> issued = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < THREADS; t++) {
+            long[] nonces = new long[COUNT];
+            issued.add(nonces);
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < COUNT; i++) {
+                    nonces[i] = generator.next();
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Set<Long> all = new HashSet<>();
+        long persisted = NonceGeneratorTest.read(dir.resolve("nonce"));
+        for (long[] nonces : issued) {
+            for (int i = 0; i < COUNT; i++) {
+                // 每个线程内递增，全局不重复，且都小于已落盘的高水位
+                if (0 < i) {
+                    Assert.assertTrue(nonces[i - 1] < nonces[i]);
+                }
+                Assert.assertTrue(all.add(nonces[i]));
+                Assert.assertTrue(nonces[i] < persisted);
+            }
+        }
+        Assert.assertEquals(persisted, generator.getReserved());
+    }
+
+    @Test
+    public void restart() throws IOException {
+        Path path = Files.createTempDirectory("nonce").resolve("nonce");
+        NonceGenerator first = new NonceGenerator(path);
+        long last = 0;
+        for (int i = 0; i < 1000; i++) {
+            last = first.next();
+        }
+        long mark = NonceGeneratorTest.read(path);
+        Assert.assertTrue(last < mark);
+
+        // 模拟请求太密集，nonce远超当前时间，重启后仍然从落盘的高水位之后开始
+        Files.write(path, String.valueOf(System.currentTimeMillis() + 3600 * 1000L).getBytes(StandardCharsets.UTF_8));
+        mark = NonceGeneratorTest.read(path);
+        NonceGenerator second = new NonceGenerator(path);
+        Assert.assertTrue(mark < second.next());
+        Assert.assertTrue(mark < NonceGeneratorTest.read(path));
+    }
+
+    @Test
+    public void writeFails() throws IOException {
+        // 父路径是普通文件，无法写入
+        Path file = Files.createTempFile("nonce", ".lock");
+        NonceGenerator generator = new NonceGenerator(file.resolve("nonce"));
+        for (int i = 0; i < 2; i++) {
+            try {
+                generator.next();
+                Assert.fail();
+            } catch (ExchangeException ignored) { }
+        }
+        Assert.assertEquals(0, generator.getReserved());
+    }
+
+    private static long read(Path path) throws IOException {
+        return Long.parseLong(new String(Files.readAllBytes(path), StandardCharsets.UTF_8).trim());
+    }
+
+}
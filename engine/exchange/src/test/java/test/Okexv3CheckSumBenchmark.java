@@ -0,0 +1,85 @@
+package test;
+
+import com.alibaba.fastjson.JSONObject;
+import cqt.goai.exchange.util.CommonUtil;
+import cqt.goai.exchange.util.OrderBook;
+import cqt.goai.exchange.util.okexv3.Okexv3CheckSum;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * 校验值计算耗时与内存分配，新实现与原有 StringBuilder + new CRC32 实现对比
+ *
+ * 不是单元测试，手动运行 main，用 okexv3_depth.txt 中的深度推送逐帧维护盘口，每帧计算一次校验值
+ * 每轮先预热再计时，结果为每次计算的纳秒数和分配字节数(JVM不支持线程分配统计时为-1)
+ *
+ * @author GOAi
+ */
+public class Okexv3CheckSumBenchmark {
+
+    private static final int WARMUP = 200;
+    private static final int ROUNDS = 2000;
+
+    public static void main(String[] args) throws IOException {
+        // 先按推送顺序得到每帧对应的盘口，计时只包含校验值计算
+        List<OrderBook> books = new ArrayList<>();
+        for (JSONObject frame : Okexv3CheckSumTest.frames()) {
+            JSONObject r = frame.getJSONArray("data").getJSONObject(0);
+            OrderBook book = new OrderBook(200);
+            if (!books.isEmpty() && !"partial".equals(frame.getString("action"))) {
+                OrderBook last = books.get(books.size() - 1);
+                book.partial(last.asks(200), last.bids(200));
+                book.update(CommonUtil.parseRowsByIndex(r.getJSONArray("asks")),
+                        CommonUtil.parseRowsByIndex(r.getJSONArray("bids")));
+            } else {
+                book.partial(CommonUtil.parseRowsByIndex(r.getJSONArray("asks")),
+                        CommonUtil.parseRowsByIndex(r.getJSONArray("bids")));
+            }
+            books.add(book);
+        }
+
+        Okexv3CheckSum checkSum = new Okexv3CheckSum();
+        run("book", books, checkSum::checksum);
+        run("legacy", books, Okexv3CheckSumTest::legacy);
+        run("book", books, checkSum::checksum);
+        run("legacy", books, Okexv3CheckSumTest::legacy);
+    }
+
+    private static void run(String name, List<OrderBook> books, ToIntFunction<OrderBook> checksum) {
+        int sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            for (OrderBook book : books) {
+                sink += checksum.applyAsInt(book);
+            }
+        }
+        long bytes = allocated();
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            for (OrderBook book : books) {
+                sink += checksum.applyAsInt(book);
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = 0 <= bytes ? allocated() - bytes : -1;
+        long ops = (long) ROUNDS * books.size();
+        System.out.println(String.format("%-6s %d ops, %d ns/op, %d bytes/op (%d)",
+                name, ops, nanos / ops, 0 <= allocated ? allocated / ops : -1, sink));
+    }
+
+    /**
+     * 当前线程已分配的字节数，不支持时为-1
+     */
+    static long allocated() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+}
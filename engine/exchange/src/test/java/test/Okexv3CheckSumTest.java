@@ -0,0 +1,91 @@
+package test;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import cqt.goai.exchange.util.CommonUtil;
+import cqt.goai.exchange.util.OrderBook;
+import cqt.goai.exchange.util.okexv3.Okexv3CheckSum;
+import cqt.goai.model.market.Row;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 用构造的OKEx V3深度推送样例(okexv3_depth.txt，非真实录制，校验值按文档的规则计算)，
+ * 校验新旧两种校验值计算结果一致，耗时对比见 Okexv3CheckSumBenchmark
+ * @author GOAi
+ */
+public class Okexv3CheckSumTest {
+
+    @Test
+    public void test() throws IOException {
+        List<JSONObject> frames = frames();
+        Assert.assertFalse(frames.isEmpty());
+
+        OrderBook book = new OrderBook(200);
+        Okexv3CheckSum checkSum = new Okexv3CheckSum();
+        for (JSONObject frame : frames) {
+            JSONObject r = frame.getJSONArray("data").getJSONObject(0);
+            if ("partial".equals(frame.getString("action"))) {
+                book.partial(CommonUtil.parseRowsByIndex(r.getJSONArray("asks")),
+                        CommonUtil.parseRowsByIndex(r.getJSONArray("bids")));
+            } else {
+                book.update(CommonUtil.parseRowsByIndex(r.getJSONArray("asks")),
+                        CommonUtil.parseRowsByIndex(r.getJSONArray("bids")));
+            }
+            int expect = r.getIntValue("checksum");
+            Assert.assertEquals(expect, checkSum.checksum(book));
+            Assert.assertEquals(expect, legacy(book));
+            Assert.assertTrue(checkSum.check(book, r.getLongValue("checksum")));
+        }
+    }
+
+    static List<JSONObject> frames() throws IOException {
+        List<JSONObject> frames = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                Okexv3CheckSumTest.class.getResourceAsStream("/okexv3_depth.txt"), StandardCharsets.UTF_8))) {
+            String line;
+            while (null != (line = reader.readLine())) {
+                if (!line.isEmpty()) {
+                    frames.add(JSON.parseObject(line));
+                }
+            }
+        }
+        return frames;
+    }
+
+    /**
+     * 原有实现，每次拼接字符串，Okexv3CheckSumBenchmark 也用它对比
+     */
+    static int legacy(OrderBook book) {
+        List<Row> asks = book.asks(25);
+        List<Row> bids = book.bids(25);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 25; i++) {
+            if (i < bids.size()) {
+                Row b = bids.get(i);
+                sb.append(b.getPrice().toPlainString()).append(':')
+                        .append(b.getAmount().toPlainString()).append(':');
+            }
+            if (i < asks.size()) {
+                Row a = asks.get(i);
+                sb.append(a.getPrice().toPlainString()).append(':')
+                        .append(a.getAmount().toPlainString()).append(':');
+            }
+        }
+        if (0 < sb.length()) {
+            sb.deleteCharAt(sb.length() - 1);
+        }
+        CRC32 crc32 = new CRC32();
+        crc32.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+        return (int) crc32.getValue();
+    }
+
+}
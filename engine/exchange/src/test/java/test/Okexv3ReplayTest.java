@@ -0,0 +1,100 @@
+package test;
+
+import cqt.goai.exchange.ExchangeName;
+import cqt.goai.exchange.util.FrameRecorder;
+import cqt.goai.exchange.web.socket.WebSocketReplayer;
+import cqt.goai.model.market.Depth;
+import cqt.goai.model.market.Ticker;
+import okio.ByteString;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * 回放记录的OKExV3共用连接推送，只取回放币对的数据
+ * @author GOAi
+ */
+public class Okexv3ReplayTest {
+
+    private static final Logger log = LoggerFactory.getLogger(Okexv3ReplayTest.class);
+
+    private static final String TICKER = "{\"table\":\"spot/ticker\",\"data\":[{\"instrument_id\":\"%s\"," +
+            "\"last\":\"%s\",\"best_bid\":\"3599\",\"best_ask\":\"3600\",\"open_24h\":\"3500\"," +
+            "\"high_24h\":\"3700\",\"low_24h\":\"3400\",\"base_volume_24h\":\"1000\"," +
+            "\"quote_volume_24h\":\"3600000\",\"timestamp\":\"2019-01-15T09:51:00.000Z\"}]}";
+
+    @Test
+    public void replay() throws IOException {
+        List<String> depths = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                Okexv3ReplayTest.class.getResourceAsStream("/okexv3_depth.txt"), StandardCharsets.UTF_8))) {
+            String line;
+            while (null != (line = reader.readLine())) {
+                if (!line.isEmpty()) {
+                    depths.add(line);
+                }
+            }
+        }
+
+        // 共用连接上还有其他币对，推送为压缩的二进制帧，订阅结果为文本帧
+        Path dir = Files.createTempDirectory("okexv3");
+        long nanos = 0;
+        try (FrameRecorder recorder = new FrameRecorder(dir, "okexv3", 64 * 1024)) {
+            recorder.record(FrameRecorder.TEXT, nanos++, ByteString.encodeUtf8(
+                    "{\"event\":\"subscribe\",\"channel\":\"spot/depth:BTC-USDT\"}"));
+            recorder.record(FrameRecorder.BINARY, nanos++, deflate(String.format(TICKER, "ETH-USDT", "131.6")));
+            recorder.record(FrameRecorder.BINARY, nanos++, deflate(String.format(TICKER, "BTC-USDT", "3600.1")));
+            for (int i = 0; i < depths.size(); i++) {
+                recorder.record(FrameRecorder.BINARY, nanos++, deflate(depths.get(i)));
+                if (0 == i % 50) {
+                    recorder.record(FrameRecorder.BINARY, nanos++,
+                            deflate(depths.get(i).replace("BTC-USDT", "ETH-USDT")));
+                }
+            }
+        }
+
+        List<Ticker> tickers = new ArrayList<>();
+        List<Depth> books = new ArrayList<>();
+        WebSocketReplayer replayer = WebSocketReplayer.of(ExchangeName.OKEXV3, "BTC_USDT",
+                FrameRecorder.segments(dir, "okexv3"), 0, log)
+                .onTicker(tickers::add)
+                .onDepth(books::add);
+        Assert.assertEquals(nanos, replayer.replay());
+        Assert.assertEquals(0, replayer.getErrors());
+
+        Assert.assertEquals(1, tickers.size());
+        Assert.assertEquals(0, new BigDecimal("3600.1").compareTo(tickers.get(0).getLast()));
+        // 每一帧都通过校验，生成一次盘口，其他币对的深度不会合并进来
+        Assert.assertEquals(depths.size(), books.size());
+        Depth last = books.get(books.size() - 1);
+        Assert.assertTrue(last.getAsks().getList().get(0).getPrice()
+                .compareTo(last.getBids().getList().get(0).getPrice()) > 0);
+    }
+
+    private static ByteString deflate(String message) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(message.getBytes(StandardCharsets.UTF_8));
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        return ByteString.of(out.toByteArray());
+    }
+
+}
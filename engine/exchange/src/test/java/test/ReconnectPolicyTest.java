@@ -0,0 +1,43 @@
+package test;
+
+import cqt.goai.exchange.util.ReconnectPolicy;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 断线重连策略
+ * @author GOAi
+ */
+public class ReconnectPolicyTest {
+
+    @Test
+    public void delay() {
+        ReconnectPolicy policy = new ReconnectPolicy(1000, 60000, 2);
+        for (int i = 0; i < 100; i++) {
+            long first = policy.delay(0);
+            Assert.assertTrue(500 <= first && first <= 1000);
+            long third = policy.delay(2);
+            Assert.assertTrue(2000 <= third && third <= 4000);
+            // 不超过上限，次数很大也不会溢出
+            long max = policy.delay(10);
+            Assert.assertTrue(30000 <= max && max <= 60000);
+            max = policy.delay(Integer.MAX_VALUE);
+            Assert.assertTrue(30000 <= max && max <= 60000);
+        }
+    }
+
+    @Test
+    public void handshakes() {
+        ReconnectPolicy policy = new ReconnectPolicy(1000, 60000, 2);
+        Assert.assertTrue(policy.acquire());
+        Assert.assertTrue(policy.acquire());
+        Assert.assertFalse(policy.acquire());
+        Assert.assertEquals(2, policy.getHandshakes());
+        policy.release();
+        Assert.assertEquals(1, policy.getHandshakes());
+        Assert.assertTrue(policy.acquire());
+        long busy = policy.busy();
+        Assert.assertTrue(250 <= busy && busy <= 750);
+    }
+
+}
@@ -0,0 +1,66 @@
+package test;
+
+import cqt.goai.exchange.util.TokenBucket;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 令牌桶并发下不超发
+ * @author GOAi
+ */
+public class TokenBucketTest {
+
+    @Test
+    public void burst() {
+        TokenBucket bucket = new TokenBucket(10, 1, TimeUnit.SECONDS);
+        Assert.assertTrue(bucket.tryAcquire(5));
+        Assert.assertTrue(bucket.tryAcquire(5));
+        Assert.assertFalse(bucket.tryAcquire(1));
+        // 约100毫秒一个令牌
+        long start = System.nanoTime();
+        Assert.assertTrue(bucket.acquire(1, 1, TimeUnit.SECONDS));
+        Assert.assertTrue(50 < TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        // 等待时间超出限制直接拒绝，不消耗令牌
+        Assert.assertFalse(bucket.acquire(5, 100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void interrupt() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(10, 1, TimeUnit.SECONDS);
+        Assert.assertTrue(bucket.tryAcquire(10));
+        AtomicInteger result = new AtomicInteger(-1);
+        Thread thread = new Thread(() -> result.set(bucket.acquire(5, 1, TimeUnit.SECONDS) ? 1 : 0));
+        thread.start();
+        Thread.sleep(50);
+        thread.interrupt();
+        thread.join();
+        Assert.assertEquals(0, result.get());
+        // 被中断时归还预定的令牌，约100毫秒后就有一个令牌
+        Assert.assertTrue(bucket.acquire(1, 200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void concurrent() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(100, 1, TimeUnit.MINUTES);
+        AtomicInteger passed = new AtomicInteger();
+        int threads = 8;
+        CountDownLatch latch = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    if (bucket.tryAcquire(1)) {
+                        passed.incrementAndGet();
+                    }
+                }
+                latch.countDown();
+            }).start();
+        }
+        latch.await();
+        Assert.assertEquals(100, passed.get());
+    }
+
+}
@@ -0,0 +1,80 @@
+package test;
+
+import cqt.goai.exchange.util.WheelTimer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 时间轮定时器
+ * @author GOAi
+ */
+public class WheelTimerTest {
+
+    @Test
+    public void schedule() throws InterruptedException {
+        // 8格 每格10毫秒，一圈80毫秒
+        WheelTimer timer = new WheelTimer("test-timer", 10, 8);
+        CountDownLatch latch = new CountDownLatch(2);
+        AtomicLong fired = new AtomicLong();
+        long start = System.currentTimeMillis();
+        timer.schedule(latch::countDown, 20);
+        // 超过一圈
+        timer.schedule(() -> {
+            fired.set(System.currentTimeMillis() - start);
+            latch.countDown();
+        }, 250);
+        Assert.assertTrue(latch.await(2, TimeUnit.SECONDS));
+        Assert.assertTrue(fired.get() >= 250);
+        Assert.assertTrue(fired.get() < 500);
+        Assert.assertEquals(0, timer.size());
+        timer.stop();
+    }
+
+    @Test
+    public void cancel() throws InterruptedException {
+        WheelTimer timer = new WheelTimer("test-timer", 10, 8);
+        AtomicInteger count = new AtomicInteger();
+        WheelTimer.Timeout timeout = timer.schedule(count::incrementAndGet, 50);
+        Assert.assertEquals(1, timer.size());
+        timeout.cancel();
+        Assert.assertTrue(timeout.isCancelled());
+        Assert.assertEquals(0, timer.size());
+        Thread.sleep(150);
+        Assert.assertEquals(0, count.get());
+        timer.stop();
+    }
+
+    @Test
+    public void every() throws InterruptedException {
+        WheelTimer timer = new WheelTimer("test-timer", 10, 8);
+        AtomicInteger count = new AtomicInteger();
+        WheelTimer.Timeout timeout = timer.every(count::incrementAndGet, 0, 30);
+        Thread.sleep(200);
+        timeout.cancel();
+        int fired = count.get();
+        Assert.assertTrue(fired >= 4);
+        Thread.sleep(100);
+        Assert.assertEquals(fired, count.get());
+        Assert.assertEquals(0, timer.size());
+        timer.stop();
+    }
+
+    @Test
+    public void failed() throws InterruptedException {
+        // 任务异常不影响定时线程
+        WheelTimer timer = new WheelTimer("test-timer", 10, 8);
+        CountDownLatch latch = new CountDownLatch(1);
+        timer.schedule(() -> {
+            throw new IllegalStateException("test");
+        }, 10);
+        timer.schedule(latch::countDown, 30);
+        Assert.assertTrue(latch.await(1, TimeUnit.SECONDS));
+        timer.stop();
+    }
+
+}
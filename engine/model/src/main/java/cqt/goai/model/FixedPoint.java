@@ -0,0 +1,399 @@
+package cqt.goai.model;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 定点小数，long存放放大后的整数，scale表示小数位数，值为 unscaled * 10^-scale
+ *
+ * 不可变，同一币对的价格和数量各自使用固定的scale(由Precision得到)，
+ * 相同scale之间的加减比较只是long运算，不产生BigDecimal
+ *
+ * 运算结果超出long范围时抛出 ArithmeticException，不会静默溢出
+ *
+ * @author GOAi
+ */
+public final class FixedPoint implements Comparable<FixedPoint>, Serializable {
+
+    private static final long serialVersionUID = 4137920519823513791L;
+
+    /**
+     * long最多可以精确放大的位数
+     */
+    private static final int MAX_SCALE = 18;
+
+    private static final long[] TEN = new long[MAX_SCALE + 1];
+
+    static {
+        TEN[0] = 1;
+        for (int i = 1; i <= MAX_SCALE; i++) {
+            TEN[i] = TEN[i - 1] * 10;
+        }
+    }
+
+    /**
+     * 放大后的整数
+     */
+    private final long unscaled;
+
+    /**
+     * 小数位数
+     */
+    private final int scale;
+
+    private FixedPoint(long unscaled, int scale) {
+        this.unscaled = unscaled;
+        this.scale = scale;
+    }
+
+    /**
+     * 构造
+     * @param unscaled 放大后的整数
+     * @param scale 小数位数 0 - 18
+     * @return FixedPoint
+     */
+    public static FixedPoint of(long unscaled, int scale) {
+        FixedPoint.checkScale(scale);
+        return new FixedPoint(unscaled, scale);
+    }
+
+    /**
+     * 由BigDecimal转换，小数位数超出scale时必须为0
+     * @param number 数字
+     * @param scale 小数位数
+     * @return FixedPoint
+     */
+    public static FixedPoint of(BigDecimal number, int scale) {
+        FixedPoint.checkScale(scale);
+        return new FixedPoint(number.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact(),
+                scale);
+    }
+
+    /**
+     * 直接解析字符串，不经过BigDecimal
+     * @param text 数字字符串 如 -123.4500
+     * @param scale 小数位数，多出的小数位必须为0
+     * @return FixedPoint
+     */
+    public static FixedPoint parse(CharSequence text, int scale) {
+        FixedPoint.checkScale(scale);
+        int length = text.length();
+        if (0 == length) {
+            throw new NumberFormatException("empty number");
+        }
+        int i = 0;
+        boolean negative = false;
+        char c = text.charAt(0);
+        if ('-' == c || '+' == c) {
+            negative = '-' == c;
+            i++;
+        }
+        // 按负数累加，负数比正数多一个，可以表示 Long.MIN_VALUE
+        long value = 0;
+        int decimals = -1;
+        boolean digit = false;
+        for (; i < length; i++) {
+            c = text.charAt(i);
+            if ('0' <= c && c <= '9') {
+                digit = true;
+                if (0 <= decimals) {
+                    if (scale <= decimals) {
+                        if ('0' != c) {
+                            throw new ArithmeticException("scale of " + text + " is larger than " + scale);
+                        }
+                        continue;
+                    }
+                    decimals++;
+                }
+                value = Math.subtractExact(Math.multiplyExact(value, 10), c - '0');
+            } else if ('.' == c && decimals < 0) {
+                decimals = 0;
+            } else if ('e' == c || 'E' == c) {
+                // 科学计数法少见，交给BigDecimal
+                return FixedPoint.of(new BigDecimal(text.toString()), scale);
+            } else {
+                throw new NumberFormatException("illegal number: " + text);
+            }
+        }
+        if (!digit) {
+            throw new NumberFormatException("illegal number: " + text);
+        }
+        value = Math.multiplyExact(value, TEN[scale - Math.max(decimals, 0)]);
+        return new FixedPoint(negative ? value : Math.negateExact(value), scale);
+    }
+
+    private static void checkScale(int scale) {
+        if (scale < 0 || MAX_SCALE < scale) {
+            throw new IllegalArgumentException("scale must be in [0, " + MAX_SCALE + "]: " + scale);
+        }
+    }
+
+    public long getUnscaled() {
+        return this.unscaled;
+    }
+
+    public int getScale() {
+        return this.scale;
+    }
+
+    /**
+     * 调整小数位数
+     * @param scale 新的小数位数
+     * @param mode 变小时的舍入方式
+     * @return FixedPoint
+     */
+    public FixedPoint setScale(int scale, RoundingMode mode) {
+        FixedPoint.checkScale(scale);
+        if (scale == this.scale) {
+            return this;
+        }
+        if (this.scale < scale) {
+            return new FixedPoint(Math.multiplyExact(this.unscaled, TEN[scale - this.scale]), scale);
+        }
+        long divisor = TEN[this.scale - scale];
+        long quotient = this.unscaled / divisor;
+        long remainder = this.unscaled % divisor;
+        if (0 != remainder) {
+            int sign = this.unscaled < 0 ? -1 : 1;
+            long twice = Math.abs(remainder) * 2;
+            boolean up;
+            switch (mode) {
+                case UP: up = true; break;
+                case DOWN: up = false; break;
+                case CEILING: up = 0 < sign; break;
+                case FLOOR: up = sign < 0; break;
+                case HALF_UP: up = divisor <= twice; break;
+                case HALF_DOWN: up = divisor < twice; break;
+                case HALF_EVEN: up = divisor < twice || (divisor == twice && 0 != (quotient & 1)); break;
+                default: throw new ArithmeticException("rounding necessary: " + this);
+            }
+            if (up) {
+                quotient += sign;
+            }
+        }
+        return new FixedPoint(quotient, scale);
+    }
+
+    public FixedPoint add(FixedPoint other) {
+        if (this.scale == other.scale) {
+            return new FixedPoint(Math.addExact(this.unscaled, other.unscaled), this.scale);
+        }
+        int scale = Math.max(this.scale, other.scale);
+        return new FixedPoint(Math.addExact(this.rescale(scale), other.rescale(scale)), scale);
+    }
+
+    public FixedPoint subtract(FixedPoint other) {
+        if (this.scale == other.scale) {
+            return new FixedPoint(Math.subtractExact(this.unscaled, other.unscaled), this.scale);
+        }
+        int scale = Math.max(this.scale, other.scale);
+        return new FixedPoint(Math.subtractExact(this.rescale(scale), other.rescale(scale)), scale);
+    }
+
+    /**
+     * 乘以整数，小数位数不变
+     */
+    public FixedPoint multiply(long multiplier) {
+        return new FixedPoint(Math.multiplyExact(this.unscaled, multiplier), this.scale);
+    }
+
+    /**
+     * 相乘，能精确表示时小数位数为两者之和，超过18位时按 HALF_EVEN 舍入到18位
+     * 精确结果超出long范围时(如8位小数的价格乘以8位小数的数量)，按 HALF_EVEN 舍入到两者中较大的小数位数
+     */
+    public FixedPoint multiply(FixedPoint other) {
+        int exact = this.scale + other.scale;
+        long high = FixedPoint.multiplyHigh(this.unscaled, other.unscaled);
+        long low = this.unscaled * other.unscaled;
+        if (high == (low >> 63)) {
+            return exact <= MAX_SCALE ? new FixedPoint(low, exact)
+                    : FixedPoint.round(high, low, exact, MAX_SCALE, RoundingMode.HALF_EVEN);
+        }
+        return FixedPoint.round(high, low, exact, Math.max(this.scale, other.scale), RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * 相乘并舍入到指定小数位数，中间结果为128位，不会因为精确乘积超出long而失败
+     * @param other 乘数
+     * @param scale 结果的小数位数
+     * @param mode 舍入方式
+     * @return FixedPoint，结果超出long范围时抛出 ArithmeticException
+     */
+    public FixedPoint multiply(FixedPoint other, int scale, RoundingMode mode) {
+        FixedPoint.checkScale(scale);
+        int exact = this.scale + other.scale;
+        long high = FixedPoint.multiplyHigh(this.unscaled, other.unscaled);
+        long low = this.unscaled * other.unscaled;
+        if (exact < scale) {
+            if (high != (low >> 63)) {
+                throw new ArithmeticException("long overflow");
+            }
+            return new FixedPoint(Math.multiplyExact(low, TEN[scale - exact]), scale);
+        }
+        return FixedPoint.round(high, low, exact, scale, mode);
+    }
+
+    /**
+     * 两个long乘积的高64位，与 Java 9 的 Math.multiplyHigh 相同
+     */
+    private static long multiplyHigh(long x, long y) {
+        long x1 = x >> 32;
+        long x2 = x & 0xFFFFFFFFL;
+        long y1 = y >> 32;
+        long y2 = y & 0xFFFFFFFFL;
+        long z2 = x2 * y2;
+        long t = x1 * y2 + (z2 >>> 32);
+        long z1 = t & 0xFFFFFFFFL;
+        long z0 = t >> 32;
+        z1 += x2 * y1;
+        return x1 * y1 + z0 + (z1 >> 32);
+    }
+
+    /**
+     * 128位有符号整数 high:low (小数位数为from) 舍入到小数位数to
+     *
+     * 对绝对值按32位分段做长除法，每次除数不超过10^9，余数和被除数都在long范围内，不产生对象
+     * 最后一位单独除，得到舍入位，之前的余数只记录是否为0
+     */
+    private static FixedPoint round(long high, long low, int from, int to, RoundingMode mode) {
+        boolean negative = high < 0;
+        if (negative) {
+            high = ~high + (0 == low ? 1 : 0);
+            low = -low;
+        }
+        boolean sticky = false;
+        long digit = 0;
+        for (int drop = from - to; 0 < drop; ) {
+            int step = 1 < drop ? Math.min(drop - 1, 9) : 1;
+            long divisor = TEN[step];
+            long n = high >>> 32;
+            long q3 = n / divisor;
+            n = (n % divisor) << 32 | (high & 0xFFFFFFFFL);
+            long q2 = n / divisor;
+            n = (n % divisor) << 32 | (low >>> 32);
+            long q1 = n / divisor;
+            n = (n % divisor) << 32 | (low & 0xFFFFFFFFL);
+            long q0 = n / divisor;
+            long remainder = n % divisor;
+            high = q3 << 32 | q2;
+            low = q1 << 32 | q0;
+            drop -= step;
+            if (0 == drop) {
+                digit = remainder;
+            } else {
+                sticky |= 0 != remainder;
+            }
+        }
+        if (0 != high || low < 0) {
+            throw new ArithmeticException("long overflow");
+        }
+        boolean inexact = 0 != digit || sticky;
+        boolean up;
+        switch (mode) {
+            case UP: up = inexact; break;
+            case DOWN: up = false; break;
+            case CEILING: up = !negative && inexact; break;
+            case FLOOR: up = negative && inexact; break;
+            case HALF_UP: up = 5 <= digit; break;
+            case HALF_DOWN: up = 5 < digit || (5 == digit && sticky); break;
+            case HALF_EVEN: up = 5 < digit || (5 == digit && (sticky || 0 != (low & 1))); break;
+            default:
+                if (inexact) {
+                    throw new ArithmeticException("rounding necessary");
+                }
+                up = false;
+        }
+        if (up) {
+            low = Math.addExact(low, 1);
+        }
+        return new FixedPoint(negative ? -low : low, to);
+    }
+
+    public FixedPoint negate() {
+        return new FixedPoint(Math.negateExact(this.unscaled), this.scale);
+    }
+
+    public int signum() {
+        return Long.signum(this.unscaled);
+    }
+
+    public boolean isZero() {
+        return 0 == this.unscaled;
+    }
+
+    private long rescale(int scale) {
+        return Math.multiplyExact(this.unscaled, TEN[scale - this.scale]);
+    }
+
+    @Override
+    public int compareTo(FixedPoint other) {
+        if (this.scale == other.scale) {
+            return Long.compare(this.unscaled, other.unscaled);
+        }
+        int scale = Math.max(this.scale, other.scale);
+        try {
+            return Long.compare(this.rescale(scale), other.rescale(scale));
+        } catch (ArithmeticException e) {
+            return this.toBigDecimal().compareTo(other.toBigDecimal());
+        }
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(this.unscaled, this.scale);
+    }
+
+    public double doubleValue() {
+        return (double) this.unscaled / TEN[this.scale];
+    }
+
+    /**
+     * 数值相等即相等，与小数位数无关
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FixedPoint)) {
+            return false;
+        }
+        return 0 == this.compareTo((FixedPoint) o);
+    }
+
+    @Override
+    public int hashCode() {
+        long unscaled = this.unscaled;
+        int scale = this.scale;
+        while (0 < scale && 0 == unscaled % 10) {
+            unscaled /= 10;
+            scale--;
+        }
+        return 31 * Long.hashCode(unscaled) + scale;
+    }
+
+    /**
+     * 按小数位数输出，不使用科学计数法 如 scale=4 时 1.2300
+     */
+    @Override
+    public String toString() {
+        if (0 == this.scale) {
+            return Long.toString(this.unscaled);
+        }
+        if (Long.MIN_VALUE == this.unscaled) {
+            return this.toBigDecimal().toPlainString();
+        }
+        StringBuilder sb = new StringBuilder(24);
+        long abs = Math.abs(this.unscaled);
+        if (this.unscaled < 0) {
+            sb.append('-');
+        }
+        sb.append(abs / TEN[this.scale]).append('.');
+        String fraction = Long.toString(abs % TEN[this.scale]);
+        for (int i = fraction.length(); i < this.scale; i++) {
+            sb.append('0');
+        }
+        return sb.append(fraction).toString();
+    }
+
+}
@@ -24,8 +24,16 @@ public class Util {
      * @return 结尾后数字
      */
     public static BigDecimal strip(BigDecimal number) {
-        return null != number ?
-                new BigDecimal(number.stripTrailingZeros().toPlainString()) : null;
+        if (null == number) {
+            return null;
+        }
+        if (0 == number.scale()) {
+            // 整数没有可以去掉的0
+            return number;
+        }
+        BigDecimal stripped = number.stripTrailingZeros();
+        // 与 toPlainString 再解析的结果一致，整数不保留负的scale
+        return stripped.scale() < 0 ? stripped.setScale(0) : stripped;
     }
 
     /**
@@ -0,0 +1,177 @@
+package cqt.goai.model.market;
+
+import cqt.goai.model.Util;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * 按列存储的K线，按时间顺序由近到远，下标0是最近的K线
+ *
+ * 每个字段一个连续的基本类型数组，数组就是数据本身，指标计算直接遍历数组，不需要逐个拆箱BigDecimal
+ * 原有的 list 接口是只读视图，第一次访问某根K线时才由数组生成 Kline 并缓存，
+ * 数组不能无损还原的K线(时间为null，或者数值超出double的精度)构造时保留原对象
+ *
+ * 数组中缺失的时间为0，缺失的值为 NaN，生成 Kline 时还原为null
+ * 数组直接对外暴露，不要修改；add remove set 不支持
+ *
+ * @author GOAi
+ */
+public class ColumnKlines extends Klines implements Serializable {
+
+    private static final long serialVersionUID = -3209725163283367364L;
+
+    private final String[] data;
+    private final long[] time;
+    private final double[] open;
+    private final double[] high;
+    private final double[] low;
+    private final double[] close;
+    private final double[] volume;
+
+    /**
+     * 已生成的K线，不能由数组还原的在构造时放入
+     */
+    private final Kline[] klines;
+
+    private ColumnKlines(int size) {
+        super(null);
+        this.data = new String[size];
+        this.time = new long[size];
+        this.open = new double[size];
+        this.high = new double[size];
+        this.low = new double[size];
+        this.close = new double[size];
+        this.volume = new double[size];
+        this.klines = new Kline[size];
+        super.set(new View());
+    }
+
+    /**
+     * 转换
+     * @param klines 由近到远
+     * @return 按列存储的K线
+     */
+    public static ColumnKlines of(List<Kline> klines) {
+        ColumnKlines columns = new ColumnKlines(klines.size());
+        for (int i = 0, size = klines.size(); i < size; i++) {
+            Kline k = klines.get(i);
+            columns.data[i] = k.getData();
+            columns.time[i] = null == k.getTime() ? 0 : k.getTime();
+            columns.open[i] = ColumnKlines.value(k.getOpen());
+            columns.high[i] = ColumnKlines.value(k.getHigh());
+            columns.low[i] = ColumnKlines.value(k.getLow());
+            columns.close[i] = ColumnKlines.value(k.getClose());
+            columns.volume[i] = ColumnKlines.value(k.getVolume());
+            if (null == k.getTime()
+                    || !exact(k.getOpen(), columns.open[i])
+                    || !exact(k.getHigh(), columns.high[i])
+                    || !exact(k.getLow(), columns.low[i])
+                    || !exact(k.getClose(), columns.close[i])
+                    || !exact(k.getVolume(), columns.volume[i])) {
+                columns.klines[i] = k;
+            }
+        }
+        return columns;
+    }
+
+    private static double value(BigDecimal number) {
+        return null == number ? Double.NaN : number.doubleValue();
+    }
+
+    private static BigDecimal decimal(double value) {
+        return Double.isNaN(value) ? null : Util.strip(BigDecimal.valueOf(value));
+    }
+
+    /**
+     * 由double还原的值是否与原值一致，Kline中的值已经去掉末尾的0
+     */
+    private static boolean exact(BigDecimal number, double value) {
+        return null == number || (!Double.isInfinite(value) && number.equals(decimal(value)));
+    }
+
+    /**
+     * 第index根K线，没有生成过的由数组生成
+     */
+    private Kline kline(int index) {
+        Kline k = this.klines[index];
+        if (null == k) {
+            // 并发时可能重复生成，结果相同，Kline 不可变
+            k = new Kline(this.data[index], this.time[index],
+                    decimal(this.open[index]), decimal(this.high[index]), decimal(this.low[index]),
+                    decimal(this.close[index]), decimal(this.volume[index]));
+            this.klines[index] = k;
+        }
+        return k;
+    }
+
+    @Override
+    public ColumnKlines columns() {
+        return this;
+    }
+
+    @Override
+    public void add(Kline kline) {
+        throw new UnsupportedOperationException("ColumnKlines is read-only");
+    }
+
+    @Override
+    public Kline remove(int index) {
+        throw new UnsupportedOperationException("ColumnKlines is read-only");
+    }
+
+    @Override
+    public void set(List<Kline> list) {
+        throw new UnsupportedOperationException("ColumnKlines is read-only");
+    }
+
+    public long[] times() {
+        return this.time;
+    }
+
+    public double[] opens() {
+        return this.open;
+    }
+
+    public double[] highs() {
+        return this.high;
+    }
+
+    public double[] lows() {
+        return this.low;
+    }
+
+    public double[] closes() {
+        return this.close;
+    }
+
+    public double[] volumes() {
+        return this.volume;
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnKlines" + super.getList().toString();
+    }
+
+    /**
+     * 只读的K线视图
+     */
+    private class View extends AbstractList<Kline> implements RandomAccess, Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Kline get(int index) {
+            return ColumnKlines.this.kline(index);
+        }
+
+        @Override
+        public int size() {
+            return ColumnKlines.this.time.length;
+        }
+    }
+}
@@ -15,6 +15,11 @@ public class Klines extends BaseModelList<Kline> implements Serializable {
 
     private static final long serialVersionUID = 3954815101761999805L;
 
+    /**
+     * 按列存储的形式，第一次使用时生成，通过 add remove set 修改后重新生成
+     */
+    private transient volatile ColumnKlines columns;
+
     public Klines(List<Kline> list) {
         super(list);
     }
@@ -23,6 +28,39 @@ public class Klines extends BaseModelList<Kline> implements Serializable {
         return Util.of(data, Klines::new, Kline::of, log);
     }
 
+    /**
+     * 按列存储的形式，便于指标计算，结果会缓存
+     * 直接修改 getList() 返回的list不会更新缓存
+     * @return ColumnKlines
+     */
+    public ColumnKlines columns() {
+        ColumnKlines columns = this.columns;
+        if (null == columns || columns.size() != super.size()) {
+            columns = ColumnKlines.of(super.getList());
+            this.columns = columns;
+        }
+        return columns;
+    }
+
+    @Override
+    public void add(Kline kline) {
+        super.add(kline);
+        this.columns = null;
+    }
+
+    @Override
+    public Kline remove(int index) {
+        Kline kline = super.remove(index);
+        this.columns = null;
+        return kline;
+    }
+
+    @Override
+    public void set(List<Kline> list) {
+        super.set(list);
+        this.columns = null;
+    }
+
     @Override
     public String toString() {
         return "Klines" + super.toString();
@@ -1,6 +1,7 @@
 package cqt.goai.model.market;
 
 import com.alibaba.fastjson.JSONArray;
+import cqt.goai.model.FixedPoint;
 import cqt.goai.model.To;
 import cqt.goai.model.Util;
 import lombok.EqualsAndHashCode;
@@ -63,6 +64,24 @@ public class Row implements To, Serializable {
         return this.amount.doubleValue();
     }
 
+    /**
+     * 定点小数形式
+     * @param scale 小数位数，见 Precision
+     */
+    public FixedPoint fixedPrice(int scale) {
+        Objects.requireNonNull(this.price);
+        return FixedPoint.of(this.price, scale);
+    }
+
+    /**
+     * 定点小数形式
+     * @param scale 小数位数，见 Precision
+     */
+    public FixedPoint fixedAmount(int scale) {
+        Objects.requireNonNull(this.amount);
+        return FixedPoint.of(this.amount, scale);
+    }
+
     public static Row of(String data, Logger log) {
         return Util.of(data, Row::of, log);
     }
@@ -1,6 +1,7 @@
 package cqt.goai.model.trade;
 
 import com.alibaba.fastjson.JSONArray;
+import cqt.goai.model.FixedPoint;
 import cqt.goai.model.To;
 import cqt.goai.model.Util;
 import cqt.goai.model.enums.Side;
@@ -132,6 +133,33 @@ public class Order implements To, Serializable {
         return this.average.doubleValue();
     }
 
+    /**
+     * 定点小数形式
+     * @param scale 小数位数，见 Precision
+     */
+    public FixedPoint fixedPrice(int scale) {
+        Objects.requireNonNull(this.price);
+        return FixedPoint.of(this.price, scale);
+    }
+
+    /**
+     * 定点小数形式
+     * @param scale 小数位数，见 Precision
+     */
+    public FixedPoint fixedAmount(int scale) {
+        Objects.requireNonNull(this.amount);
+        return FixedPoint.of(this.amount, scale);
+    }
+
+    /**
+     * 定点小数形式
+     * @param scale 小数位数，见 Precision
+     */
+    public FixedPoint fixedDeal(int scale) {
+        Objects.requireNonNull(this.deal);
+        return FixedPoint.of(this.deal, scale);
+    }
+
     public static Order of(String data, Logger log) {
         return Util.of(data, Order::of, log);
     }
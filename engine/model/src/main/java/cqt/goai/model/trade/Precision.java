@@ -1,6 +1,7 @@
 package cqt.goai.model.trade;
 
 import com.alibaba.fastjson.JSONArray;
+import cqt.goai.model.FixedPoint;
 import cqt.goai.model.To;
 import cqt.goai.model.Util;
 import lombok.EqualsAndHashCode;
@@ -136,6 +137,42 @@ public class Precision implements To, Serializable {
         return this.maxQuote.doubleValue();
     }
 
+    /**
+     * 价格小数位数，没有quote时由价格步长得到
+     */
+    public int priceScale() {
+        if (null != this.quote) {
+            return this.quote;
+        }
+        Objects.requireNonNull(this.quoteStep);
+        return Math.max(0, this.quoteStep.scale());
+    }
+
+    /**
+     * 数量小数位数，没有base时由数量步长得到
+     */
+    public int amountScale() {
+        if (null != this.base) {
+            return this.base;
+        }
+        Objects.requireNonNull(this.baseStep);
+        return Math.max(0, this.baseStep.scale());
+    }
+
+    /**
+     * 按价格精度转为定点小数
+     */
+    public FixedPoint price(BigDecimal price) {
+        return FixedPoint.of(price, this.priceScale());
+    }
+
+    /**
+     * 按数量精度转为定点小数
+     */
+    public FixedPoint amount(BigDecimal amount) {
+        return FixedPoint.of(amount, this.amountScale());
+    }
+
     public static Precision of(String data, Logger log) {
         return Util.of(data, Precision::of, log);
     }
@@ -0,0 +1,148 @@
+package test;
+
+import cqt.goai.model.FixedPoint;
+import cqt.goai.model.Util;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+public class FixedPointTest {
+
+    @Test
+    public void parse() {
+        Assert.assertEquals(FixedPoint.of(123450, 4), FixedPoint.parse("12.345", 4));
+        Assert.assertEquals(FixedPoint.of(-123450, 4), FixedPoint.parse("-12.34500", 4));
+        Assert.assertEquals(FixedPoint.of(50, 2), FixedPoint.parse(".5", 2));
+        Assert.assertEquals(FixedPoint.of(1200, 2), FixedPoint.parse("1.2E+1", 2));
+        Assert.assertEquals("12.3450", FixedPoint.parse("12.345", 4).toString());
+        Assert.assertEquals("-0.0005", FixedPoint.parse("-0.0005", 4).toString());
+        Assert.assertEquals("7", FixedPoint.parse("7", 0).toString());
+        try {
+            FixedPoint.parse("1.23456", 4);
+            Assert.fail();
+        } catch (ArithmeticException ignored) { }
+        try {
+            FixedPoint.parse("1.2a", 4);
+            Assert.fail();
+        } catch (NumberFormatException ignored) { }
+    }
+
+    @Test
+    public void arithmetic() {
+        FixedPoint a = FixedPoint.parse("0.1", 8);
+        FixedPoint b = FixedPoint.parse("0.2", 8);
+        Assert.assertEquals(FixedPoint.parse("0.3", 8), a.add(b));
+        Assert.assertEquals(FixedPoint.parse("-0.1", 8), a.subtract(b));
+        Assert.assertEquals(FixedPoint.parse("0.02", 16), a.multiply(b));
+        Assert.assertEquals(FixedPoint.parse("0.3", 1), a.multiply(3));
+        Assert.assertTrue(a.compareTo(b) < 0);
+        Assert.assertEquals(0, FixedPoint.parse("0.1", 2).compareTo(a));
+        Assert.assertEquals(FixedPoint.parse("0.1", 2).hashCode(), a.hashCode());
+        Assert.assertEquals(new BigDecimal("0.30000000"), a.add(b).toBigDecimal());
+        Assert.assertEquals(0.3, a.add(b).doubleValue(), 0);
+
+        FixedPoint c = FixedPoint.parse("2.345", 3);
+        Assert.assertEquals(FixedPoint.parse("2.35", 2), c.setScale(2, RoundingMode.HALF_UP));
+        Assert.assertEquals(FixedPoint.parse("2.34", 2), c.setScale(2, RoundingMode.HALF_EVEN));
+        Assert.assertEquals(FixedPoint.parse("2.34", 2), c.setScale(2, RoundingMode.DOWN));
+        Assert.assertEquals(FixedPoint.parse("-2.35", 2), c.negate().setScale(2, RoundingMode.FLOOR));
+        try {
+            FixedPoint.of(Long.MAX_VALUE, 0).add(FixedPoint.of(1, 0));
+            Assert.fail();
+        } catch (ArithmeticException ignored) { }
+    }
+
+    @Test
+    public void multiplyScale() {
+        // 小数位数之和超过18位，舍入到18位
+        FixedPoint product = FixedPoint.parse("0.00001", 10).multiply(FixedPoint.parse("0.00003", 10));
+        Assert.assertEquals(18, product.getScale());
+        Assert.assertEquals(new BigDecimal("0.000000000300000000"), product.toBigDecimal());
+        FixedPoint half = FixedPoint.of(125, 10).multiply(FixedPoint.of(1, 10));
+        Assert.assertEquals(FixedPoint.of(1, 18), half);
+        Assert.assertEquals(FixedPoint.of(2, 18), FixedPoint.of(150, 10).multiply(FixedPoint.of(1, 10)));
+        Assert.assertEquals(FixedPoint.of(2, 18), FixedPoint.of(250, 10).multiply(FixedPoint.of(1, 10)));
+        try {
+            FixedPoint.of(Long.MAX_VALUE, 0).multiply(FixedPoint.of(2, 0));
+            Assert.fail();
+        } catch (ArithmeticException ignored) { }
+    }
+
+    @Test
+    public void notional() {
+        // 价格乘数量，精确乘积 3.6e19 超出long，舍入到8位
+        FixedPoint price = FixedPoint.parse("3600.12345678", 8);
+        FixedPoint amount = FixedPoint.parse("1.00000000", 8);
+        Assert.assertEquals(FixedPoint.parse("3600.12345678", 8), price.multiply(amount));
+        Assert.assertEquals(8, price.multiply(amount).getScale());
+        FixedPoint large = FixedPoint.parse("68000.12345678", 8).multiply(FixedPoint.parse("12.34567891", 8));
+        Assert.assertEquals(new BigDecimal("839507.69003777"), large.toBigDecimal());
+        // 能精确表示时不舍入
+        Assert.assertEquals(16, FixedPoint.parse("3.5", 8).multiply(FixedPoint.parse("2", 8)).getScale());
+
+        // 指定小数位数
+        Assert.assertEquals(FixedPoint.parse("839507.69", 2),
+                FixedPoint.parse("68000.12345678", 8).multiply(FixedPoint.parse("12.34567891", 8),
+                        2, RoundingMode.HALF_UP));
+        Assert.assertEquals(FixedPoint.parse("-839507.69", 2),
+                FixedPoint.parse("-68000.12345678", 8).multiply(FixedPoint.parse("12.34567891", 8),
+                        2, RoundingMode.DOWN));
+        Assert.assertEquals(FixedPoint.parse("7.0000", 4),
+                FixedPoint.parse("3.5", 1).multiply(FixedPoint.parse("2", 0), 4, RoundingMode.UNNECESSARY));
+        try {
+            FixedPoint.parse("1.5", 1).multiply(FixedPoint.parse("1.5", 1), 1, RoundingMode.UNNECESSARY);
+            Assert.fail();
+        } catch (ArithmeticException ignored) { }
+        try {
+            FixedPoint.of(Long.MAX_VALUE, 8).multiply(FixedPoint.of(Long.MAX_VALUE, 8), 8, RoundingMode.DOWN);
+            Assert.fail();
+        } catch (ArithmeticException ignored) { }
+    }
+
+    @Test
+    public void multiplyRounding() {
+        // 与BigDecimal的结果一致
+        Random random = new Random(7);
+        RoundingMode[] modes = {RoundingMode.UP, RoundingMode.DOWN, RoundingMode.CEILING, RoundingMode.FLOOR,
+                RoundingMode.HALF_UP, RoundingMode.HALF_DOWN, RoundingMode.HALF_EVEN};
+        for (int i = 0; i < 100000; i++) {
+            FixedPoint a = FixedPoint.of(random.nextLong() >> random.nextInt(40), random.nextInt(19));
+            FixedPoint b = FixedPoint.of(random.nextLong() >> random.nextInt(40), random.nextInt(19));
+            int scale = random.nextInt(19);
+            RoundingMode mode = modes[random.nextInt(modes.length)];
+            BigDecimal expect = a.toBigDecimal().multiply(b.toBigDecimal()).setScale(scale, mode);
+            if (expect.unscaledValue().bitLength() < 64) {
+                Assert.assertEquals(expect, a.multiply(b, scale, mode).toBigDecimal());
+            } else {
+                try {
+                    a.multiply(b, scale, mode);
+                    Assert.fail();
+                } catch (ArithmeticException ignored) { }
+            }
+        }
+    }
+
+    @Test
+    public void minValue() {
+        Assert.assertEquals(Long.MIN_VALUE, FixedPoint.parse("-9223372036854775808", 0).getUnscaled());
+        Assert.assertEquals(Long.MIN_VALUE, FixedPoint.parse("-922337203.6854775808", 10).getUnscaled());
+        Assert.assertEquals(Long.MAX_VALUE, FixedPoint.parse("9223372036854775807", 0).getUnscaled());
+        try {
+            FixedPoint.parse("9223372036854775808", 0);
+            Assert.fail();
+        } catch (ArithmeticException ignored) { }
+    }
+
+    @Test
+    public void strip() {
+        Assert.assertEquals(new BigDecimal("1.5"), Util.strip(new BigDecimal("1.500")));
+        Assert.assertEquals(new BigDecimal("100"), Util.strip(new BigDecimal("100.00")));
+        Assert.assertEquals(new BigDecimal("1000"), Util.strip(new BigDecimal("1E+3")));
+        Assert.assertEquals(BigDecimal.ZERO, Util.strip(new BigDecimal("0.000")));
+        Assert.assertNull(Util.strip(null));
+    }
+
+}
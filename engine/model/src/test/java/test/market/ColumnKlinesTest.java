@@ -0,0 +1,105 @@
+package test.market;
+
+import cqt.goai.model.market.ColumnKlines;
+import cqt.goai.model.market.Kline;
+import cqt.goai.model.market.Klines;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class ColumnKlinesTest {
+
+    @Test
+    public void test() {
+        Klines klines = new Klines(Arrays.asList(new Kline(
+                null,
+                1546422552968L,
+                new BigDecimal("2.5"),
+                new BigDecimal("3"),
+                new BigDecimal("2"),
+                new BigDecimal("2.75"),
+                new BigDecimal("10")
+        ), new Kline(
+                null,
+                1546422552967L,
+                new BigDecimal("1"),
+                new BigDecimal("2"),
+                null,
+                new BigDecimal("1.5"),
+                new BigDecimal("0")
+        )));
+
+        ColumnKlines columns = klines.columns();
+        Assert.assertSame(columns, columns.columns());
+        Assert.assertEquals(2, columns.size());
+        Assert.assertArrayEquals(new long[]{1546422552968L, 1546422552967L}, columns.times());
+        Assert.assertArrayEquals(new double[]{2.75, 1.5}, columns.closes(), 0);
+        Assert.assertTrue(Double.isNaN(columns.lows()[1]));
+
+        // 视图由数组生成，与原来的K线一致，生成后缓存
+        Assert.assertEquals(klines.getList(), columns.getList());
+        Assert.assertEquals(klines.to(), columns.to());
+        Assert.assertNotSame(klines.first(), columns.first());
+        Assert.assertSame(columns.first(), columns.get(0));
+        Assert.assertNull(columns.last().getLow());
+    }
+
+    @Test
+    public void cached() {
+        Klines klines = new Klines(new ArrayList<>(Collections.singletonList(new Kline(
+                null, 2L, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE))));
+        ColumnKlines columns = klines.columns();
+        Assert.assertSame(columns, klines.columns());
+
+        // 修改后重新生成
+        klines.add(new Kline(null, 1L, BigDecimal.TEN, BigDecimal.TEN, BigDecimal.TEN, BigDecimal.TEN, BigDecimal.TEN));
+        Assert.assertNotSame(columns, klines.columns());
+        Assert.assertArrayEquals(new long[]{2L, 1L}, klines.columns().times());
+
+        // 按列存储的只读
+        try {
+            columns.add(klines.last());
+            Assert.fail();
+        } catch (UnsupportedOperationException ignored) { }
+        try {
+            columns.getList().set(0, klines.last());
+            Assert.fail();
+        } catch (UnsupportedOperationException ignored) { }
+        Assert.assertEquals(1, columns.size());
+    }
+
+    @Test
+    public void lossless() {
+        Kline kline = new Kline(
+                "[\"raw\"]",
+                null,
+                new BigDecimal("100"),
+                new BigDecimal("0.1000"),
+                new BigDecimal("123456789.123456789123"),
+                new BigDecimal("1E+3"),
+                null
+        );
+        Klines klines = new Klines(Arrays.asList(kline));
+        ColumnKlines columns = klines.columns();
+
+        // 不能由数组还原的K线保留原对象
+        Assert.assertSame(kline, columns.get(0));
+        Assert.assertEquals("[\"raw\"]", columns.get(0).getData());
+        Assert.assertNull(columns.get(0).getTime());
+        Assert.assertEquals(0, columns.get(0).getOpen().scale());
+        Assert.assertEquals("0.1", columns.get(0).getHigh().toPlainString());
+        Assert.assertEquals("123456789.123456789123", columns.get(0).getLow().toPlainString());
+        Assert.assertEquals(klines.to(), columns.to());
+
+        // 数组只用于数值计算
+        Assert.assertEquals(0, columns.times()[0]);
+        Assert.assertEquals(100, columns.opens()[0], 0);
+        Assert.assertEquals(1000, columns.closes()[0], 0);
+        Assert.assertTrue(Double.isNaN(columns.volumes()[0]));
+    }
+
+}
@@ -459,6 +459,15 @@ public class BaseExchange implements Exchange {
         throw new ExchangeException("cancelOrders is not supported.");
     }
 
+    /**
+     * 取消币对所有活跃订单
+     * @return 成功取消的订单id
+     */
+    @Override
+    public List<String> cancelAll() {
+        throw new ExchangeException("cancelAll is not supported.");
+    }
+
 
 
     /**
@@ -520,7 +529,18 @@ public class BaseExchange implements Exchange {
      * @param limit 推送频率限制
      */
     @Override
-    public void setOnTicker(Consumer<Ticker> onTicker, RateLimit limit) {
+    public final void setOnTicker(Consumer<Ticker> onTicker, RateLimit limit) {
+        this.setOnTicker(onTicker, limit, false);
+    }
+
+    /**
+     * 设置onTicker
+     * @param onTicker 消费函数
+     * @param limit 推送频率限制
+     * @param conflate 是否合并推送
+     */
+    @Override
+    public void setOnTicker(Consumer<Ticker> onTicker, RateLimit limit, boolean conflate) {
         throw new ExchangeException("setOnTicker is not supported.");
     }
 
@@ -547,7 +567,19 @@ public class BaseExchange implements Exchange {
      * @param period 推送K线周期
      */
     @Override
-    public void setOnKlines(Consumer<Klines> onKlines, Period period, RateLimit limit) {
+    public final void setOnKlines(Consumer<Klines> onKlines, Period period, RateLimit limit) {
+        this.setOnKlines(onKlines, period, limit, false);
+    }
+
+    /**
+     * 设置onKlines
+     * @param onKlines 消费函数
+     * @param period 推送K线周期
+     * @param limit 频率限制
+     * @param conflate 是否合并推送
+     */
+    @Override
+    public void setOnKlines(Consumer<Klines> onKlines, Period period, RateLimit limit, boolean conflate) {
         throw new ExchangeException("setOnKlines is not supported.");
     }
 
@@ -576,7 +608,18 @@ public class BaseExchange implements Exchange {
      * @param limit 推送频率限制
      */
     @Override
-    public void setOnDepth(Consumer<Depth> onDepth, RateLimit limit) {
+    public final void setOnDepth(Consumer<Depth> onDepth, RateLimit limit) {
+        this.setOnDepth(onDepth, limit, false);
+    }
+
+    /**
+     * 设置onDepth
+     * @param onDepth 消费函数
+     * @param limit 推送频率限制
+     * @param conflate 是否合并推送
+     */
+    @Override
+    public void setOnDepth(Consumer<Depth> onDepth, RateLimit limit, boolean conflate) {
         throw new ExchangeException("setOnDepth is not supported.");
     }
 
@@ -282,6 +282,12 @@ public interface Exchange {
      */
     List<String> cancelOrders(List<String> ids);
 
+    /**
+     * 取消币对所有活跃订单
+     * @return 成功取消的订单id
+     */
+    List<String> cancelAll();
+
     // =================== order =======================
 
     /**
@@ -332,6 +338,14 @@ public interface Exchange {
      */
     void setOnTicker(Consumer<Ticker> onTicker, RateLimit limit);
 
+    /**
+     * 设置onTicker
+     * @param onTicker 消费函数
+     * @param limit 推送频率限制
+     * @param conflate 是否合并推送，消费不过来时只推送最新的
+     */
+    void setOnTicker(Consumer<Ticker> onTicker, RateLimit limit, boolean conflate);
+
     /**
      * 设置onTicker, 默认1MIN, 频率无频率限制
      * @param onKlines 消费函数
@@ -346,6 +360,15 @@ public interface Exchange {
      */
     void setOnKlines(Consumer<Klines> onKlines, Period period, RateLimit limit);
 
+    /**
+     * 设置onKlines
+     * @param onKlines 消费函数
+     * @param period 推送K线周期
+     * @param limit 频率限制
+     * @param conflate 是否合并推送，消费不过来时只推送最新的
+     */
+    void setOnKlines(Consumer<Klines> onKlines, Period period, RateLimit limit, boolean conflate);
+
     /**
      * 设置onDepth, 默认无频率限制
      * @param onDepth 消费函数
@@ -359,6 +382,14 @@ public interface Exchange {
      */
     void setOnDepth(Consumer<Depth> onDepth, RateLimit limit);
 
+    /**
+     * 设置onDepth
+     * @param onDepth 消费函数
+     * @param limit 推送频率限制
+     * @param conflate 是否合并推送，消费不过来时只推送最新的
+     */
+    void setOnDepth(Consumer<Depth> onDepth, RateLimit limit, boolean conflate);
+
     /**
      * 设置onTrades, 默认无频率限制
      * @param onTrades 消费函数
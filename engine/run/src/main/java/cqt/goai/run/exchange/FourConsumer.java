@@ -0,0 +1,16 @@
+package cqt.goai.run.exchange;
+
+/**
+ * @author GOAi
+ */
+@FunctionalInterface
+public interface FourConsumer<T, U, K, L> {
+    /**
+     * 接受4个参数
+     * @param t t
+     * @param u u
+     * @param k k
+     * @param l l
+     */
+    void accept(T t, U u, K k, L l);
+}
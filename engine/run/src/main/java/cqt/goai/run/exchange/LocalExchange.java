@@ -11,17 +11,21 @@ import cqt.goai.exchange.web.socket.WebSocketExchange;
 import cqt.goai.model.enums.Period;
 import cqt.goai.model.market.*;
 import cqt.goai.model.trade.*;
+import cqt.goai.run.exchange.model.ConflatingObserver;
 import cqt.goai.run.exchange.model.ModelManager;
 import cqt.goai.run.exchange.model.ModelObserver;
+import cqt.goai.run.exchange.model.SingleFlight;
 import cqt.goai.run.exchange.model.TradesObserver;
 import dive.common.math.RandomUtil;
 import org.slf4j.Logger;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 /**
  * 完全本地自主连接的Exchange
@@ -38,10 +42,31 @@ public class LocalExchange extends BaseExchange {
      */
     private WebSocketExchange webSocketExchange;
 
+    /**
+     * 查询类http请求的超时时间，毫秒，0表示不限制
+     */
+    private final long timeout;
+
+    /**
+     * 公开行情http请求是否对冲
+     */
+    private final boolean hedge;
+
     public LocalExchange(Logger log, ExchangeName name, String symbol, String access, String secret,
                          Supplier<Boolean> ready) {
+        this(log, name, symbol, access, secret, ready, 0, false);
+    }
+
+    /**
+     * @param timeout 查询类http请求的超时时间，毫秒，0表示不限制，见 ExchangeInfo.timeout
+     * @param hedge 公开行情http请求是否对冲，见 ExchangeInfo.hedge
+     */
+    public LocalExchange(Logger log, ExchangeName name, String symbol, String access, String secret,
+                         Supplier<Boolean> ready, long timeout, boolean hedge) {
         super(log, name, symbol, access, secret, ready);
         this.httpExchange = ExchangeManager.getHttpExchange(name, log);
+        this.timeout = timeout;
+        this.hedge = hedge;
     }
 
     @Override
@@ -74,6 +99,36 @@ public class LocalExchange extends BaseExchange {
         super.trades.getObservers().values().forEach(o -> this.webSocketExchange.noTrades(o.getId()));
         super.account.getObservers().values().forEach(o -> this.webSocketExchange.noAccount(o.getId()));
         super.orders.getObservers().values().forEach(o -> this.webSocketExchange.noOrders(o.getId()));
+        super.ticker.close();
+        super.klines.values().forEach(ModelManager::close);
+        super.depth.close();
+    }
+
+    /**
+     * 查询请求加上配置的超时和对冲，下单撤单不使用
+     */
+    private ExchangeInfo query(ExchangeInfo info) {
+        return info.setTimeout(this.timeout).setHedge(this.hedge);
+    }
+
+    /**
+     * 合并相同行情请求的key
+     */
+    private String flight(String action, Period period) {
+        return super.name.getName() + ":" + action + ":" + super.symbol + (null == period ? "" : ":" + period);
+    }
+
+    /**
+     * 合并请求的结果给每个实例一份，K线本身不可变，只复制list
+     */
+    private static Klines copy(Klines klines) {
+        return new Klines(new ArrayList<>(klines.getList()));
+    }
+
+    private static Depth copy(Depth depth) {
+        return new Depth(depth.getTime(),
+                new Rows(new ArrayList<>(depth.getAsks().getList())),
+                new Rows(new ArrayList<>(depth.getBids().getList())));
     }
 
     @Override
@@ -87,8 +142,10 @@ public class LocalExchange extends BaseExchange {
                 return super.ticker.getModel();
             }
             // http 方式获取最新的
-            Ticker ticker = this.httpExchange.getTicker(
-                    ExchangeInfo.ticker(super.symbol, super.access, super.secret));
+            Ticker ticker = SingleFlight.get(this.flight("ticker", null), latest,
+                    () -> this.httpExchange.getTicker(
+                            this.query(ExchangeInfo.ticker(super.symbol, super.access, super.secret))),
+                    UnaryOperator.identity());
             // 更新缓存
             super.ticker.update(ticker);
             return ticker;
@@ -111,8 +168,11 @@ public class LocalExchange extends BaseExchange {
                 return manager.getModel();
             }
             // http 方式获取最新的
-            Klines klines = this.httpExchange.getKlines(
-                    ExchangeInfo.klines(super.symbol, super.access, super.secret, period));
+            Period current = period;
+            Klines klines = SingleFlight.get(this.flight("klines", current), latest,
+                    () -> this.httpExchange.getKlines(
+                            this.query(ExchangeInfo.klines(super.symbol, super.access, super.secret, current))),
+                    LocalExchange::copy);
             // 更新缓存
             manager.update(klines);
             return klines;
@@ -130,8 +190,10 @@ public class LocalExchange extends BaseExchange {
                 return super.depth.getModel();
             }
             // http 方式获取最新的
-            Depth depth = this.httpExchange.getDepth(
-                    ExchangeInfo.depth(super.symbol, super.access, super.secret));
+            Depth depth = SingleFlight.get(this.flight("depth", null), latest,
+                    () -> this.httpExchange.getDepth(
+                            this.query(ExchangeInfo.depth(super.symbol, super.access, super.secret))),
+                    LocalExchange::copy);
             // 更新缓存
             super.depth.update(depth);
             return depth;
@@ -150,7 +212,7 @@ public class LocalExchange extends BaseExchange {
             }
             // http 方式获取最新的
             Trades trades = this.httpExchange.getTrades(
-                    ExchangeInfo.trades(super.symbol, super.access, super.secret));
+                    this.query(ExchangeInfo.trades(super.symbol, super.access, super.secret)));
             // 更新缓存
             super.trades.update(trades);
             return trades;
@@ -161,7 +223,7 @@ public class LocalExchange extends BaseExchange {
     @Override
     public Balances getBalances() {
         return this.httpExchange.getBalances(
-                ExchangeInfo.balances(super.symbol, super.access, super.secret));
+                this.query(ExchangeInfo.balances(super.symbol, super.access, super.secret)));
     }
 
     @Override
@@ -176,7 +238,7 @@ public class LocalExchange extends BaseExchange {
             }
             // http 方式获取最新的
             Account account = this.httpExchange.getAccount(
-                    ExchangeInfo.account(super.symbol, super.access, super.secret));
+                    this.query(ExchangeInfo.account(super.symbol, super.access, super.secret)));
             // 更新缓存
             super.account.update(account);
             return account;
@@ -187,7 +249,7 @@ public class LocalExchange extends BaseExchange {
     @Override
     public Precisions getPrecisions() {
         return this.httpExchange.getPrecisions(
-                ExchangeInfo.precisions(super.symbol, super.access, super.secret));
+                this.query(ExchangeInfo.precisions(super.symbol, super.access, super.secret)));
     }
 
     @Override
@@ -196,7 +258,7 @@ public class LocalExchange extends BaseExchange {
             synchronized (this) {
                 if (null == super.precision) {
                     super.precision = this.httpExchange.getPrecision(
-                            ExchangeInfo.precision(super.symbol, super.access, super.secret));
+                            this.query(ExchangeInfo.precision(super.symbol, super.access, super.secret)));
                 }
             }
         }
@@ -272,41 +334,49 @@ public class LocalExchange extends BaseExchange {
                 ExchangeInfo.cancelOrders(super.symbol, super.access, super.secret, ids));
     }
 
+    @Override
+    public List<String> cancelAll() {
+        return this.httpExchange.cancelAll(
+                ExchangeInfo.cancelAll(super.symbol, super.access, super.secret));
+    }
+
 
     @Override
     public Orders getOrders() {
         return this.httpExchange.getOrders(
-                ExchangeInfo.orders(super.symbol, super.access, super.secret));
+                this.query(ExchangeInfo.orders(super.symbol, super.access, super.secret)));
     }
 
     @Override
     public Orders getHistoryOrders() {
         return this.httpExchange.getHistoryOrders(
-                ExchangeInfo.historyOrders(super.symbol, super.access, super.secret));
+                this.query(ExchangeInfo.historyOrders(super.symbol, super.access, super.secret)));
     }
 
     @Override
     public Order getOrder(String id) {
         return this.httpExchange.getOrder(
-                ExchangeInfo.order(super.symbol, super.access, super.secret, id));
+                this.query(ExchangeInfo.order(super.symbol, super.access, super.secret, id)));
     }
 
     @Override
     public OrderDetails getOrderDetails(String id) {
         return this.httpExchange.getOrderDetails(
-                ExchangeInfo.orderDetails(super.symbol, super.access, super.secret, id));
+                this.query(ExchangeInfo.orderDetails(super.symbol, super.access, super.secret, id)));
     }
 
     @Override
     public OrderDetails getOrderDetailAll() {
         return this.httpExchange.getOrderDetailAll(
-                ExchangeInfo.orderDetailAll(super.symbol, super.access, super.secret));
+                this.query(ExchangeInfo.orderDetailAll(super.symbol, super.access, super.secret)));
     }
 
     @Override
-    public void setOnTicker(Consumer<Ticker> onTicker, RateLimit limit) {
+    public void setOnTicker(Consumer<Ticker> onTicker, RateLimit limit, boolean conflate) {
         checkWebSocketExchange();
-        ModelObserver<Ticker> mo = new ModelObserver<>(onTicker, limit, RandomUtil.token());
+        ModelObserver<Ticker> mo = conflate
+                ? new ConflatingObserver<>(onTicker, limit, RandomUtil.token())
+                : new ModelObserver<>(onTicker, limit, RandomUtil.token());
         boolean success = this.webSocketExchange.onTicker(
                 ExchangeInfo.onTicker(super.symbol, super.access, super.secret, mo.getId()),
                 ticker -> super.onTicker(ticker, mo.getId()));
@@ -319,9 +389,11 @@ public class LocalExchange extends BaseExchange {
     }
 
     @Override
-    public void setOnKlines(Consumer<Klines> onKlines, Period period, RateLimit limit) {
+    public void setOnKlines(Consumer<Klines> onKlines, Period period, RateLimit limit, boolean conflate) {
         checkWebSocketExchange();
-        ModelObserver<Klines> mo = new ModelObserver<>(onKlines, limit, RandomUtil.token());
+        ModelObserver<Klines> mo = conflate
+                ? new ConflatingObserver<>(onKlines, limit, RandomUtil.token())
+                : new ModelObserver<>(onKlines, limit, RandomUtil.token());
         boolean success = this.webSocketExchange.onKlines(
                 ExchangeInfo.onKlines(super.symbol, super.access, super.secret, period, mo.getId()),
                 klines -> super.onKlines(period, klines, mo.getId()));
@@ -335,9 +407,11 @@ public class LocalExchange extends BaseExchange {
     }
 
     @Override
-    public void setOnDepth(Consumer<Depth> onDepth, RateLimit limit) {
+    public void setOnDepth(Consumer<Depth> onDepth, RateLimit limit, boolean conflate) {
         checkWebSocketExchange();
-        ModelObserver<Depth> mo = new ModelObserver<>(onDepth, limit, RandomUtil.token());
+        ModelObserver<Depth> mo = conflate
+                ? new ConflatingObserver<>(onDepth, limit, RandomUtil.token())
+                : new ModelObserver<>(onDepth, limit, RandomUtil.token());
         boolean success = this.webSocketExchange.onDepth(
                 ExchangeInfo.onDepth(super.symbol, super.access, super.secret, mo.getId()),
                 depth -> super.onDepth(depth, mo.getId()));
@@ -308,6 +308,11 @@ public class ProxyExchange implements Exchange {
         return this.get(this.e::cancelOrders, ids);
     }
 
+    @Override
+    public List<String> cancelAll() {
+        return this.get(this.e::cancelAll);
+    }
+
     // =================== order =======================
 
     @Override
@@ -347,6 +352,11 @@ public class ProxyExchange implements Exchange {
         this.run(this.e::setOnTicker, onTicker, limit);
     }
 
+    @Override
+    public void setOnTicker(Consumer<Ticker> onTicker, RateLimit limit, boolean conflate) {
+        this.run(this.e::setOnTicker, onTicker, limit, conflate);
+    }
+
     @Override
     public void setOnKlines(Consumer<Klines> onKlines) {
         this.run(this.e::setOnKlines, onKlines);
@@ -357,6 +367,11 @@ public class ProxyExchange implements Exchange {
         this.run(this.e::setOnKlines, onKlines, period, limit);
     }
 
+    @Override
+    public void setOnKlines(Consumer<Klines> onKlines, Period period, RateLimit limit, boolean conflate) {
+        this.run(this.e::setOnKlines, onKlines, period, limit, conflate);
+    }
+
     @Override
     public void setOnDepth(Consumer<Depth> onDepth) {
         this.run(this.e::setOnDepth, onDepth);
@@ -367,6 +382,11 @@ public class ProxyExchange implements Exchange {
         this.run(this.e::setOnDepth, onDepth, limit);
     }
 
+    @Override
+    public void setOnDepth(Consumer<Depth> onDepth, RateLimit limit, boolean conflate) {
+        this.run(this.e::setOnDepth, onDepth, limit, conflate);
+    }
+
     @Override
     public void setOnTrades(Consumer<Trades> onTrades) {
         this.run(this.e::setOnTrades, onTrades);
@@ -421,6 +441,12 @@ public class ProxyExchange implements Exchange {
         } catch (Exception ignored) { }
     }
 
+    private <T, U, K, L> void run(FourConsumer<T, U, K, L> consumer, T t, U u, K k, L l) {
+        try {
+            consumer.accept(t, u, k, l);
+        } catch (Exception ignored) { }
+    }
+
     private <R> R get(Supplier<R> supplier) {
         try {
             return supplier.get();
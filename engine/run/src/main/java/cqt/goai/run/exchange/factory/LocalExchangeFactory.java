@@ -11,6 +11,10 @@ import java.util.function.Supplier;
 
 /**
  * 本地实现Exchange
+ *
+ * 交易所配置除 name symbol access secret 外可选：
+ * timeout 查询类http请求超时毫秒数，不配置不限制
+ * hedge   公开行情http请求是否对冲，不配置不对冲
  * @author GOAi
  */
 public class LocalExchangeFactory extends BaseExchangeFactory {
@@ -22,7 +26,9 @@ public class LocalExchangeFactory extends BaseExchangeFactory {
                 config.getString("symbol"),
                 config.getString("access"),
                 config.getString("secret"),
-                ready);
+                ready,
+                config.getLongValue("timeout"),
+                config.getBooleanValue("hedge"));
         if (proxy) {
             exchange = new ProxyExchange(exchange);
         }
@@ -0,0 +1,111 @@
+package cqt.goai.run.exchange.model;
+
+import cqt.goai.exchange.util.RateLimit;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * 合并推送的订阅
+ *
+ * 只保留最新的一个model，推送线程只负责放入，由本订阅自己的线程取出消费
+ * 消费慢时中间的model直接被覆盖，不会积压，也不会阻塞推送线程和其他订阅
+ *
+ * 适用于ticker depth klines 这类只关心最新状态的推送
+ *
+ * @author GOAi
+ */
+@Slf4j
+public class ConflatingObserver<T> extends ModelObserver<T> {
+
+    private static final AtomicInteger COUNT = new AtomicInteger();
+
+    /**
+     * 最新model
+     */
+    private final AtomicReference<T> slot = new AtomicReference<>();
+
+    /**
+     * 是否已经提交了消费任务
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    /**
+     * 本订阅独占的消费线程，空闲后自动回收
+     */
+    private final ExecutorService executor;
+
+    public ConflatingObserver(Consumer<T> consumer, RateLimit limit, String id) {
+        super(consumer, limit, id);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "conflating-observer-" + COUNT.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        this.executor = executor;
+    }
+
+    /**
+     * 放入最新model，已经有未消费的直接覆盖
+     * 取消订阅后直接忽略
+     * @param model 新的对象
+     */
+    @Override
+    void on(T model) {
+        if (this.executor.isShutdown()) {
+            return;
+        }
+        this.slot.set(model);
+        this.schedule();
+    }
+
+    private void schedule() {
+        if (this.executor.isShutdown() || !this.scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            this.executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            // 与 close 并发，已经取消订阅
+            this.scheduled.set(false);
+        }
+    }
+
+    /**
+     * 取出最新model消费
+     * 消费出错只记录日志，不影响之后的推送
+     */
+    private void drain() {
+        try {
+            T model = this.slot.getAndSet(null);
+            if (null != model && super.limit.timeout()) {
+                super.consumer.accept(model);
+            }
+        } catch (Exception e) {
+            log.error("conflating observer {} consume failed", super.getId(), e);
+        } finally {
+            this.scheduled.set(false);
+            // 消费期间又有新的model
+            if (null != this.slot.get()) {
+                this.schedule();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        this.executor.shutdownNow();
+        this.slot.set(null);
+    }
+
+}
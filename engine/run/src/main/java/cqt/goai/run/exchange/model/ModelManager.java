@@ -56,6 +56,13 @@ public class ModelManager<T> {
         this.observers.put(observer.getId(), observer);
     }
 
+    /**
+     * 释放所有订阅
+     */
+    public void close() {
+        this.observers.values().forEach(ModelObserver::close);
+    }
+
     /**
      * http方式不用推送
      * @param model model
@@ -39,6 +39,11 @@ public class ModelObserver<T> {
         }
     }
 
+    /**
+     * 取消订阅时释放资源
+     */
+    public void close() { }
+
     public String getId() {
         return id;
     }
@@ -0,0 +1,110 @@
+package cqt.goai.run.exchange.model;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * 相同的公开行情请求合并，进程内共用
+ *
+ * 多个实例交易同一币对时，各自的缓存过期后都会发出相同的http请求，
+ * 这里按 交易所+接口+币对+周期 合并：
+ * 1. 已有相同请求正在进行，直接等待它的结果，不再发出请求；
+ *    latest=true 时只等待本次调用之后发出的请求，之前发出的请求可能早于调用时的行情，重新发出
+ * 2. 刚完成的结果在 goai.flight.ttl 毫秒(默认500)内共用，latest=true 时不使用
+ * 请求失败时所有等待者都收到同一个异常，失败结果不缓存
+ *
+ * Klines Depth Trades 是可修改的list，各实例拿到后可能增删，
+ * 共用的结果只保存不再修改的原件，每个调用者(包括发出请求的)都拿到 copy 生成的副本
+ *
+ * 只用于不需要授权的行情接口，账户、订单接口各实例结果不同，不能合并
+ *
+ * @author GOAi
+ */
+public class SingleFlight {
+
+    /**
+     * 结果共用时间，毫秒
+     */
+    public static final long TTL = Long.getLong("goai.flight.ttl", 500);
+
+    private static final ConcurrentHashMap<String, Flight<?>> FLIGHTS = new ConcurrentHashMap<>();
+
+    private SingleFlight() {}
+
+    /**
+     * 一次请求
+     */
+    private static class Flight<V> {
+        private final CompletableFuture<V> future = new CompletableFuture<>();
+        /**
+         * 发出时间，纳秒
+         */
+        private final long start = System.nanoTime();
+        /**
+         * 完成时间
+         */
+        private volatile long done;
+    }
+
+    /**
+     * 获取结果
+     * @param key 请求标识 交易所+接口+币对+周期
+     * @param latest 是否必须是本次调用之后发出的请求
+     * @param loader 实际请求
+     * @param copy 生成给调用者的副本，结果不可修改时可以直接返回原对象
+     * @param <V> 结果类型
+     * @return 结果副本
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> V get(String key, boolean latest, Supplier<V> loader, UnaryOperator<V> copy) {
+        long called = System.nanoTime();
+        while (true) {
+            Flight<V> flight = (Flight<V>) FLIGHTS.get(key);
+            if (null != flight) {
+                if (!flight.future.isDone() && (!latest || called <= flight.start)) {
+                    return SingleFlight.copy(SingleFlight.join(flight), copy);
+                }
+                if (!latest && flight.future.isDone() && !flight.future.isCompletedExceptionally()
+                        && System.currentTimeMillis() - flight.done < TTL) {
+                    return SingleFlight.copy(flight.future.join(), copy);
+                }
+            }
+            Flight<V> mine = new Flight<>();
+            boolean won = null == flight ? null == FLIGHTS.putIfAbsent(key, mine) : FLIGHTS.replace(key, flight, mine);
+            if (!won) {
+                // 其他线程刚刚发出了请求，重新判断
+                continue;
+            }
+            V value;
+            try {
+                value = loader.get();
+            } catch (Throwable e) {
+                FLIGHTS.remove(key, mine);
+                mine.future.completeExceptionally(e);
+                throw e;
+            }
+            mine.done = System.currentTimeMillis();
+            mine.future.complete(value);
+            return SingleFlight.copy(value, copy);
+        }
+    }
+
+    private static <V> V copy(V value, UnaryOperator<V> copy) {
+        return null == value ? null : copy.apply(value);
+    }
+
+    private static <V> V join(Flight<V> flight) {
+        try {
+            return flight.future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+}
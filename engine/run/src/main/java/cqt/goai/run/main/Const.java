@@ -34,6 +34,10 @@ class Const {
      */
     static final String CONFIG_RUN_MODE = "run_mode";
 //    static final String CONFIG_RUN_MODE_DEBUG = "DEBUG";
+    /**
+     * 异步http请求线程数，即同时进行的异步请求上限
+     */
+    static final String CONFIG_HTTP_THREADS = "http_threads";
 
     /**
      * 默认的定时方法
@@ -12,6 +12,7 @@ import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import cqt.goai.exchange.ExchangeException;
 import cqt.goai.exchange.ExchangeUtil;
+import cqt.goai.exchange.http.HttpExchange;
 import cqt.goai.model.other.RunInfo;
 import cqt.goai.model.other.RunState;
 import cqt.goai.run.Application;
@@ -337,6 +338,12 @@ public class Minister {
             log.info("config run mode --> {}", config.getString(Const.CONFIG_RUN_MODE));
         }
 
+        Integer httpThreads = config.getInteger(Const.CONFIG_HTTP_THREADS);
+        if (null != httpThreads) {
+            HttpExchange.setAsyncThreads(httpThreads);
+            log.info("config http threads --> {}", httpThreads);
+        }
+
     }
 
     /**